@@ -60,6 +60,9 @@ public final class ElevationHelper {
     /**
      * Gets the elevation (Z coordinate) of a GPX way point in meter or feet (for
      * US, UK, ZA, AU, NZ and CA).
+     * <p>
+     * The SRTM data is interpolated like for the elevation profile, see {@link HgtReader#getInterpolation()},
+     * so that the elevations drawn for the way points match the profile.
      *
      * @param wpt
      *            The way point instance.
@@ -70,12 +73,44 @@ public final class ElevationHelper {
         if (wpt == null) return NO_ELEVATION;
 
         // try to get elevation from HGT file
-        double eleInt = getSrtmElevation(wpt.getCoor());
+        double eleInt = HgtReader.getElevation(wpt.lat(), wpt.lon(), HgtReader.getInterpolation());
         if (isValidElevation(eleInt)) {
             return eleInt;
         }
 
         // no HGT, check for elevation data in GPX
+        return getGpxElevation(wpt);
+    }
+
+    /**
+     * Gets the elevations of a list of way points, like {@link #getElevation(WayPoint)} but with a single
+     * batch query of the SRTM data, see {@link HgtReader#getElevations}.
+     *
+     * @param wpts the way points
+     * @return the elevation of each way point, or <code>NO_ELEVATION</code>
+     */
+    public static double[] getElevations(List<WayPoint> wpts) {
+        int n = wpts.size();
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            WayPoint wpt = wpts.get(i);
+            lat[i] = wpt != null ? wpt.lat() : Double.NaN;
+            lon[i] = wpt != null ? wpt.lon() : Double.NaN;
+        }
+        double[] elevations = HgtReader.getElevations(lat, lon, HgtReader.getInterpolation());
+        for (int i = 0; i < n; i++) {
+            if (!isValidElevation(elevations[i]) && wpts.get(i) != null) {
+                elevations[i] = getGpxElevation(wpts.get(i));
+            }
+        }
+        return elevations;
+    }
+
+    /**
+     * Gets the elevation attribute of a GPX way point.
+     */
+    private static double getGpxElevation(WayPoint wpt) {
         if (!wpt.attr.containsKey(HEIGHT_ATTRIBUTE)) {
             // GPX has no elevation data :-(
             return NO_ELEVATION;
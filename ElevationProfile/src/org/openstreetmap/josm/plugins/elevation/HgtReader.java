@@ -2,29 +2,24 @@
 package org.openstreetmap.josm.plugins.elevation;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.apache.commons.compress.utils.IOUtils;
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.Preferences;
 import org.openstreetmap.josm.data.coor.ILatLon;
-import org.openstreetmap.josm.io.Compression;
-import org.openstreetmap.josm.tools.CheckParameterUtil;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
 
 /**
  *  Class HgtReader reads data from SRTM HGT files. Currently this class is restricted to a resolution of 3 arc seconds.
+ *  The files are kept in a {@link HgtTileStore}, which maps them to memory and evicts the least recently used ones.
  *
  *  SRTM data files are available at the <a href="http://dds.cr.usgs.gov/srtm/version2_1/SRTM3">NASA SRTM site</a>
  *  @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
@@ -38,41 +33,31 @@ public class HgtReader {
     // alter these values for different SRTM resolutions
     public static final int HGT_VOID = Short.MIN_VALUE; // magic number which indicates 'void data' in HGT file
 
-    private static final HashMap<String, short[][]> cache = new HashMap<>();
+    /** Preference key of the interpolation used for elevation profiles, see {@link Interpolation} */
+    public static final String PREF_INTERPOLATION = "elevation.hgt.interpolation";
+
+    /**
+     * Interpolation between the samples of a tile.
+     */
+    public enum Interpolation {
+        /** Value of the nearest sample */
+        NEAREST,
+        /** Weighted mean of the 4 surrounding samples */
+        BILINEAR,
+        /** Cubic convolution of the 16 surrounding samples, smooth across sample boundaries */
+        BICUBIC
+    }
+
+    private static final HgtTileStore cache = new HgtTileStore();
 
     public static double getElevationFromHgt(ILatLon coor) {
         try {
             String file = getHgtFileName(coor);
-            // given area in cache?
-            if (!cache.containsKey(file)) {
-
-                // fill initial cache value. If no file is found, then
-                // we use it as a marker to indicate 'file has been searched
-                // but is not there'
-                cache.put(file, null);
-                // Try all resource directories
-                for (String location : Preferences.getAllPossiblePreferenceDirs()) {
-                    String fullPath = new File(location + File.separator + "elevation", file).getPath();
-                    File f = new File(fullPath);
-                    if (!f.exists()) {
-                        for (String ext : COMPRESSION_EXT) {
-                            f = new File(fullPath + "." + ext);
-                            if (f.exists()) break;
-                        }
-                    }
-                    if (f.exists()) {
-                        read(f);
-                        break;
-                    }
-                }
-            }
+            // given area in cache? If no file is found, the store remembers that the file has been searched
+            HgtTileStore.Tile tile = cache.get(file, HgtReader::findHgtFile);
 
             // read elevation value
-            return readElevation(coor, file);
-        } catch (FileNotFoundException e) {
-            Logging.error("Get elevation from HGT " + coor + " failed: => " + e.getMessage());
-            // no problem... file not there
-            return ElevationHelper.NO_ELEVATION;
+            return readElevation(coor, tile);
         } catch (Exception ioe) {
             // oops...
             Logging.error(ioe);
@@ -81,14 +66,213 @@ public class HgtReader {
         }
     }
 
+    /**
+     * Gets the elevations of many coordinates at once, e.g. of all points of a track.
+     * <p>
+     * The tile of each run of points within the same tile is looked up once, and each tile at most once per call,
+     * instead of building the file name and querying the tile store for every point. Void samples are left out of
+     * the interpolation, bicubic interpolation falls back to bilinear interpolation next to them.
+     *
+     * @param lat the latitudes, in degrees
+     * @param lon the longitudes, in degrees
+     * @param interpolation the interpolation between the samples
+     * @return the elevation of each coordinate, or {@link ElevationHelper#NO_ELEVATION} if there is no data
+     */
+    public static double[] getElevations(double[] lat, double[] lon, Interpolation interpolation) {
+        if (lat.length != lon.length) {
+            throw new IllegalArgumentException("Got " + lat.length + " latitudes but " + lon.length + " longitudes");
+        }
+        double[] elevations = new double[lat.length];
+        Map<Integer, HgtTileStore.Tile> tiles = new HashMap<>();
+        int lastKey = Integer.MIN_VALUE;
+        HgtTileStore.Tile tile = null;
+        for (int i = 0; i < lat.length; i++) {
+            if (Double.isNaN(lat[i]) || Double.isNaN(lon[i])) {
+                elevations[i] = ElevationHelper.NO_ELEVATION;
+                continue;
+            }
+            int tileLat = (int) Math.floor(lat[i]);
+            int tileLon = (int) Math.floor(lon[i]);
+            int key = tileLat * 1000 + tileLon;
+            if (key != lastKey) {
+                lastKey = key;
+                if (tiles.containsKey(key)) {
+                    tile = tiles.get(key);
+                } else {
+                    tile = cache.get(getHgtFileName(tileLat, tileLon), HgtReader::findHgtFile);
+                    tiles.put(key, tile);
+                }
+            }
+            elevations[i] = interpolate(tile, tileLat, tileLon, lat[i], lon[i], interpolation);
+        }
+        return elevations;
+    }
+
+    /**
+     * Gets the elevation of a single coordinate, interpolated like in {@link #getElevations}.
+     *
+     * @param lat the latitude, in degrees
+     * @param lon the longitude, in degrees
+     * @param interpolation the interpolation between the samples
+     * @return the elevation, or {@link ElevationHelper#NO_ELEVATION} if there is no data
+     */
+    public static double getElevation(double lat, double lon, Interpolation interpolation) {
+        if (Double.isNaN(lat) || Double.isNaN(lon)) {
+            return ElevationHelper.NO_ELEVATION;
+        }
+        int tileLat = (int) Math.floor(lat);
+        int tileLon = (int) Math.floor(lon);
+        HgtTileStore.Tile tile = cache.get(getHgtFileName(tileLat, tileLon), HgtReader::findHgtFile);
+        return interpolate(tile, tileLat, tileLon, lat, lon, interpolation);
+    }
+
+    private static double interpolate(HgtTileStore.Tile tile, int tileLat, int tileLon, double lat, double lon,
+            Interpolation interpolation) {
+        if (tile == null) {
+            return ElevationHelper.NO_ELEVATION;
+        }
+        // rows run from north to south, columns from west to east
+        int last = tile.getSize() - 1;
+        return interpolate(tile, (tileLat + 1 - lat) * last, (lon - tileLon) * last, interpolation);
+    }
+
+    /**
+     * Returns the interpolation for elevation profiles, from the preferences.
+     * @return the interpolation, {@link Interpolation#BILINEAR} by default
+     */
+    public static Interpolation getInterpolation() {
+        String value = Config.getPref().get(PREF_INTERPOLATION, Interpolation.BILINEAR.name());
+        try {
+            return Interpolation.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            Logging.warn("Unknown interpolation " + value + " for " + PREF_INTERPOLATION);
+            return Interpolation.BILINEAR;
+        }
+    }
+
+    /**
+     * Interpolates the samples of a tile.
+     * @param tile the tile
+     * @param row the fractional row, from 0 to {@code size - 1}
+     * @param col the fractional column, from 0 to {@code size - 1}
+     * @param interpolation the interpolation
+     * @return the elevation, or {@link ElevationHelper#NO_ELEVATION} if there are only void samples
+     */
+    static double interpolate(HgtTileStore.Tile tile, double row, double col, Interpolation interpolation) {
+        switch (interpolation) {
+        case NEAREST:
+            return nearest(tile, row, col);
+        case BICUBIC:
+            double ele = bicubic(tile, row, col);
+            return Double.isNaN(ele) ? bilinear(tile, row, col) : ele;
+        default:
+            return bilinear(tile, row, col);
+        }
+    }
+
+    private static int clamp(int index, int size) {
+        return Math.max(0, Math.min(size - 1, index));
+    }
+
+    private static double nearest(HgtTileStore.Tile tile, double row, double col) {
+        int size = tile.getSize();
+        short ele = tile.get(clamp((int) Math.round(row), size), clamp((int) Math.round(col), size));
+        return ele == HGT_VOID ? ElevationHelper.NO_ELEVATION : ele;
+    }
+
+    private static double bilinear(HgtTileStore.Tile tile, double row, double col) {
+        int size = tile.getSize();
+        int r0 = clamp((int) Math.floor(row), size - 1);
+        int c0 = clamp((int) Math.floor(col), size - 1);
+        double dr = row - r0;
+        double dc = col - c0;
+        double sum = 0;
+        double weights = 0;
+        for (int r = 0; r < 2; r++) {
+            for (int c = 0; c < 2; c++) {
+                double weight = (r == 0 ? 1 - dr : dr) * (c == 0 ? 1 - dc : dc);
+                short ele = tile.get(r0 + r, c0 + c);
+                if (weight > 0 && ele != HGT_VOID) {
+                    sum += weight * ele;
+                    weights += weight;
+                }
+            }
+        }
+        return weights > 0 ? sum / weights : ElevationHelper.NO_ELEVATION;
+    }
+
+    /**
+     * Catmull-Rom cubic convolution, samples outside of the tile repeat the border samples.
+     * @return the elevation, or {@link ElevationHelper#NO_ELEVATION} if any of the 16 samples is void
+     */
+    private static double bicubic(HgtTileStore.Tile tile, double row, double col) {
+        int size = tile.getSize();
+        int r0 = (int) Math.floor(row);
+        int c0 = (int) Math.floor(col);
+        double dr = row - r0;
+        double dc = col - c0;
+        double sum = 0;
+        for (int r = -1; r <= 2; r++) {
+            int sampleRow = clamp(r0 + r, size);
+            double rowSum = 0;
+            for (int c = -1; c <= 2; c++) {
+                short ele = tile.get(sampleRow, clamp(c0 + c, size));
+                if (ele == HGT_VOID) {
+                    return ElevationHelper.NO_ELEVATION;
+                }
+                rowSum += cubicWeight(c, dc) * ele;
+            }
+            sum += cubicWeight(r, dr) * rowSum;
+        }
+        return sum;
+    }
+
+    /**
+     * Weight of the sample at offset {@code k} (-1 to 2) for the fraction {@code t} between samples 0 and 1.
+     */
+    private static double cubicWeight(int k, double t) {
+        switch (k) {
+        case -1:
+            return ((-0.5 * t + 1) * t - 0.5) * t;
+        case 0:
+            return (1.5 * t - 2.5) * t * t + 1;
+        case 1:
+            return ((-1.5 * t + 2) * t + 0.5) * t;
+        default:
+            return (0.5 * t - 0.5) * t * t;
+        }
+    }
+
+    /**
+     * Finds the HGT file of a tile in the resource directories, possibly compressed.
+     * @param file the tile file name
+     * @return the HGT file, or {@code null} if not found
+     */
+    private static File findHgtFile(String file) {
+        // Try all resource directories
+        for (String location : Preferences.getAllPossiblePreferenceDirs()) {
+            String fullPath = new File(location + File.separator + "elevation", file).getPath();
+            File f = new File(fullPath);
+            if (!f.exists()) {
+                for (String ext : COMPRESSION_EXT) {
+                    f = new File(fullPath + "." + ext);
+                    if (f.exists()) break;
+                }
+            }
+            if (f.exists()) {
+                return f;
+            }
+        }
+        return null;
+    }
+
     public static Bounds read(File file) throws IOException {
         String location = file.getName();
         for (String ext : COMPRESSION_EXT) {
             location = location.replaceAll("\\." + ext + "$", "");
         }
-        short[][] sb = readHgtFile(file.getPath());
         // Overwrite the cache file (assume that is desired)
-        cache.put(location, sb);
+        cache.load(location, file);
         Pattern pattern = Pattern.compile("([NS])(\\d{2})([EW])(\\d{3})");
         Matcher matcher = pattern.matcher(location);
         if (matcher.lookingAt()) {
@@ -99,33 +283,6 @@ public class HgtReader {
         return null;
     }
 
-    private static short[][] readHgtFile(String file) throws IOException {
-        CheckParameterUtil.ensureParameterNotNull(file);
-
-        short[][] data = null;
-
-        try (InputStream fis = Compression.getUncompressedFileInputStream(Paths.get(file))) {
-            // choose the right endianness
-            ByteBuffer bb = ByteBuffer.wrap(IOUtils.toByteArray(fis));
-            //System.out.println(Arrays.toString(bb.array()));
-            bb.order(ByteOrder.BIG_ENDIAN);
-            int size = (int) Math.sqrt(bb.array().length / 2);
-            data = new short[size][size];
-            int x = 0;
-            int y = 0;
-            while (x < size) {
-                while (y < size) {
-                    data[x][y] = bb.getShort(2 * (x * size + y));
-                    y++;
-                }
-                x++;
-                y = 0;
-            }
-        }
-
-        return data;
-    }
-
     /**
      * Reads the elevation value for the given coordinate.
      *
@@ -147,15 +304,16 @@ public class HgtReader {
      * @return the elevation value or <code>Double.NaN</code>, if no value is present
      */
     public static double readElevation(ILatLon coor, String fileName) {
+        return readElevation(coor, cache.getIfPresent(fileName));
+    }
 
-        short[][] sb = cache.get(fileName);
-
-        if (sb == null) {
+    private static double readElevation(ILatLon coor, HgtTileStore.Tile tile) {
+        if (tile == null) {
             return ElevationHelper.NO_ELEVATION;
         }
 
-        int[] index = getIndex(coor, sb.length);
-        short ele = sb[index[0]][index[1]];
+        int[] index = getIndex(coor, tile.getSize());
+        short ele = tile.get(index[0], index[1]);
 
         if (ele == HGT_VOID) {
             return ElevationHelper.NO_ELEVATION;
@@ -165,20 +323,20 @@ public class HgtReader {
 
     public static Optional<Bounds> getBounds(ILatLon location) {
         final String fileName = getHgtFileName(location);
-        final short[][] sb = cache.get(fileName);
+        final HgtTileStore.Tile tile = cache.getIfPresent(fileName);
 
-        if (sb == null) {
+        if (tile == null) {
             return Optional.empty();
         }
 
         final double latDegrees = location.lat();
         final double lonDegrees = location.lon();
 
-        final float fraction = ((float) SRTM_EXTENT) / sb.length;
+        final float fraction = ((float) SRTM_EXTENT) / tile.getSize();
         final int latitude = (int) Math.floor(latDegrees) + (latDegrees < 0 ? 1 : 0);
         final int longitude = (int) Math.floor(lonDegrees) + (lonDegrees < 0 ? 1 : 0);
 
-        final int[] index = getIndex(location, sb.length);
+        final int[] index = getIndex(location, tile.getSize());
         final int latSign = latitude > 0 ? 1 : -1;
         final int lonSign = longitude > 0 ? 1 : -1;
         final double minLat = latitude + latSign * fraction * index[0];
@@ -226,22 +384,31 @@ public class HgtReader {
      * @return the file name of the HGT file
      */
     public static String getHgtFileName(ILatLon latLon) {
-        int lat = (int) Math.floor(latLon.lat());
-        int lon = (int) Math.floor(latLon.lon());
+        return getHgtFileName((int) Math.floor(latLon.lat()), (int) Math.floor(latLon.lon()));
+    }
 
-        String latPref = "N";
-        if (lat < 0) {
-            latPref = "S";
-            lat = Math.abs(lat);
+    /**
+     * Gets the HGT file name of the tile with the given south west corner.
+     * @param lat the latitude of the tile, in whole degrees
+     * @param lon the longitude of the tile, in whole degrees
+     * @return the file name of the HGT file
+     */
+    private static String getHgtFileName(int lat, int lon) {
+        StringBuilder sb = new StringBuilder(11);
+        sb.append(lat < 0 ? 'S' : 'N');
+        int absLat = Math.abs(lat);
+        if (absLat < 10) {
+            sb.append('0');
         }
-
-        String lonPref = "E";
-        if (lon < 0) {
-            lonPref = "W";
-            lon = Math.abs(lon);
+        sb.append(absLat).append(lon < 0 ? 'W' : 'E');
+        int absLon = Math.abs(lon);
+        if (absLon < 100) {
+            sb.append('0');
         }
-
-        return String.format("%s%2d%s%03d" + HGT_EXT, latPref, lat, lonPref, lon);
+        if (absLon < 10) {
+            sb.append('0');
+        }
+        return sb.append(absLon).append(HGT_EXT).toString();
     }
 
     public static double frac(double d) {
@@ -254,6 +421,14 @@ public class HgtReader {
         return fPart;
     }
 
+    /**
+     * Returns the store of the SRTM tiles read so far.
+     * @return the tile store
+     */
+    public static HgtTileStore getTileStore() {
+        return cache;
+    }
+
     public static void clearCache() {
         cache.clear();
     }
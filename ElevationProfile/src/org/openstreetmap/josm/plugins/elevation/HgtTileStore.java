@@ -0,0 +1,225 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.elevation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Thread safe store of SRTM tiles, bounded by a byte budget.
+ * <p>
+ * Uncompressed HGT files are memory mapped, so the operating system pages the samples in and out as needed
+ * instead of copying them to the heap. Compressed files are decompressed once to the JOSM cache directory,
+ * and the decompressed copy is mapped. When the tiles exceed the budget, the least recently used ones are evicted.
+ */
+public class HgtTileStore {
+
+    /** Preference key of the size of the tile store, in megabytes */
+    public static final String PREF_CACHE_SIZE = "elevation.hgt.cache.size";
+    /** Default size of the tile store, in megabytes: about 10 tiles of 1 arc second, or 90 tiles of 3 arc seconds */
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    /**
+     * Samples of an SRTM tile.
+     */
+    public static final class Tile {
+        private final ShortBuffer data;
+        private final int size;
+
+        Tile(ShortBuffer data) {
+            this.data = data;
+            this.size = (int) Math.sqrt(data.capacity());
+        }
+
+        /**
+         * @return the number of samples of each row and column
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Returns a sample of the tile.
+         * @param row the row, from north to south
+         * @param col the column, from west to east
+         * @return the elevation in meters, or {@link HgtReader#HGT_VOID}
+         */
+        public short get(int row, int col) {
+            return data.get(row * size + col);
+        }
+
+        long byteSize() {
+            return 2L * data.capacity();
+        }
+    }
+
+    private final long budget;
+    private long used;
+    // access ordered, the eldest entry is the least recently used tile
+    private final Map<String, Tile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    // tiles searched but not found, so that the disk is only searched once
+    private final Set<String> missing = new HashSet<>();
+    private final File decompressedDir;
+
+    /**
+     * Constructs a new {@code HgtTileStore} with the budget of the preferences.
+     */
+    public HgtTileStore() {
+        this(Config.getPref().getInt(PREF_CACHE_SIZE, DEFAULT_CACHE_SIZE) * 1024L * 1024L,
+                new File(Config.getDirs().getCacheDirectory(false), "elevation"));
+    }
+
+    /**
+     * Constructs a new {@code HgtTileStore}.
+     * @param budget the maximum size of the tiles, in bytes. The last used tile is kept even if it is larger
+     * @param decompressedDir the directory of decompressed tiles
+     */
+    public HgtTileStore(long budget, File decompressedDir) {
+        this.budget = budget;
+        this.decompressedDir = decompressedDir;
+    }
+
+    /**
+     * Returns a tile, loading it if needed.
+     * @param name the tile name, e.g. {@code N50E008.hgt}
+     * @param finder finds the file of a tile which is not loaded
+     * @return the tile, or {@code null} if there is no file for this tile
+     */
+    public synchronized Tile get(String name, TileFinder finder) {
+        Tile tile = tiles.get(name);
+        if (tile == null && !missing.contains(name)) {
+            File file = finder.find(name);
+            if (file == null) {
+                missing.add(name);
+            } else {
+                try {
+                    tile = load(name, file);
+                } catch (IOException e) {
+                    Logging.error("Get elevation from HGT " + file + " failed: => " + e.getMessage());
+                    missing.add(name);
+                }
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Returns a tile if it is loaded.
+     * @param name the tile name
+     * @return the tile, or {@code null} if it is not loaded
+     */
+    public synchronized Tile getIfPresent(String name) {
+        return tiles.get(name);
+    }
+
+    /**
+     * Loads a tile from a file, replacing any tile of the same name.
+     * @param name the tile name
+     * @param file the HGT file, possibly compressed
+     * @return the tile
+     * @throws IOException if the file cannot be read
+     */
+    public synchronized Tile load(String name, File file) throws IOException {
+        Path path = file.toPath();
+        if (Compression.byExtension(file.getName()) != Compression.NONE) {
+            path = decompress(name, file);
+        }
+        Tile tile;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            tile = new Tile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.BIG_ENDIAN)
+                    .asShortBuffer());
+        }
+        put(name, tile);
+        return tile;
+    }
+
+    /**
+     * Decompresses a file to the directory of decompressed tiles, unless it already is.
+     */
+    private Path decompress(String name, File file) throws IOException {
+        Path target = decompressedDir.toPath().resolve(name);
+        if (Files.isRegularFile(target) && Files.getLastModifiedTime(target).toMillis() >= file.lastModified()) {
+            return target;
+        }
+        Files.createDirectories(decompressedDir.toPath());
+        Path tmp = Files.createTempFile(decompressedDir.toPath(), name, ".tmp");
+        try (InputStream in = Compression.getUncompressedFileInputStream(file.toPath())) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        Logging.info("Decompressed HGT file " + file + " to " + target);
+        return target;
+    }
+
+    private void put(String name, Tile tile) {
+        missing.remove(name);
+        Tile old = tiles.put(name, tile);
+        if (old != null) {
+            used -= old.byteSize();
+        }
+        used += tile.byteSize();
+        // Evict the least recently used tiles, mapped memory is released when they are garbage collected
+        Iterator<Map.Entry<String, Tile>> it = tiles.entrySet().iterator();
+        while (used > budget && tiles.size() > 1) {
+            Tile evicted = it.next().getValue();
+            it.remove();
+            used -= evicted.byteSize();
+        }
+    }
+
+    /**
+     * @return the total size of the loaded tiles, in bytes
+     */
+    public synchronized long getUsedBytes() {
+        return used;
+    }
+
+    /**
+     * @return the names of the loaded tiles, from least to most recently used
+     */
+    public synchronized Set<String> getTileNames() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(tiles.keySet()));
+    }
+
+    /**
+     * Removes all tiles, and forgets which tiles were missing.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+        missing.clear();
+        used = 0;
+    }
+
+    /**
+     * Finds the file of a tile.
+     */
+    @FunctionalInterface
+    public interface TileFinder {
+        /**
+         * Finds the file of a tile.
+         * @param name the tile name
+         * @return the file, or {@code null} if there is none
+         */
+        File find(String name);
+    }
+}
@@ -50,6 +50,7 @@ IGpxWaypointVisitor {
     private IElevationProfile parent;
     private int sumEle; // temp var for average height
     private List<WayPoint> wayPoints;
+    private double[] elevations; // elevation of each way point, queried at once
     private int numWayPoints; // cached value
     private int gain;
     private int lastEle;
@@ -128,16 +129,17 @@ IGpxWaypointVisitor {
         gain = 0;
         lastEle = 0;
 
-        for (WayPoint wayPoint : this.wayPoints) {
-            visitWayPoint(wayPoint);
+        elevations = ElevationHelper.getElevations(wayPoints);
+        for (int i = 0; i < n; i++) {
+            visitWayPoint(wayPoints.get(i), elevations[i]);
         }
 
         if (this.minHeight == Integer.MAX_VALUE && this.maxHeight == Integer.MIN_VALUE) {
             // file does not contain elevation data    at all
             minHeight = 0;
             maxHeight = 0;
-            setMinWayPoint(wayPoints.get(0));
-            setMaxWayPoint(wayPoints.get(n-1));
+            setMinWayPoint(wayPoints.get(0), elevations[0]);
+            setMaxWayPoint(wayPoints.get(n-1), elevations[n-1]);
         }
 
         //if (start.after(end) || start.equals(end)) {
@@ -170,8 +172,12 @@ IGpxWaypointVisitor {
      * @param wp The way point instance having the lowest elevation.
      */
     protected void setMinWayPoint(WayPoint wp) {
+        setMinWayPoint(wp, ElevationHelper.getElevation(wp));
+    }
+
+    private void setMinWayPoint(WayPoint wp, double ele) {
         importantWayPoints[WAYPOINT_MIN] = wp;
-        this.minHeight = (int) ElevationHelper.getElevation(wp);
+        this.minHeight = (int) ele;
     }
 
     /**
@@ -179,8 +185,12 @@ IGpxWaypointVisitor {
      * @param wp The way point instance having the highest elevation.
      */
     protected void setMaxWayPoint(WayPoint wp) {
+        setMaxWayPoint(wp, ElevationHelper.getElevation(wp));
+    }
+
+    private void setMaxWayPoint(WayPoint wp, double ele) {
         importantWayPoints[WAYPOINT_MAX] = wp;
-        this.maxHeight = (int) ElevationHelper.getElevation(wp);
+        this.maxHeight = (int) ele;
     }
 
     /**
@@ -237,7 +247,7 @@ IGpxWaypointVisitor {
     @Override
     public int elevationValueAt(int i) {
         if (checkIndex(i)) {
-            return (int) ElevationHelper.getElevation(wayPoints.get(i));
+            return (int) elevations[i];
         } else {
             throw new IndexOutOfBoundsException(String.format(
                     "Invalid index: %d, expected 0..%d", i,
@@ -385,6 +395,12 @@ IGpxWaypointVisitor {
      */
     @Override
     public void visitWayPoint(WayPoint wp) {
+        if (wp != null) {
+            visitWayPoint(wp, ElevationHelper.getElevation(wp));
+        }
+    }
+
+    private void visitWayPoint(WayPoint wp, double elevation) {
         if (wp == null)
             return;
 
@@ -405,14 +421,14 @@ IGpxWaypointVisitor {
             bounds.extend(wp.getCoor());
         }
 
-        int ele = (int) ElevationHelper.getElevation(wp);
+        int ele = (int) elevation;
 
         if (!isIgnoreZeroHeight() || ele > 0) {
             if (ele > maxHeight) {
-                setMaxWayPoint(wp);
+                setMaxWayPoint(wp, elevation);
             }
             if (ele < minHeight) {
-                setMinWayPoint(wp);
+                setMinWayPoint(wp, elevation);
             }
 
             if (ele > lastEle) {
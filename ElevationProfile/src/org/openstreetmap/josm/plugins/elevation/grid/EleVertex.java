@@ -12,6 +12,8 @@ import org.openstreetmap.josm.plugins.elevation.ElevationHelper;
 public class EleVertex {
     private static final int NPOINTS = 3;
     private static final double MIN_DIST = 90;
+    /** The largest area of a finished vertex in square meters, at the highest level of detail */
+    public static final double MAX_AREA = 30 * 30;
 
     private double avrgEle = Double.NaN;
     private double area = Double.NaN;
@@ -95,7 +97,17 @@ public class EleVertex {
         }*/
 
         // TODO: Check for proper limit
-        return /*z < 75 || */getArea() < (30 * 30); // = 3 * 25
+        return /*z < 75 || */isFinished(MAX_AREA); // = 3 * 25
+    }
+
+    /**
+     * Checks if vertex requires further processing for the given level of detail.
+     *
+     * @param maxArea the largest area of a finished vertex in square meters
+     * @return true, if is finished
+     */
+    public boolean isFinished(double maxArea) {
+        return getArea() < maxArea;
     }
 
     /**
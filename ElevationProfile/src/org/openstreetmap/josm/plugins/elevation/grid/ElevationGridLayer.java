@@ -10,6 +10,8 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.util.ArrayList;
+import java.util.Collection;
 
 import javax.swing.Action;
 import javax.swing.Icon;
@@ -31,6 +33,8 @@ import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.MapView;
 import org.openstreetmap.josm.gui.Notification;
+import org.openstreetmap.josm.gui.dialogs.LayerListDialog;
+import org.openstreetmap.josm.gui.dialogs.LayerListPopup;
 import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.plugins.elevation.ElevationHelper;
@@ -44,7 +48,9 @@ import org.openstreetmap.josm.tools.Logging;
  *
  */
 public class ElevationGridLayer extends Layer implements TileLoaderListener, MouseListener {
-    private static final int ELE_ZOOM_LEVEL = 13;
+    // the level of detail follows the zoom level of the tiles, which follows the map view within these limits
+    private static final int MIN_ZOOM_LEVEL = 9;
+    private static final int MAX_ZOOM_LEVEL = 13;
     private final IVertexRenderer vertexRenderer;
     private final MemoryTileCache tileCache;
     protected TileSource tileSource;
@@ -55,6 +61,11 @@ public class ElevationGridLayer extends Layer implements TileLoaderListener, Mou
 
     private Bounds lastBounds;
     private TileSet tileSet;
+    private int zoom = MAX_ZOOM_LEVEL;
+
+    // painted tiles which were rendered already, or not yet
+    private long cacheHits;
+    private long cacheMisses;
 
     public ElevationGridLayer(String name) {
         super(name);
@@ -68,7 +79,8 @@ public class ElevationGridLayer extends Layer implements TileLoaderListener, Mou
         tileCache = new MemoryTileCache();
         tileCache.setCacheSize(500);
         tileSource = new ElevationGridTileSource(name);
-        tileLoader = new ElevationGridTileLoader(this, JCS.getInstance("elevationgridlayer"), new TileJobOptions(20, 20, null, 3600));
+        tileLoader = new ElevationGridTileLoader(this, JCS.getInstance("elevationgridlayer"), new TileJobOptions(20, 20, null, 3600),
+                vertexRenderer);
         tileController = new ElevationGridTileController(tileSource, tileCache, this, tileLoader);
     }
 
@@ -77,8 +89,14 @@ public class ElevationGridLayer extends Layer implements TileLoaderListener, Mou
         boolean needsNewTileSet = tileSet == null || (lastBounds == null || !lastBounds.equals(box));
 
         if (needsNewTileSet) {
-            tileSet = new TileSet(box.getMin(), box.getMax(), ELE_ZOOM_LEVEL); // we use a vector format with constant zoom level
+            zoom = getBestZoom(mv, box);
+            tileSet = new TileSet(box.getMin(), box.getMax(), zoom);
             lastBounds = box;
+            // stop computing tiles which left the viewport
+            final TileSet visible = tileSet;
+            final int visibleZoom = zoom;
+            tileLoader.cancelTiles(t -> t.getZoom() != visibleZoom || t.getXtile() < visible.x0 || t.getXtile() > visible.x1
+                    || t.getYtile() < visible.y0 || t.getYtile() > visible.y1);
         }
 
         if (tileSet.insane()) {
@@ -94,13 +112,16 @@ public class ElevationGridLayer extends Layer implements TileLoaderListener, Mou
 
         for (int x = tileSet.x0; x <= tileSet.x1; x++) {
             for (int y = tileSet.y0; y <= tileSet.y1; y++) {
-                Tile t = tileController.getTile(x, y, ELE_ZOOM_LEVEL);
+                Tile t = tileController.getTile(x, y, zoom);
 
                 if (t != null && t.isLoaded() && t instanceof ElevationGridTile) {
-                    ((ElevationGridTile) t).paintTile(g, mv, vertexRenderer);
-                } else {
+                    if (((ElevationGridTile) t).paintTile(g, mv)) {
+                        cacheHits++;
+                    }
+                } else if (t != null) {
+                    cacheMisses++;
                     // give some consolation...
-                    Point topLeft = mv.getPoint(CoordinateConversion.coorToLL(tileSource.tileXYToLatLon(x, y, ELE_ZOOM_LEVEL)));
+                    Point topLeft = mv.getPoint(CoordinateConversion.coorToLL(tileSource.tileXYToLatLon(x, y, zoom)));
                     t.paint(g, topLeft.x, topLeft.y);
                 }
             }
@@ -117,10 +138,17 @@ public class ElevationGridLayer extends Layer implements TileLoaderListener, Mou
         });
     }
 
+    /**
+     * Gets the zoom level at which the tiles are about as large on the screen as their rendered images.
+     */
+    private int getBestZoom(MapView mv, Bounds box) {
+        double zoomLevel = Math.log(360.0 * mv.getWidth() / (box.getWidth() * tileSource.getTileSize())) / Math.log(2);
+        return Math.max(MIN_ZOOM_LEVEL, Math.min(MAX_ZOOM_LEVEL, (int) Math.round(zoomLevel)));
+    }
+
     @Override
     public String getToolTipText() {
-        // TODO Auto-generated method stub
-        return null;
+        return tr("{0} tiles computed, {1} pending", tileLoader.getBuiltTiles(), tileLoader.getPendingTiles());
     }
 
     @Override
@@ -131,8 +159,12 @@ public class ElevationGridLayer extends Layer implements TileLoaderListener, Mou
 
     @Override
     public Action[] getMenuEntries() {
-        // TODO Auto-generated method stub
-        return null;
+        Collection<Action> components = new ArrayList<>();
+        components.add(LayerListDialog.getInstance().createShowHideLayerAction());
+        components.add(LayerListDialog.getInstance().createDeleteLayerAction());
+        components.add(SeparatorLayerAction.INSTANCE);
+        components.add(new LayerListPopup.InfoAction(this));
+        return components.toArray(new Action[0]);
     }
 
     @Override
@@ -163,8 +195,16 @@ public class ElevationGridLayer extends Layer implements TileLoaderListener, Mou
 
     @Override
     public Object getInfoComponent() {
-        // TODO Auto-generated method stub
-        return null;
+        long painted = cacheHits + cacheMisses;
+        return "<html>"
+                + "<body>"
+                + tr("Zoom level: {0}", zoom) + "<br/>"
+                + tr("Tiles computed: {0}, cancelled: {1}, pending: {2}", tileLoader.getBuiltTiles(),
+                        tileLoader.getCancelledTiles(), tileLoader.getPendingTiles()) + "<br/>"
+                + tr("Average tile build time: {0} ms", String.format("%.1f", tileLoader.getAverageBuildMillis())) + "<br/>"
+                + tr("Rendered tile cache hit rate: {0}%", painted == 0 ? 0 : Math.round(100.0 * cacheHits / painted))
+                + "</body>"
+                + "</html>";
     }
 
 
@@ -285,6 +325,7 @@ public class ElevationGridLayer extends Layer implements TileLoaderListener, Mou
     @Override
     public void destroy() {
         super.destroy();
+        tileLoader.shutdown();
         HgtReader.clearCache();
         MainApplication.getMap().mapView.removeMouseListener(this);
     }
@@ -9,8 +9,13 @@ import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.function.BooleanSupplier;
 
 import org.openstreetmap.gui.jmapviewer.Tile;
 import org.openstreetmap.gui.jmapviewer.interfaces.TileSource;
@@ -23,8 +28,14 @@ import org.openstreetmap.josm.plugins.elevation.IVertexRenderer;
 import org.openstreetmap.josm.plugins.elevation.gui.Triangle;
 
 public class ElevationGridTile extends Tile {
-    private final BlockingDeque<EleVertex> toDo = new LinkedBlockingDeque<>();
+    /** Level of detail: vertices are divided until their sides are about this many pixels at the zoom of the tile */
+    private static final int LOD_PIXELS = 2;
+    /** Number of vertices divided between two checks for cancellation */
+    private static final int CANCEL_CHECK_INTERVAL = 1024;
+
     private final BlockingDeque<EleVertex> vertices = new LinkedBlockingDeque<>();
+    // the vertices rendered at the zoom level of the tile, painting just scales this image
+    private volatile BufferedImage rendered;
 
     private Bounds box;
 
@@ -32,7 +43,6 @@ public class ElevationGridTile extends Tile {
         super(source, xtile, ytile, zoom);
 
         box = tile2Bounds(xtile, ytile, zoom);
-        initQueue();
     }
 
     public ElevationGridTile(TileSource source, int xtile, int ytile, int zoom,
@@ -41,7 +51,7 @@ public class ElevationGridTile extends Tile {
     }
 
     /**
-     * Use {@link ElevationGridTile#paintTile(Graphics2D, MapView, IVertexRenderer)} to render the tile as grid.
+     * Use {@link ElevationGridTile#paintTile(Graphics2D, MapView)} to render the tile as grid.
      * This method just issues a debug text.
      */
     @Override
@@ -52,23 +62,20 @@ public class ElevationGridTile extends Tile {
     }
 
     /**
-     * Paints the vertices of this tile.
+     * Paints the rendered vertices of this tile.
      * @param g the graphics context
      * @param mv the map view
-     * @param vertexRenderer the vertex renderer
+     * @return {@code true} if the tile has been rendered, {@code false} if there was nothing to paint yet
      */
-    public void paintTile(Graphics2D g, MapView mv, IVertexRenderer vertexRenderer) {
-        BlockingDeque<EleVertex> list = getVertices();
-        for (EleVertex eleVertex : list) {
-            Point p0 = mv.getPoint(eleVertex.get(0));
-            Point p1 = mv.getPoint(eleVertex.get(1));
-            Point p2 = mv.getPoint(eleVertex.get(2));
-            Triangle shape = new Triangle(p0, p1, p2);
-            // obtain vertex color
-            g.setColor(vertexRenderer.getElevationColor(eleVertex));
-            // TODO: Move to renderer
-            g.fill(shape);
+    public boolean paintTile(Graphics2D g, MapView mv) {
+        BufferedImage image = rendered;
+        if (image == null) {
+            return false;
         }
+        Point topLeft = mv.getPoint(CoordinateConversion.coorToLL(source.tileXYToLatLon(xtile, ytile, zoom)));
+        Point bottomRight = mv.getPoint(CoordinateConversion.coorToLL(source.tileXYToLatLon(xtile + 1, ytile + 1, zoom)));
+        g.drawImage(image, topLeft.x, topLeft.y, bottomRight.x - topLeft.x, bottomRight.y - topLeft.y, null);
+        return true;
     }
 
     @Override
@@ -79,16 +86,94 @@ public class ElevationGridTile extends Tile {
 
         // We abuse the loadImage method to render the vertices...
         //
+        if (loadVertices(() -> false)) {
+            renderImage(new SimpleVertexRenderer());
+        }
+        setLoaded(true);
+    }
+
+    /**
+     * Divides the vertices of this tile down to the level of detail of its zoom level.
+     * Sets an error if there are no SRTM data for this tile.
+     *
+     * @param cancelled checked while dividing, to stop as soon as the tile is not needed anymore
+     * @return {@code true} if the vertices are complete, {@code false} if cancelled
+     */
+    public boolean loadVertices(BooleanSupplier cancelled) {
+        Deque<EleVertex> toDo = new ArrayDeque<>();
+        if (!initQueue(toDo)) {
+            return true;
+        }
+
+        double maxArea = getMaxVertexArea();
+        List<EleVertex> finished = new ArrayList<>();
+        int divided = 0;
         while (!toDo.isEmpty()) {
-            EleVertex vertex = toDo.poll();
+            if (++divided % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return false;
+            }
+            // depth first, to keep the queue short
+            EleVertex vertex = toDo.pop();
 
-            if (vertex.isFinished()) {
-                vertices.add(vertex);
+            if (vertex.isFinished(maxArea)) {
+                finished.add(vertex);
             } else {
-                toDo.addAll(vertex.divide());
+                for (EleVertex child : vertex.divide()) {
+                    toDo.push(child);
+                }
             }
         }
-        setLoaded(true);
+        vertices.clear();
+        vertices.addAll(finished);
+        return true;
+    }
+
+    /**
+     * Renders the vertices to an image of the tile size, which is painted instead of the vertices.
+     * @param vertexRenderer the vertex renderer
+     */
+    public void renderImage(IVertexRenderer vertexRenderer) {
+        int size = source.getTileSize();
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            for (EleVertex eleVertex : vertices) {
+                Point p0 = getTilePoint(eleVertex.get(0), size);
+                Point p1 = getTilePoint(eleVertex.get(1), size);
+                Point p2 = getTilePoint(eleVertex.get(2), size);
+                // obtain vertex color
+                g.setColor(vertexRenderer.getElevationColor(eleVertex));
+                g.fill(new Triangle(p0, p1, p2));
+            }
+        } finally {
+            g.dispose();
+        }
+        rendered = image;
+    }
+
+    /**
+     * Checks if the tile has been rendered.
+     * @return {@code true} if painting the tile just draws its image
+     */
+    public boolean isRendered() {
+        return rendered != null;
+    }
+
+    private Point getTilePoint(EleCoordinate coordinate, int size) {
+        Point p = source.latLonToXY(coordinate.lat(), coordinate.lon(), zoom);
+        p.translate(-xtile * size, -ytile * size);
+        return p;
+    }
+
+    /**
+     * Gets the largest area of a finished vertex, so that vertices are not divided further than the
+     * pixels of the tile at its zoom level.
+     */
+    private double getMaxVertexArea() {
+        LatLon min = box.getMin();
+        double width = min.greatCircleDistance(new LatLon(min.lat(), box.getMax().lon()));
+        double side = width / source.getTileSize() * LOD_PIXELS;
+        return Math.max(EleVertex.MAX_AREA, side * side / 2);
     }
 
     public BlockingDeque<EleVertex> getVertices() {
@@ -110,8 +195,9 @@ public class ElevationGridTile extends Tile {
 
     /**
      * Inits the 'todo' queue with the initial vertices.
+     * @return {@code false} if there are no SRTM data
      */
-    private void initQueue() {
+    private boolean initQueue(Deque<EleVertex> toDo) {
         LatLon min = box.getMin();
         LatLon max = box.getMax();
 
@@ -125,7 +211,7 @@ public class ElevationGridTile extends Tile {
         // SRTM files present?
         if (!ElevationHelper.isValidElevation(eleMax) || !ElevationHelper.isValidElevation(eleMin)) {
             setError(tr("No SRTM data"));
-            return;
+            return false;
         }
 
         // compute elevation coords
@@ -140,6 +226,7 @@ public class ElevationGridTile extends Tile {
         // enqueue vertices
         toDo.add(v1);
         toDo.add(v2);
+        return true;
     }
 
     @Override
@@ -3,8 +3,17 @@ package org.openstreetmap.josm.plugins.elevation.grid;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 import org.apache.commons.jcs3.access.behavior.ICacheAccess;
 import org.openstreetmap.gui.jmapviewer.Tile;
@@ -15,19 +24,29 @@ import org.openstreetmap.josm.data.cache.BufferedImageCacheEntry;
 import org.openstreetmap.josm.data.cache.JCSCachedTileLoaderJob;
 import org.openstreetmap.josm.data.imagery.TMSCachedTileLoader;
 import org.openstreetmap.josm.data.imagery.TileJobOptions;
+import org.openstreetmap.josm.plugins.elevation.IVertexRenderer;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.CheckParameterUtil;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
+ * Computes the vertices of elevation grid tiles in a bounded pool of worker threads, and renders them to images.
+ * Tiles which are not visible anymore can be cancelled.
  * @author Olli
  *
  */
 public class ElevationGridTileLoader extends TMSCachedTileLoader {
 
+    /** Preference key of the number of worker threads computing tiles */
+    public static final String PREF_WORKERS = "elevation.grid.workers";
+
     class ElevationGridTileJob extends JCSCachedTileLoaderJob<String, BufferedImageCacheEntry> implements TileJob {
 
         private final Tile tile;
         private final TileLoaderListener listener;
         private final ICacheAccess<String, BufferedImageCacheEntry> cache;
+        private volatile boolean cancelled;
+        private Future<?> future;
 
         protected ElevationGridTileJob(TileLoaderListener listener, Tile tile, ICacheAccess<String, BufferedImageCacheEntry> cache, TileJobOptions options,
                 ThreadPoolExecutor downloadJobExecutor) {
@@ -39,14 +58,35 @@ public class ElevationGridTileLoader extends TMSCachedTileLoader {
 
         @Override
         public void run() {
+            try {
+                load();
+            } finally {
+                pending.remove(tile, this);
+            }
+        }
+
+        private void load() {
             synchronized (tile) {
-                if ((tile.isLoaded() && !tile.hasError()) || tile.isLoading())
+                if ((tile.isLoaded() && !tile.hasError()) || tile.isLoading() || cancelled)
                     return;
                 tile.initLoading();
             }
             try {
-                tile.loadImage(null);
+                long start = System.nanoTime();
+                if (tile instanceof ElevationGridTile) {
+                    ElevationGridTile gridTile = (ElevationGridTile) tile;
+                    if (!gridTile.loadVertices(() -> cancelled)) {
+                        // left unloaded, so that it is computed again when it becomes visible
+                        cancelledTiles.incrementAndGet();
+                        return;
+                    }
+                    gridTile.renderImage(vertexRenderer);
+                } else {
+                    tile.loadImage(null);
+                }
                 tile.setLoaded(true);
+                builtTiles.incrementAndGet();
+                buildNanos.addAndGet(System.nanoTime() - start);
                 listener.tileLoadingFinished(tile, true);
             } catch (Exception e) {
                 tile.setError(e.getMessage());
@@ -56,9 +96,22 @@ public class ElevationGridTileLoader extends TMSCachedTileLoader {
             }
         }
 
+        /**
+         * Stops computing the tile, or removes it from the queue of the workers.
+         */
+        void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+
         @Override
         public void submit() {
-            run();
+            ElevationGridTileJob old = pending.putIfAbsent(tile, this);
+            if (old == null) {
+                future = workers.submit(this);
+            }
         }
 
         @Override
@@ -87,15 +140,29 @@ public class ElevationGridTileLoader extends TMSCachedTileLoader {
         }
     }
 
+    private final IVertexRenderer vertexRenderer;
+    private final ThreadPoolExecutor workers;
+    // jobs submitted to the workers and not finished yet
+    private final Map<Tile, ElevationGridTileJob> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger builtTiles = new AtomicInteger();
+    private final AtomicInteger cancelledTiles = new AtomicInteger();
+    private final AtomicLong buildNanos = new AtomicLong();
+
     /**
      * Constructor
      * @param listener          called when tile loading has finished
      * @param cache             of the cache
      * @param options           tile job options
+     * @param vertexRenderer    renders the vertices of the tiles
      */
     public ElevationGridTileLoader(TileLoaderListener listener, ICacheAccess<String, BufferedImageCacheEntry> cache,
-           TileJobOptions options) {
+           TileJobOptions options, IVertexRenderer vertexRenderer) {
         super(listener, cache, options);
+        this.vertexRenderer = vertexRenderer;
+        int threads = Math.max(1, Config.getPref().getInt(PREF_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+        workers = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                Utils.newThreadFactory("elevation-grid-%d", Thread.MIN_PRIORITY));
+        workers.allowCoreThreadTimeOut(true);
     }
 
     @Override
@@ -109,9 +176,59 @@ public class ElevationGridTileLoader extends TMSCachedTileLoader {
                 getDownloadExecutor());
     }
 
+    /**
+     * Cancels the tiles which are not needed anymore, e.g. because they left the viewport.
+     * @param obsolete tells which tiles are not needed anymore
+     */
+    public void cancelTiles(Predicate<Tile> obsolete) {
+        for (Iterator<ElevationGridTileJob> it = pending.values().iterator(); it.hasNext();) {
+            ElevationGridTileJob job = it.next();
+            if (obsolete.test(job.tile)) {
+                job.cancel();
+                it.remove();
+            }
+        }
+    }
+
     @Override
     public void cancelOutstandingTasks() {
-        // intentionally left blank
+        cancelTiles(tile -> true);
+    }
+
+    /**
+     * Cancels all tiles and stops the worker threads.
+     */
+    public void shutdown() {
+        cancelOutstandingTasks();
+        workers.shutdown();
+    }
+
+    /**
+     * @return the number of tiles computed so far
+     */
+    public int getBuiltTiles() {
+        return builtTiles.get();
+    }
+
+    /**
+     * @return the number of tiles cancelled while they were computed
+     */
+    public int getCancelledTiles() {
+        return cancelledTiles.get();
     }
 
+    /**
+     * @return the average time to compute and render a tile, in milliseconds
+     */
+    public double getAverageBuildMillis() {
+        int built = builtTiles.get();
+        return built == 0 ? 0 : buildNanos.get() / 1e6 / built;
+    }
+
+    /**
+     * @return the number of tiles waiting for or being computed
+     */
+    public int getPendingTiles() {
+        return pending.size();
+    }
 }
@@ -388,7 +388,7 @@ public class ElevationProfilePanel extends JPanel implements ComponentListener,
 
         for (int i = 0, ip = 0; i < n && ip < nwp; i++, ip += step) {
             WayPoint wpt = profile.getWayPoints().get(ip);
-            int eleVal = (int) ElevationHelper.getElevation(wpt);
+            int eleVal = profile.elevationValueAt(ip);
             Color c = renderer.getColorForWaypoint(profile, wpt,
                     ElevationWayPointKind.Plain);
 
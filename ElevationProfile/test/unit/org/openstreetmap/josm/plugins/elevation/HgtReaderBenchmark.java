@@ -0,0 +1,120 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.elevation;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Lookup throughput and memory of {@link HgtReader} along a long synthetic track, point by point and in batches.
+ * <p>
+ * Not run with unit tests. The track zigzags over the test tiles, and runs through tiles without data at both ends.
+ */
+@BasicPreferences
+class HgtReaderBenchmark {
+
+    private static final int RUNS = 5;
+    private static final int POINTS = 2_000_000;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Install SRTM files to plugin directory
+        Path dir = Config.getDirs().getUserDataDirectory(true).toPath().resolve("elevation");
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(Paths.get(TestUtils.getTestDataRoot()), "*.hgt")) {
+            for (Path src : stream) {
+                Path dst = dir.resolve(src.getFileName());
+                if (!Files.exists(dst)) {
+                    Files.copy(src, dst);
+                }
+            }
+        }
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static LatLon[] track() {
+        LatLon[] track = new LatLon[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            double t = (double) i / POINTS;
+            track[i] = new LatLon(50.5 + 0.45 * Math.sin(t * 200), 7.9 + 2.2 * t);
+        }
+        return track;
+    }
+
+    @Test
+    void benchmarkTrack() {
+        LatLon[] track = track();
+        HgtReader.clearCache();
+        long heapBefore = usedHeap();
+        for (int run = -RUNS; run < RUNS; run++) {
+            long start = System.nanoTime();
+            double sum = 0;
+            for (LatLon ll : track) {
+                double ele = HgtReader.getElevationFromHgt(ll);
+                if (!Double.isNaN(ele)) {
+                    sum += ele;
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            // Negative runs are warmup
+            if (run >= 0) {
+                System.out.printf("%7.1f ms, %6.2f Mlookups/s, mean elevation %.1f m%n",
+                        nanos / 1e6, POINTS * 1e3 / nanos, sum / POINTS);
+            }
+        }
+        System.out.printf("tiles: %s, %.1f MB mapped, heap growth %.1f MB%n", HgtReader.getTileStore().getTileNames(),
+                HgtReader.getTileStore().getUsedBytes() / 1e6, (usedHeap() - heapBefore) / 1e6);
+    }
+
+    @Test
+    void benchmarkBatch() {
+        LatLon[] track = track();
+        double[] lat = new double[POINTS];
+        double[] lon = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            lat[i] = track[i].lat();
+            lon[i] = track[i].lon();
+        }
+        for (int run = -RUNS; run < RUNS; run++) {
+            long start = System.nanoTime();
+            double sum = 0;
+            for (LatLon ll : track) {
+                double ele = HgtReader.getElevationFromHgt(ll);
+                if (!Double.isNaN(ele)) {
+                    sum += ele;
+                }
+            }
+            long pointNanos = System.nanoTime() - start;
+            StringBuilder sb = new StringBuilder(String.format("per point: %7.1f ms (%.1f m)", pointNanos / 1e6, sum / POINTS));
+            for (HgtReader.Interpolation interpolation : HgtReader.Interpolation.values()) {
+                start = System.nanoTime();
+                sum = 0;
+                for (double ele : HgtReader.getElevations(lat, lon, interpolation)) {
+                    if (!Double.isNaN(ele)) {
+                        sum += ele;
+                    }
+                }
+                long nanos = System.nanoTime() - start;
+                sb.append(String.format(", %s: %7.1f ms (%.1f m)", interpolation, nanos / 1e6, sum / POINTS));
+            }
+            // Negative runs are warmup
+            if (run >= 0) {
+                System.out.println(sb);
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.openstreetmap.josm.plugins.elevation;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.nio.file.DirectoryIteratorException;
@@ -13,11 +14,13 @@ import java.nio.file.Paths;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.openstreetmap.josm.TestUtils;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.gpx.WayPoint;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
 import org.openstreetmap.josm.tools.Logging;
@@ -78,4 +81,68 @@ class HgtReaderTest {
 
         assertEquals(expHeight, (int) d);
     }
+
+    /**
+     * Batch queries agree with single queries, and interpolate between the samples.
+     */
+    @Test
+    void testGetElevations() {
+        double[] lat = {50.6607106, 50.5767627, 50.5, 50.0000001, 10.5, 50.5, 50.5 + 0.5 / 1200};
+        double[] lon = {8.7337029, 9.1938483, 8.5, 8.999999, 10.5, 8.5 + 0.5 / 1200, 8.5};
+        double[] nearest = HgtReader.getElevations(lat, lon, HgtReader.Interpolation.NEAREST);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(HgtReader.getElevationFromHgt(new LatLon(lat[i], lon[i])), nearest[i]);
+        }
+        // No tile
+        assertTrue(Double.isNaN(nearest[4]));
+
+        for (HgtReader.Interpolation interpolation : HgtReader.Interpolation.values()) {
+            double[] elevations = HgtReader.getElevations(lat, lon, interpolation);
+            for (int i = 0; i < lat.length; i++) {
+                assertEquals(elevations[i], HgtReader.getElevation(lat[i], lon[i], interpolation), interpolation.name());
+            }
+            // On a sample
+            assertEquals(274, elevations[2], 1e-6, interpolation.name());
+            assertTrue(Double.isNaN(elevations[4]), interpolation.name());
+            // Half way between samples
+            for (int i = 5; i < 7; i++) {
+                double ele1 = HgtReader.getElevationFromHgt(new LatLon(lat[i] - 0.25 / 1200, lon[i] - 0.25 / 1200));
+                double ele2 = HgtReader.getElevationFromHgt(new LatLon(lat[i] + 0.25 / 1200, lon[i] + 0.25 / 1200));
+                if (interpolation == HgtReader.Interpolation.BILINEAR) {
+                    assertEquals((ele1 + ele2) / 2, elevations[i], 1e-6);
+                } else {
+                    // Close to the neighbours, the cubic one may slightly overshoot them
+                    assertEquals((ele1 + ele2) / 2, elevations[i], Math.abs(ele2 - ele1) / 2 + 10, interpolation.name());
+                }
+            }
+        }
+    }
+
+    /**
+     * The elevation of a single way point uses the interpolation of the elevation profile.
+     */
+    @Test
+    void testWayPointElevation() {
+        double[] lat = {50.5 + 0.3 / 1200, 50.6607106};
+        double[] lon = {8.5 + 0.7 / 1200, 8.7337029};
+        for (HgtReader.Interpolation interpolation : HgtReader.Interpolation.values()) {
+            Config.getPref().put(HgtReader.PREF_INTERPOLATION, interpolation.name());
+            double[] elevations = HgtReader.getElevations(lat, lon, interpolation);
+            for (int i = 0; i < lat.length; i++) {
+                assertEquals(elevations[i], ElevationHelper.getElevation(new WayPoint(new LatLon(lat[i], lon[i]))),
+                        interpolation.name());
+            }
+        }
+        // No tile, the GPX elevation is used
+        WayPoint wpt = new WayPoint(new LatLon(10.5, 10.5));
+        assertTrue(Double.isNaN(ElevationHelper.getElevation(wpt)));
+        wpt.put(ElevationHelper.HEIGHT_ATTRIBUTE, "123.5");
+        assertEquals(123.5, ElevationHelper.getElevation(wpt));
+    }
+
+    @Test
+    void testHgtFileName() {
+        assertEquals("N05W009.hgt", HgtReader.getHgtFileName(new LatLon(5.5, -8.5)));
+        assertEquals("S10E100.hgt", HgtReader.getHgtFileName(new LatLon(-9.5, 100.5)));
+    }
 }
@@ -0,0 +1,94 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.elevation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit tests of {@link HgtTileStore}.
+ */
+@BasicPreferences
+class HgtTileStoreTest {
+
+    private static final long TILE_BYTES = 1201L * 1201L * 2L;
+
+    @TempDir
+    Path tmp;
+
+    private static File testFile(String name) {
+        return Paths.get(TestUtils.getTestDataRoot(), name).toFile();
+    }
+
+    /**
+     * Tiles exceeding the budget are evicted, least recently used first, and loaded again when needed.
+     * @throws IOException never
+     */
+    @Test
+    void testEviction() throws IOException {
+        HgtTileStore store = new HgtTileStore(TILE_BYTES, tmp.toFile());
+        HgtTileStore.TileFinder finder = HgtTileStoreTest::testFile;
+        assertNotNull(store.get("N50E008.hgt", finder));
+        assertEquals(TILE_BYTES, store.getUsedBytes());
+        assertNotNull(store.get("N50E009.hgt", finder));
+        assertEquals(TILE_BYTES, store.getUsedBytes());
+        assertNull(store.getIfPresent("N50E008.hgt"));
+        assertEquals(1201, store.get("N50E008.hgt", finder).getSize());
+        assertEquals(Arrays.asList("N50E008.hgt"), Arrays.asList(store.getTileNames().toArray()));
+
+        // Missing tiles are only searched once
+        int[] searches = new int[1];
+        HgtTileStore.TileFinder missing = name -> {
+            searches[0]++;
+            return null;
+        };
+        assertNull(store.get("N10E010.hgt", missing));
+        assertNull(store.get("N10E010.hgt", missing));
+        assertEquals(1, searches[0]);
+    }
+
+    /**
+     * Compressed tiles are decompressed once, and read like uncompressed ones.
+     * @throws IOException if the compressed file cannot be written
+     */
+    @Test
+    void testCompressedTile() throws IOException {
+        File compressed = tmp.resolve("N50E008.hgt.bz2").toFile();
+        try (OutputStream out = new BZip2CompressorOutputStream(Files.newOutputStream(compressed.toPath()))) {
+            Files.copy(testFile("N50E008.hgt").toPath(), out);
+        }
+        Path decompressedDir = tmp.resolve("cache");
+        HgtTileStore store = new HgtTileStore(Long.MAX_VALUE, decompressedDir.toFile());
+        HgtTileStore.Tile tile = store.load("N50E008.hgt", compressed);
+        HgtTileStore.Tile expected = new HgtTileStore(Long.MAX_VALUE, tmp.toFile()).load("N50E008.hgt", testFile("N50E008.hgt"));
+        for (int row = 0; row < tile.getSize(); row += 100) {
+            for (int col = 0; col < tile.getSize(); col += 100) {
+                assertEquals(expected.get(row, col), tile.get(row, col));
+            }
+        }
+        Path decompressed = decompressedDir.resolve("N50E008.hgt");
+        assertTrue(Files.isRegularFile(decompressed));
+        assertEquals(TILE_BYTES, Files.size(decompressed));
+
+        // The decompressed file is reused
+        long modified = Files.getLastModifiedTime(decompressed).toMillis();
+        store.clear();
+        assertEquals(tile.getSize(), store.load("N50E008.hgt", compressed).getSize());
+        assertEquals(modified, Files.getLastModifiedTime(decompressed).toMillis());
+    }
+}
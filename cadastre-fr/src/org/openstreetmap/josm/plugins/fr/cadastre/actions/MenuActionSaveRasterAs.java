@@ -90,7 +90,7 @@ public class MenuActionSaveRasterAs extends JosmAction {
         int returnVal = fc.showSaveDialog(MainApplication.getMainFrame());
         if (returnVal == JFileChooser.APPROVE_OPTION) {
             file = fc.getSelectedFile();
-            BufferedImage bi = wmsLayer.getImage(0).image;
+            BufferedImage bi = wmsLayer.getImage(0).getImage();
             if (fc.getFileFilter().equals(filtrePng)) {
                 if (!file.getName().endsWith(".png"))
                     file = new File(file.getParent(), file.getName()+".png");
@@ -2,7 +2,9 @@
 package org.openstreetmap.josm.plugins.fr.cadastre.edigeo;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -10,7 +12,9 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
 
@@ -134,17 +138,36 @@ abstract class EdigeoFile {
     }
 
     protected final Path path;
+    /** Contents of the files of the exchange already loaded in memory. If empty, files are read from disk */
+    protected final Map<Path, byte[]> contents;
     private boolean bomFound;
     private boolean eomFound;
     private EdigeoCharset charset;
     private Block currentBlock;
 
     EdigeoFile(Path path) {
+        this(path, Collections.emptyMap());
+    }
+
+    EdigeoFile(Path path, Map<Path, byte[]> contents) {
         this.path = path;
+        this.contents = Objects.requireNonNull(contents, "contents");
+    }
+
+    private BufferedReader newReader() throws IOException {
+        if (contents.isEmpty()) {
+            return Files.newBufferedReader(path, StandardCharsets.ISO_8859_1);
+        }
+        byte[] content = contents.get(path);
+        if (content == null) {
+            // Never fall back to the disk, a file with the same name could belong to another exchange
+            throw new IOException(String.format("''%s'' not found in archive", path.getFileName()));
+        }
+        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.ISO_8859_1));
     }
 
     public EdigeoFile read() throws IOException, ReflectiveOperationException {
-        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.ISO_8859_1)) {
+        try (BufferedReader reader = newReader()) {
             String line;
             while ((line = reader.readLine()) != null) {
                 if (!line.isEmpty()) {
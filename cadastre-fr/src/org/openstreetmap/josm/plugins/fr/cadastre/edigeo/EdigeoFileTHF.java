@@ -8,7 +8,9 @@ import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import org.openstreetmap.josm.actions.SimplifyWayAction;
@@ -229,7 +231,9 @@ public class EdigeoFileTHF extends EdigeoFile {
         EdigeoFileSCD scd;
         EdigeoFileQAL qal;
         final List<EdigeoFileVEC> vec = new ArrayList<>();
+        final Map<String, EdigeoFileVEC> vecBySubsetId = new HashMap<>();
         final List<EdigeoLotFile<?>> allFiles = new ArrayList<>();
+        Map<Path, byte[]> contents = Collections.emptyMap();
 
         Lot(String type) {
             super(type);
@@ -258,7 +262,8 @@ public class EdigeoFileTHF extends EdigeoFile {
             }
         }
 
-        void readFiles(Path path) throws IOException, ReflectiveOperationException {
+        void readFiles(Path path, Map<Path, byte[]> contents) throws IOException, ReflectiveOperationException {
+            this.contents = contents;
             Path dir = path.getParent();
             allFiles.add(new EdigeoFileGEN(this, genId, dir.resolve(name + genName + ".GEN")).read());
             allFiles.add(new EdigeoFileGEO(this, geoId, dir.resolve(name + geoName + ".GEO")).read());
@@ -452,6 +457,16 @@ public class EdigeoFileTHF extends EdigeoFile {
         super(path);
     }
 
+    /**
+     * Constructs a new {@code EdigeoFileTHF} whose files have already been loaded in memory.
+     * @param path path to THF file
+     * @param contents contents of the files of the exchange, by path. If empty, files are read from disk
+     * @throws IOException if any I/O error occurs
+     */
+    public EdigeoFileTHF(Path path, Map<Path, byte[]> contents) throws IOException {
+        super(path, contents);
+    }
+
     /**
      * Returns the support descriptor.
      * @return the support descriptor
@@ -482,7 +497,7 @@ public class EdigeoFileTHF extends EdigeoFile {
     public EdigeoFileTHF read() throws IOException, ReflectiveOperationException {
         super.read();
         for (Lot lot : getLots()) {
-            lot.readFiles(path);
+            lot.readFiles(path, contents);
         }
         return this;
     }
@@ -54,7 +54,8 @@ public class EdigeoFileVEC extends EdigeoLotFile<VecBlock<?>> {
 
     abstract static class VecBlock<T extends ScdBlock> extends ChildBlock {
         private final Class<T> klass;
-        private final List<RelationBlock> parentRelations = new ArrayList<>();
+        private final List<RelationBlock> constructionRelations = new ArrayList<>();
+        private final List<RelationBlock> semanticRelations = new ArrayList<>();
 
         /** SCP */ T scdRef;
         /** ATC */ int nAttributes;
@@ -101,9 +102,9 @@ public class EdigeoFileVEC extends EdigeoLotFile<VecBlock<?>> {
             for (int i = 0; i < nAttributes; i++) {
                 EdigeoRecord r = lAttributeValues.get(i);
                 if (r.nature == Nature.COMPOSED) {
-                    assert !parentRelations.isEmpty();
+                    assert !constructionRelations.isEmpty() || !semanticRelations.isEmpty();
                     McdAttributeDef def = lot.scd.find(r.values, McdAttributeDef.class);
-                    List<RelationBlock> relations = getSemanticRelations().stream().filter(
+                    List<RelationBlock> relations = semanticRelations.stream().filter(
                             rel -> rel.elements.stream().anyMatch(e -> e.attributeDefs.contains(def))).collect(Collectors.toList());
                     assert relations.size() == 1;
                     List<VecBlock<?>> elements = relations.get(0).elements.stream().filter(
@@ -125,15 +126,21 @@ public class EdigeoFileVEC extends EdigeoLotFile<VecBlock<?>> {
         }
 
         final boolean addRelation(RelationBlock relationBlock) {
-            return parentRelations.add(Objects.requireNonNull(relationBlock, "relationBlock"));
+            Objects.requireNonNull(relationBlock, "relationBlock");
+            if (relationBlock.scdRef instanceof McdConstructionRelationDef) {
+                return constructionRelations.add(relationBlock);
+            } else if (relationBlock.scdRef instanceof McdSemanticRelationDef) {
+                return semanticRelations.add(relationBlock);
+            }
+            return false;
         }
 
         public final List<RelationBlock> getConstructionRelations() {
-            return parentRelations.stream().filter(r -> r.scdRef instanceof McdConstructionRelationDef).collect(Collectors.toList());
+            return Collections.unmodifiableList(constructionRelations);
         }
 
         public final List<RelationBlock> getSemanticRelations() {
-            return parentRelations.stream().filter(r -> r.scdRef instanceof McdSemanticRelationDef).collect(Collectors.toList());
+            return Collections.unmodifiableList(semanticRelations);
         }
 
         /**
@@ -422,9 +429,11 @@ public class EdigeoFileVEC extends EdigeoLotFile<VecBlock<?>> {
         final void resolvePhase1() {
             super.resolvePhase1();
             for (List<String> values : lElements) {
-                VecBlock<?> b = lot.vec.stream().filter(v -> v.subsetId.equals(values.get(1))).findAny()
-                        .orElseThrow(() -> new IllegalArgumentException(values.toString()))
-                        .find(values, VecBlock.class);
+                EdigeoFileVEC vec = lot.vecBySubsetId.get(values.get(1));
+                if (vec == null) {
+                    throw new IllegalArgumentException(values.toString());
+                }
+                VecBlock<?> b = vec.find(values, VecBlock.class);
                 b.addRelation(this);
                 elements.add(b);
                 compositions.put(b, mCompositions.get(values));
@@ -533,6 +542,7 @@ public class EdigeoFileVEC extends EdigeoLotFile<VecBlock<?>> {
         register("FEA", ObjectBlock.class);
         register("LNK", RelationBlock.class);
         lot.vec.add(this);
+        lot.vecBySubsetId.putIfAbsent(seId, this);
     }
 
     private static BBox around(LatLon ll) {
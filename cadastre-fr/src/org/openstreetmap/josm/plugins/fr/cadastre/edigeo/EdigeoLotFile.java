@@ -26,26 +26,43 @@ public abstract class EdigeoLotFile<B extends ChildBlock> extends EdigeoFile {
     private final Map<String, Class<? extends B>> classes = new HashMap<>();
     protected final ClassToInstancesMap<B> blocks = new MutableClassToInstancesMap<>();
 
+    /** Blocks of each registered class by identifier, filled as soon as a block has been entirely read */
+    private final Map<Class<? extends B>, Map<String, B>> index = new HashMap<>();
+    /** Block being read, its identifier is not complete until the next block starts */
+    private B lastBlock;
+
     EdigeoLotFile(Lot lot, String subsetId, Path path) throws IOException {
-        super(path);
-        this.lot = Objects.requireNonNull(lot, "lot");
+        super(path, Objects.requireNonNull(lot, "lot").contents);
+        this.lot = lot;
         this.subsetId = Objects.requireNonNull(subsetId, "subsetId");
     }
 
     protected final void register(String key, Class<? extends B> klass) {
         classes.put(key, klass);
         blocks.putInstances(klass, new ArrayList<>());
+        index.put(klass, new HashMap<>());
     }
 
     @Override
     protected final Block createBlock(String type) throws ReflectiveOperationException {
         Class<? extends B> klass = classes.get(type);
-        return addBlock(blocks.get(klass), klass.getDeclaredConstructor(Lot.class, String.class).newInstance(lot, type));
+        indexLastBlock();
+        lastBlock = addBlock(blocks.get(klass), klass.getDeclaredConstructor(Lot.class, String.class).newInstance(lot, type));
+        return lastBlock;
+    }
+
+    private void indexLastBlock() {
+        if (lastBlock != null) {
+            // Keep the first block if several ones share the same identifier
+            index.get(lastBlock.getClass()).putIfAbsent(lastBlock.identifier, lastBlock);
+            lastBlock = null;
+        }
     }
 
     @Override
     public EdigeoLotFile<B> read() throws IOException, ReflectiveOperationException {
         super.read();
+        indexLastBlock();
         return this;
     }
 
@@ -91,15 +108,23 @@ public abstract class EdigeoLotFile<B extends ChildBlock> extends EdigeoFile {
         assert values.get(0).equals(lot.identifier) : values + " / " + lot.identifier;
         assert values.get(1).equals(subsetId) : values + " / " + subsetId;
         assert klass.isAssignableFrom(classes.get(values.get(2))) : values;
+        Class<? extends B> listClass = klass;
         List<T> list = blocks.getInstances(klass);
         if (list == null) {
             Class<? extends B> realClass = classes.get(values.get(2));
             if (klass.isAssignableFrom(realClass)) {
+                listClass = realClass;
                 list = (List<T>) blocks.getInstances(realClass);
             } else {
                 throw new IllegalArgumentException(values + " / " + klass + " / " + realClass);
             }
         }
+        Map<String, B> blocksById = index.get(listClass);
+        B block = blocksById != null ? blocksById.get(values.get(3)) : null;
+        if (block != null) {
+            return (T) block;
+        }
+        // Block not indexed yet, i.e. still being read
         return list.stream().filter(x -> x.identifier.equals(values.get(3))).findAny().orElseThrow(
                 () -> new IllegalArgumentException(values + " / " + klass));
     }
@@ -8,6 +8,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.Objects;
 
 import org.openstreetmap.josm.actions.ExtensionFileFilter;
@@ -29,6 +30,7 @@ public class EdigeoPciImporter extends OsmImporter {
             "thf,tar.bz2", "thf", tr("Cadastre Edigeo files") + " (*.thf, *.tar.bz2)");
 
     protected File file;
+    protected List<File> files;
     protected CadastreDownloadData data;
 
     /**
@@ -51,12 +53,36 @@ public class EdigeoPciImporter extends OsmImporter {
         }
     }
 
+    @Override
+    public boolean isBatchImporter() {
+        return true;
+    }
+
+    @Override
+    public void importData(List<File> files, ProgressMonitor progressMonitor)
+            throws IOException, IllegalDataException {
+        if (files.size() == 1) {
+            importData(files.get(0), progressMonitor);
+            return;
+        }
+        // Sheets are loaded in parallel and merged into a single layer
+        this.files = files;
+        try {
+            importData(null, null, tr("{0} Edigeo sheets", files.size()), progressMonitor);
+        } finally {
+            this.files = null;
+        }
+    }
+
     @Override
     protected DataSet parseDataSet(InputStream in, ProgressMonitor instance) throws IllegalDataException {
         try {
             if (data == null) {
                 data = new CadastreDownloadData(true, true, true, true, true, true, true, true, true);
             }
+            if (files != null) {
+                return EdigeoPciReader.parseDataSet(in, files, data, instance);
+            }
             return EdigeoPciReader.parseDataSet(in, file, data, instance);
         } catch (IOException e) {
             throw new IllegalDataException(e);
@@ -1,6 +1,8 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.fr.cadastre.edigeo.pci;
 
+import static org.openstreetmap.josm.tools.I18n.tr;
+
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -8,13 +10,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiPredicate;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
@@ -26,12 +34,14 @@ import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.UploadPolicy;
 import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.AbstractReader;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.plugins.fr.cadastre.download.CadastreDownloadData;
 import org.openstreetmap.josm.plugins.fr.cadastre.edigeo.EdigeoFileTHF;
 import org.openstreetmap.josm.plugins.fr.cadastre.edigeo.EdigeoFileVEC;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.Utils;
 
@@ -282,9 +292,24 @@ public class EdigeoPciReader extends AbstractReader {
         }
     }
 
+    static DataSet parseDataSet(InputStream in, List<File> files, CadastreDownloadData data, ProgressMonitor instance) throws IOException {
+        if (in != null) {
+            in.close();
+        }
+        try {
+            return new EdigeoPciReader().parse(files.stream().map(File::toPath).collect(Collectors.toList()), data, instance);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception | AssertionError e) {
+            Logging.error(e);
+            throw new IOException(e);
+        }
+    }
+
     DataSet parse(Path path, CadastreDownloadData data, ProgressMonitor instance) throws IOException, ReflectiveOperationException {
         Path tmpDir = null;
         Path thfPath = path;
+        Map<Path, byte[]> contents = new HashMap<>();
         try {
             if (thfPath.toString().endsWith(".tar.bz2")) {
                 try (InputStream fin = Files.newInputStream(path);
@@ -292,23 +317,20 @@ public class EdigeoPciReader extends AbstractReader {
                      BZip2CompressorInputStream bzIn = new BZip2CompressorInputStream(in);
                      TarArchiveInputStream tar = new TarArchiveInputStream(bzIn)
                 ) {
-                    TarArchiveEntry entry;
-                    tmpDir = Files.createTempDirectory(Utils.getJosmTempDir().toPath(), "cadastre");
-                    while ((entry = tar.getNextTarEntry()) != null) {
-                        File file = tmpDir.resolve(entry.getName()).toFile();
-                        try (FileOutputStream out = new FileOutputStream(file)) {
-                            if (IOUtils.copy(tar, out) < entry.getSize()) {
-                                throw new IOException(String.format("Unable to write ''%s'' entirely", file));
-                            } else if (file.toString().endsWith(".THF")) {
-                                thfPath = file.toPath();
-                            }
-                        }
+                    if (Config.getPref().getBoolean("cadastre.edigeo.extract-in-memory", true)) {
+                        thfPath = extractInMemory(tar, path.toAbsolutePath().getParent(), contents);
+                    } else {
+                        tmpDir = Files.createTempDirectory(Utils.getJosmTempDir().toPath(), "cadastre");
+                        thfPath = extractToDirectory(tar, tmpDir);
                     }
                 }
+                if (thfPath == null) {
+                    throw new IOException(String.format("No THF file found in ''%s''", path));
+                }
             }
             DataSet ds = new DataSet();
             ds.setUploadPolicy(UploadPolicy.BLOCKED);
-            EdigeoFileTHF thf = new EdigeoFileTHF(thfPath).read().fill(ds, data);
+            EdigeoFileTHF thf = new EdigeoFileTHF(thfPath, contents).read().fill(ds, data);
             ds.setName(thf.getSupport().getBlockIdentifier());
             return ds;
         } finally {
@@ -318,6 +340,101 @@ public class EdigeoPciReader extends AbstractReader {
         }
     }
 
+    /**
+     * Parses several Edigeo sheets in parallel, each one into its own data set, then merges them.
+     * @param paths paths to THF or tar.bz2 files, one per sheet
+     * @param data defines which data has to be loaded
+     * @param instance progress monitor
+     * @return data set containing all sheets
+     * @throws IOException if any I/O error occurs
+     * @throws ReflectiveOperationException if a sheet cannot be parsed
+     */
+    DataSet parse(List<Path> paths, CadastreDownloadData data, ProgressMonitor instance) throws IOException, ReflectiveOperationException {
+        int threads = Math.max(1, Math.min(paths.size(),
+                Config.getPref().getInt("cadastre.edigeo.loading-threads", Runtime.getRuntime().availableProcessors())));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, Utils.newThreadFactory("cadastre-edigeo-%d", Thread.NORM_PRIORITY));
+        try {
+            long start = System.nanoTime();
+            long bytes = 0;
+            List<Future<DataSet>> sheets = new ArrayList<>();
+            for (Path path : paths) {
+                bytes += Files.size(path);
+                sheets.add(executor.submit(() -> {
+                    long sheetStart = System.nanoTime();
+                    DataSet sheet = new EdigeoPciReader().parse(path, data, NullProgressMonitor.INSTANCE);
+                    Logging.info(String.format("%s: loaded in %d ms", path.getFileName(), (System.nanoTime() - sheetStart) / 1_000_000));
+                    return sheet;
+                }));
+            }
+            instance.beginTask(tr("Loading {0} Edigeo sheets", paths.size()), paths.size());
+            DataSet ds = new DataSet();
+            ds.setUploadPolicy(UploadPolicy.BLOCKED);
+            for (Future<DataSet> sheet : sheets) {
+                ds.mergeFrom(sheet.get());
+                instance.worked(1);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Logging.info(String.format("%d sheets (%.1f MB) loaded by %d threads in %.1f s: %.1f sheets/s, %.2f MB/s",
+                    paths.size(), bytes / 1e6, threads, seconds, paths.size() / seconds, bytes / 1e6 / seconds));
+            return ds;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof ReflectiveOperationException) {
+                throw (ReflectiveOperationException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+            instance.finishTask();
+        }
+    }
+
+    /**
+     * Reads all the files of a tar archive in memory, so they are parsed without being written to disk.
+     * @param tar tar archive
+     * @param dir directory of the archive, used to build the paths of the files
+     * @param contents map filled with the contents of the files, by path
+     * @return path of the THF file, or {@code null}
+     * @throws IOException if any I/O error occurs
+     */
+    private static Path extractInMemory(TarArchiveInputStream tar, Path dir, Map<Path, byte[]> contents) throws IOException {
+        Path thfPath = null;
+        TarArchiveEntry entry;
+        while ((entry = tar.getNextTarEntry()) != null) {
+            Path file = dir.resolve(entry.getName());
+            byte[] content = IOUtils.toByteArray(tar);
+            if (content.length < entry.getSize()) {
+                throw new IOException(String.format("Unable to read ''%s'' entirely", file));
+            }
+            contents.put(file, content);
+            if (file.toString().endsWith(".THF")) {
+                thfPath = file;
+            }
+        }
+        return thfPath;
+    }
+
+    private static Path extractToDirectory(TarArchiveInputStream tar, Path tmpDir) throws IOException {
+        Path thfPath = null;
+        TarArchiveEntry entry;
+        while ((entry = tar.getNextTarEntry()) != null) {
+            File file = tmpDir.resolve(entry.getName()).toFile();
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                if (IOUtils.copy(tar, out) < entry.getSize()) {
+                    throw new IOException(String.format("Unable to write ''%s'' entirely", file));
+                } else if (file.toString().endsWith(".THF")) {
+                    thfPath = file.toPath();
+                }
+            }
+        }
+        return thfPath;
+    }
+
     @Override
     protected DataSet doParseDataSet(InputStream source, ProgressMonitor progressMonitor) throws IllegalDataException {
         return null;
@@ -12,6 +12,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -31,9 +32,12 @@ import org.openstreetmap.josm.tools.Logging;
  * wait status on GUI, fast saving even in big file). A separate thread is created for each WMS
  * layer to not suspend the GUI until disk I/O is terminated (a file for the cache can take
  * several MB's). If the cache file already exists, new images are just appended to the file
- * (performance). Since we use the ObjectStream methods, it is required to modify the standard
- * ObjectOutputStream in order to have objects appended readable (otherwise a stream header
- * is inserted before each append and an exception is raised at objects read).
+ * (performance). New cache files use the tiled format (see {@link TiledCacheFile}), where images
+ * are stored in PNG with an index, so that they are decoded only when painted.
+ * Cache files of the previous format are still read, and appended with the ObjectStream methods:
+ * it is required to modify the standard ObjectOutputStream in order to have objects appended
+ * readable (otherwise a stream header is inserted before each append and an exception is raised
+ * at objects read).
  */
 public class CacheControl implements Runnable {
 
@@ -156,12 +160,18 @@ public class CacheControl implements Runnable {
 
     public boolean loadCache(File file, int currentLambertZone) {
         boolean successfulRead = false;
-        try (
-            FileInputStream fis = new FileInputStream(file);
-            ObjectInputStream ois = new ObjectInputStream(fis);
-        ) {
+        try {
             wmsLayer.setAssociatedFile(file);
-            successfulRead = wmsLayer.read(ois, currentLambertZone);
+            if (TiledCacheFile.isTiledCacheFile(file)) {
+                successfulRead = TiledCacheFile.load(file, wmsLayer, currentLambertZone);
+            } else {
+                try (
+                    FileInputStream fis = new FileInputStream(file);
+                    ObjectInputStream ois = new ObjectInputStream(fis);
+                ) {
+                    successfulRead = wmsLayer.read(ois, currentLambertZone);
+                }
+            }
         } catch (IOException | ClassNotFoundException ex) {
             Logging.error(ex);
             GuiHelper.runInEDTAndWait(() -> JOptionPane.showMessageDialog(MainApplication.getMainFrame(),
@@ -171,7 +181,8 @@ public class CacheControl implements Runnable {
         }
         if (successfulRead && wmsLayer.isRaster()) {
             // serialized raster bufferedImage hangs-up on Java6. Recreate them here
-            wmsLayer.getImage(0).image = RasterImageModifier.fixRasterImage(wmsLayer.getImage(0).image);
+            GeorefImage image = wmsLayer.getImage(0);
+            image.setImage(RasterImageModifier.fixRasterImage(image.getImage()));
         }
         return successfulRead;
     }
@@ -194,24 +205,21 @@ public class CacheControl implements Runnable {
         for (;;) {
             imagesLock.lock();
             int size = imagesToSave.size();
+            List<GeorefImage> images = new ArrayList<>(imagesToSave);
             imagesLock.unlock();
             if (size > 0) {
                 File file = new File(CadastrePlugin.cacheDir + wmsLayer.getName() + "." + WMSFileExtension());
                 try {
-                    if (file.exists()) {
+                    if (!file.exists() || file.length() == 0) {
+                        wmsLayer.setAssociatedFile(file);
+                        TiledCacheFile.create(file, wmsLayer, images);
+                    } else if (TiledCacheFile.isTiledCacheFile(file)) {
+                        TiledCacheFile.append(file, images);
+                    } else {
                         try (ObjectOutputStreamAppend oos = new ObjectOutputStreamAppend(
                                 new BufferedOutputStream(new FileOutputStream(file, true)))) {
                             for (int i = 0; i < size; i++) {
-                                oos.writeObject(imagesToSave.get(i));
-                            }
-                        }
-                    } else {
-                        try (ObjectOutputStream oos = new ObjectOutputStream(
-                                new BufferedOutputStream(new FileOutputStream(file)))) {
-                            wmsLayer.setAssociatedFile(file);
-                            wmsLayer.write(oos);
-                            for (int i = 0; i < size; i++) {
-                                oos.writeObject(imagesToSave.get(i));
+                                oos.writeObject(images.get(i));
                             }
                         }
                     }
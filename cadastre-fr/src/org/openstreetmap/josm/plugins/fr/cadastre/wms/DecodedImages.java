@@ -0,0 +1,117 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.fr.cadastre.wms;
+
+import java.awt.image.BufferedImage;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Images of all WMS layers which can be decoded again from a tiled cache file.
+ * They are decoded in background when they are painted for the first time, and the least recently
+ * painted ones are released when their memory exceeds the budget (in MB) set in "cadastrewms.decodedImagesMemory".
+ * The images painted in the last paint passes of their layer are never released: if the visible images need more
+ * memory than the budget, it grows until the view changes, instead of releasing an image which is painted again.
+ */
+final class DecodedImages {
+
+    static final int DEFAULT_MEMORY = 256;
+
+    private static final ExecutorService decoder = Executors.newSingleThreadExecutor(
+            Utils.newThreadFactory("cadastre-wms-decoder-%d", Thread.NORM_PRIORITY));
+
+    /** decoded images and their size in bytes, in access order */
+    private static final Map<GeorefImage, Long> images = new LinkedHashMap<>(16, 0.75f, true);
+    private static final Set<GeorefImage> pending = new HashSet<>();
+    private static long memory;
+
+    private DecodedImages() {
+        // Hide default constructor for utilities classes
+    }
+
+    /**
+     * Decodes an image in background, then repaints its layer.
+     * @param image image to decode
+     */
+    static void requestDecoding(GeorefImage image) {
+        synchronized (DecodedImages.class) {
+            if (!pending.add(image)) {
+                return;
+            }
+        }
+        decoder.submit(() -> {
+            try {
+                BufferedImage decoded = image.decode();
+                if (decoded != null) {
+                    added(image, decoded);
+                    if (image.wmsLayer != null) {
+                        image.wmsLayer.invalidate();
+                    }
+                }
+            } finally {
+                synchronized (DecodedImages.class) {
+                    pending.remove(image);
+                }
+            }
+        });
+    }
+
+    /**
+     * Registers a decoded image, and releases the least recently painted ones if needed, except the visible ones.
+     * @param image georeferenced image
+     * @param decoded its decoded image
+     */
+    static synchronized void added(GeorefImage image, BufferedImage decoded) {
+        long size = (long) decoded.getWidth() * decoded.getHeight() * decoded.getColorModel().getPixelSize() / 8;
+        Long previous = images.put(image, size);
+        memory += size - (previous != null ? previous : 0);
+        long budget = Config.getPref().getInt("cadastrewms.decodedImagesMemory", DEFAULT_MEMORY) * 1024L * 1024L;
+        Iterator<Map.Entry<GeorefImage, Long>> it = images.entrySet().iterator();
+        while (memory > budget && it.hasNext()) {
+            Map.Entry<GeorefImage, Long> eldest = it.next();
+            if (eldest.getKey() == image || eldest.getKey().isRecentlyPainted()) {
+                continue;
+            }
+            it.remove();
+            memory -= eldest.getValue();
+            eldest.getKey().release();
+        }
+    }
+
+    /**
+     * Marks an image as recently painted.
+     * @param image georeferenced image
+     */
+    static synchronized void touch(GeorefImage image) {
+        images.get(image);
+    }
+
+    /**
+     * Forgets an image which cannot be released anymore.
+     * @param image georeferenced image
+     */
+    static synchronized void removed(GeorefImage image) {
+        Long size = images.remove(image);
+        if (size != null) {
+            memory -= size;
+        }
+    }
+
+    /**
+     * Forgets the images of a destroyed layer.
+     * @param layerImages images of the layer
+     */
+    static synchronized void removed(Collection<GeorefImage> layerImages) {
+        for (GeorefImage image : layerImages) {
+            removed(image);
+        }
+    }
+}
@@ -12,16 +12,21 @@ import java.awt.Image;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 import javax.imageio.ImageIO;
 
 import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.gui.NavigatableComponent;
+import org.openstreetmap.josm.tools.Logging;
 
 public class GeorefImage implements Serializable, ImageObserver, Cloneable {
     private static final long serialVersionUID = 1L;
@@ -39,14 +44,29 @@ public class GeorefImage implements Serializable, ImageObserver, Cloneable {
     public int imageOriginalHeight = 0;
     public int imageOriginalWidth = 0;
 
-    public BufferedImage image;
+    // null when released from memory, until decoded again from the cache file
+    private volatile BufferedImage image;
+    private int width;
+    private int height;
     public WMSLayer wmsLayer;
 
+    // location of the encoded image in a tiled cache file, if the image can be released and decoded again
+    private transient File cacheFile;
+    private transient long cacheOffset;
+    private transient int cacheLength;
+    // zones made transparent with withdraw(), applied again when the image is decoded
+    private transient List<EastNorthBound> masks = new ArrayList<>();
+    private transient int encodedMasks;
+    // last paint pass of the layer in which the image was painted, see WMSLayer#getPaintPass
+    private transient volatile int paintPass;
+
     private double pixelPerEast;
     private double pixelPerNorth;
 
     public GeorefImage(BufferedImage img, EastNorth min, EastNorth max, WMSLayer wmsLayer) {
         image = Objects.requireNonNull(img);
+        width = img.getWidth();
+        height = img.getHeight();
 
         this.min = Objects.requireNonNull(min);
         this.max = Objects.requireNonNull(max);
@@ -65,6 +85,167 @@ public class GeorefImage implements Serializable, ImageObserver, Cloneable {
         updatePixelPer();
     }
 
+    /**
+     * Constructs an image stored in a tiled cache file, decoded when needed.
+     */
+    GeorefImage(EastNorth min, EastNorth max, EastNorth[] orgRaster, EastNorth[] orgCroppedRaster, double angle,
+            int imageOriginalHeight, int imageOriginalWidth, int width, int height, WMSLayer wmsLayer,
+            File cacheFile, long cacheOffset, int cacheLength) {
+        this.min = Objects.requireNonNull(min);
+        this.max = Objects.requireNonNull(max);
+        this.orgRaster = orgRaster;
+        this.orgCroppedRaster = orgCroppedRaster;
+        this.angle = angle;
+        this.imageOriginalHeight = imageOriginalHeight;
+        this.imageOriginalWidth = imageOriginalWidth;
+        this.width = width;
+        this.height = height;
+        this.wmsLayer = wmsLayer;
+        this.cacheFile = cacheFile;
+        this.cacheOffset = cacheOffset;
+        this.cacheLength = cacheLength;
+        updatePixelPer();
+    }
+
+    /**
+     * Returns the image, decoding it from the cache file if it has been released.
+     * @return the image, or {@code null} if it cannot be decoded
+     */
+    public BufferedImage getImage() {
+        BufferedImage img = image;
+        if (img == null) {
+            img = decode();
+            if (img != null) {
+                DecodedImages.added(this, img);
+            } else {
+                img = image;
+            }
+        }
+        return img;
+    }
+
+    /**
+     * Replaces the image. The new image is kept in memory until it is saved in a tiled cache file again.
+     * @param img new image
+     */
+    public void setImage(BufferedImage img) {
+        synchronized (this) {
+            image = Objects.requireNonNull(img);
+            width = img.getWidth();
+            height = img.getHeight();
+            cacheFile = null;
+            masks.clear();
+        }
+        DecodedImages.removed(this);
+    }
+
+    /**
+     * Keeps the image in memory, when it cannot be decoded from its cache file anymore.
+     */
+    void keepInMemory() {
+        BufferedImage img = getImage();
+        if (img != null) {
+            setImage(img);
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Decodes the image from the cache file if it has been released.
+     * @return the decoded image, or {@code null} if the image was not decoded
+     */
+    BufferedImage decode() {
+        File file;
+        synchronized (this) {
+            if (image != null || cacheFile == null) {
+                return null;
+            }
+            file = cacheFile;
+        }
+        BufferedImage decoded;
+        try {
+            decoded = TiledCacheFile.readImage(file, cacheOffset, cacheLength);
+        } catch (IOException e) {
+            Logging.error(e);
+            synchronized (this) {
+                if (cacheFile == file) {
+                    cacheFile = null;
+                }
+            }
+            return null;
+        }
+        synchronized (this) {
+            if (image != null || cacheFile != file) {
+                return null;
+            }
+            for (EastNorthBound mask : masks) {
+                withdraw(decoded, mask);
+            }
+            image = decoded;
+        }
+        return decoded;
+    }
+
+    /**
+     * Releases the image from memory if it can be decoded again from the cache file.
+     */
+    synchronized void release() {
+        if (cacheFile != null) {
+            image = null;
+        }
+    }
+
+    /**
+     * Encodes the image in PNG for a tiled cache file.
+     * @return the encoded image
+     * @throws IOException if any I/O error occurs
+     */
+    byte[] encode() throws IOException {
+        BufferedImage img = getImage();
+        if (img == null) {
+            throw new IOException("Image not available: " + this);
+        }
+        synchronized (this) {
+            if (image == null) {
+                // released meanwhile, zones may have been withdrawn since img was decoded
+                for (EastNorthBound mask : masks) {
+                    withdraw(img, mask);
+                }
+                image = img;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", out);
+            encodedMasks = masks.size();
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Records the location of the image encoded by {@link #encode} in a tiled cache file, so it can be released.
+     */
+    void attachToCache(File file, long offset, int length) {
+        BufferedImage img;
+        synchronized (this) {
+            cacheFile = file;
+            cacheOffset = offset;
+            cacheLength = length;
+            // zones withdrawn since the image has been encoded
+            masks = new ArrayList<>(masks.subList(encodedMasks, masks.size()));
+            encodedMasks = 0;
+            img = image;
+        }
+        if (img != null) {
+            DecodedImages.added(this, img);
+        }
+    }
+
     public static GraphicsConfiguration getDefaultConfiguration() {
         GraphicsEnvironment ge = GraphicsEnvironment.getLocalGraphicsEnvironment();
         GraphicsDevice gd = ge.getDefaultScreenDevice();
@@ -99,6 +280,15 @@ public class GeorefImage implements Serializable, ImageObserver, Cloneable {
                 new EastNorth(highestEast, highestNorth));
     }
 
+    /**
+     * Determines if the image has been painted in the current or the previous paint pass of its layer,
+     * i.e. if it is still visible or has been visible until the last change of the view.
+     * @return {@code true} if the image has been painted recently
+     */
+    boolean isRecentlyPainted() {
+        return wmsLayer != null && paintPass > 0 && paintPass >= wmsLayer.getPaintPass() - 1;
+    }
+
     public boolean contains(EastNorth en) {
         return min.east() <= en.east() && en.east() <= max.east() && min.north() <= en.north()
                 && en.north() <= max.north();
@@ -106,8 +296,15 @@ public class GeorefImage implements Serializable, ImageObserver, Cloneable {
 
     public void paint(Graphics2D g, NavigatableComponent nc, boolean backgroundTransparent, float transparency,
             boolean drawBoundaries) {
+        BufferedImage image = this.image;
+        if (wmsLayer != null)
+            paintPass = wmsLayer.getPaintPass();
+        if (image == null && cacheFile != null)
+            DecodedImages.requestDecoding(this);
         if (image == null || min == null || max == null)
             return;
+        if (cacheFile != null)
+            DecodedImages.touch(this);
 
         // apply offsets defined manually when vector images are translated manually (not saved in cache)
         double dx = 0, dy = 0;
@@ -175,6 +372,15 @@ public class GeorefImage implements Serializable, ImageObserver, Cloneable {
      * Make all pixels masked by the given georefImage transparent in this image
      */
     public void withdraw(GeorefImage georefImage) {
+        EastNorthBound mask = new EastNorthBound(georefImage.min, georefImage.max);
+        synchronized (this) {
+            masks.add(mask);
+            if (image != null)
+                withdraw(image, mask);
+        }
+    }
+
+    private void withdraw(BufferedImage image, EastNorthBound georefImage) {
         double minMaskEast = (georefImage.min.east() > this.min.east()) ? georefImage.min.east() : this.min.east();
         double maxMaskEast = (georefImage.max.east() < this.max.east()) ? georefImage.max.east() : this.max.east();
         double minMaskNorth = (georefImage.min.north() > this.min.north()) ? georefImage.min.north() : this.min.north();
@@ -225,6 +431,9 @@ public class GeorefImage implements Serializable, ImageObserver, Cloneable {
             imageOriginalWidth = in.readInt();
         }
         image = ImageIO.read(ImageIO.createImageInputStream(in));
+        width = image.getWidth();
+        height = image.getHeight();
+        masks = new ArrayList<>();
         updatePixelPer();
     }
 
@@ -253,12 +462,12 @@ public class GeorefImage implements Serializable, ImageObserver, Cloneable {
             out.writeInt(imageOriginalHeight);
             out.writeInt(imageOriginalWidth);
         }
-        ImageIO.write(image, "png", ImageIO.createImageOutputStream(out));
+        ImageIO.write(getImage(), "png", ImageIO.createImageOutputStream(out));
     }
 
     private void updatePixelPer() {
-        pixelPerEast = image.getWidth()/(max.east()-min.east());
-        pixelPerNorth = image.getHeight()/(max.north()-min.north());
+        pixelPerEast = width/(max.east()-min.east());
+        pixelPerNorth = height/(max.north()-min.north());
     }
 
     public double getPixelPerEast() {
@@ -318,6 +527,7 @@ public class GeorefImage implements Serializable, ImageObserver, Cloneable {
             orgCroppedRaster[i] = orgCroppedRaster[i].rotate(anchor, delta_ang);
         }
         // rotate the image now
+        BufferedImage image = getImage();
         double sin = Math.abs(Math.sin(angle+delta_ang)), cos = Math.abs(Math.cos(angle+delta_ang));
         int w = imageOriginalWidth, h = imageOriginalHeight;
         int neww = (int) Math.floor(w*cos+h*sin);
@@ -329,7 +539,7 @@ public class GeorefImage implements Serializable, ImageObserver, Cloneable {
         g.rotate(delta_ang, image.getWidth()/2, image.getHeight()/2);
         g.drawRenderedImage(image, null);
         g.dispose();
-        image = result;
+        setImage(result);
         EastNorthBound enb = computeNewBounding(orgCroppedRaster[0], orgCroppedRaster[1], orgCroppedRaster[2], orgCroppedRaster[3]);
         min = enb.min;
         max = enb.max;
@@ -349,12 +559,13 @@ public class GeorefImage implements Serializable, ImageObserver, Cloneable {
         int sy2 = (int) ((max.getY() - adj1.getY())*getPixelPerNorth());
         int newWidth = Math.abs(sx2 - sx1);
         int newHeight = Math.abs(sy2 - sy1);
+        BufferedImage image = getImage();
         BufferedImage new_img = new BufferedImage(newWidth, newHeight, image.getType());
         Graphics g = new_img.getGraphics();
         g.drawImage(image, 0, 0, newWidth-1, newHeight-1,
                 sx1, sy1, sx2, sy2,
                 this);
-        image = new_img;
+        setImage(new_img);
         this.min = adj1;
         this.max = adj2;
         this.orgCroppedRaster[0] = min;
@@ -0,0 +1,124 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.fr.cadastre.wms;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+
+/**
+ * Spatial index of the images of a layer, to find the ones intersecting an area (usually the current view)
+ * without going through all of them. Images are registered in the cells of a regular grid which they overlap,
+ * the cell size being the average image size. Images are returned in the layer order, so the painting order is kept.
+ */
+class GeorefImageIndex {
+
+    /** images covering more cells than that are not registered in cells, but always checked */
+    private static final int MAX_CELLS_PER_IMAGE = 64;
+
+    private final List<GeorefImage> images;
+    private final double cellSize;
+    private final Map<Long, List<Integer>> cells = new HashMap<>();
+    private final List<Integer> largeImages = new ArrayList<>();
+
+    /**
+     * Constructs a new {@code GeorefImageIndex}. The bounds of the images must not change while the index is used.
+     * @param images images of a layer, in painting order
+     */
+    GeorefImageIndex(List<GeorefImage> images) {
+        this.images = new ArrayList<>(images);
+        double size = 0;
+        for (GeorefImage image : this.images) {
+            size += Math.max(image.max.east() - image.min.east(), image.max.north() - image.min.north());
+        }
+        cellSize = this.images.isEmpty() || size <= 0 ? 1 : size / this.images.size();
+        for (int i = 0; i < this.images.size(); i++) {
+            GeorefImage image = this.images.get(i);
+            long minX = cell(image.min.east());
+            long minY = cell(image.min.north());
+            long maxX = cell(image.max.east());
+            long maxY = cell(image.max.north());
+            if ((maxX - minX + 1) * (maxY - minY + 1) > MAX_CELLS_PER_IMAGE) {
+                largeImages.add(i);
+            } else {
+                for (long x = minX; x <= maxX; x++) {
+                    for (long y = minY; y <= maxY; y++) {
+                        cells.computeIfAbsent(key(x, y), k -> new ArrayList<>()).add(i);
+                    }
+                }
+            }
+        }
+    }
+
+    private long cell(double coordinate) {
+        return (long) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(long x, long y) {
+        return x << 32 ^ (y & 0xffffffffL);
+    }
+
+    /**
+     * Finds the positions of the images intersecting an area.
+     * @param min bottom left corner of the area
+     * @param max top right corner of the area
+     * @return positions of the images in the layer
+     */
+    BitSet query(EastNorth min, EastNorth max) {
+        BitSet result = new BitSet(images.size());
+        long minX = cell(min.east());
+        long minY = cell(min.north());
+        long maxX = cell(max.east());
+        long maxY = cell(max.north());
+        if ((double) (maxX - minX + 1) * (maxY - minY + 1) > images.size()) {
+            // area larger than the images, checking them is faster
+            for (int i = 0; i < images.size(); i++) {
+                if (intersects(images.get(i), min, max)) {
+                    result.set(i);
+                }
+            }
+            return result;
+        }
+        for (long x = minX; x <= maxX; x++) {
+            for (long y = minY; y <= maxY; y++) {
+                List<Integer> cell = cells.get(key(x, y));
+                if (cell != null) {
+                    for (int i : cell) {
+                        if (!result.get(i) && intersects(images.get(i), min, max)) {
+                            result.set(i);
+                        }
+                    }
+                }
+            }
+        }
+        for (int i : largeImages) {
+            if (intersects(images.get(i), min, max)) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the images intersecting an area.
+     * @param min bottom left corner of the area
+     * @param max top right corner of the area
+     * @return images intersecting the area, in the layer order
+     */
+    List<GeorefImage> find(EastNorth min, EastNorth max) {
+        BitSet positions = query(min, max);
+        List<GeorefImage> result = new ArrayList<>(positions.cardinality());
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            result.add(images.get(i));
+        }
+        return result;
+    }
+
+    private static boolean intersects(GeorefImage image, EastNorth min, EastNorth max) {
+        return image.min.east() <= max.east() && min.east() <= image.max.east()
+            && image.min.north() <= max.north() && min.north() <= image.max.north();
+    }
+}
@@ -165,6 +165,12 @@ public class GrabThread extends Thread {
 
     public void saveNewCache() {
         if (CacheControl.cacheEnabled) {
+            wmsLayer.imagesLock.lock();
+            for (GeorefImage image : wmsLayer.getImages()) {
+                // keep images in memory, they cannot be decoded from the deleted file
+                image.keepInMemory();
+            }
+            wmsLayer.imagesLock.unlock();
             getCacheControl().deleteCacheFile();
             wmsLayer.imagesLock.lock();
             for (GeorefImage image : wmsLayer.getImages()) {
@@ -0,0 +1,263 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.fr.cadastre.wms;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Tiled cache file format. Unlike the serialized format, images can be located in the file without being decoded:
+ * <pre>
+ *   header: magic, version, layer description (see {@link WMSLayer#writeHeader})
+ *   chunk*: number of images, index entry of each image, PNG encoded images
+ * </pre>
+ * An index entry holds the position and length of the encoded image and its georeferencing.
+ * A chunk is appended each time grabbed images are saved, so existing data is never rewritten.
+ * When the cache is loaded, only the indexes are read; images are decoded when they are painted.
+ * A chunk that was not entirely written is cut off the file, so that the next chunks are appended after the valid ones.
+ */
+public final class TiledCacheFile {
+
+    /** "CWMS" */
+    static final int MAGIC = 0x43574d53;
+
+    static final int VERSION = 1;
+
+    /** offset, length, min, max, angle, orgRaster, orgCroppedRaster, original and encoded image sizes */
+    private static final int ENTRY_SIZE = 8 + 4 + 4 * 8 + 8 + 16 * 8 + 4 * 4;
+
+    private TiledCacheFile() {
+        // Hide default constructor for utilities classes
+    }
+
+    /**
+     * Determines if a cache file has the tiled format.
+     * @param file cache file
+     * @return {@code true} if the file starts with the tiled format header
+     */
+    public static boolean isTiledCacheFile(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.length() >= 4 && raf.readInt() == MAGIC;
+        } catch (IOException e) {
+            Logging.trace(e);
+            return false;
+        }
+    }
+
+    /**
+     * Creates a new cache file for a layer.
+     * @param file cache file
+     * @param wmsLayer layer
+     * @param images first images to save
+     * @throws IOException if any I/O error occurs
+     */
+    public static void create(File file, WMSLayer wmsLayer, List<GeorefImage> images) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            wmsLayer.writeHeader(out);
+        }
+        append(file, images);
+    }
+
+    /**
+     * Appends images to an existing cache file. Images are then released from memory when needed,
+     * and decoded from the cache file again.
+     * @param file cache file
+     * @param images images to save
+     * @throws IOException if any I/O error occurs, the file is then restored to its previous length
+     */
+    public static void append(File file, List<GeorefImage> images) throws IOException {
+        List<byte[]> encoded = new ArrayList<>(images.size());
+        for (GeorefImage image : images) {
+            encoded.add(image.encode());
+        }
+        long start = file.length();
+        try {
+            writeChunk(file, start, images, encoded);
+        } catch (IOException e) {
+            truncate(file, start);
+            throw e;
+        }
+    }
+
+    private static void writeChunk(File file, long start, List<GeorefImage> images, List<byte[]> encoded) throws IOException {
+        long offset = start + 4 + (long) ENTRY_SIZE * images.size();
+        long[] offsets = new long[images.size()];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            out.writeInt(images.size());
+            for (int i = 0; i < images.size(); i++) {
+                GeorefImage image = images.get(i);
+                offsets[i] = offset;
+                out.writeLong(offset);
+                out.writeInt(encoded.get(i).length);
+                writeEastNorth(out, image.min);
+                writeEastNorth(out, image.max);
+                out.writeDouble(image.angle);
+                for (int j = 0; j < 4; j++) {
+                    writeEastNorth(out, image.orgRaster != null ? image.orgRaster[j] : corner(image, j));
+                }
+                for (int j = 0; j < 4; j++) {
+                    writeEastNorth(out, image.orgCroppedRaster != null ? image.orgCroppedRaster[j] : corner(image, j));
+                }
+                out.writeInt(image.imageOriginalHeight);
+                out.writeInt(image.imageOriginalWidth);
+                out.writeInt(image.getWidth());
+                out.writeInt(image.getHeight());
+                offset += encoded.get(i).length;
+            }
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+        }
+        for (int i = 0; i < images.size(); i++) {
+            images.get(i).attachToCache(file, offsets[i], encoded.get(i).length);
+        }
+    }
+
+    /**
+     * Loads the description of a layer and the index of its images from a cache file.
+     * @param file cache file
+     * @param wmsLayer layer to fill
+     * @param currentLambertZone current Lambert zone
+     * @return {@code true} for success
+     * @throws IOException if any I/O error occurs
+     */
+    public static boolean load(File file, WMSLayer wmsLayer, int currentLambertZone) throws IOException {
+        List<GeorefImage> images = new ArrayList<>();
+        long validLength;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.readInt() != MAGIC) {
+                throw new IOException("Not a tiled cache file: " + file);
+            }
+            int version = raf.readInt();
+            if (version > VERSION) {
+                throw new IOException("Unsupported tiled cache version " + version + ": " + file);
+            }
+            if (!wmsLayer.readHeader(raf, currentLambertZone)) {
+                return false;
+            }
+            long length = raf.length();
+            long position = raf.getFilePointer();
+            while (position < length) {
+                raf.seek(position);
+                byte[] index;
+                try {
+                    int count = raf.readInt();
+                    if (count < 0 || (long) count * ENTRY_SIZE > length - raf.getFilePointer()) {
+                        throw new EOFException();
+                    }
+                    index = new byte[count * ENTRY_SIZE];
+                    raf.readFully(index);
+                } catch (EOFException e) {
+                    // chunk not entirely written
+                    Logging.warn("Removing truncated chunk from cache file " + file);
+                    break;
+                }
+                List<GeorefImage> chunk = new ArrayList<>();
+                long end = position;
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+                for (int i = 0; i < index.length / ENTRY_SIZE; i++) {
+                    long offset = in.readLong();
+                    int imageLength = in.readInt();
+                    EastNorth min = readEastNorth(in);
+                    EastNorth max = readEastNorth(in);
+                    double angle = in.readDouble();
+                    EastNorth[] orgRaster = new EastNorth[4];
+                    for (int j = 0; j < 4; j++) {
+                        orgRaster[j] = readEastNorth(in);
+                    }
+                    EastNorth[] orgCroppedRaster = new EastNorth[4];
+                    for (int j = 0; j < 4; j++) {
+                        orgCroppedRaster[j] = readEastNorth(in);
+                    }
+                    int imageOriginalHeight = in.readInt();
+                    int imageOriginalWidth = in.readInt();
+                    int width = in.readInt();
+                    int height = in.readInt();
+                    chunk.add(new GeorefImage(min, max, orgRaster, orgCroppedRaster, angle, imageOriginalHeight, imageOriginalWidth,
+                            width, height, wmsLayer, file, offset, imageLength));
+                    end = Math.max(end, offset + imageLength);
+                }
+                if (end > length) {
+                    Logging.warn("Removing truncated chunk from cache file " + file);
+                    break;
+                }
+                images.addAll(chunk);
+                position = Math.max(end, raf.getFilePointer());
+            }
+            validLength = position;
+        }
+        if (validLength < file.length()) {
+            truncate(file, validLength);
+        }
+        wmsLayer.addCachedImages(images);
+        return true;
+    }
+
+    /**
+     * Cuts off the end of a cache file, e.g. a chunk that was not entirely written.
+     * @param file cache file
+     * @param length length of the valid data
+     */
+    private static void truncate(File file, long length) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        } catch (IOException e) {
+            Logging.warn("Unable to truncate cache file " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes an image from a cache file.
+     * @param file cache file
+     * @param offset position of the encoded image in the file
+     * @param length length of the encoded image
+     * @return decoded image
+     * @throws IOException if any I/O error occurs
+     */
+    static BufferedImage readImage(File file, long offset, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(offset);
+            raf.readFully(bytes);
+        }
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        if (image == null) {
+            throw new IOException("Unable to decode image at " + offset + " in " + file);
+        }
+        return image;
+    }
+
+    private static EastNorth corner(GeorefImage image, int i) {
+        switch (i) {
+        case 0: return image.min;
+        case 1: return new EastNorth(image.min.east(), image.max.north());
+        case 2: return image.max;
+        default: return new EastNorth(image.max.east(), image.min.north());
+        }
+    }
+
+    private static void writeEastNorth(DataOutputStream out, EastNorth en) throws IOException {
+        out.writeDouble(en.east());
+        out.writeDouble(en.north());
+    }
+
+    private static EastNorth readEastNorth(DataInputStream in) throws IOException {
+        return new EastNorth(in.readDouble(), in.readDouble());
+    }
+}
@@ -13,12 +13,16 @@ import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Vector;
 import java.util.concurrent.locks.Lock;
@@ -68,6 +72,12 @@ public class WMSLayer extends Layer implements ImageObserver {
 
     Lock imagesLock = new ReentrantLock();
 
+    // spatial index of the images used for painting, created again when images are added or removed
+    private GeorefImageIndex imageIndex;
+
+    // number of paint passes, to keep the visible images decoded, see GeorefImage#isRecentlyPainted
+    private volatile int paintPass;
+
     /**
      * v1 to v2 = not supported
      * v2 to v3 = add 4 more EastNorth coordinates in GeorefImages
@@ -148,7 +158,9 @@ public class WMSLayer extends Layer implements ImageObserver {
                 grabThread.cancel();
         grabThread = null;
         super.destroy();
+        DecodedImages.removed(images);
         images = null;
+        imageIndex = null;
         dividedBbox = null;
         Logging.info("Layer "+location+" destroyed");
     }
@@ -267,7 +279,7 @@ public class WMSLayer extends Layer implements ImageObserver {
             str += "\n"+tr("Is not vectorized.");
             str += "\n"+tr("Bounding box: {0}", communeBBox);
             if (!images.isEmpty())
-                str += "\n"+tr("Image size (px): {0}/{1}", images.get(0).image.getWidth(), images.get(0).image.getHeight());
+                str += "\n"+tr("Image size (px): {0}/{1}", images.get(0).getWidth(), images.get(0).getHeight());
         } else {
             str += "\n"+tr("Is vectorized.");
             str += "\n"+tr("Commune bbox: {0}", communeBBox);
@@ -297,9 +309,10 @@ public class WMSLayer extends Layer implements ImageObserver {
                 g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
             else
                 g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            paintPass++;
             imagesLock.lock();
             try {
-                for (GeorefImage img : images) {
+                for (GeorefImage img : getImagesToPaint(mv)) {
                     img.paint(g, mv, CadastrePlugin.backgroundTransparent,
                             CadastrePlugin.transparency, CadastrePlugin.drawBoundaries);
                 }
@@ -317,6 +330,27 @@ public class WMSLayer extends Layer implements ImageObserver {
         }
     }
 
+    int getPaintPass() {
+        return paintPass;
+    }
+
+    /**
+     * Returns the images visible in the map view, in painting order.
+     * Raster layers have a single image whose bounds change when it is georeferenced, so it is not indexed.
+     */
+    private List<GeorefImage> getImagesToPaint(MapView mv) {
+        if (isRaster || images.size() < 2) {
+            return images;
+        }
+        if (imageIndex == null) {
+            imageIndex = new GeorefImageIndex(images);
+        }
+        // images are painted with the offset of the layer
+        EastNorth min = mv.getEastNorth(0, mv.getHeight()).add(-deltaEast, -deltaNorth);
+        EastNorth max = mv.getEastNorth(mv.getWidth(), 0).add(-deltaEast, -deltaNorth);
+        return imageIndex.find(min, max);
+    }
+
     @Override
     public void visitBoundingBox(BoundingXYVisitor v) {
         for (GeorefImage img : images) {
@@ -483,6 +517,93 @@ public class WMSLayer extends Layer implements ImageObserver {
         oos.writeDouble(this.communeBBox.max.getY());
     }
 
+    /**
+     * Called by TiledCacheFile when a new cache file is created on disk.
+     * @param out output
+     * @throws IOException if any I/O error occurs
+     */
+    public void writeHeader(DataOutput out) throws IOException {
+        out.writeUTF(this.location);
+        out.writeUTF(this.codeCommune);
+        out.writeInt(this.lambertZone);
+        out.writeBoolean(this.isRaster);
+        if (this.isRaster) {
+            out.writeDouble(this.rasterMin.getX());
+            out.writeDouble(this.rasterMin.getY());
+            out.writeDouble(this.rasterMax.getX());
+            out.writeDouble(this.rasterMax.getY());
+            out.writeDouble(this.rasterRatio);
+        }
+        out.writeDouble(this.communeBBox.min.getX());
+        out.writeDouble(this.communeBBox.min.getY());
+        out.writeDouble(this.communeBBox.max.getX());
+        out.writeDouble(this.communeBBox.max.getY());
+    }
+
+    /**
+     * Called by TiledCacheFile when a cache file is read from disk.
+     * @param in input
+     * @param currentLambertZone current Lambert zone
+     * @return {@code true} for success
+     * @throws IOException if any I/O error occurs
+     */
+    public boolean readHeader(DataInput in, int currentLambertZone) throws IOException {
+        this.setLocation(in.readUTF());
+        this.setCodeCommune(in.readUTF());
+        this.lambertZone = in.readInt();
+        this.setRaster(in.readBoolean());
+        if (this.isRaster) {
+            this.rasterMin = new EastNorth(in.readDouble(), in.readDouble());
+            this.rasterMax = new EastNorth(in.readDouble(), in.readDouble());
+            this.rasterRatio = in.readDouble();
+        }
+        double minX = in.readDouble();
+        double minY = in.readDouble();
+        double maxX = in.readDouble();
+        double maxY = in.readDouble();
+        this.communeBBox = new EastNorthBound(new EastNorth(minX, minY), new EastNorth(maxX, maxY));
+        if (this.lambertZone != currentLambertZone && currentLambertZone != -1) {
+            JOptionPane.showMessageDialog(MainApplication.getMainFrame(), tr("Lambert zone {0} in cache "+
+                    "incompatible with current Lambert zone {1}",
+                    this.lambertZone+1, currentLambertZone), tr("Cache Lambert Zone Error"), JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Called by TiledCacheFile when the images of a cache file have been located, they are decoded when painted.
+     * @param newImages images read from the cache file, in saving order
+     */
+    void addCachedImages(List<GeorefImage> newImages) {
+        synchronized (this) {
+            imagesLock.lock();
+            try {
+                int first = images.size();
+                images.addAll(newImages);
+                imageIndex = null;
+                if (CadastrePlugin.backgroundTransparent) {
+                    // same masking as when the images were grabbed, only between overlapping images
+                    GeorefImageIndex index = new GeorefImageIndex(images);
+                    for (int i = first; i < images.size(); i++) {
+                        GeorefImage newImage = images.get(i);
+                        BitSet overlapping = index.query(newImage.min, newImage.max);
+                        for (int j = overlapping.nextSetBit(0); j >= 0 && j < i; j = overlapping.nextSetBit(j + 1)) {
+                            GeorefImage img = images.get(j);
+                            if (img.overlap(newImage))
+                                img.withdraw(newImage);
+                            else
+                                newImage.withdraw(img);
+                        }
+                    }
+                }
+            } finally {
+                imagesLock.unlock();
+            }
+        }
+        Logging.info("Cache loaded for location "+location+" with "+images.size()+" images");
+    }
+
     /**
      * Called by CacheControl when a cache file is read from disk.
      * Cache uses only primitives to stay independent of software changes.
@@ -544,6 +665,7 @@ public class WMSLayer extends Layer implements ImageObserver {
                     }
                     newImage.wmsLayer = this;
                     this.images.add(newImage);
+                    imageIndex = null;
                 }
             } catch (EOFException ex) {
                 // expected exception when all images are read
@@ -561,8 +683,8 @@ public class WMSLayer extends Layer implements ImageObserver {
         if (images.size() > 1) {
             EastNorth min = images.get(0).min;
             EastNorth max = images.get(images.size()-1).max;
-            int oldImgWidth = images.get(0).image.getWidth();
-            int oldImgHeight = images.get(0).image.getHeight();
+            int oldImgWidth = images.get(0).getWidth();
+            int oldImgHeight = images.get(0).getHeight();
             HashSet<Double> lx = new HashSet<>();
             HashSet<Double> ly = new HashSet<>();
             for (GeorefImage img : images) {
@@ -571,7 +693,7 @@ public class WMSLayer extends Layer implements ImageObserver {
             }
             int newWidth = oldImgWidth*lx.size();
             int newHeight = oldImgHeight*ly.size();
-            BufferedImage newImg = new BufferedImage(newWidth, newHeight, images.get(0).image.getType()/*BufferedImage.TYPE_INT_ARGB*/);
+            BufferedImage newImg = new BufferedImage(newWidth, newHeight, images.get(0).getImage().getType()/*BufferedImage.TYPE_INT_ARGB*/);
             Graphics g = newImg.getGraphics();
             // Coordinate (0,0) is on top,left corner where images are grabbed from bottom left
             int rasterDivider = (int) Math.sqrt(images.size());
@@ -580,12 +702,13 @@ public class WMSLayer extends Layer implements ImageObserver {
                     int newx = h*oldImgWidth;
                     int newy = newHeight - oldImgHeight - (v*oldImgHeight);
                     int j = h*rasterDivider + v;
-                    g.drawImage(images.get(j).image, newx, newy, this);
+                    g.drawImage(images.get(j).getImage(), newx, newy, this);
                 }
             }
             synchronized (this) {
                 images.clear();
                 images.add(new GeorefImage(newImg, min, max, this));
+                imageIndex = null;
             }
         }
     }
@@ -611,7 +734,7 @@ public class WMSLayer extends Layer implements ImageObserver {
         rasterMax = adj2;
         setCommuneBBox(new EastNorthBound(
                 new EastNorth(0, 0),
-                new EastNorth(images.get(0).image.getWidth()-1, images.get(0).image.getHeight()-1)));
+                new EastNorth(images.get(0).getWidth()-1, images.get(0).getHeight()-1)));
         rasterRatio = (rasterMax.getX()-rasterMin.getX())/(communeBBox.max.getX() - communeBBox.min.getX());
     }
 
@@ -732,6 +855,7 @@ public class WMSLayer extends Layer implements ImageObserver {
         imagesLock.lock();
         try {
             images.add(img);
+            imageIndex = null;
         } finally {
             imagesLock.unlock();
         }
@@ -741,6 +865,7 @@ public class WMSLayer extends Layer implements ImageObserver {
         imagesLock.lock();
         try {
             this.images = images;
+            imageIndex = null;
         } finally {
             imagesLock.unlock();
         }
@@ -750,6 +875,7 @@ public class WMSLayer extends Layer implements ImageObserver {
         imagesLock.lock();
         try {
             images.clear();
+            imageIndex = null;
         } finally {
             imagesLock.unlock();
         }
@@ -0,0 +1,187 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.fr.cadastre.edigeo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.fr.cadastre.edigeo.EdigeoFileTHF.Lot;
+
+/**
+ * Load time of large synthetic EDIGEO lots: reading and resolving the DIC, SCD and VEC files.
+ * <p>
+ * Not run with unit tests. Each parcel of the lot is an object, a face, a closed arc
+ * and the two relations linking them, like in PCI vector lots.
+ */
+class EdigeoLotLoadingBenchmark {
+
+    private static final int[] PARCELS = {2500, 5000, 10000, 20000};
+
+    private static final String LOT = "LOT01";
+    private static final String DIC = "SeDD";
+    private static final String SCD = "SeSD";
+    private static final String VEC = "SeTA";
+
+    @Test
+    void benchmarkLoading() throws Exception {
+        Path dir = Files.createTempDirectory("edigeo");
+        try {
+            for (int parcels : PARCELS) {
+                Path vecPath = dir.resolve("T" + parcels + ".VEC");
+                writeDic(dir.resolve("T.DIC"));
+                writeScd(dir.resolve("T.SCD"));
+                writeVec(vecPath, parcels);
+
+                long start = System.nanoTime();
+                Lot lot = new Lot("GTL");
+                lot.identifier = LOT;
+                EdigeoFileDIC dic = new EdigeoFileDIC(lot, DIC, dir.resolve("T.DIC"));
+                EdigeoFileSCD scd = new EdigeoFileSCD(lot, SCD, dir.resolve("T.SCD"));
+                EdigeoFileVEC vec = new EdigeoFileVEC(lot, VEC, vecPath);
+                dic.read();
+                scd.read();
+                vec.read();
+                dic.resolve();
+                scd.resolve();
+                vec.resolve();
+                System.out.printf("%d parcels: read and resolved in %.1f ms%n", parcels, (System.nanoTime() - start) / 1e6);
+
+                assertTrue(vec.isValid());
+                assertEquals(parcels, vec.getObjects().size());
+                assertEquals(2 * parcels, vec.getRelations().size());
+                assertEquals(1, vec.getObjects().get(parcels - 1).getConstructionRelations().size());
+                assertEquals(2, vec.getFaces().get(0).getConstructionRelations().size());
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static void writeDic(Path path) throws IOException {
+        try (BufferedWriter w = open(path)) {
+            block(w, "DID", "PARCELLE");
+            record(w, "LAB", 'S', 'T', "PARCELLE");
+            block(w, "DIA", "IDU");
+            record(w, "LAB", 'S', 'T', "IDU");
+            record(w, "CAT", 'S', 'A', "P");
+            record(w, "TYP", 'S', 'A', "A");
+            block(w, "DIR", "RCO");
+            record(w, "LAB", 'S', 'T', "RCO");
+            record(w, "CAT", 'S', 'A', "P");
+            close(w);
+        }
+    }
+
+    private static void writeScd(Path path) throws IOException {
+        try (BufferedWriter w = open(path)) {
+            block(w, "ATT", "IDU_id");
+            record(w, "DIP", 'C', 'P', ref(DIC, "DIA", "IDU"));
+            block(w, "OBJ", "PARCELLE_id");
+            record(w, "DIP", 'C', 'P', ref(DIC, "DID", "PARCELLE"));
+            record(w, "KND", 'S', 'A', "ARE");
+            record(w, "AAC", 'S', 'N', "1");
+            record(w, "AAP", 'C', 'P', ref(SCD, "ATT", "IDU_id"));
+            record(w, "QAC", 'S', 'N', "0");
+            block(w, "PGE", "Face");
+            record(w, "KND", 'S', 'A', "FAC");
+            block(w, "PGE", "Arc");
+            record(w, "KND", 'S', 'A', "ARC");
+            relationDef(w, "ID_S_RCO_FAC_SEMANTIQUE", "IDB", ref(SCD, "OBJ", "PARCELLE_id"), ref(SCD, "PGE", "Face"));
+            relationDef(w, "ID_S_RCO_FAC_GAUCHE", "LPO", ref(SCD, "PGE", "Arc"), ref(SCD, "PGE", "Face"));
+            close(w);
+        }
+    }
+
+    private static void relationDef(BufferedWriter w, String id, String kind, String ref1, String ref2) throws IOException {
+        block(w, "REL", id);
+        record(w, "KND", 'S', 'A', kind);
+        record(w, "CA1", 'S', 'N', "2");
+        record(w, "CA2", 'S', 'N', "2");
+        record(w, "SCC", 'S', 'N', "2");
+        record(w, "SCP", 'C', 'P', ref1);
+        record(w, "OCC", 'S', 'N', "1");
+        record(w, "SCP", 'C', 'P', ref2);
+        record(w, "OCC", 'S', 'N', "1");
+        record(w, "AAC", 'S', 'N', "0");
+        record(w, "QAC", 'S', 'N', "0");
+    }
+
+    private static void writeVec(Path path, int parcels) throws IOException {
+        try (BufferedWriter w = open(path)) {
+            // All primitives and objects first, then the relations referring to them, as in PCI lots
+            for (int i = 0; i < parcels; i++) {
+                double x = 1000 + 20 * (i % 500);
+                double y = 6000 + 20 * (i / 500);
+                block(w, "PAR", "Arc_" + i);
+                record(w, "SCP", 'C', 'P', ref(SCD, "PGE", "Arc"));
+                record(w, "TYP", 'S', 'N', "1");
+                record(w, "PTC", 'S', 'N', "5");
+                for (double[] p : new double[][] {{x, y}, {x + 10, y}, {x + 10, y + 10}, {x, y + 10}, {x, y}}) {
+                    record(w, "COR", 'C', 'C', "+" + p[0] + ";+" + p[1] + ";");
+                }
+                record(w, "ATC", 'S', 'N', "0");
+                record(w, "QAC", 'S', 'N', "0");
+                block(w, "PFE", "Face_" + i);
+                record(w, "SCP", 'C', 'P', ref(SCD, "PGE", "Face"));
+                record(w, "ATC", 'S', 'N', "0");
+                record(w, "QAC", 'S', 'N', "0");
+                block(w, "FEA", "Objet_" + i);
+                record(w, "SCP", 'C', 'P', ref(SCD, "OBJ", "PARCELLE_id"));
+                record(w, "ATC", 'S', 'N', "1");
+                record(w, "ATP", 'C', 'P', ref(SCD, "ATT", "IDU_id"));
+                record(w, "ATV", 'S', 'T', String.format("%04d", i));
+                record(w, "QAC", 'S', 'N', "0");
+            }
+            for (int i = 0; i < parcels; i++) {
+                relation(w, "Lien_objet_" + i, "ID_S_RCO_FAC_SEMANTIQUE", ref(VEC, "FEA", "Objet_" + i), ref(VEC, "PFE", "Face_" + i));
+                relation(w, "Lien_arc_" + i, "ID_S_RCO_FAC_GAUCHE", ref(VEC, "PAR", "Arc_" + i), ref(VEC, "PFE", "Face_" + i));
+            }
+            close(w);
+        }
+    }
+
+    private static void relation(BufferedWriter w, String id, String def, String ref1, String ref2) throws IOException {
+        block(w, "LNK", id);
+        record(w, "SCP", 'C', 'P', ref(SCD, "REL", def));
+        record(w, "FTC", 'S', 'N', "2");
+        record(w, "FTP", 'C', 'P', ref1);
+        record(w, "FTP", 'C', 'P', ref2);
+        record(w, "ATC", 'S', 'N', "0");
+        record(w, "QAC", 'S', 'N', "0");
+    }
+
+    private static String ref(String subset, String type, String id) {
+        return LOT + ';' + subset + ';' + type + ';' + id;
+    }
+
+    private static BufferedWriter open(Path path) throws IOException {
+        BufferedWriter w = Files.newBufferedWriter(path, StandardCharsets.ISO_8859_1);
+        record(w, "BOM", 'T', ' ', "E0000A01.THF");
+        record(w, "CSE", 'T', ' ', "IRV");
+        return w;
+    }
+
+    private static void close(BufferedWriter w) throws IOException {
+        record(w, "EOM", 'T', ' ', "");
+    }
+
+    private static void block(BufferedWriter w, String type, String id) throws IOException {
+        record(w, "RTY", 'S', 'A', type);
+        record(w, "RID", 'S', 'A', id);
+    }
+
+    private static void record(BufferedWriter w, String name, char nature, char format, String value) throws IOException {
+        w.write(String.format("%s%c%c%02d:%s", name, nature, format, value.length(), value));
+        w.newLine();
+    }
+}
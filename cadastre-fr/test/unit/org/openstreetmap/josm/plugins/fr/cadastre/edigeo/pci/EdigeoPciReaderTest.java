@@ -0,0 +1,359 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.fr.cadastre.edigeo.pci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.plugins.fr.cadastre.download.CadastreDownloadData;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.testutils.annotations.Projection;
+
+/**
+ * Unit tests of {@link EdigeoPciReader}, on small synthetic Edigeo exchanges.
+ */
+@BasicPreferences
+@Projection
+class EdigeoPciReaderTest {
+
+    private static final String IN_MEMORY = "cadastre.edigeo.extract-in-memory";
+
+    private static final String NAME = "E0000A01";
+    private static final String LOT = "LOT01";
+    private static final String GEN = "SeGN";
+    private static final String GEO = "SeGO";
+    private static final String QAL = "SeQL";
+    private static final String DIC = "SeDD";
+    private static final String SCD = "SeSD";
+    private static final String VEC = "SeTA";
+
+    private static final CadastreDownloadData ALL = new CadastreDownloadData(true, true, true, true, true, true, true, true, true);
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Checks that an archive gives the same data set whether it is extracted in memory or to a temporary directory.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testExtractInMemory() throws Exception {
+        Path archive = writeArchive(tempDir.resolve("sheet1"), 700_000, 4, null);
+
+        DataSet inMemory = parse(archive, true);
+        DataSet onDisk = parse(archive, false);
+
+        assertEquals(4, inMemory.getWays().size());
+        assertEquals(describe(onDisk), describe(inMemory));
+    }
+
+    /**
+     * Checks that several sheets loaded in parallel give the same data set in both extraction modes,
+     * and the same as the sheets loaded one by one.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testParallelMerge() throws Exception {
+        List<Path> archives = Arrays.asList(
+                writeArchive(tempDir.resolve("sheet1"), 700_000, 3, null),
+                writeArchive(tempDir.resolve("sheet2"), 701_000, 5, null),
+                writeArchive(tempDir.resolve("sheet3"), 702_000, 2, null));
+
+        DataSet inMemory = parse(archives, true);
+        DataSet onDisk = parse(archives, false);
+
+        List<String> expected = new ArrayList<>();
+        for (Path archive : archives) {
+            expected.addAll(describe(parse(archive, false)));
+        }
+        Collections.sort(expected);
+
+        assertEquals(10, inMemory.getWays().size());
+        assertEquals(expected, describe(onDisk));
+        assertEquals(expected, describe(inMemory));
+    }
+
+    /**
+     * Checks that a file missing from an archive extracted in memory is not read from the directory of the archive.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testMissingFileInArchive() throws Exception {
+        Path dir = tempDir.resolve("sheet1");
+        Path archive = writeArchive(dir, 700_000, 1, NAME + VEC + ".VEC");
+        // Same name as the missing file, next to the archive
+        writeFiles(dir, 710_000, 1, null);
+
+        IOException e = assertThrows(IOException.class, () -> parse(archive, true));
+        assertTrue(e.getMessage().contains(NAME + VEC + ".VEC"), e.getMessage());
+    }
+
+    private static DataSet parse(Path archive, boolean inMemory) throws Exception {
+        Config.getPref().putBoolean(IN_MEMORY, inMemory);
+        return new EdigeoPciReader().parse(archive, ALL, NullProgressMonitor.INSTANCE);
+    }
+
+    private static DataSet parse(List<Path> archives, boolean inMemory) throws Exception {
+        Config.getPref().putBoolean(IN_MEMORY, inMemory);
+        return new EdigeoPciReader().parse(archives, ALL, NullProgressMonitor.INSTANCE);
+    }
+
+    /**
+     * Describes the primitives of a data set by their tags and coordinates, ignoring their ids.
+     */
+    private static List<String> describe(DataSet ds) {
+        List<String> result = ds.allPrimitives().stream().map(EdigeoPciReaderTest::describe).sorted().collect(Collectors.toList());
+        assertFalse(result.isEmpty());
+        return result;
+    }
+
+    private static String describe(OsmPrimitive p) {
+        StringBuilder sb = new StringBuilder();
+        if (p instanceof Node) {
+            Node n = (Node) p;
+            sb.append("node ").append(n.lat()).append(',').append(n.lon());
+        } else if (p instanceof Way) {
+            sb.append("way");
+            for (Node n : ((Way) p).getNodes()) {
+                sb.append(' ').append(n.lat()).append(',').append(n.lon());
+            }
+        } else {
+            sb.append("relation");
+            for (RelationMember m : ((Relation) p).getMembers()) {
+                sb.append(" [").append(m.getRole()).append(' ').append(describe(m.getMember())).append(']');
+            }
+        }
+        return sb.append(' ').append(p.getKeys()).toString();
+    }
+
+    /**
+     * Writes an exchange of square parcels as a tar.bz2 archive.
+     * @param dir directory of the archive
+     * @param x east coordinate of the first parcel
+     * @param parcels number of parcels
+     * @param missing name of a file to leave out of the archive, or {@code null}
+     * @return path of the archive
+     */
+    private static Path writeArchive(Path dir, double x, int parcels, String missing) throws IOException {
+        Path content = Files.createDirectories(dir.resolve("content"));
+        writeFiles(content, x, parcels, missing);
+        Path archive = dir.resolve(NAME + ".tar.bz2");
+        try (OutputStream out = Files.newOutputStream(archive);
+             TarArchiveOutputStream tar = new TarArchiveOutputStream(new BZip2CompressorOutputStream(out))) {
+            List<Path> files;
+            try (Stream<Path> list = Files.list(content)) {
+                files = list.sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                TarArchiveEntry entry = new TarArchiveEntry(file.getFileName().toString());
+                entry.setSize(Files.size(file));
+                tar.putArchiveEntry(entry);
+                Files.copy(file, tar);
+                tar.closeArchiveEntry();
+            }
+        }
+        return archive;
+    }
+
+    private static void writeFiles(Path dir, double x, int parcels, String missing) throws IOException {
+        write(dir, NAME + ".THF", missing, EdigeoPciReaderTest::writeThf);
+        write(dir, NAME + GEN + ".GEN", missing, w -> writeGen(w, x, parcels));
+        write(dir, NAME + GEO + ".GEO", missing, EdigeoPciReaderTest::writeGeo);
+        write(dir, NAME + QAL + ".QAL", missing, w -> { });
+        write(dir, NAME + DIC + ".DIC", missing, EdigeoPciReaderTest::writeDic);
+        write(dir, NAME + SCD + ".SCD", missing, EdigeoPciReaderTest::writeScd);
+        write(dir, NAME + VEC + ".VEC", missing, w -> writeVec(w, x, parcels));
+    }
+
+    @FunctionalInterface
+    private interface Writer {
+        void write(BufferedWriter w) throws IOException;
+    }
+
+    private static void write(Path dir, String name, String missing, Writer writer) throws IOException {
+        if (!name.equals(missing)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (BufferedWriter w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.ISO_8859_1))) {
+                record(w, "BOM", 'T', ' ', NAME + ".THF");
+                record(w, "CSE", 'T', ' ', "IRV");
+                writer.write(w);
+                record(w, "EOM", 'T', ' ', "");
+            }
+            Files.write(dir.resolve(name), out.toByteArray());
+        }
+    }
+
+    private static void writeThf(BufferedWriter w) throws IOException {
+        block(w, "GTS", "Support");
+        record(w, "AUT", 'S', 'A', "Test");
+        record(w, "ADR", 'S', 'A', "Test");
+        record(w, "LOC", 'S', 'N', "1");
+        record(w, "VOC", 'S', 'N', "0");
+        record(w, "SEC", 'S', 'N', "7");
+        record(w, "VER", 'S', 'A', "PE12");
+        record(w, "TRL", 'S', 'A', "Test");
+        record(w, "EDN", 'S', 'N', "1");
+        block(w, "GTL", LOT);
+        record(w, "LON", 'S', 'A', NAME);
+        record(w, "GNN", 'S', 'A', GEN);
+        record(w, "GNI", 'S', 'A', GEN);
+        record(w, "GON", 'S', 'A', GEO);
+        record(w, "GOI", 'S', 'A', GEO);
+        record(w, "QAN", 'S', 'A', QAL);
+        record(w, "QAI", 'S', 'A', QAL);
+        record(w, "DIN", 'S', 'A', DIC);
+        record(w, "DII", 'S', 'A', DIC);
+        record(w, "SCN", 'S', 'A', SCD);
+        record(w, "SCI", 'S', 'A', SCD);
+        record(w, "GDC", 'S', 'N', "1");
+        record(w, "GDN", 'S', 'A', VEC);
+        record(w, "GDI", 'S', 'A', VEC);
+    }
+
+    private static void writeGen(BufferedWriter w, double x, int parcels) throws IOException {
+        block(w, "DEG", "Emprise");
+        record(w, "CM1", 'C', 'C', coordinates(x, 6_600_000));
+        record(w, "CM2", 'C', 'C', coordinates(x + 20 * parcels, 6_600_010));
+        block(w, "GSE", VEC);
+        record(w, "STR", 'S', 'N', "1");
+    }
+
+    private static void writeGeo(BufferedWriter w) throws IOException {
+        block(w, "GEO", "Reference");
+        record(w, "RET", 'S', 'A', "MAP");
+        record(w, "REL", 'S', 'A', "LAMB93");
+        record(w, "DIM", 'S', 'N', "2");
+        record(w, "ALS", 'S', 'N', "2");
+        record(w, "UNH", 'S', 'A', "M");
+    }
+
+    private static void writeDic(BufferedWriter w) throws IOException {
+        block(w, "DID", "PARCELLE");
+        record(w, "LAB", 'S', 'T', "PARCELLE");
+        block(w, "DIA", "IDU");
+        record(w, "LAB", 'S', 'T', "IDU");
+        record(w, "CAT", 'S', 'A', "P");
+        record(w, "TYP", 'S', 'A', "A");
+        block(w, "DIR", "RCO");
+        record(w, "LAB", 'S', 'T', "RCO");
+        record(w, "CAT", 'S', 'A', "P");
+    }
+
+    private static void writeScd(BufferedWriter w) throws IOException {
+        block(w, "ATT", "IDU_id");
+        record(w, "DIP", 'C', 'P', ref(DIC, "DIA", "IDU"));
+        block(w, "OBJ", "PARCELLE_id");
+        record(w, "DIP", 'C', 'P', ref(DIC, "DID", "PARCELLE"));
+        record(w, "KND", 'S', 'A', "ARE");
+        record(w, "AAC", 'S', 'N', "1");
+        record(w, "AAP", 'C', 'P', ref(SCD, "ATT", "IDU_id"));
+        record(w, "QAC", 'S', 'N', "0");
+        block(w, "PGE", "Face");
+        record(w, "KND", 'S', 'A', "FAC");
+        block(w, "PGE", "Arc");
+        record(w, "KND", 'S', 'A', "ARC");
+        relationDef(w, "ID_S_RCO_FAC_SEMANTIQUE", "IDB", ref(SCD, "OBJ", "PARCELLE_id"), ref(SCD, "PGE", "Face"));
+        relationDef(w, "ID_S_RCO_FAC_GAUCHE", "LPO", ref(SCD, "PGE", "Arc"), ref(SCD, "PGE", "Face"));
+    }
+
+    private static void relationDef(BufferedWriter w, String id, String kind, String ref1, String ref2) throws IOException {
+        block(w, "REL", id);
+        record(w, "KND", 'S', 'A', kind);
+        record(w, "CA1", 'S', 'N', "2");
+        record(w, "CA2", 'S', 'N', "2");
+        record(w, "SCC", 'S', 'N', "2");
+        record(w, "SCP", 'C', 'P', ref1);
+        record(w, "OCC", 'S', 'N', "1");
+        record(w, "SCP", 'C', 'P', ref2);
+        record(w, "OCC", 'S', 'N', "1");
+        record(w, "AAC", 'S', 'N', "0");
+        record(w, "QAC", 'S', 'N', "0");
+    }
+
+    private static void writeVec(BufferedWriter w, double x, int parcels) throws IOException {
+        for (int i = 0; i < parcels; i++) {
+            double px = x + 20 * i;
+            double py = 6_600_000;
+            block(w, "PAR", "Arc_" + i);
+            record(w, "SCP", 'C', 'P', ref(SCD, "PGE", "Arc"));
+            record(w, "TYP", 'S', 'N', "1");
+            record(w, "PTC", 'S', 'N', "5");
+            for (double[] p : new double[][] {{px, py}, {px + 10, py}, {px + 10, py + 10}, {px, py + 10}, {px, py}}) {
+                record(w, "COR", 'C', 'C', coordinates(p[0], p[1]));
+            }
+            record(w, "ATC", 'S', 'N', "0");
+            record(w, "QAC", 'S', 'N', "0");
+            block(w, "PFE", "Face_" + i);
+            record(w, "SCP", 'C', 'P', ref(SCD, "PGE", "Face"));
+            record(w, "ATC", 'S', 'N', "0");
+            record(w, "QAC", 'S', 'N', "0");
+            block(w, "FEA", "Objet_" + i);
+            record(w, "SCP", 'C', 'P', ref(SCD, "OBJ", "PARCELLE_id"));
+            record(w, "ATC", 'S', 'N', "1");
+            record(w, "ATP", 'C', 'P', ref(SCD, "ATT", "IDU_id"));
+            record(w, "ATV", 'S', 'T', String.format("%04d", i));
+            record(w, "QAC", 'S', 'N', "0");
+        }
+        for (int i = 0; i < parcels; i++) {
+            relation(w, "Lien_objet_" + i, "ID_S_RCO_FAC_SEMANTIQUE", ref(VEC, "FEA", "Objet_" + i), ref(VEC, "PFE", "Face_" + i));
+            relation(w, "Lien_arc_" + i, "ID_S_RCO_FAC_GAUCHE", ref(VEC, "PAR", "Arc_" + i), ref(VEC, "PFE", "Face_" + i));
+        }
+    }
+
+    private static void relation(BufferedWriter w, String id, String def, String ref1, String ref2) throws IOException {
+        block(w, "LNK", id);
+        record(w, "SCP", 'C', 'P', ref(SCD, "REL", def));
+        record(w, "FTC", 'S', 'N', "2");
+        record(w, "FTP", 'C', 'P', ref1);
+        record(w, "FTP", 'C', 'P', ref2);
+        record(w, "ATC", 'S', 'N', "0");
+        record(w, "QAC", 'S', 'N', "0");
+    }
+
+    private static String coordinates(double x, double y) {
+        return "+" + x + ";+" + y + ";";
+    }
+
+    private static String ref(String subset, String type, String id) {
+        return LOT + ';' + subset + ';' + type + ';' + id;
+    }
+
+    private static void block(BufferedWriter w, String type, String id) throws IOException {
+        record(w, "RTY", 'S', 'A', type);
+        record(w, "RID", 'S', 'A', id);
+    }
+
+    private static void record(BufferedWriter w, String name, char nature, char format, String value) throws IOException {
+        w.write(String.format("%s%c%c%02d:%s", name, nature, format, value.length(), value));
+        w.newLine();
+    }
+}
@@ -0,0 +1,214 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.fr.cadastre.wms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openstreetmap.josm.data.coor.EastNorth;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit tests of {@link TiledCacheFile}.
+ */
+@BasicPreferences
+class TiledCacheFileTest {
+
+    @TempDir
+    File tempDir;
+
+    private final List<WMSLayer> layers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (WMSLayer layer : layers) {
+            layer.destroy();
+        }
+    }
+
+    private WMSLayer createLayer(String location, String codeCommune, int lambertZone) {
+        WMSLayer layer = new WMSLayer(location, codeCommune, lambertZone);
+        layers.add(layer);
+        return layer;
+    }
+
+    /**
+     * Creates an image with a different color for each pixel, and a transparent pixel.
+     */
+    private static BufferedImage createImage(int width, int height, int seed) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, 0xff000000 | (seed * 0x1234567 + x * 0x010307 + y * 0x070103) & 0xffffff);
+            }
+        }
+        image.setRGB(0, 0, 0);
+        return image;
+    }
+
+    /**
+     * Creates a georeferenced image, side by side with the other images of the same seed.
+     */
+    private static GeorefImage createGeorefImage(WMSLayer layer, int seed) {
+        EastNorth min = new EastNorth(1000 + 100 * seed, 2000);
+        EastNorth max = new EastNorth(1000 + 100 * seed + 80, 2000 + 60);
+        return new GeorefImage(createImage(20 + seed, 15, seed), min, max, layer);
+    }
+
+    private static void assertSameImage(GeorefImage expected, GeorefImage actual) {
+        assertEquals(expected.min, actual.min);
+        assertEquals(expected.max, actual.max);
+        assertEquals(expected.angle, actual.angle, 0);
+        assertEquals(Arrays.asList(expected.orgRaster), Arrays.asList(actual.orgRaster));
+        assertEquals(Arrays.asList(expected.orgCroppedRaster), Arrays.asList(actual.orgCroppedRaster));
+        assertEquals(expected.imageOriginalWidth, actual.imageOriginalWidth);
+        assertEquals(expected.imageOriginalHeight, actual.imageOriginalHeight);
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        BufferedImage expectedImage = expected.getImage();
+        BufferedImage actualImage = actual.getImage();
+        assertEquals(expectedImage.getWidth(), actualImage.getWidth());
+        assertEquals(expectedImage.getHeight(), actualImage.getHeight());
+        for (int x = 0; x < expectedImage.getWidth(); x++) {
+            for (int y = 0; y < expectedImage.getHeight(); y++) {
+                assertEquals(expectedImage.getRGB(x, y), actualImage.getRGB(x, y), x + "," + y);
+            }
+        }
+    }
+
+    private List<GeorefImage> load(File file) throws IOException {
+        WMSLayer layer = createLayer("", "", -1);
+        assertTrue(TiledCacheFile.load(file, layer, -1));
+        return layer.getImages();
+    }
+
+    /**
+     * Images saved in two chunks are loaded with their georeferencing and decoded with the same pixels.
+     * @throws IOException if any I/O error occurs
+     */
+    @Test
+    void testRoundTrip() throws IOException {
+        File file = new File(tempDir, "cache.cwms");
+        WMSLayer layer = createLayer("TEST", "ZZ001", 0);
+        layer.communeBBox = new EastNorthBound(new EastNorth(900, 1900), new EastNorth(1500, 2200));
+        List<GeorefImage> images = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            images.add(createGeorefImage(layer, i));
+        }
+        // a rotated and cropped raster image, whose original raster is not its bounding box
+        GeorefImage raster = images.get(1);
+        raster.angle = 0.1;
+        for (int i = 0; i < 4; i++) {
+            raster.orgRaster[i] = raster.orgRaster[i].rotate(new EastNorth(1140, 2030), 0.1);
+            raster.orgCroppedRaster[i] = raster.orgRaster[i].add(i < 2 ? 2 : -2, 1);
+        }
+        raster.imageOriginalWidth = 30;
+        raster.imageOriginalHeight = 25;
+
+        TiledCacheFile.create(file, layer, images.subList(0, 2));
+        TiledCacheFile.append(file, images.subList(2, 3));
+        assertTrue(TiledCacheFile.isTiledCacheFile(file));
+
+        WMSLayer loaded = createLayer("", "", -1);
+        assertTrue(TiledCacheFile.load(file, loaded, 0));
+        assertEquals("TEST", loaded.getLocation());
+        assertEquals("ZZ001", loaded.getCodeCommune());
+        assertEquals(0, loaded.getLambertZone());
+        assertEquals(layer.communeBBox.min, loaded.communeBBox.min);
+        assertEquals(layer.communeBBox.max, loaded.communeBBox.max);
+        assertEquals(images.size(), loaded.getImages().size());
+        for (int i = 0; i < images.size(); i++) {
+            assertSameImage(images.get(i), loaded.getImages().get(i));
+        }
+
+        // the saved images can be released from memory and decoded from the file again
+        GeorefImage saved = images.get(2);
+        BufferedImage original = saved.getImage();
+        saved.release();
+        BufferedImage decoded = saved.getImage();
+        assertFalse(original == decoded);
+        assertEquals(original.getRGB(3, 4), decoded.getRGB(3, 4));
+    }
+
+    /**
+     * A chunk that was not entirely written is ignored, the previous chunks are still loaded.
+     * @throws IOException if any I/O error occurs
+     */
+    @Test
+    void testTruncatedLastChunk() throws IOException {
+        File file = new File(tempDir, "cache.cwms");
+        WMSLayer layer = createLayer("TEST", "ZZ001", 0);
+        List<GeorefImage> first = Arrays.asList(createGeorefImage(layer, 0), createGeorefImage(layer, 1));
+        TiledCacheFile.create(file, layer, first);
+        long firstLength = file.length();
+        TiledCacheFile.append(file, Arrays.asList(createGeorefImage(layer, 2), createGeorefImage(layer, 3)));
+        long length = file.length();
+
+        // cut in the encoded images, in the index, and in the number of images of the last chunk
+        for (long cut : new long[] {length - 1, firstLength + 100, firstLength + 2}) {
+            File truncated = new File(tempDir, "truncated" + cut + ".cwms");
+            Files.copy(file.toPath(), truncated.toPath());
+            try (RandomAccessFile raf = new RandomAccessFile(truncated, "rw")) {
+                raf.setLength(cut);
+            }
+            List<GeorefImage> images = load(truncated);
+            assertEquals(first.size(), images.size(), "cut at " + cut);
+            for (int i = 0; i < first.size(); i++) {
+                assertSameImage(first.get(i), images.get(i));
+            }
+        }
+    }
+
+    /**
+     * A truncated chunk is removed when the file is loaded, so that the chunks appended afterwards can be loaded.
+     * @throws IOException if any I/O error occurs
+     */
+    @Test
+    void testAppendAfterTruncatedChunk() throws IOException {
+        File file = new File(tempDir, "cache.cwms");
+        WMSLayer layer = createLayer("TEST", "ZZ001", 0);
+        List<GeorefImage> first = Arrays.asList(createGeorefImage(layer, 0), createGeorefImage(layer, 1));
+        TiledCacheFile.create(file, layer, first);
+        long firstLength = file.length();
+        TiledCacheFile.append(file, Arrays.asList(createGeorefImage(layer, 2), createGeorefImage(layer, 3)));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+
+        assertEquals(first.size(), load(file).size());
+        assertEquals(firstLength, file.length());
+
+        GeorefImage last = createGeorefImage(layer, 4);
+        TiledCacheFile.append(file, Arrays.asList(last));
+        List<GeorefImage> images = load(file);
+        assertEquals(first.size() + 1, images.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertSameImage(first.get(i), images.get(i));
+        }
+        assertSameImage(last, images.get(first.size()));
+    }
+
+    /**
+     * A file that is not a tiled cache file is detected.
+     * @throws IOException if any I/O error occurs
+     */
+    @Test
+    void testIsTiledCacheFile() throws IOException {
+        File file = new File(tempDir, "other.cwms");
+        Files.write(file.toPath(), new byte[] {(byte) 0xac, (byte) 0xed, 0, 5, 1, 2});
+        assertFalse(TiledCacheFile.isTiledCacheFile(file));
+        assertFalse(TiledCacheFile.isTiledCacheFile(new File(tempDir, "missing.cwms")));
+    }
+}
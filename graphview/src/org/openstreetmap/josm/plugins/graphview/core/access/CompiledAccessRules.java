@@ -0,0 +1,318 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.graphview.core.access;
+
+import static org.openstreetmap.josm.plugins.graphview.core.access.AccessType.UNDEFINED;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openstreetmap.josm.plugins.graphview.core.data.MapBasedTagGroup;
+import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
+import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
+
+/**
+ * an {@link AccessRuleset} prepared for evaluating tags for one set of {@link AccessParameters}.
+ *
+ * Only tags with keys that are used by the ruleset (base tags, implications,
+ * access classes and oneway) are relevant. These tags are mapped to numeric ids,
+ * and the result of applying the implications and the access hierarchy is
+ * remembered for each distinct set of relevant tags. Objects with the same
+ * relevant tagging, such as most residential roads, are therefore only evaluated once.
+ */
+public class CompiledAccessRules {
+
+    /** number of remembered tag sets, the cache is cleared when it grows beyond that */
+    private static final int MAX_CACHED_TAG_SETS = 10000;
+
+    /** access-related result of evaluating a set of tags */
+    public static final class TagSetDecision {
+
+        private final boolean baseTagged;
+        private final String onewayValue;
+        private final boolean accessTypeUsable;
+
+        TagSetDecision(boolean baseTagged, String onewayValue, boolean accessTypeUsable) {
+            this.baseTagged = baseTagged;
+            this.onewayValue = onewayValue;
+            this.accessTypeUsable = accessTypeUsable;
+        }
+
+        /** returns true if the tags contain a base tag of the ruleset */
+        public boolean isBaseTagged() {
+            return baseTagged;
+        }
+
+        /** returns the value of the oneway key after applying implications, may be null */
+        public String getOnewayValue() {
+            return onewayValue;
+        }
+
+        /** returns true if the access type for the tags is usable with the access parameters */
+        public boolean isAccessTypeUsable() {
+            return accessTypeUsable;
+        }
+    }
+
+    private final AccessParameters parameters;
+
+    private final List<Implication> implications;
+    private final Set<Tag> baseTags;
+
+    /** access hierarchy of the parameters' access class, in the order of decreasing specificness */
+    private final List<String> accessClasses;
+
+    /** ids of relevant keys; null if all keys are relevant */
+    private final Map<String, Integer> keyIds;
+    private final Map<String, Integer> valueIds = new HashMap<>();
+
+    private final Map<TagSetKey, TagSetDecision> decisions = new HashMap<>();
+
+    private final TagSetDecision emptyTagsDecision;
+
+    /**
+     * @param ruleset     ruleset that is used for evaluation; != null
+     * @param parameters  parameters object that describes the vehicle
+     *                    and situation to evaluate access for; != null
+     */
+    public CompiledAccessRules(AccessRuleset ruleset, AccessParameters parameters) {
+        assert ruleset != null && parameters != null;
+
+        this.parameters = parameters;
+        this.implications = ruleset.getImplications();
+        this.baseTags = new HashSet<>(ruleset.getBaseTags());
+        this.accessClasses = ruleset.getAccessHierarchyAncestors(parameters.getAccessClass());
+
+        /* collect the keys that can influence the result */
+
+        Set<String> relevantKeys = new HashSet<>();
+        relevantKeys.add("oneway");
+        relevantKeys.addAll(accessClasses);
+        for (Tag baseTag : baseTags) {
+            relevantKeys.add(baseTag.key);
+        }
+        for (Implication implication : implications) {
+            Collection<String> implicationKeys = implication.getKeys();
+            if (implicationKeys == null) {
+                relevantKeys = null;
+                break;
+            }
+            relevantKeys.addAll(implicationKeys);
+        }
+
+        if (relevantKeys != null) {
+            keyIds = new HashMap<>();
+            for (String key : relevantKeys) {
+                keyIds.put(key, keyIds.size());
+            }
+        } else {
+            keyIds = null;
+        }
+
+        emptyTagsDecision = new TagSetDecision(false,
+                applyImplications(new MapBasedTagGroup()).getValue("oneway"),
+                parameters.getAccessTypeUsable(UNDEFINED));
+    }
+
+    /**
+     * returns the evaluation result for a group of tags
+     *
+     * @param tags  tags of a way or node; != null
+     */
+    public synchronized TagSetDecision evaluate(TagGroup tags) {
+
+        if (tags.size() == 0) {
+            return emptyTagsDecision;
+        }
+
+        /* create the key from the ids of the relevant tags */
+
+        long[] tagIds = new long[tags.size()];
+        int relevantTagCount = 0;
+
+        for (Tag tag : tags) {
+            long id = getTagId(tag);
+            if (id >= 0) {
+                tagIds[relevantTagCount++] = id;
+            }
+        }
+
+        tagIds = Arrays.copyOf(tagIds, relevantTagCount);
+        Arrays.sort(tagIds);
+        TagSetKey key = new TagSetKey(tagIds);
+
+        /* evaluate the tags if this hasn't been done for an equal set of tags yet */
+
+        TagSetDecision decision = decisions.get(key);
+
+        if (decision == null) {
+
+            if (decisions.size() >= MAX_CACHED_TAG_SETS) {
+                decisions.clear();
+                valueIds.clear();
+                return evaluate(tags);
+            }
+
+            decision = createDecision(getRelevantTags(tags));
+            decisions.put(key, decision);
+        }
+
+        return decision;
+    }
+
+    /** returns the id of a relevant tag, -1 if the tag is not relevant */
+    private long getTagId(Tag tag) {
+
+        int keyId;
+        if (keyIds != null) {
+            Integer id = keyIds.get(tag.key);
+            if (id == null) {
+                return -1;
+            }
+            keyId = id;
+        } else {
+            keyId = getId(valueIds, tag.key);
+        }
+
+        return (long) keyId << 32 | getId(valueIds, tag.value);
+    }
+
+    private static int getId(Map<String, Integer> ids, String string) {
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = ids.size();
+            ids.put(string, id);
+        }
+        return id;
+    }
+
+    private TagGroup getRelevantTags(TagGroup tags) {
+        if (keyIds == null) {
+            return tags;
+        }
+        Map<String, String> tagMap = new LinkedHashMap<>();
+        for (Tag tag : tags) {
+            if (keyIds.containsKey(tag.key)) {
+                tagMap.put(tag.key, tag.value);
+            }
+        }
+        return new MapBasedTagGroup(tagMap);
+    }
+
+    private TagGroup applyImplications(TagGroup tags) {
+        for (Implication implication : implications) {
+            tags = implication.apply(tags);
+        }
+        return tags;
+    }
+
+    private TagSetDecision createDecision(TagGroup tags) {
+
+        /* check base tagging */
+
+        Tag baseTag = null;
+        for (Tag tag : tags) {
+            if (baseTags.contains(tag)) {
+                baseTag = tag;
+                break;
+            }
+        }
+
+        /* evaluate one-way tagging */
+
+        String onewayValue = applyImplications(tags).getValue("oneway");
+
+        /* evaluate access type */
+
+        Map<String, AccessType> accessTypePerClass = createAccessTypePerClassMap(tags, baseTag);
+
+        AccessType accessType = UNDEFINED;
+        for (String accessClass : accessClasses) {
+            accessType = accessTypePerClass.get(accessClass);
+            if (accessType != UNDEFINED) {
+                break;
+            }
+        }
+
+        return new TagSetDecision(baseTag != null, onewayValue, parameters.getAccessTypeUsable(accessType));
+    }
+
+    private Map<String, AccessType> createAccessTypePerClassMap(TagGroup tags, Tag baseTag) {
+
+        /*
+         * create map and fill with UNDEFINED values
+         * (this also allows to use keySet instead of accessClasses later)
+         */
+
+        Map<String, AccessType> accessTypePerClass = new HashMap<>();
+
+        for (String accessClass : accessClasses) {
+            accessTypePerClass.put(accessClass, UNDEFINED);
+        }
+
+        /* evaluate implied tagging of base tag */
+
+        if (baseTag != null) {
+            setAccessTypesFromTags(accessTypePerClass, applyImplications(new MapBasedTagGroup(baseTag)));
+        }
+
+        /* evaluate implied tagging of other tags */
+
+        Map<String, String> tagMap = new HashMap<>();
+        for (Tag tag : tags) {
+            if (!tag.equals(baseTag)) {
+                tagMap.put(tag.key, tag.value);
+            }
+        }
+
+        setAccessTypesFromTags(accessTypePerClass, applyImplications(new MapBasedTagGroup(tagMap)));
+
+        /* evaluate explicit access tagging */
+
+        setAccessTypesFromTags(accessTypePerClass, tags);
+
+        return accessTypePerClass;
+    }
+
+    /**
+     * adds all access information from a collection of tags to a [access class -> access type] map.
+     * Existing entries will be replaced.
+     */
+    private static void setAccessTypesFromTags(Map<String, AccessType> accessTypePerClass, TagGroup tags) {
+        for (String accessClass : accessTypePerClass.keySet()) {
+            String value = tags.getValue(accessClass);
+            if (value != null) {
+                AccessType accessType = AccessType.getAccessType(value);
+                accessTypePerClass.put(accessClass, accessType);
+            }
+        }
+    }
+
+    /** sorted ids of relevant tags, used as key for remembered decisions */
+    private static final class TagSetKey {
+
+        private final long[] tagIds;
+        private final int hashCode;
+
+        TagSetKey(long[] tagIds) {
+            this.tagIds = tagIds;
+            this.hashCode = Arrays.hashCode(tagIds);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof TagSetKey && Arrays.equals(tagIds, ((TagSetKey) obj).tagIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+}
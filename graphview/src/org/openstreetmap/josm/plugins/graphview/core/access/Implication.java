@@ -1,6 +1,7 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.graphview.core.access;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -54,6 +55,26 @@ public final class Implication {
 
     }
 
+    /**
+     * returns the keys of all tags that can influence the result of {@link #apply(TagGroup)}:
+     * keys used by the condition and keys of implied tags
+     *
+     * @return  collection of keys; null if the implication can depend on any tag
+     */
+    public Collection<String> getKeys() {
+
+        Collection<String> conditionKeys = condition.getKeys();
+        if (conditionKeys == null) {
+            return null;
+        }
+
+        Collection<String> keys = new ArrayList<>(conditionKeys);
+        for (Tag impliedTag : impliedTags) {
+            keys.add(impliedTag.key);
+        }
+        return keys;
+    }
+
     @Override
     public String toString() {
         return condition.toString() + " => " + impliedTags.toString();
@@ -0,0 +1,91 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.graphview.core.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * changes of a {@link DataSource}: the nodes, ways and relations that have been
+ * added, modified or removed since the previous update.
+ *
+ * @param <N>  node type
+ * @param <W>  way type
+ * @param <R>  relation type
+ */
+public class DataSourceDelta<N, W, R> {
+
+    private final Set<N> nodes = new LinkedHashSet<>();
+    private final Set<W> ways = new LinkedHashSet<>();
+    private final Set<R> relations = new LinkedHashSet<>();
+    private final Set<Object> removed = new HashSet<>();
+
+    /**
+     * records a node that has been added, modified or removed
+     * @param node     changed node; != null
+     * @param removed  true if the node is no longer part of the data source
+     */
+    public void addNode(N node, boolean removed) {
+        assert node != null;
+        nodes.add(node);
+        setRemoved(node, removed);
+    }
+
+    /**
+     * records a way that has been added, modified or removed
+     * @param way      changed way; != null
+     * @param removed  true if the way is no longer part of the data source
+     */
+    public void addWay(W way, boolean removed) {
+        assert way != null;
+        ways.add(way);
+        setRemoved(way, removed);
+    }
+
+    /**
+     * records a relation that has been added, modified or removed
+     * @param relation  changed relation; != null
+     * @param removed   true if the relation is no longer part of the data source
+     */
+    public void addRelation(R relation, boolean removed) {
+        assert relation != null;
+        relations.add(relation);
+        setRemoved(relation, removed);
+    }
+
+    private void setRemoved(Object object, boolean isRemoved) {
+        if (isRemoved) {
+            removed.add(object);
+        } else {
+            removed.remove(object);
+        }
+    }
+
+    /** returns all changed nodes, including removed ones; != null */
+    public Collection<N> getNodes() {
+        return Collections.unmodifiableSet(nodes);
+    }
+
+    /** returns all changed ways, including removed ones; != null */
+    public Collection<W> getWays() {
+        return Collections.unmodifiableSet(ways);
+    }
+
+    /** returns all changed relations, including removed ones; != null */
+    public Collection<R> getRelations() {
+        return Collections.unmodifiableSet(relations);
+    }
+
+    /** returns true if a changed node, way or relation is no longer part of the data source */
+    public boolean isRemoved(Object object) {
+        return removed.contains(object);
+    }
+
+    /** returns true if nothing has changed */
+    public boolean isEmpty() {
+        return nodes.isEmpty() && ways.isEmpty() && relations.isEmpty();
+    }
+
+}
@@ -13,4 +13,16 @@ public interface DataSourceObserver {
      * @param dataSource  observed data source that has changed; != null
      */
     void update(DataSource<?, ?, ?, ?> dataSource);
+
+    /**
+     * informs this observer about changes in an observed data source
+     * that are limited to a known set of nodes, ways and relations.
+     * Observers that cannot handle partial updates treat this like any other change.
+     *
+     * @param dataSource  observed data source that has changed; != null
+     * @param delta       the changed nodes, ways and relations of the data source; != null
+     */
+    default void update(DataSource<?, ?, ?, ?> dataSource, DataSourceDelta<?, ?, ?> delta) {
+        update(dataSource);
+    }
 }
@@ -31,6 +31,14 @@ public class JunctionEvaluationGroup extends EvaluationGroup {
         this.segmentNodes = segmentNodes;
     }
 
+    /**
+     * returns all nodes in the group
+     * @return  segment node set; != null
+     */
+    public Set<SegmentNode> getSegmentNodes() {
+        return segmentNodes;
+    }
+
     /**
      * returns all segments that can be used to enter this group.
      * {@link #evaluate(Iterable)} needs be called before this method.
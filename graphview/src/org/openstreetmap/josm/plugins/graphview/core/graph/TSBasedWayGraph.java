@@ -1,13 +1,15 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.graphview.core.graph;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 
 import org.openstreetmap.josm.plugins.graphview.core.property.GraphEdgePropertyType;
@@ -16,6 +18,7 @@ import org.openstreetmap.josm.plugins.graphview.core.transition.Restriction;
 import org.openstreetmap.josm.plugins.graphview.core.transition.Segment;
 import org.openstreetmap.josm.plugins.graphview.core.transition.SegmentNode;
 import org.openstreetmap.josm.plugins.graphview.core.transition.TransitionStructure;
+import org.openstreetmap.josm.plugins.graphview.core.transition.TransitionStructureDelta;
 import org.openstreetmap.josm.plugins.graphview.core.transition.TransitionStructureObserver;
 
 /**
@@ -55,6 +58,10 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
             incomingEdges.add(edge);
         }
 
+        public void removeIncomingEdge(GraphEdge edge) {
+            incomingEdges.remove(edge);
+        }
+
         @Override
         public Collection<GraphEdge> getInboundEdges() {
             return incomingEdges;
@@ -65,6 +72,10 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
             outgoingEdges.add(edge);
         }
 
+        public void removeOutgoingEdge(GraphEdge edge) {
+            outgoingEdges.remove(edge);
+        }
+
         @Override
         public Collection<GraphEdge> getOutboundEdges() {
             return outgoingEdges;
@@ -124,7 +135,34 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
     private final TransitionStructure transitionStructure;
 
     private Collection<GraphNode> nodes;
-    private List<GraphEdge> edges;
+    private Collection<GraphEdge> edges;
+
+    /* evaluation groups and the graph elements created from them,
+     * kept between updates so that changes can be applied incrementally */
+
+    private final Map<SegmentNode, JunctionEvaluationGroup> junctionGroupMap = new HashMap<>();
+    private final Map<Segment, ConnectorEvaluationGroup> connectorGroupMap = new HashMap<>();
+    private final Map<JunctionEvaluationGroup, Collection<GraphNodeImpl>> groupNodeMap = new HashMap<>();
+    private final Map<EvaluationGroup, Collection<GraphEdge>> groupEdgeMap = new HashMap<>();
+
+    /** restrictions, by the nodes that they put into the same junction evaluation group */
+    private final Map<SegmentNode, Collection<Restriction>> nodeRestrictionMap = new HashMap<>();
+
+    //map from Segments to GraphNodes;
+    //for those GraphNodes representing an "approaching node on segment" state
+    private final Map<Segment, GraphNodeImpl> segment2GNMap_approaching = new HashMap<>();
+
+    //map from Segments to GraphNodes;
+    //for those GraphNodes representing a "leaving node on segment" state
+    private final Map<Segment, GraphNodeImpl> segment2GNMap_leaving = new HashMap<>();
+
+    //map from SegmentNodes to GraphNode collections;
+    //for those GraphNodes representing an "approaching node on segment" state
+    private final Map<SegmentNode, Collection<GraphNodeImpl>> segNode2GNMap_approaching = new HashMap<>();
+
+    //map from SegmentNodes to GraphNodes collections;
+    //for those GraphNodes representing a "leaving node on segment" state
+    private final Map<SegmentNode, Collection<GraphNodeImpl>> segNode2GNMap_leaving = new HashMap<>();
 
     /**
      * create a WayGraph based on a {@link TransitionStructure}
@@ -151,27 +189,176 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
 
     private void createNodesAndEdges() {
 
-        Collection<EvaluationGroup> evaluationGroups =
-            createEvaluationGroups(transitionStructure);
+        nodes = new LinkedHashSet<>();
+        edges = new LinkedHashSet<>();
+
+        junctionGroupMap.clear();
+        connectorGroupMap.clear();
+        groupNodeMap.clear();
+        groupEdgeMap.clear();
+        nodeRestrictionMap.clear();
+        segment2GNMap_approaching.clear();
+        segment2GNMap_leaving.clear();
+        segNode2GNMap_approaching.clear();
+        segNode2GNMap_leaving.clear();
+
+        for (Restriction restriction : transitionStructure.getRestrictions()) {
+            addRestriction(restriction);
+        }
+
+        createNodesAndEdges(transitionStructure.getNodes(), transitionStructure.getSegments());
+    }
+
+    /**
+     * updates nodes and edges after a change of the transition structure.
+     * Only the evaluation groups containing changed segments, segment nodes or restrictions
+     * are evaluated again, and only their nodes and edges are replaced.
+     *
+     * @return  the removed and added graph nodes and edges; != null
+     */
+    private WayGraphDelta updateNodesAndEdges(TransitionStructureDelta delta) {
+
+        for (Restriction restriction : delta.getRemovedRestrictions()) {
+            removeRestriction(restriction);
+        }
+        for (Restriction restriction : delta.getAddedRestrictions()) {
+            addRestriction(restriction);
+        }
+
+        /* find the nodes whose junction groups need to be created again:
+         * changed nodes, along with all nodes sharing an old group or a restriction with them */
+
+        Collection<Segment> changedSegments = new ArrayList<>(delta.getRemovedSegments());
+        changedSegments.addAll(delta.getAddedSegments());
+
+        Queue<SegmentNode> nodeQueue = new ArrayDeque<>();
+        nodeQueue.addAll(delta.getRemovedNodes());
+        nodeQueue.addAll(delta.getAddedNodes());
+        for (Segment segment : changedSegments) {
+            nodeQueue.add(segment.getNode1());
+            nodeQueue.add(segment.getNode2());
+        }
+        for (Restriction restriction : delta.getRemovedRestrictions()) {
+            nodeQueue.addAll(getRestrictionNodes(restriction));
+        }
+        for (Restriction restriction : delta.getAddedRestrictions()) {
+            nodeQueue.addAll(getRestrictionNodes(restriction));
+        }
+
+        Set<SegmentNode> affectedNodes = new HashSet<>();
+        while (!nodeQueue.isEmpty()) {
+            SegmentNode node = nodeQueue.poll();
+            if (affectedNodes.add(node)) {
+                if (junctionGroupMap.containsKey(node)) {
+                    nodeQueue.addAll(junctionGroupMap.get(node).getSegmentNodes());
+                }
+                if (nodeRestrictionMap.containsKey(node)) {
+                    for (Restriction restriction : nodeRestrictionMap.get(node)) {
+                        nodeQueue.addAll(getRestrictionNodes(restriction));
+                    }
+                }
+            }
+        }
+
+        /* find the segments whose connector groups need to be created again:
+         * changed segments and segments at affected nodes, along with the rest of their old groups */
+
+        Set<Segment> affectedSegments = new HashSet<>(changedSegments);
+        for (SegmentNode node : affectedNodes) {
+            affectedSegments.addAll(node.getInboundSegments());
+            affectedSegments.addAll(node.getOutboundSegments());
+        }
+        for (Segment segment : new ArrayList<>(affectedSegments)) {
+            if (connectorGroupMap.containsKey(segment)) {
+                affectedSegments.addAll(connectorGroupMap.get(segment).getSegments());
+            }
+        }
+
+        /* remove old groups with their graph nodes and edges */
 
-        for (EvaluationGroup evaluationGroup : evaluationGroups) {
-            evaluationGroup.evaluate(transitionStructure.getRestrictions());
+        Collection<GraphNode> removedGraphNodes = new ArrayList<>();
+        Collection<GraphEdge> removedGraphEdges = new ArrayList<>();
+
+        for (SegmentNode node : affectedNodes) {
+            JunctionEvaluationGroup junctionEG = junctionGroupMap.remove(node);
+            if (junctionEG != null) {
+                removeNodesAndEdges(junctionEG, removedGraphNodes, removedGraphEdges);
+            }
         }
+        for (Segment segment : affectedSegments) {
+            ConnectorEvaluationGroup connectorEG = connectorGroupMap.remove(segment);
+            if (connectorEG != null) {
+                removeNodesAndEdges(connectorEG, removedGraphNodes, removedGraphEdges);
+            }
+        }
+
+        /* create new groups for the elements that still exist */
+
+        affectedNodes.removeAll(delta.getRemovedNodes());
+        affectedSegments.removeAll(delta.getRemovedSegments());
+
+        Collection<GraphNode> addedGraphNodes = new ArrayList<>();
+        Collection<GraphEdge> addedGraphEdges = new ArrayList<>();
 
-        createNodesAndEdgesFromEvaluationGroups(evaluationGroups);
+        for (EvaluationGroup evaluationGroup : createNodesAndEdges(affectedNodes, affectedSegments)) {
+            Collection<GraphNodeImpl> groupNodes = groupNodeMap.get(evaluationGroup);
+            if (groupNodes != null) {
+                addedGraphNodes.addAll(groupNodes);
+            }
+            Collection<GraphEdge> groupEdges = groupEdgeMap.get(evaluationGroup);
+            if (groupEdges != null) {
+                addedGraphEdges.addAll(groupEdges);
+            }
+        }
 
-        evaluationGroups = null;
+        return new WayGraphDelta(removedGraphNodes, addedGraphNodes, removedGraphEdges, addedGraphEdges);
     }
 
-    private static Collection<EvaluationGroup> createEvaluationGroups(
-            TransitionStructure transitionStructure) {
+    /**
+     * creates and evaluates the evaluation groups for some segment nodes and segments,
+     * then creates the graph nodes and edges for these groups.
+     * Groups of all other segment nodes and segments must already exist.
+     *
+     * @param segmentNodes  segment nodes without junction group;
+     *                      includes all nodes sharing a restriction with one of them; != null
+     * @param segments      segments without connector group;
+     *                      includes all segments at one of the segmentNodes; != null
+     * @return  the created evaluation groups; != null
+     */
+    private Collection<EvaluationGroup> createNodesAndEdges(
+            Collection<SegmentNode> segmentNodes, Collection<Segment> segments) {
+
+        Collection<JunctionEvaluationGroup> junctionGroups = createJunctionEvaluationGroups(segmentNodes);
+        Collection<ConnectorEvaluationGroup> connectorGroups = createConnectorEvaluationGroups(segments);
+
+        for (JunctionEvaluationGroup junctionEG : junctionGroups) {
+            junctionEG.evaluate(getRestrictions(junctionEG.getSegmentNodes()));
+        }
+        for (ConnectorEvaluationGroup connectorEG : connectorGroups) {
+            Set<SegmentNode> connectorNodes = new HashSet<>();
+            for (Segment segment : connectorEG.getSegments()) {
+                connectorNodes.add(segment.getNode1());
+                connectorNodes.add(segment.getNode2());
+            }
+            connectorEG.evaluate(getRestrictions(connectorNodes));
+        }
+
+        createNodesAndEdgesFromEvaluationGroups(junctionGroups, connectorGroups);
+
+        Collection<EvaluationGroup> evaluationGroups = new ArrayList<>(junctionGroups);
+        evaluationGroups.addAll(connectorGroups);
+        return evaluationGroups;
+    }
+
+    private Collection<JunctionEvaluationGroup> createJunctionEvaluationGroups(
+            Collection<SegmentNode> segmentNodes) {
 
         Map<SegmentNode, Set<SegmentNode>> nodeSetMap =
             new HashMap<>();
 
         /* first step: everything that is part of the same restriction goes into the same set */
 
-        for (Restriction restriction : transitionStructure.getRestrictions()) {
+        for (Restriction restriction : getRestrictions(segmentNodes)) {
 
             /* group every node in via segments (which includes the
              * last node of from and the first node of to) into a set */
@@ -193,7 +380,7 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
         /* second step: create own sets for each junction and end point
          * (node connected with more than / less than two nodes). */
 
-        for (SegmentNode node : transitionStructure.getNodes()) {
+        for (SegmentNode node : segmentNodes) {
 
             if (!nodeSetMap.containsKey(node)
                     && !isConnectedWithExactly2Nodes(node)) {
@@ -204,6 +391,25 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
 
         }
 
+        /* create EvaluationGroup objects */
+
+        Set<Set<SegmentNode>> nodeSets = new HashSet<>(nodeSetMap.values());
+        Collection<JunctionEvaluationGroup> evaluationGroups = new ArrayList<>(nodeSets.size());
+
+        for (Set<SegmentNode> nodeSet : nodeSets) {
+            JunctionEvaluationGroup junctionEG = new JunctionEvaluationGroup(nodeSet);
+            for (SegmentNode node : nodeSet) {
+                junctionGroupMap.put(node, junctionEG);
+            }
+            evaluationGroups.add(junctionEG);
+        }
+
+        return evaluationGroups;
+    }
+
+    private Collection<ConnectorEvaluationGroup> createConnectorEvaluationGroups(
+            Collection<Segment> segments) {
+
         /* third step: create segment sets for all segments that are not in one of the node sets
          * (that is, at least one node is not part of a junction evaluation group
          *  or the nodes are part of different junction evaluation groups)  */
@@ -211,18 +417,18 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
         Map<Segment, Set<Segment>> segmentSetMap =
             new HashMap<>();
 
-        for (Segment segment : transitionStructure.getSegments()) {
+        for (Segment segment : segments) {
 
             SegmentNode node1 = segment.getNode1();
             SegmentNode node2 = segment.getNode2();
 
-            if (!nodeSetMap.containsKey(node1) || !nodeSetMap.containsKey(node2)
-                    || nodeSetMap.get(node1) != nodeSetMap.get(node2)) {
+            if (!junctionGroupMap.containsKey(node1) || !junctionGroupMap.containsKey(node2)
+                    || junctionGroupMap.get(node1) != junctionGroupMap.get(node2)) {
 
                 createSetIfHasNone(segment, segmentSetMap);
 
                 for (Segment subsequentSegment : segment.getNode2().getOutboundSegments()) {
-                    if (!nodeSetMap.containsKey(node2)
+                    if (!junctionGroupMap.containsKey(node2)
                             || subsequentSegment.getNode2() == node1) {
                         putInSameSet(subsequentSegment, segment, segmentSetMap);
                     }
@@ -237,100 +443,75 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
 
         /* create EvaluationGroup objects */
 
-        Collection<EvaluationGroup> evaluationGroups =
-            new ArrayList<>(nodeSetMap.size() + segmentSetMap.size());
+        Set<Set<Segment>> segmentSets = new HashSet<>(segmentSetMap.values());
+        Collection<ConnectorEvaluationGroup> evaluationGroups = new ArrayList<>(segmentSets.size());
 
-        Set<Set<SegmentNode>> nodeSets = new HashSet<>(nodeSetMap.values());
-        for (Set<SegmentNode> nodeSet : nodeSets) {
-            evaluationGroups.add(new JunctionEvaluationGroup(nodeSet));
-        }
-
-        HashSet<Set<Segment>> hashSets = new HashSet<>(segmentSetMap.values());
-        for (Set<Segment> segmentSet : hashSets) {
+        for (Set<Segment> segmentSet : segmentSets) {
             Set<SegmentNode> borderNodes = new HashSet<>();
             for (Segment segment : segmentSet) {
-                if (nodeSetMap.containsKey(segment.getNode1())) {
+                if (junctionGroupMap.containsKey(segment.getNode1())) {
                     borderNodes.add(segment.getNode1());
                 }
-                if (nodeSetMap.containsKey(segment.getNode2())) {
+                if (junctionGroupMap.containsKey(segment.getNode2())) {
                     borderNodes.add(segment.getNode2());
                 }
             }
-            evaluationGroups.add(new ConnectorEvaluationGroup(segmentSet, borderNodes));
+            ConnectorEvaluationGroup connectorEG = new ConnectorEvaluationGroup(segmentSet, borderNodes);
+            for (Segment segment : segmentSet) {
+                connectorGroupMap.put(segment, connectorEG);
+            }
+            evaluationGroups.add(connectorEG);
         }
 
         return evaluationGroups;
     }
 
     private void createNodesAndEdgesFromEvaluationGroups(
-            Collection<EvaluationGroup> evaluationGroups) {
-
-        nodes = new LinkedList<>();
-        edges = new LinkedList<>();
-
-        //map from Segments to GraphNodes;
-        //for those GraphNodes representing an "approaching node on segment" state
-        final Map<Segment, GraphNodeImpl> segment2GNMap_approaching =
-            new HashMap<>();
-
-        //map from Segments to GraphNodes;
-        //for those GraphNodes representing a "leaving node on segment" state
-        final Map<Segment, GraphNodeImpl> segment2GNMap_leaving =
-            new HashMap<>();
-
-        //map from SegmentNodes to GraphNode collections;
-        //for those GraphNodes representing an "approaching node on segment" state
-        final Map<SegmentNode, Collection<GraphNodeImpl>> segNode2GNMap_approaching =
-            new HashMap<>();
-
-        //map from SegmentNodes to GraphNodes collections;
-        //for those GraphNodes representing a "leaving node on segment" state
-        final Map<SegmentNode, Collection<GraphNodeImpl>> segNode2GNMap_leaving =
-            new HashMap<>();
-
-
+            Collection<JunctionEvaluationGroup> junctionGroups,
+            Collection<ConnectorEvaluationGroup> connectorGroups) {
 
         /* create graph nodes and edges for junction evaluation groups */
 
-        for (EvaluationGroup evaluationGroup : evaluationGroups) {
-            if (evaluationGroup instanceof JunctionEvaluationGroup) {
+        for (JunctionEvaluationGroup junctionEG : junctionGroups) {
 
-                JunctionEvaluationGroup junctionEG = (JunctionEvaluationGroup) evaluationGroup;
+            Collection<GraphNodeImpl> groupNodes = new ArrayList<>();
+            groupNodeMap.put(junctionEG, groupNodes);
 
-                //create graph nodes
-                for (Segment segment : junctionEG.getInboundSegments()) {
-                    GraphNodeImpl graphNode = new GraphNodeImpl(segment.getNode2(), segment);
-                    nodes.add(graphNode);
-                    segment2GNMap_approaching.put(segment, graphNode);
-                    addToCollectionMap(segNode2GNMap_approaching, segment.getNode2(), graphNode);
-                }
-                for (Segment segment : junctionEG.getOutboundSegments()) {
-                    GraphNodeImpl graphNode = new GraphNodeImpl(segment.getNode1(), segment);
-                    nodes.add(graphNode);
-                    segment2GNMap_leaving.put(segment, graphNode);
-                    addToCollectionMap(segNode2GNMap_leaving, segment.getNode1(), graphNode);
-                }
+            //create graph nodes
+            for (Segment segment : junctionEG.getInboundSegments()) {
+                GraphNodeImpl graphNode = new GraphNodeImpl(segment.getNode2(), segment);
+                nodes.add(graphNode);
+                groupNodes.add(graphNode);
+                segment2GNMap_approaching.put(segment, graphNode);
+                addToCollectionMap(segNode2GNMap_approaching, segment.getNode2(), graphNode);
+            }
+            for (Segment segment : junctionEG.getOutboundSegments()) {
+                GraphNodeImpl graphNode = new GraphNodeImpl(segment.getNode1(), segment);
+                nodes.add(graphNode);
+                groupNodes.add(graphNode);
+                segment2GNMap_leaving.put(segment, graphNode);
+                addToCollectionMap(segNode2GNMap_leaving, segment.getNode1(), graphNode);
+            }
 
-                //create graph edges for all segment sequences between in- and outbound edges
-                for (Segment inboundSegment : junctionEG.getInboundSegments()) {
-                    for (Segment outboundSegment : junctionEG.getOutboundSegments()) {
+            //create graph edges for all segment sequences between in- and outbound edges
+            for (Segment inboundSegment : junctionEG.getInboundSegments()) {
+                for (Segment outboundSegment : junctionEG.getOutboundSegments()) {
 
-                        List<Segment> segmentSequence =
-                            junctionEG.getSegmentSequence(inboundSegment, outboundSegment);
+                    List<Segment> segmentSequence =
+                        junctionEG.getSegmentSequence(inboundSegment, outboundSegment);
 
-                        if (segmentSequence != null) {
+                    if (segmentSequence != null) {
 
-                            createGraphEdge(
-                                    segment2GNMap_approaching.get(inboundSegment),
-                                    segment2GNMap_leaving.get(outboundSegment),
-                                    segmentSequence,
-                                    junctionEG);
+                        createGraphEdge(
+                                segment2GNMap_approaching.get(inboundSegment),
+                                segment2GNMap_leaving.get(outboundSegment),
+                                segmentSequence,
+                                junctionEG);
 
-                        }
                     }
                 }
-
             }
+
         }
 
         /* create graph edges for connector evaluation groups.
@@ -338,47 +519,78 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
          * and Segments (from junction groups), the GraphNodes already exist.
          */
 
-        for (EvaluationGroup evaluationGroup : evaluationGroups) {
-            if (evaluationGroup instanceof ConnectorEvaluationGroup) {
-
-                ConnectorEvaluationGroup connectorEG = (ConnectorEvaluationGroup) evaluationGroup;
+        for (ConnectorEvaluationGroup connectorEG : connectorGroups) {
 
-                for (SegmentNode startNode : connectorEG.getBorderNodes()) {
-                    for (SegmentNode targetNode : connectorEG.getBorderNodes()) {
+            for (SegmentNode startNode : connectorEG.getBorderNodes()) {
+                for (SegmentNode targetNode : connectorEG.getBorderNodes()) {
 
-                        if (segNode2GNMap_leaving.containsKey(startNode)
-                                && segNode2GNMap_approaching.containsKey(targetNode)) {
+                    if (segNode2GNMap_leaving.containsKey(startNode)
+                            && segNode2GNMap_approaching.containsKey(targetNode)) {
 
-                            for (GraphNodeImpl startGraphNode : segNode2GNMap_leaving.get(startNode)) {
-                                for (GraphNodeImpl targetGraphNode : segNode2GNMap_approaching.get(targetNode)) {
+                        for (GraphNodeImpl startGraphNode : segNode2GNMap_leaving.get(startNode)) {
+                            for (GraphNodeImpl targetGraphNode : segNode2GNMap_approaching.get(targetNode)) {
 
-                                    if (connectorEG.getSegments().contains(startGraphNode.getSegment())
-                                            && connectorEG.getSegments().contains(targetGraphNode.getSegment())) {
+                                if (connectorEG.getSegments().contains(startGraphNode.getSegment())
+                                        && connectorEG.getSegments().contains(targetGraphNode.getSegment())) {
 
-                                        List<Segment> segmentSequence =
-                                            connectorEG.getSegmentSequence(startNode, targetNode);
-
-                                        if (segmentSequence != null) {
-                                            createGraphEdge(
-                                                    startGraphNode,
-                                                    targetGraphNode,
-                                                    segmentSequence,
-                                                    connectorEG);
-                                        }
+                                    List<Segment> segmentSequence =
+                                        connectorEG.getSegmentSequence(startNode, targetNode);
 
+                                    if (segmentSequence != null) {
+                                        createGraphEdge(
+                                                startGraphNode,
+                                                targetGraphNode,
+                                                segmentSequence,
+                                                connectorEG);
                                     }
 
                                 }
-                            }
 
+                            }
                         }
 
                     }
+
                 }
+            }
 
+        }
+
+    }
+
+    /**
+     * removes the graph edges created for an evaluation group,
+     * and the graph nodes if it is a junction evaluation group
+     *
+     * @param removedNodes  collection the removed graph nodes are added to; != null
+     * @param removedEdges  collection the removed graph edges are added to; != null
+     */
+    private void removeNodesAndEdges(EvaluationGroup evaluationGroup,
+            Collection<GraphNode> removedNodes, Collection<GraphEdge> removedEdges) {
+
+        Collection<GraphEdge> groupEdges = groupEdgeMap.remove(evaluationGroup);
+        if (groupEdges != null) {
+            for (GraphEdge edge : groupEdges) {
+                removeGraphEdge(edge);
             }
+            removedEdges.addAll(groupEdges);
         }
 
+        Collection<GraphNodeImpl> groupNodes = groupNodeMap.remove(evaluationGroup);
+        if (groupNodes != null) {
+            for (GraphNodeImpl graphNode : groupNodes) {
+                nodes.remove(graphNode);
+                removedNodes.add(graphNode);
+                //inbound segments of junction groups never start in the group
+                if (graphNode.getSegmentNode() == graphNode.getSegment().getNode2()) {
+                    segment2GNMap_approaching.remove(graphNode.getSegment());
+                    removeFromCollectionMap(segNode2GNMap_approaching, graphNode.getSegmentNode(), graphNode);
+                } else {
+                    segment2GNMap_leaving.remove(graphNode.getSegment());
+                    removeFromCollectionMap(segNode2GNMap_leaving, graphNode.getSegmentNode(), graphNode);
+                }
+            }
+        }
     }
 
     private void createGraphEdge(
@@ -393,7 +605,7 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
             properties.put(propertyType, value);
         }
 
-        createGraphEdge(startNode, targetNode, properties);
+        createGraphEdge(startNode, targetNode, properties, evaluationGroup);
 
     }
 
@@ -409,16 +621,16 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
             properties.put(propertyType, value);
         }
 
-        createGraphEdge(startNode, targetNode, properties);
+        createGraphEdge(startNode, targetNode, properties, evaluationGroup);
 
     }
 
     /**
      * creates a GraphEdge;
-     * adds it to its nodes' collections and {@link #edges} collection.
+     * adds it to its nodes' collections, its group's collection and {@link #edges} collection.
      */
     private void createGraphEdge(GraphNodeImpl startNode, GraphNodeImpl targetNode,
-            Map<GraphEdgePropertyType<?>, Object> properties) {
+            Map<GraphEdgePropertyType<?>, Object> properties, EvaluationGroup evaluationGroup) {
 
         GraphEdge newEdge = new GraphEdgeImpl(startNode, targetNode, properties);
 
@@ -426,7 +638,64 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
         targetNode.addIncomingEdge(newEdge);
 
         edges.add(newEdge);
+        addToCollectionMap(groupEdgeMap, evaluationGroup, newEdge);
+
+    }
+
+    /**
+     * removes a GraphEdge from its nodes' collections and {@link #edges} collection.
+     */
+    private void removeGraphEdge(GraphEdge edge) {
+
+        ((GraphNodeImpl) edge.getStartNode()).removeOutgoingEdge(edge);
+        ((GraphNodeImpl) edge.getTargetNode()).removeIncomingEdge(edge);
+
+        edges.remove(edge);
+
+    }
 
+    private void addRestriction(Restriction restriction) {
+        for (SegmentNode node : getRestrictionNodes(restriction)) {
+            addToCollectionMap(nodeRestrictionMap, node, restriction);
+        }
+    }
+
+    private void removeRestriction(Restriction restriction) {
+        for (SegmentNode node : getRestrictionNodes(restriction)) {
+            removeFromCollectionMap(nodeRestrictionMap, node, restriction);
+        }
+    }
+
+    /**
+     * returns the nodes that a restriction puts into the same junction evaluation group:
+     * the last node of from, the nodes of via segments and the first nodes of to segments
+     */
+    private static Set<SegmentNode> getRestrictionNodes(Restriction restriction) {
+        Set<SegmentNode> restrictionNodes = new HashSet<>();
+        restrictionNodes.add(restriction.getFrom().getNode2());
+        for (Segment segment : restriction.getVias()) {
+            restrictionNodes.add(segment.getNode1());
+            restrictionNodes.add(segment.getNode2());
+        }
+        for (Segment segment : restriction.getTos()) {
+            restrictionNodes.add(segment.getNode1());
+        }
+        return restrictionNodes;
+    }
+
+    /**
+     * returns all restrictions involving at least one of the segment nodes.
+     * These are the only restrictions that can affect segment sequences
+     * between these nodes, because a restriction starts at the last node of its from segment.
+     */
+    private Collection<Restriction> getRestrictions(Collection<SegmentNode> segmentNodes) {
+        Set<Restriction> restrictions = new LinkedHashSet<>();
+        for (SegmentNode node : segmentNodes) {
+            if (nodeRestrictionMap.containsKey(node)) {
+                restrictions.addAll(nodeRestrictionMap.get(node));
+            }
+        }
+        return restrictions;
     }
 
     private static boolean isConnectedWithExactly2Nodes(SegmentNode node) {
@@ -498,12 +767,29 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
         map.get(key).add(entry);
     }
 
+    private static <K, E> void removeFromCollectionMap(final Map<K, Collection<E>> map, K key, E entry) {
+        Collection<E> collection = map.get(key);
+        if (collection != null && collection.remove(entry) && collection.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
     @Override
     public void update(TransitionStructure transitionStructure) {
         createNodesAndEdges();
         notifyObservers();
     }
 
+    @Override
+    public void update(TransitionStructure transitionStructure, TransitionStructureDelta delta) {
+        if (!delta.isEmpty()) {
+            WayGraphDelta graphDelta = updateNodesAndEdges(delta);
+            if (!graphDelta.isEmpty()) {
+                notifyObservers(graphDelta);
+            }
+        }
+    }
+
     @Override
     public void addObserver(WayGraphObserver observer) {
         observers.add(observer);
@@ -519,4 +805,10 @@ public class TSBasedWayGraph implements WayGraph, TransitionStructureObserver {
             observer.update(this);
         }
     }
+
+    private void notifyObservers(WayGraphDelta delta) {
+        for (WayGraphObserver observer : observers) {
+            observer.update(this, delta);
+        }
+    }
 }
@@ -0,0 +1,57 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.graphview.core.graph;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * changes of a {@link WayGraph}.
+ * Nodes and edges are never modified, a changed element is removed and replaced by a new one.
+ */
+public class WayGraphDelta {
+
+    private final Collection<GraphNode> removedNodes;
+    private final Collection<GraphNode> addedNodes;
+    private final Collection<GraphEdge> removedEdges;
+    private final Collection<GraphEdge> addedEdges;
+
+    /**
+     * constructor, will directly use collection references,
+     * collections must not be changed after usage as constructor param; all != null
+     */
+    public WayGraphDelta(
+            Collection<GraphNode> removedNodes, Collection<GraphNode> addedNodes,
+            Collection<GraphEdge> removedEdges, Collection<GraphEdge> addedEdges) {
+
+        assert removedNodes != null && addedNodes != null;
+        assert removedEdges != null && addedEdges != null;
+
+        this.removedNodes = Collections.unmodifiableCollection(removedNodes);
+        this.addedNodes = Collections.unmodifiableCollection(addedNodes);
+        this.removedEdges = Collections.unmodifiableCollection(removedEdges);
+        this.addedEdges = Collections.unmodifiableCollection(addedEdges);
+    }
+
+    public Collection<GraphNode> getRemovedNodes() {
+        return removedNodes;
+    }
+
+    public Collection<GraphNode> getAddedNodes() {
+        return addedNodes;
+    }
+
+    public Collection<GraphEdge> getRemovedEdges() {
+        return removedEdges;
+    }
+
+    public Collection<GraphEdge> getAddedEdges() {
+        return addedEdges;
+    }
+
+    /** returns true if nothing has been added or removed */
+    public boolean isEmpty() {
+        return removedNodes.isEmpty() && addedNodes.isEmpty()
+                && removedEdges.isEmpty() && addedEdges.isEmpty();
+    }
+
+}
@@ -12,4 +12,16 @@ public interface WayGraphObserver {
      * @param wayGraph  observed graph that has changed; != null
      */
     void update(WayGraph wayGraph);
+
+    /**
+     * informs this observer about changes in an observed graph
+     * that are limited to the elements of a delta.
+     * Observers that cannot handle partial updates treat this like any other change.
+     *
+     * @param wayGraph  observed graph that has changed; != null
+     * @param delta     the added and removed nodes and edges; != null
+     */
+    default void update(WayGraph wayGraph, WayGraphDelta delta) {
+        update(wayGraph);
+    }
 }
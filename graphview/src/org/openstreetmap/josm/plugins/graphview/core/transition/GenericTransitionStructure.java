@@ -7,6 +7,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -17,6 +18,7 @@ import org.openstreetmap.josm.plugins.graphview.core.access.AccessParameters;
 import org.openstreetmap.josm.plugins.graphview.core.access.AccessRuleset;
 import org.openstreetmap.josm.plugins.graphview.core.access.RulesetAccessEvaluator;
 import org.openstreetmap.josm.plugins.graphview.core.data.DataSource;
+import org.openstreetmap.josm.plugins.graphview.core.data.DataSourceDelta;
 import org.openstreetmap.josm.plugins.graphview.core.data.DataSourceObserver;
 import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
 import org.openstreetmap.josm.plugins.graphview.core.property.RoadPropertyType;
@@ -67,6 +69,11 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
             outboundSegments.add(segment);
         }
 
+        public void removeSegment(Segment segment) {
+            inboundSegments.remove(segment);
+            outboundSegments.remove(segment);
+        }
+
         @Override
         public Collection<Segment> getOutboundSegments() {
             return outboundSegments;
@@ -190,8 +197,25 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
     private AccessEvaluator<N, W> accessEvaluator;
 
     private Collection<SegmentNode> nodes = null;
-    private Collection<Segment> segments = new LinkedList<>();
-    private Collection<Restriction> restrictions = new LinkedList<>();
+    private Collection<Segment> segments = new LinkedHashSet<>();
+    private Collection<Restriction> restrictions = new LinkedHashSet<>();
+
+    /* maps from the data source's objects to the elements created from them,
+     * kept between updates so that changes can be applied incrementally */
+
+    private final Map<N, SegmentNodeImpl> nodeCreationMap = new HashMap<>();
+    private final Map<W, List<Segment>> waySegmentMap = new HashMap<>();
+    private final Map<R, Collection<Restriction>> relationRestrictionMap = new HashMap<>();
+    private final Map<N, Collection<Restriction>> barrierRestrictionMap = new HashMap<>();
+
+    /** nodes of the ways that segments have been created from */
+    private final Map<W, List<N>> wayNodeMap = new HashMap<>();
+    /** ways that segments have been created from, by node */
+    private final Map<N, Set<W>> nodeWayMap = new HashMap<>();
+    /** members of turn restriction relations, including the nodes of via ways */
+    private final Map<R, Collection<Object>> relationMemberMap = new HashMap<>();
+    /** turn restriction relations, by member */
+    private final Map<Object, Set<R>> memberRelationMap = new HashMap<>();
 
     public GenericTransitionStructure(
             AccessParameters accessParameters, AccessRuleset ruleset,
@@ -237,7 +261,6 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
                     this.accessParameters);
 
             updateData();
-            notifyObservers();
 
         }
 
@@ -263,38 +286,134 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
      */
     protected void updateData() {
 
-        ArrayList<SegmentNode> nodes = new ArrayList<>();
-        ArrayList<Segment> segments = new ArrayList<>();
+        nodes = new LinkedHashSet<>();
+        segments = new LinkedHashSet<>();
+        restrictions = new LinkedHashSet<>();
 
-        Map<N, SegmentNodeImpl> nodeCreationMap = new HashMap<>();
-        Map<W, List<Segment>> waySegmentMap = new HashMap<>();
+        nodeCreationMap.clear();
+        waySegmentMap.clear();
+        relationRestrictionMap.clear();
+        barrierRestrictionMap.clear();
+        wayNodeMap.clear();
+        nodeWayMap.clear();
+        relationMemberMap.clear();
+        memberRelationMap.clear();
 
         /* create segments (nodes are created only when included in a segment) */
 
         for (W way : dataSource.getWays()) {
-            createSegmentsAndSegmentNodes(way, accessEvaluator, nodes, segments, nodeCreationMap, waySegmentMap);
+            createSegmentsAndSegmentNodes(way, accessEvaluator, nodes, segments);
         }
 
-        nodes.trimToSize();
-        segments.trimToSize();
-
         /* create restrictions */
 
-        Collection<Restriction> restrictions =
-            createRestrictionsFromTurnRestrictions(dataSource.getRelations(), nodeCreationMap, waySegmentMap);
-
-        restrictions.addAll(createRestrictionsFromBarrierNodes(nodeCreationMap, waySegmentMap));
+        for (R relation : dataSource.getRelations()) {
+            restrictions.addAll(createRestrictionsFromTurnRestriction(relation));
+        }
 
-        /* keep data and inform observers */
+        for (N node : nodeCreationMap.keySet()) {
+            restrictions.addAll(createRestrictionsFromBarrierNode(node));
+        }
 
-        this.nodes = nodes;
-        this.segments = segments;
-        this.restrictions = restrictions;
+        /* inform observers */
 
         notifyObservers();
 
     }
 
+    /**
+     * updates nodes, segments and restrictions after a change of the data source.
+     * Only the segments of changed ways (including ways with changed nodes) are recreated,
+     * as well as the restrictions that involve them.
+     *
+     * @param delta  changed objects of the data source; != null
+     */
+    protected void updateData(DataSourceDelta<N, W, R> delta) {
+
+        assert delta != null;
+
+        Collection<SegmentNode> removedNodes = new ArrayList<>();
+        Collection<SegmentNode> addedNodes = new ArrayList<>();
+        Collection<Segment> removedSegments = new ArrayList<>();
+        Collection<Segment> addedSegments = new ArrayList<>();
+        Collection<Restriction> removedRestrictions = new ArrayList<>();
+        Collection<Restriction> addedRestrictions = new ArrayList<>();
+
+        /* recreate the segments of changed ways and of ways containing changed nodes */
+
+        Set<W> affectedWays = new LinkedHashSet<>(delta.getWays());
+        for (N node : delta.getNodes()) {
+            if (nodeWayMap.containsKey(node)) {
+                affectedWays.addAll(nodeWayMap.get(node));
+            }
+        }
+
+        Set<N> affectedNodes = new LinkedHashSet<>(delta.getNodes());
+
+        for (W way : affectedWays) {
+            if (wayNodeMap.containsKey(way)) {
+                affectedNodes.addAll(wayNodeMap.get(way));
+            }
+            removeSegmentsAndSegmentNodes(way, removedNodes, removedSegments);
+        }
+
+        for (W way : affectedWays) {
+            if (!delta.isRemoved(way)) {
+                createSegmentsAndSegmentNodes(way, accessEvaluator, addedNodes, addedSegments);
+                if (wayNodeMap.containsKey(way)) {
+                    affectedNodes.addAll(wayNodeMap.get(way));
+                }
+            }
+        }
+
+        nodes.addAll(addedNodes);
+        segments.addAll(addedSegments);
+
+        /* recreate restrictions of changed relations, of relations with affected members
+         * and of barrier nodes whose segments have changed */
+
+        Set<R> affectedRelations = new LinkedHashSet<>(delta.getRelations());
+        for (W way : affectedWays) {
+            if (memberRelationMap.containsKey(way)) {
+                affectedRelations.addAll(memberRelationMap.get(way));
+            }
+        }
+        for (N node : affectedNodes) {
+            if (memberRelationMap.containsKey(node)) {
+                affectedRelations.addAll(memberRelationMap.get(node));
+            }
+        }
+
+        for (R relation : affectedRelations) {
+            removeRestrictionsFromTurnRestriction(relation, removedRestrictions);
+            if (!delta.isRemoved(relation)) {
+                addedRestrictions.addAll(createRestrictionsFromTurnRestriction(relation));
+            }
+        }
+
+        for (N node : affectedNodes) {
+            if (barrierRestrictionMap.containsKey(node)) {
+                removedRestrictions.addAll(barrierRestrictionMap.remove(node));
+            }
+            if (nodeCreationMap.containsKey(node)) {
+                addedRestrictions.addAll(createRestrictionsFromBarrierNode(node));
+            }
+        }
+
+        for (Restriction restriction : removedRestrictions) {
+            restrictions.remove(restriction);
+        }
+        restrictions.addAll(addedRestrictions);
+
+        /* inform observers */
+
+        notifyObservers(new TransitionStructureDelta(
+                removedNodes, addedNodes,
+                removedSegments, addedSegments,
+                removedRestrictions, addedRestrictions));
+
+    }
+
     /**
      * creates all Segments and SegmentNodes for a way
      *
@@ -302,17 +421,11 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
      * @param wayAccessEvaluator  evaluator object that decides whether way is usable; != null
      * @param nodes               collection of SegmentNodes, new SegmentNodes will be added here; != null
      * @param segments            collection of Segments, new Segments will be added here; != null
-     * @param nodeCreationMap     map providing the SegmentNode that has been created from a Node,
-     *                            if new SegmentNodes are created, they will be added appropriately; != null
-     * @param waySegmentMap       map providing the Segments that have been created from a Way,
-     *                            if new Segments are created, they will be added appropriately; != null
      */
     private void createSegmentsAndSegmentNodes(W way, AccessEvaluator<N, W> wayAccessEvaluator,
-            Collection<SegmentNode> nodes, Collection<Segment> segments,
-            Map<N, SegmentNodeImpl> nodeCreationMap, Map<W, List<Segment>> waySegmentMap) {
+            Collection<SegmentNode> nodes, Collection<Segment> segments) {
 
-        assert way != null && wayAccessEvaluator != null && nodes != null
-                && segments != null && nodeCreationMap != null && waySegmentMap != null;
+        assert way != null && wayAccessEvaluator != null && nodes != null && segments != null;
 
         /* calculate property values */
 
@@ -332,14 +445,17 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
 
             /* create segments from all pairs of subsequent nodes */
 
+            List<N> wayNodes = new ArrayList<>();
+
             N previousNode = null;
             for (N node : dataSource.getNodes(way)) {
+                wayNodes.add(node);
                 if (previousNode != null) {
 
                     SegmentNodeImpl node1 =
-                        getOrCreateSegmentNodeForNode(previousNode, nodes, nodeCreationMap);
+                        getOrCreateSegmentNodeForNode(previousNode, nodes);
                     SegmentNodeImpl node2 =
-                        getOrCreateSegmentNodeForNode(node, nodes, nodeCreationMap);
+                        getOrCreateSegmentNodeForNode(node, nodes);
 
                     if (forwardAccess) {
                         SegmentImpl segment = new SegmentImpl(node1, node2, forwardPropertyValues);
@@ -360,6 +476,57 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
                 previousNode = node;
             }
 
+            /* remember the nodes, so that the segments can be removed when the way or a node changes */
+
+            if (wayNodes.size() > 1) {
+                wayNodeMap.put(way, wayNodes);
+                for (N node : wayNodes) {
+                    if (!nodeWayMap.containsKey(node)) {
+                        nodeWayMap.put(node, new HashSet<W>(2));
+                    }
+                    nodeWayMap.get(node).add(way);
+                }
+            }
+
+        }
+    }
+
+    /**
+     * removes all Segments that have been created from a way,
+     * as well as SegmentNodes that are no longer part of any Segment
+     *
+     * @param way              way whose Segments are removed; != null
+     * @param removedNodes     collection of SegmentNodes, removed SegmentNodes will be added here; != null
+     * @param removedSegments  collection of Segments, removed Segments will be added here; != null
+     */
+    private void removeSegmentsAndSegmentNodes(W way,
+            Collection<SegmentNode> removedNodes, Collection<Segment> removedSegments) {
+
+        assert way != null && removedNodes != null && removedSegments != null;
+
+        List<Segment> waySegments = waySegmentMap.remove(way);
+
+        if (waySegments != null) {
+            for (Segment segment : waySegments) {
+                ((SegmentNodeImpl) segment.getNode1()).removeSegment(segment);
+                ((SegmentNodeImpl) segment.getNode2()).removeSegment(segment);
+                segments.remove(segment);
+                removedSegments.add(segment);
+            }
+        }
+
+        List<N> wayNodes = wayNodeMap.remove(way);
+
+        if (wayNodes != null) {
+            for (N node : wayNodes) {
+                Set<W> nodeWays = nodeWayMap.get(node);
+                if (nodeWays != null && nodeWays.remove(way) && nodeWays.isEmpty()) {
+                    nodeWayMap.remove(node);
+                    SegmentNode segmentNode = nodeCreationMap.remove(node);
+                    nodes.remove(segmentNode);
+                    removedNodes.add(segmentNode);
+                }
+            }
         }
     }
 
@@ -368,8 +535,7 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
      * creates a segment node for it and adds it to the nodeCreationMap and the nodes collection
      * and returns it; otherwise returns the existing segment node.
      */
-    private SegmentNodeImpl getOrCreateSegmentNodeForNode(N node,
-            Collection<SegmentNode> nodes, Map<N, SegmentNodeImpl> nodeCreationMap) {
+    private SegmentNodeImpl getOrCreateSegmentNodeForNode(N node, Collection<SegmentNode> nodes) {
 
         SegmentNodeImpl segmentNode = nodeCreationMap.get(node);
 
@@ -388,44 +554,100 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
     }
 
     /**
-     * creates all Restrictions from a collection of Relations.
-     * Only "type=restriction" relations are relevant for restrictions.
+     * creates all Restrictions from a Relation.
+     * Only "type=restriction" relations are relevant for restrictions,
+     * the members of these relations are remembered so that they can be updated
+     * when a member changes.
      *
-     * @param relations        Relations to create Restrictions from.
-     *                         They can have any type key, as filtering is done inside this method.
-     * @param nodeCreationMap  map providing the SegmentNode that has been created from a Node,
-     *                         will not be modified; != null
-     * @param waySegmentMap    map providing the Segments that have been created from a Way,
-     *                         will not be modified; != null
-     * @return                 Restrictions created from the Relations; != null, but may be empty
+     * @param relation  Relation to create Restrictions from.
+     *                  It can have any type key, as filtering is done inside this method.
+     * @return          Restrictions created from the Relation; != null, but may be empty
      */
-    private Collection<Restriction> createRestrictionsFromTurnRestrictions(
-            Iterable<R> relations,
-            Map<N, SegmentNodeImpl> nodeCreationMap,
-            Map<W, List<Segment>> waySegmentMap) {
+    private Collection<Restriction> createRestrictionsFromTurnRestriction(R relation) {
 
-        assert relations != null && nodeCreationMap != null && waySegmentMap != null;
+        assert relation != null;
 
-        Collection<Restriction> results = new LinkedList<>();
+        TagGroup tags = dataSource.getTagsR(relation);
 
-        for (R relation : relations) {
+        if ("restriction".equals(tags.getValue("type"))
+                && tags.getValue("restriction") != null) {
 
-            TagGroup tags = dataSource.getTagsR(relation);
+            //evaluate relation
+            Collection<Restriction> results;
+            if (tags.getValue("restriction").startsWith("no_")) {
+                results = createRestrictionsFromRestrictionRelation(relation, true, nodeCreationMap, waySegmentMap);
+            } else if (tags.getValue("restriction").startsWith("only_")) {
+                results = createRestrictionsFromRestrictionRelation(relation, false, nodeCreationMap, waySegmentMap);
+            } else {
+                return EMPTY_RESTRICTION_COLLECTION;
+            }
 
-            if ("restriction".equals(tags.getValue("type"))
-                    && tags.getValue("restriction") != null) {
+            addRelationMembers(relation);
+            if (!results.isEmpty()) {
+                relationRestrictionMap.put(relation, results);
+            }
+            return results;
+
+        }
 
-                //evaluate relation
-                if (tags.getValue("restriction").startsWith("no_")) {
-                    results.addAll(createRestrictionsFromRestrictionRelation(relation, true, nodeCreationMap, waySegmentMap));
-                } else if (tags.getValue("restriction").startsWith("only_")) {
-                    results.addAll(createRestrictionsFromRestrictionRelation(relation, false, nodeCreationMap, waySegmentMap));
+        return EMPTY_RESTRICTION_COLLECTION;
+    }
+
+    /**
+     * removes the Restrictions that have been created from a Relation
+     *
+     * @param relation             Relation whose Restrictions are removed; != null
+     * @param removedRestrictions  collection of Restrictions, removed Restrictions will be added here; != null
+     */
+    private void removeRestrictionsFromTurnRestriction(R relation, Collection<Restriction> removedRestrictions) {
+
+        assert relation != null && removedRestrictions != null;
+
+        if (relationRestrictionMap.containsKey(relation)) {
+            removedRestrictions.addAll(relationRestrictionMap.remove(relation));
+        }
+
+        Collection<Object> members = relationMemberMap.remove(relation);
+        if (members != null) {
+            for (Object member : members) {
+                Set<R> memberRelations = memberRelationMap.get(member);
+                if (memberRelations != null && memberRelations.remove(relation) && memberRelations.isEmpty()) {
+                    memberRelationMap.remove(member);
                 }
+            }
+        }
+    }
+
+    /**
+     * remembers the node and way members of a turn restriction relation, including the nodes of via ways
+     */
+    @SuppressWarnings("unchecked") //cast is checked with isWMember
+    private void addRelationMembers(R relation) {
+
+        Collection<Object> members = new ArrayList<>();
 
+        for (M member : dataSource.getMembers(relation)) {
+            if (dataSource.isWMember(member)) {
+                W way = (W) dataSource.getMember(member);
+                members.add(way);
+                if ("via".equals(dataSource.getRole(member))) {
+                    for (N node : dataSource.getNodes(way)) {
+                        members.add(node);
+                    }
+                }
+            } else if (dataSource.isNMember(member)) {
+                members.add(dataSource.getMember(member));
             }
         }
 
-        return results;
+        relationMemberMap.put(relation, members);
+
+        for (Object member : members) {
+            if (!memberRelationMap.containsKey(member)) {
+                memberRelationMap.put(member, new HashSet<R>(2));
+            }
+            memberRelationMap.get(member).add(relation);
+        }
     }
 
     @SuppressWarnings("unchecked") //several generic casts that are checked with isInstance
@@ -635,39 +857,33 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
     }
 
     /**
-     * creates Restrictions from barrier nodes (nodes that are considered impassable by the
+     * creates Restrictions from a barrier node (a node that is considered impassable by the
      * {@link #accessEvaluator}). These restrictions prevent moving from a segment before the
      * barrier node to a segment after the barrier node.
      *
-     * @param nodeCreationMap  map providing the SegmentNode that has been created from a node,
-     *                         will not be modified; != null
-     * @param waySegmentMap    map providing the Segments that have been created from a way,
-     *                         will not be modified; != null
-     * @return                 Restrictions created from barrier nodes; != null, but may be empty
+     * @param node  node that a SegmentNode has been created from; != null
+     * @return      Restrictions created from the node; != null, but may be empty
      */
-    private Collection<Restriction> createRestrictionsFromBarrierNodes(
-            Map<N, SegmentNodeImpl> nodeCreationMap,
-            Map<W, List<Segment>> waySegmentMap) {
+    private Collection<Restriction> createRestrictionsFromBarrierNode(N node) {
 
-        assert nodeCreationMap != null;
-        assert waySegmentMap != null;
+        assert node != null && nodeCreationMap.containsKey(node);
 
-        Collection<Restriction> results = new LinkedList<>();
+        SegmentNodeImpl barrierNode = nodeCreationMap.get(node);
 
-        for (N node : nodeCreationMap.keySet()) {
-
-            if (!accessEvaluator.nodeUsable(node, nodeCreationMap.get(node).getProperties())) {
-
-                SegmentNode barrierNode = nodeCreationMap.get(node);
+        if (accessEvaluator.nodeUsable(node, barrierNode.getProperties())) {
+            return EMPTY_RESTRICTION_COLLECTION;
+        }
 
-                for (Segment inboundSegment : barrierNode.getInboundSegments()) {
-                    for (Segment outboundSegment : barrierNode.getOutboundSegments()) {
-                        results.add(new RestrictionImpl(inboundSegment, EMPTY_SEGMENT_LIST, Arrays.asList(outboundSegment)));
-                    }
-                }
+        Collection<Restriction> results = new ArrayList<>();
 
+        for (Segment inboundSegment : barrierNode.getInboundSegments()) {
+            for (Segment outboundSegment : barrierNode.getOutboundSegments()) {
+                results.add(new RestrictionImpl(inboundSegment, EMPTY_SEGMENT_LIST, Arrays.asList(outboundSegment)));
             }
+        }
 
+        if (!results.isEmpty()) {
+            barrierRestrictionMap.put(node, results);
         }
 
         return results;
@@ -711,6 +927,18 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
         updateData();
     }
 
+    @Override
+    public void update(DataSource<?, ?, ?, ?> dataSource, DataSourceDelta<?, ?, ?> delta) {
+        assert this.dataSource == dataSource;
+        if (nodes == null) {
+            updateData();
+        } else if (!delta.isEmpty()) {
+            @SuppressWarnings("unchecked") //delta has been created by this structure's data source
+            DataSourceDelta<N, W, R> typedDelta = (DataSourceDelta<N, W, R>) delta;
+            updateData(typedDelta);
+        }
+    }
+
     @Override
     public void addObserver(TransitionStructureObserver observer) {
         observers.add(observer);
@@ -726,4 +954,10 @@ public class GenericTransitionStructure<N, W, R, M> implements TransitionStructu
             observer.update(this);
         }
     }
+
+    protected void notifyObservers(TransitionStructureDelta delta) {
+        for (TransitionStructureObserver observer : observers) {
+            observer.update(this, delta);
+        }
+    }
 }
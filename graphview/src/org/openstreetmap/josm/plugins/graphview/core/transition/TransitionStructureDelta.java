@@ -0,0 +1,72 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.graphview.core.transition;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * changes of a {@link TransitionStructure}.
+ * Elements are never modified, a changed element is removed and replaced by a new one.
+ */
+public class TransitionStructureDelta {
+
+    private final Collection<SegmentNode> removedNodes;
+    private final Collection<SegmentNode> addedNodes;
+    private final Collection<Segment> removedSegments;
+    private final Collection<Segment> addedSegments;
+    private final Collection<Restriction> removedRestrictions;
+    private final Collection<Restriction> addedRestrictions;
+
+    /**
+     * constructor, will directly use collection references,
+     * collections must not be changed after usage as constructor param; all != null
+     */
+    public TransitionStructureDelta(
+            Collection<SegmentNode> removedNodes, Collection<SegmentNode> addedNodes,
+            Collection<Segment> removedSegments, Collection<Segment> addedSegments,
+            Collection<Restriction> removedRestrictions, Collection<Restriction> addedRestrictions) {
+
+        assert removedNodes != null && addedNodes != null;
+        assert removedSegments != null && addedSegments != null;
+        assert removedRestrictions != null && addedRestrictions != null;
+
+        this.removedNodes = Collections.unmodifiableCollection(removedNodes);
+        this.addedNodes = Collections.unmodifiableCollection(addedNodes);
+        this.removedSegments = Collections.unmodifiableCollection(removedSegments);
+        this.addedSegments = Collections.unmodifiableCollection(addedSegments);
+        this.removedRestrictions = Collections.unmodifiableCollection(removedRestrictions);
+        this.addedRestrictions = Collections.unmodifiableCollection(addedRestrictions);
+    }
+
+    public Collection<SegmentNode> getRemovedNodes() {
+        return removedNodes;
+    }
+
+    public Collection<SegmentNode> getAddedNodes() {
+        return addedNodes;
+    }
+
+    public Collection<Segment> getRemovedSegments() {
+        return removedSegments;
+    }
+
+    public Collection<Segment> getAddedSegments() {
+        return addedSegments;
+    }
+
+    public Collection<Restriction> getRemovedRestrictions() {
+        return removedRestrictions;
+    }
+
+    public Collection<Restriction> getAddedRestrictions() {
+        return addedRestrictions;
+    }
+
+    /** returns true if nothing has been added or removed */
+    public boolean isEmpty() {
+        return removedNodes.isEmpty() && addedNodes.isEmpty()
+                && removedSegments.isEmpty() && addedSegments.isEmpty()
+                && removedRestrictions.isEmpty() && addedRestrictions.isEmpty();
+    }
+
+}
@@ -12,4 +12,16 @@ public interface TransitionStructureObserver {
      * @param transitionStructure  observed transition structure that has changed; != null
      */
     void update(TransitionStructure transitionStructure);
+
+    /**
+     * informs this observer about changes in an observed transition structure
+     * that are limited to the elements of a delta.
+     * Observers that cannot handle partial updates treat this like any other change.
+     *
+     * @param transitionStructure  observed transition structure that has changed; != null
+     * @param delta                the added and removed elements; != null
+     */
+    default void update(TransitionStructure transitionStructure, TransitionStructureDelta delta) {
+        update(transitionStructure);
+    }
 }
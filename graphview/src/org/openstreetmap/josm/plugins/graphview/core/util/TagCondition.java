@@ -1,6 +1,8 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.graphview.core.util;
 
+import java.util.Collection;
+
 import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
 
 /**
@@ -16,4 +18,13 @@ public interface TagCondition {
      */
     boolean matches(TagGroup tags);
 
+    /**
+     * returns the keys of all tags that can influence the result of {@link #matches(TagGroup)}
+     *
+     * @return  collection of keys; null if the condition can depend on any tag
+     */
+    default Collection<String> getKeys() {
+        return null;
+    }
+
 }
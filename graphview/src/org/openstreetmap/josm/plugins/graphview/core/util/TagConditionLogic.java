@@ -3,7 +3,10 @@ package org.openstreetmap.josm.plugins.graphview.core.util;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 
 import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
 import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
@@ -29,6 +32,11 @@ public final class TagConditionLogic {
                 return tags.contains(tag);
             }
 
+            @Override
+            public Collection<String> getKeys() {
+                return Collections.singleton(tag.key);
+            }
+
             @Override
             public String toString() {
                 return tag.toString();
@@ -49,6 +57,11 @@ public final class TagConditionLogic {
                 return tags.containsKey(key);
             }
 
+            @Override
+            public Collection<String> getKeys() {
+                return Collections.singleton(key);
+            }
+
             @Override
             public String toString() {
                 return key;
@@ -74,6 +87,11 @@ public final class TagConditionLogic {
                 return condition.matches(tags);
             }
 
+            @Override
+            public Collection<String> getKeys() {
+                return combineKeys(condition, Arrays.asList(conditions));
+            }
+
             @Override
             public String toString() {
                 StringBuilder result = new StringBuilder();
@@ -109,6 +127,11 @@ public final class TagConditionLogic {
                 return true;
             }
 
+            @Override
+            public Collection<String> getKeys() {
+                return combineKeys(null, conditions);
+            }
+
             @Override
             public String toString() {
                 StringBuilder result = new StringBuilder();
@@ -145,6 +168,11 @@ public final class TagConditionLogic {
                 return condition.matches(tags);
             }
 
+            @Override
+            public Collection<String> getKeys() {
+                return combineKeys(condition, Arrays.asList(conditions));
+            }
+
             @Override
             public String toString() {
                 StringBuilder result = new StringBuilder();
@@ -180,6 +208,11 @@ public final class TagConditionLogic {
                 return false;
             }
 
+            @Override
+            public Collection<String> getKeys() {
+                return combineKeys(null, conditions);
+            }
+
             @Override
             public String toString() {
                 StringBuilder result = new StringBuilder();
@@ -210,6 +243,11 @@ public final class TagConditionLogic {
                 return !condition.matches(tags);
             }
 
+            @Override
+            public Collection<String> getKeys() {
+                return condition.getKeys();
+            }
+
             @Override
             public String toString() {
                 return "!" + condition;
@@ -217,4 +255,27 @@ public final class TagConditionLogic {
         };
     }
 
+    /**
+     * returns the keys of all conditions, null if one of them can depend on any tag
+     *
+     * @param condition   first condition; may be null
+     * @param conditions  more conditions; != null, each != null
+     */
+    private static Collection<String> combineKeys(TagCondition condition, Collection<TagCondition> conditions) {
+        Collection<String> keys = new ArrayList<>();
+        if (condition != null) {
+            if (condition.getKeys() == null) {
+                return null;
+            }
+            keys.addAll(condition.getKeys());
+        }
+        for (TagCondition c : conditions) {
+            if (c.getKeys() == null) {
+                return null;
+            }
+            keys.addAll(c.getKeys());
+        }
+        return keys;
+    }
+
 }
@@ -1,6 +1,10 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.graphview.core.util;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -11,6 +15,41 @@ public final class ValueStringParser {
     /** prevents instantiation */
     private ValueStringParser() { }
 
+    /**
+     * maximum number of remembered results for each kind of value.
+     * The same values (such as "50" or "3.5 t") occur on many objects.
+     */
+    private static final int MAX_CACHED_VALUES = 1000;
+
+    private static final Map<String, Float> SPEED_CACHE = createCache();
+    private static final Map<String, Float> MEASURE_CACHE = createCache();
+    private static final Map<String, Float> WEIGHT_CACHE = createCache();
+    private static final Map<String, Float> INCLINE_CACHE = createCache();
+
+    private static Map<String, Float> createCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, Float>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Float> eldest) {
+                return size() > MAX_CACHED_VALUES;
+            }
+        });
+    }
+
+    /**
+     * returns the remembered result for a value, or parses the value and remembers the result.
+     * Results are immutable, so they can be shared.
+     */
+    private static Float parseCached(Map<String, Float> cache, String value, Function<String, Float> parser) {
+        synchronized (cache) {
+            if (cache.containsKey(value)) {
+                return cache.get(value);
+            }
+        }
+        Float result = parser.apply(value);
+        cache.put(value, result);
+        return result;
+    }
+
     /** pattern that splits into a part before and after a decimal point */
     private static final Pattern DEC_POINT_PATTERN = Pattern.compile("^(\\-?\\d+)\\.(\\d+)$");
 
@@ -73,6 +112,10 @@ public final class ValueStringParser {
      * @return  speed in km/h; null if value had syntax errors
      */
     public static Float parseSpeed(String value) {
+        return parseCached(SPEED_CACHE, value, ValueStringParser::parseSpeedUncached);
+    }
+
+    private static Float parseSpeedUncached(String value) {
 
         /* try numeric speed (implied km/h) */
 
@@ -125,6 +168,10 @@ public final class ValueStringParser {
      * @return  measure in m; null if value had syntax errors
      */
     public static Float parseMeasure(String value) {
+        return parseCached(MEASURE_CACHE, value, ValueStringParser::parseMeasureUncached);
+    }
+
+    private static Float parseMeasureUncached(String value) {
 
         /* try numeric measure (implied m) */
 
@@ -189,6 +236,10 @@ public final class ValueStringParser {
      * @return  weight in t; null if value had syntax errors
      */
     public static Float parseWeight(String value) {
+        return parseCached(WEIGHT_CACHE, value, ValueStringParser::parseWeightUncached);
+    }
+
+    private static Float parseWeightUncached(String value) {
 
         /* try numeric weight (implied t) */
 
@@ -219,6 +270,10 @@ public final class ValueStringParser {
      * @return  incline in percents; null if value had syntax errors
      */
     public static Float parseIncline(String value) {
+        return parseCached(INCLINE_CACHE, value, ValueStringParser::parseInclineUncached);
+    }
+
+    private static Float parseInclineUncached(String value) {
 
         Matcher inclineMatcher = INCLINE_PATTERN.matcher(value);
         if (inclineMatcher.matches()) {
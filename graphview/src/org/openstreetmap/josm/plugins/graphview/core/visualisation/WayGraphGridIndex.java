@@ -0,0 +1,338 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.graphview.core.visualisation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openstreetmap.josm.plugins.graphview.core.graph.GraphEdge;
+import org.openstreetmap.josm.plugins.graphview.core.graph.GraphNode;
+import org.openstreetmap.josm.plugins.graphview.core.graph.WayGraph;
+import org.openstreetmap.josm.plugins.graphview.core.graph.WayGraphDelta;
+import org.openstreetmap.josm.plugins.graphview.core.property.GraphEdgeSegments;
+import org.openstreetmap.josm.plugins.graphview.core.transition.Segment;
+
+/**
+ * grid of latitude-longitude cells containing the nodes and edges of a {@link WayGraph},
+ * used to find the elements within an area without looking at all of them.
+ * Edges are put into every cell their bounding box overlaps.
+ *
+ * After the graph has changed, {@link #update(WayGraph, WayGraphDelta, NodePositioner)}
+ * only indexes the added elements and removes the deleted ones.
+ */
+public class WayGraphGridIndex {
+
+    /** average number of edges per cell when choosing the cell size */
+    private static final int EDGES_PER_CELL = 8;
+
+    /** minimum cell size in degrees, for very small or degenerate graphs */
+    private static final double MIN_CELL_SIZE = 1e-4;
+
+    private double cellSize = Double.NaN;
+
+    private final Map<Long, List<GraphNode>> nodeCells = new HashMap<>();
+    private final Map<Long, List<GraphEdge>> edgeCells = new HashMap<>();
+
+    /** indexed nodes, by their positions: lat, lon */
+    private final Map<GraphNode, double[]> nodePositions = new HashMap<>();
+    /** indexed edges, by their bounding boxes: minLat, minLon, maxLat, maxLon */
+    private final Map<GraphEdge, double[]> edgeBoxes = new HashMap<>();
+
+    private double minLat = Double.POSITIVE_INFINITY;
+    private double minLon = Double.POSITIVE_INFINITY;
+    private double maxLat = Double.NEGATIVE_INFINITY;
+    private double maxLon = Double.NEGATIVE_INFINITY;
+
+    /**
+     * brings the index up to date after a change of the graph.
+     * Only the cells of the delta's elements are changed,
+     * unless the graph's size has changed so much that a different cell size is needed.
+     *
+     * @param graph       indexed graph, after the change; != null
+     * @param delta       the added and removed nodes and edges; != null
+     * @param positioner  positioner providing the positions of graph nodes; != null
+     */
+    public void update(WayGraph graph, WayGraphDelta delta, NodePositioner positioner) {
+
+        assert graph != null && delta != null && positioner != null;
+
+        int edgeCount = graph.getEdges().size();
+
+        if (Double.isNaN(cellSize) || edgeCount > 2 * edgeBoxes.size() || 2 * edgeCount < edgeBoxes.size()) {
+            rebuild(graph, positioner);
+            return;
+        }
+
+        for (GraphNode node : delta.getRemovedNodes()) {
+            double[] position = nodePositions.remove(node);
+            if (position != null) {
+                removeFromCell(nodeCells, cellKey(cell(position[0]), cell(position[1])), node);
+            }
+        }
+        for (GraphEdge edge : delta.getRemovedEdges()) {
+            double[] box = edgeBoxes.remove(edge);
+            if (box != null) {
+                for (int row = cell(box[0]); row <= cell(box[2]); row++) {
+                    for (int col = cell(box[1]); col <= cell(box[3]); col++) {
+                        removeFromCell(edgeCells, cellKey(row, col), edge);
+                    }
+                }
+            }
+        }
+
+        //elements can already be indexed if an earlier delta has caused a rebuild
+        for (GraphNode node : delta.getAddedNodes()) {
+            if (!nodePositions.containsKey(node)) {
+                addNode(node, positioner);
+            }
+        }
+        for (GraphEdge edge : delta.getAddedEdges()) {
+            if (!edgeBoxes.containsKey(edge)) {
+                addEdge(edge, positioner);
+            }
+        }
+    }
+
+    /** removes all elements, the next update will index the whole graph */
+    public void clear() {
+        cellSize = Double.NaN;
+        nodeCells.clear();
+        edgeCells.clear();
+        nodePositions.clear();
+        edgeBoxes.clear();
+        minLat = Double.POSITIVE_INFINITY;
+        minLon = Double.POSITIVE_INFINITY;
+        maxLat = Double.NEGATIVE_INFINITY;
+        maxLon = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * indexes a whole graph, replacing all previously indexed elements
+     *
+     * @param graph       graph to index; != null
+     * @param positioner  positioner providing the positions of graph nodes; != null
+     */
+    public void rebuild(WayGraph graph, NodePositioner positioner) {
+
+        assert graph != null && positioner != null;
+
+
+        clear();
+
+        /* choose the cell size from the extent of the graph */
+
+        double graphMinLat = Double.POSITIVE_INFINITY;
+        double graphMinLon = Double.POSITIVE_INFINITY;
+        double graphMaxLat = Double.NEGATIVE_INFINITY;
+        double graphMaxLon = Double.NEGATIVE_INFINITY;
+
+        for (GraphNode node : graph.getNodes()) {
+            LatLonCoords position = positioner.getPosition(node);
+            graphMinLat = Math.min(graphMinLat, position.getLat());
+            graphMinLon = Math.min(graphMinLon, position.getLon());
+            graphMaxLat = Math.max(graphMaxLat, position.getLat());
+            graphMaxLon = Math.max(graphMaxLon, position.getLon());
+        }
+
+        double area = (graphMaxLat - graphMinLat) * (graphMaxLon - graphMinLon);
+        int cells = Math.max(1, graph.getEdges().size() / EDGES_PER_CELL);
+
+        cellSize = area > 0 ? Math.max(MIN_CELL_SIZE, Math.sqrt(area / cells)) : MIN_CELL_SIZE;
+
+        /* index all elements */
+
+        for (GraphNode node : graph.getNodes()) {
+            addNode(node, positioner);
+        }
+        for (GraphEdge edge : graph.getEdges()) {
+            addEdge(edge, positioner);
+        }
+    }
+
+    private void addNode(GraphNode node, NodePositioner positioner) {
+
+        LatLonCoords position = positioner.getPosition(node);
+
+        nodePositions.put(node, new double[] {position.getLat(), position.getLon()});
+        addToCell(nodeCells, cellKey(cell(position.getLat()), cell(position.getLon())), node);
+        extendBounds(position.getLat(), position.getLon(), position.getLat(), position.getLon());
+    }
+
+    private void addEdge(GraphEdge edge, NodePositioner positioner) {
+
+        LatLonCoords start = positioner.getPosition(edge.getStartNode());
+        LatLonCoords target = positioner.getPosition(edge.getTargetNode());
+
+        double[] box = {
+                Math.min(start.getLat(), target.getLat()),
+                Math.min(start.getLon(), target.getLon()),
+                Math.max(start.getLat(), target.getLat()),
+                Math.max(start.getLon(), target.getLon())};
+
+        List<Segment> segments = edge.getPropertyValue(GraphEdgeSegments.PROPERTY);
+        if (segments != null) {
+            for (Segment segment : segments) {
+                extendBox(box, segment.getNode1().getLat(), segment.getNode1().getLon());
+                extendBox(box, segment.getNode2().getLat(), segment.getNode2().getLon());
+            }
+        }
+
+        edgeBoxes.put(edge, box);
+        for (int row = cell(box[0]); row <= cell(box[2]); row++) {
+            for (int col = cell(box[1]); col <= cell(box[3]); col++) {
+                addToCell(edgeCells, cellKey(row, col), edge);
+            }
+        }
+        extendBounds(box[0], box[1], box[2], box[3]);
+    }
+
+    /**
+     * returns the nodes within an area
+     * @return  nodes; != null, may be modified by the caller
+     */
+    public Collection<GraphNode> getNodes(double minLat, double minLon, double maxLat, double maxLon) {
+
+        List<GraphNode> result = new ArrayList<>();
+
+        for (List<GraphNode> cellNodes : getCells(nodeCells, minLat, minLon, maxLat, maxLon)) {
+            for (GraphNode node : cellNodes) {
+                double[] position = nodePositions.get(node);
+                if (position[0] >= minLat && position[0] <= maxLat
+                        && position[1] >= minLon && position[1] <= maxLon) {
+                    result.add(node);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * returns the edges whose bounding boxes intersect an area
+     * @return  edges; != null, may be modified by the caller
+     */
+    public Collection<GraphEdge> getEdges(double minLat, double minLon, double maxLat, double maxLon) {
+
+        List<GraphEdge> result = new ArrayList<>();
+        Set<GraphEdge> seen = new HashSet<>();
+
+        for (List<GraphEdge> cellEdges : getCells(edgeCells, minLat, minLon, maxLat, maxLon)) {
+            for (GraphEdge edge : cellEdges) {
+                double[] box = edgeBoxes.get(edge);
+                if (box[0] <= maxLat && box[2] >= minLat && box[1] <= maxLon && box[3] >= minLon
+                        && seen.add(edge)) {
+                    result.add(edge);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * returns the cells overlapping an area. Iterates over the occupied cells
+     * instead of the area if the area contains more cells than there are occupied ones.
+     */
+    private <T> Collection<List<T>> getCells(Map<Long, List<T>> cells,
+            double minLat, double minLon, double maxLat, double maxLon) {
+
+        if (cells.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+
+        minLat = Math.max(minLat, this.minLat);
+        minLon = Math.max(minLon, this.minLon);
+        maxLat = Math.min(maxLat, this.maxLat);
+        maxLon = Math.min(maxLon, this.maxLon);
+
+        if (minLat > maxLat || minLon > maxLon) {
+            return new ArrayList<>(0);
+        }
+
+        int minRow = cell(minLat);
+        int maxRow = cell(maxLat);
+        int minCol = cell(minLon);
+        int maxCol = cell(maxLon);
+
+        if ((long) (maxRow - minRow + 1) * (maxCol - minCol + 1) > cells.size()) {
+            return cells.values();
+        }
+
+        Collection<List<T>> result = new ArrayList<>();
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                List<T> cell = cells.get(cellKey(row, col));
+                if (cell != null) {
+                    result.add(cell);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** returns the number of indexed nodes */
+    public int getNodeCount() {
+        return nodePositions.size();
+    }
+
+    /** returns the number of indexed edges */
+    public int getEdgeCount() {
+        return edgeBoxes.size();
+    }
+
+    /** returns true if nothing is indexed */
+    public boolean isEmpty() {
+        return nodePositions.isEmpty() && edgeBoxes.isEmpty();
+    }
+
+    /**
+     * returns the bounds of all elements that have been indexed since the last rebuild,
+     * as minLat, minLon, maxLat, maxLon; not valid if the index is empty
+     */
+    public double[] getBounds() {
+        return new double[] {minLat, minLon, maxLat, maxLon};
+    }
+
+    private int cell(double degrees) {
+        return (int) Math.floor(degrees / cellSize);
+    }
+
+    private static long cellKey(int row, int col) {
+        return ((long) row << 32) | (col & 0xffffffffL);
+    }
+
+    private static void extendBox(double[] box, double lat, double lon) {
+        box[0] = Math.min(box[0], lat);
+        box[1] = Math.min(box[1], lon);
+        box[2] = Math.max(box[2], lat);
+        box[3] = Math.max(box[3], lon);
+    }
+
+    private void extendBounds(double boxMinLat, double boxMinLon, double boxMaxLat, double boxMaxLon) {
+        minLat = Math.min(minLat, boxMinLat);
+        minLon = Math.min(minLon, boxMinLon);
+        maxLat = Math.max(maxLat, boxMaxLat);
+        maxLon = Math.max(maxLon, boxMaxLon);
+    }
+
+    private static <T> void addToCell(Map<Long, List<T>> cells, long key, T element) {
+        List<T> cell = cells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<>(EDGES_PER_CELL);
+            cells.put(key, cell);
+        }
+        cell.add(element);
+    }
+
+    private static <T> void removeFromCell(Map<Long, List<T>> cells, long key, T element) {
+        List<T> cell = cells.get(key);
+        if (cell != null && cell.remove(element) && cell.isEmpty()) {
+            cells.remove(key);
+        }
+    }
+
+}
@@ -98,7 +98,6 @@ public class GraphViewPlugin extends Plugin implements LayerChangeListener, Obse
                     JOptionPane.showMessageDialog(MainApplication.getMainFrame(), tr("No ruleset has been selected!"), tr("No ruleset"), JOptionPane.ERROR_MESSAGE);
                 } else {
                     transitionStructure.setAccessParametersAndRuleset(preferences.getCurrentParameterBookmark(), accessRuleset);
-                    transitionStructure.forceUpdate();
                 }
 
             } else {
@@ -151,7 +150,6 @@ public class GraphViewPlugin extends Plugin implements LayerChangeListener, Obse
                 } else {
                     transitionStructure.setAccessParametersAndRuleset(
                             preferences.getCurrentParameterBookmark(), accessRuleset);
-                    transitionStructure.forceUpdate();
                 }
             }
         } catch (AccessRulesetSyntaxException e) {
@@ -235,14 +233,24 @@ public class GraphViewPlugin extends Plugin implements LayerChangeListener, Obse
     public void layerRemoving(LayerRemoveEvent e) {
         if (e.getRemovedLayer() == graphViewLayer) {
             graphViewLayer = null;
+            disposeTransitionStructure();
         } else if (e.getRemovedLayer() == MainApplication.getLayerManager().getEditLayer()) { //data layer removed
             if (graphViewLayer != null) {
                 MainApplication.getLayerManager().removeLayer(graphViewLayer);
                 graphViewLayer = null;
+                disposeTransitionStructure();
             }
         }
     }
 
+    /** stops updating the transition structure of a removed layer */
+    private void disposeTransitionStructure() {
+        if (transitionStructure != null) {
+            transitionStructure.dispose();
+            transitionStructure = null;
+        }
+    }
+
     @Override
     public void layerOrderChanged(LayerOrderChangeEvent e) {
         //do nothing
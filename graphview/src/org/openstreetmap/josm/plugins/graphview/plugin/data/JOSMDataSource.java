@@ -1,27 +1,44 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.graphview.plugin.data;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
+import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
 import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager.FireMode;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.plugins.graphview.core.data.DataSource;
+import org.openstreetmap.josm.plugins.graphview.core.data.DataSourceDelta;
 import org.openstreetmap.josm.plugins.graphview.core.data.DataSourceObserver;
 import org.openstreetmap.josm.plugins.graphview.core.data.MapBasedTagGroup;
 import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
 
 /**
- * DataSource that gets data from JOSM;
- * this DataSource type does not send updates!
+ * DataSource that gets data from JOSM.
+ * While it has observers, it listens to changes of the edit data set and informs them
+ * about the changed primitives, or about a complete change if the data set has been replaced.
  */
 
 public class JOSMDataSource implements DataSource<Node, Way, Relation, RelationMember> {
@@ -182,7 +199,7 @@ public class JOSMDataSource implements DataSource<Node, Way, Relation, RelationM
         }
 
         protected boolean accept(P primitive) {
-            return !primitive.isDeleted() && !primitive.isIncomplete();
+            return isUsable(primitive);
         }
     }
 
@@ -198,14 +215,23 @@ public class JOSMDataSource implements DataSource<Node, Way, Relation, RelationM
 
         @Override
         protected boolean accept(Relation relation) {
-            boolean complete = true;
-            for (org.openstreetmap.josm.data.osm.RelationMember member : relation.getMembers()) {
-                if (member.getMember() == null || member.getMember().isDeleted() || member.getMember().isIncomplete()) {
-                    complete = false;
-                }
+            return isUsableWithMembers(relation);
+        }
+    }
+
+    /** returns true if a primitive is neither deleted nor incomplete */
+    static boolean isUsable(OsmPrimitive primitive) {
+        return !primitive.isDeleted() && !primitive.isIncomplete();
+    }
+
+    /** returns true if a relation and all its members are neither deleted nor incomplete */
+    static boolean isUsableWithMembers(Relation relation) {
+        for (org.openstreetmap.josm.data.osm.RelationMember member : relation.getMembers()) {
+            if (member.getMember() == null || !isUsable(member.getMember())) {
+                return false;
             }
-            return complete && super.accept(relation);
         }
+        return isUsable(relation);
     }
 
     static class RelationMemberImpl {
@@ -228,14 +254,77 @@ public class JOSMDataSource implements DataSource<Node, Way, Relation, RelationM
 
     private final Set<DataSourceObserver> observers = new HashSet<>();
 
+    private final DataSetListenerAdapter dataSetListener = new DataSetListenerAdapter(this::processDatasetEvent);
+
     @Override
     public void addObserver(DataSourceObserver observer) {
+        if (observers.isEmpty()) {
+            DatasetEventManager.getInstance().addDatasetListener(dataSetListener, FireMode.IN_EDT_CONSOLIDATED);
+        }
         observers.add(observer);
     }
 
     @Override
     public void deleteObserver(DataSourceObserver observer) {
         observers.remove(observer);
+        if (observers.isEmpty()) {
+            DatasetEventManager.getInstance().removeDatasetListener(dataSetListener);
+        }
+    }
+
+    /**
+     * informs the observers about a change of the edit data set.
+     * Consolidated events are combined into one delta,
+     * an event without details about the changed primitives causes a complete update.
+     */
+    private void processDatasetEvent(AbstractDatasetChangedEvent event) {
+
+        DataSet dataSet = MainApplication.getLayerManager().getEditDataSet();
+        if (dataSet == null || event.getDataset() != dataSet) {
+            return;
+        }
+
+        Collection<AbstractDatasetChangedEvent> events;
+        if (event instanceof DataChangedEvent) {
+            events = ((DataChangedEvent) event).getEvents();
+        } else {
+            events = Collections.singletonList(event);
+        }
+
+        if (events == null) {
+            for (DataSourceObserver observer : observers) {
+                observer.update(this);
+            }
+            return;
+        }
+
+        Set<OsmPrimitive> changedPrimitives = new LinkedHashSet<>();
+        for (AbstractDatasetChangedEvent e : events) {
+            if (e instanceof PrimitivesAddedEvent || e instanceof PrimitivesRemovedEvent
+                    || e instanceof TagsChangedEvent || e instanceof NodeMovedEvent
+                    || e instanceof WayNodesChangedEvent || e instanceof RelationMembersChangedEvent) {
+                changedPrimitives.addAll(e.getPrimitives());
+            }
+        }
+
+        /* primitives are classified after all events, because later events may revert earlier ones */
+
+        DataSourceDelta<Node, Way, Relation> delta = new DataSourceDelta<>();
+        for (OsmPrimitive primitive : changedPrimitives) {
+            if (primitive instanceof Node) {
+                delta.addNode((Node) primitive, !isUsable(primitive));
+            } else if (primitive instanceof Way) {
+                delta.addWay((Way) primitive, !isUsable(primitive));
+            } else if (primitive instanceof Relation) {
+                delta.addRelation((Relation) primitive, !isUsableWithMembers((Relation) primitive));
+            }
+        }
+
+        if (!delta.isEmpty()) {
+            for (DataSourceObserver observer : observers) {
+                observer.update(this, delta);
+            }
+        }
     }
 
 }
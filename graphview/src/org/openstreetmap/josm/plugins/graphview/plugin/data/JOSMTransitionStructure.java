@@ -33,4 +33,9 @@ public class JOSMTransitionStructure extends GenericTransitionStructure<Node, Wa
         super.update(DATA_SOURCE);
     }
 
+    /** stops updates from the DataSource, the structure must not be used afterwards */
+    public void dispose() {
+        DATA_SOURCE.deleteObserver(this);
+    }
+
 }
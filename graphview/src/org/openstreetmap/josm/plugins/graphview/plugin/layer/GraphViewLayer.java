@@ -12,7 +12,12 @@ import java.awt.Polygon;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.Action;
 import javax.swing.Icon;
@@ -22,6 +27,7 @@ import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.coor.EastNorth;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.osm.visitor.BoundingXYVisitor;
+import org.openstreetmap.josm.data.projection.Projection;
 import org.openstreetmap.josm.data.projection.ProjectionRegistry;
 import org.openstreetmap.josm.gui.MapView;
 import org.openstreetmap.josm.gui.dialogs.LayerListDialog;
@@ -30,6 +36,7 @@ import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.plugins.graphview.core.graph.GraphEdge;
 import org.openstreetmap.josm.plugins.graphview.core.graph.GraphNode;
 import org.openstreetmap.josm.plugins.graphview.core.graph.WayGraph;
+import org.openstreetmap.josm.plugins.graphview.core.graph.WayGraphDelta;
 import org.openstreetmap.josm.plugins.graphview.core.graph.WayGraphObserver;
 import org.openstreetmap.josm.plugins.graphview.core.property.GraphEdgeSegments;
 import org.openstreetmap.josm.plugins.graphview.core.transition.Segment;
@@ -39,6 +46,7 @@ import org.openstreetmap.josm.plugins.graphview.core.visualisation.ColorScheme;
 import org.openstreetmap.josm.plugins.graphview.core.visualisation.LatLonCoords;
 import org.openstreetmap.josm.plugins.graphview.core.visualisation.NodePositioner;
 import org.openstreetmap.josm.plugins.graphview.core.visualisation.NonMovingNodePositioner;
+import org.openstreetmap.josm.plugins.graphview.core.visualisation.WayGraphGridIndex;
 import org.openstreetmap.josm.plugins.graphview.plugin.preferences.GraphViewPreferences;
 import org.openstreetmap.josm.tools.ImageProvider;
 
@@ -62,6 +70,18 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
 
     private static final boolean CONNECT_ALL_NODE_PAIRS = false;
 
+    /** margin around the view in pixels, elements within it can be visible due to offsets or arrowheads */
+    private static final int PAINT_MARGIN = 40;
+
+    /** minimum number of visible nodes and edges for painting a raster of the whole graph */
+    private static final int RASTER_MIN_PRIMITIVES = 5000;
+
+    /** maximum width and height of a raster */
+    private static final int MAX_RASTER_SIZE = 2048;
+
+    /** maximum number of rasters (zoom bands) that are kept */
+    private static final int MAX_RASTERS = 3;
+
     /** an arrow head that points along the x-axis to (0,0) */
     private static final Shape ARROW_HEAD;
 
@@ -89,8 +109,54 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
 
     }
 
+    /** maps projected coordinates to points, of the map view or of a raster */
+    @FunctionalInterface
+    interface EastNorthMapper {
+        Point getPoint(EastNorth eastNorth);
+    }
+
+    /** the whole graph, painted for the scale of a zoom band */
+    private static final class GraphRaster {
+        private final BufferedImage image;
+        private final EastNorth topLeft;
+        private final double scale;
+
+        GraphRaster(BufferedImage image, EastNorth topLeft, double scale) {
+            this.image = image;
+            this.topLeft = topLeft;
+            this.scale = scale;
+        }
+
+        void paint(Graphics2D g, EastNorthMapper mapper, double viewScale) {
+            Point p = mapper.getPoint(topLeft);
+            double factor = scale / viewScale;
+            g.drawImage(image, p.x, p.y,
+                    (int) Math.round(image.getWidth() * factor), (int) Math.round(image.getHeight() * factor), null);
+        }
+    }
+
     private WayGraph wayGraph = null;
 
+    /** index of the graph's elements by position, only elements within the view are painted */
+    private final WayGraphGridIndex index = new WayGraphGridIndex();
+    private boolean indexOutdated = true;
+    /** graph changes that have not been applied to the index yet, oldest first */
+    private final List<WayGraphDelta> pendingDeltas = new ArrayList<>();
+
+    /** rasters of the whole graph by zoom band scale, least recently used first */
+    private final Map<Double, GraphRaster> rasters = new LinkedHashMap<Double, GraphRaster>(4, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Double, GraphRaster> eldest) {
+            return size() > MAX_RASTERS;
+        }
+    };
+    private Projection rasterProjection;
+
+    private int paintedPrimitives;
+    private int totalPrimitives;
+    private boolean paintedFromRaster;
+    private long lastPaintNanos;
+
     private ColorScheme colorScheme = null;
     private Double arrowheadPlacement = null;
     private NodePositioner nodePositioner = new NonMovingNodePositioner();
@@ -108,6 +174,9 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
         if (wayGraph != null) {
             wayGraph.addObserver(this);
         }
+        index.clear();
+        indexOutdated = true;
+        invalidate();
     }
 
     /** sets the ColorScheme that is to be used for choosing colors, may be null */
@@ -132,6 +201,8 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
         if (nodePositioner == null) {
             this.nodePositioner = new NonMovingNodePositioner();
         }
+        index.clear();
+        indexOutdated = true;
         invalidate();
     }
 
@@ -140,10 +211,10 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
         return ImageProvider.get("layer", "graphview");
     }
 
-    private void paintGraphNode(final GraphNode node, final Graphics g, final MapView mv) {
+    private void paintGraphNode(final GraphNode node, final Graphics g, final EastNorthMapper mapper) {
 
         Color color = colorScheme != null ? colorScheme.getNodeColor(node) : Color.LIGHT_GRAY;
-        Point p = getNodePoint(node, mv);
+        Point p = getNodePoint(node, mapper);
 
         paintNode(g, p, color);
 
@@ -154,7 +225,7 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
         g.fillOval(p.x - NODE_RADIUS, p.y - NODE_RADIUS, 2 * NODE_RADIUS, 2 * NODE_RADIUS);
     }
 
-    private void paintGraphEdge(final GraphEdge e, final Graphics2D g2D, final MapView mv,
+    private void paintGraphEdge(final GraphEdge e, final Graphics2D g2D, final EastNorthMapper mapper,
             boolean drawLine, boolean drawDirectionIndicator) {
 
         if (!CONNECT_ALL_NODE_PAIRS && GraphViewPreferences.getInstance().getSeparateDirections()) {
@@ -189,14 +260,14 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
                 }
                 g2D.setColor(color);
 
-                Point p1 = getNodePoint(segment.getNode1(), mv);
-                Point p2 = getNodePoint(segment.getNode2(), mv);
+                Point p1 = getNodePoint(segment.getNode1(), mapper);
+                Point p2 = getNodePoint(segment.getNode2(), mapper);
 
                 if (segment == firstSegment) {
-                    p1 = getNodePoint(e.getStartNode(), mv);
+                    p1 = getNodePoint(e.getStartNode(), mapper);
                 }
                 if (segment == lastSegment) {
-                    p2 = getNodePoint(e.getTargetNode(), mv);
+                    p2 = getNodePoint(e.getTargetNode(), mapper);
                 }
 
                 if (drawLine) {
@@ -210,8 +281,8 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
             Color color = GraphViewPreferences.getInstance().getSegmentColor();
             g2D.setColor(color);
 
-            Point p1 = getNodePoint(e.getStartNode(), mv);
-            Point p2 = getNodePoint(e.getTargetNode(), mv);
+            Point p1 = getNodePoint(e.getStartNode(), mapper);
+            Point p2 = getNodePoint(e.getTargetNode(), mapper);
 
             if (drawLine) {
                 g2D.draw(new Line2D.Float(p1.x, p1.y, p2.x, p2.y));
@@ -222,12 +293,12 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
         /* draw arrow head (note: color of last segment is still set) */
 
         {
-            Point p1 = getNodePoint(e.getStartNode(), mv);
-            Point p2 = getNodePoint(e.getTargetNode(), mv);
+            Point p1 = getNodePoint(e.getStartNode(), mapper);
+            Point p2 = getNodePoint(e.getTargetNode(), mapper);
 
             if (edgeSegments.size() > 1) {
                 Segment lastSegment = edgeSegments.get(edgeSegments.size() - 1);
-                p1 = getNodePoint(lastSegment.getNode1(), mv);
+                p1 = getNodePoint(lastSegment.getNode1(), mapper);
             }
 
             if (drawDirectionIndicator) {
@@ -275,9 +346,9 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
         }
     }
 
-    private Point getNodePoint(GraphNode node, MapView mv) {
+    private Point getNodePoint(GraphNode node, EastNorthMapper mapper) {
 
-        Point nodePoint = getNodePoint(nodePositioner.getPosition(node), mv);
+        Point nodePoint = getNodePoint(nodePositioner.getPosition(node), mapper);
 
         if (GraphViewPreferences.getInstance().getSeparateDirections()
                 && !GraphUtil.isEndNode(node)) {
@@ -285,8 +356,8 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
             SegmentNode node1 = node.getSegment().getNode1();
             SegmentNode node2 = node.getSegment().getNode2();
 
-            Point node1Point = getNodePoint(node1, mv);
-            Point node2Point = getNodePoint(node2, mv);
+            Point node1Point = getNodePoint(node1, mapper);
+            Point node2Point = getNodePoint(node2, mapper);
 
             double segmentX = node2Point.getX() - node1Point.getX();
             double segmentY = node2Point.getY() - node1Point.getY();
@@ -311,15 +382,15 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
         return nodePoint;
     }
 
-    private static Point getNodePoint(SegmentNode node, MapView mv) {
+    private static Point getNodePoint(SegmentNode node, EastNorthMapper mapper) {
         LatLonCoords coords = new LatLonCoords(node.getLat(), node.getLon());
-        return getNodePoint(coords, mv);
+        return getNodePoint(coords, mapper);
     }
 
-    private static Point getNodePoint(LatLonCoords coords, MapView mv) {
+    private static Point getNodePoint(LatLonCoords coords, EastNorthMapper mapper) {
         LatLon latLon = new LatLon(coords.getLat(), coords.getLon());
         EastNorth eastNorth = ProjectionRegistry.getProjection().latlon2eastNorth(latLon);
-        return mv.getPoint(eastNorth);
+        return mapper.getPoint(eastNorth);
     }
 
     /**
@@ -353,23 +424,160 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
     public void paint(final Graphics2D g, final MapView mv, Bounds bounds) {
         if (wayGraph != null) {
 
-            for (GraphNode n : wayGraph.getNodes()) {
-                paintGraphNode(n, g, mv);
+            long start = System.nanoTime();
+
+            if (indexOutdated) {
+                index.rebuild(wayGraph, nodePositioner);
+                indexOutdated = false;
+            } else {
+                for (WayGraphDelta delta : pendingDeltas) {
+                    index.update(wayGraph, delta, nodePositioner);
+                }
             }
+            pendingDeltas.clear();
+
+            /* find the visible elements, with a margin for directional offsets and arrowheads */
+
+            double minLat = Double.POSITIVE_INFINITY;
+            double minLon = Double.POSITIVE_INFINITY;
+            double maxLat = Double.NEGATIVE_INFINITY;
+            double maxLon = Double.NEGATIVE_INFINITY;
+            for (int x : new int[] {-PAINT_MARGIN, mv.getWidth() + PAINT_MARGIN}) {
+                for (int y : new int[] {-PAINT_MARGIN, mv.getHeight() + PAINT_MARGIN}) {
+                    LatLon corner = mv.getLatLon(x, y);
+                    minLat = Math.min(minLat, corner.lat());
+                    minLon = Math.min(minLon, corner.lon());
+                    maxLat = Math.max(maxLat, corner.lat());
+                    maxLon = Math.max(maxLon, corner.lon());
+                }
+            }
+
+            Collection<GraphNode> nodes = index.getNodes(minLat, minLon, maxLat, maxLon);
+            Collection<GraphEdge> edges = index.getEdges(minLat, minLon, maxLat, maxLon);
+
+            /* far zoom levels: paint the cached raster of the zoom band instead */
 
-            for (GraphEdge e : wayGraph.getEdges()) {
-                paintGraphEdge(e, g, mv, true, false);
+            GraphRaster raster = null;
+            if (nodes.size() + edges.size() > RASTER_MIN_PRIMITIVES) {
+                raster = getRaster(getZoomBandScale(mv.getScale()));
             }
 
-            for (GraphEdge e : wayGraph.getEdges()) {
-                //draw arrowheads last to make sure they end up on top
-                paintGraphEdge(e, g, mv, false, true);
+            if (raster != null) {
+                raster.paint(g, mv::getPoint, mv.getScale());
+                paintedPrimitives = 0;
+            } else {
+                paintPrimitives(g, mv::getPoint, nodes, edges);
+                paintedPrimitives = nodes.size() + edges.size();
             }
 
+            totalPrimitives = index.getNodeCount() + index.getEdgeCount();
+            paintedFromRaster = raster != null;
+            lastPaintNanos = System.nanoTime() - start;
+
+        }
+
+    }
+
+    /**
+     * paints graph nodes and edges
+     * @param g       graphics to paint on; != null
+     * @param mapper  maps projected coordinates to points of the graphics; != null
+     * @param nodes   nodes to paint; != null
+     * @param edges   edges to paint; != null
+     */
+    void paintPrimitives(final Graphics2D g, final EastNorthMapper mapper,
+            Collection<GraphNode> nodes, Collection<GraphEdge> edges) {
+
+        for (GraphNode n : nodes) {
+            paintGraphNode(n, g, mapper);
+        }
+
+        for (GraphEdge e : edges) {
+            paintGraphEdge(e, g, mapper, true, false);
+        }
+
+        for (GraphEdge e : edges) {
+            //draw arrowheads last to make sure they end up on top
+            paintGraphEdge(e, g, mapper, false, true);
         }
 
     }
 
+    /**
+     * returns the raster of the whole graph for a scale, creates it if necessary.
+     * @return  raster; null if the graph is too large for a raster at this scale
+     */
+    private GraphRaster getRaster(double scale) {
+
+        Projection projection = ProjectionRegistry.getProjection();
+        if (projection != rasterProjection) {
+            rasters.clear();
+            rasterProjection = projection;
+        }
+
+        if (!rasters.containsKey(scale)) {
+            //null is remembered as well, so that the size is not checked again on every repaint
+            rasters.put(scale, createRaster(scale, projection));
+        }
+
+        return rasters.get(scale);
+    }
+
+    private GraphRaster createRaster(double scale, Projection projection) {
+
+        if (index.isEmpty()) {
+            return null;
+        }
+
+        double[] bounds = index.getBounds();
+        EastNorth min = projection.latlon2eastNorth(new LatLon(bounds[0], bounds[1]));
+        EastNorth max = projection.latlon2eastNorth(new LatLon(bounds[2], bounds[3]));
+
+        double width = Math.abs(max.east() - min.east()) / scale + 2 * PAINT_MARGIN;
+        double height = Math.abs(max.north() - min.north()) / scale + 2 * PAINT_MARGIN;
+
+        if (!(width <= MAX_RASTER_SIZE && height <= MAX_RASTER_SIZE)) {
+            return null;
+        }
+
+        final EastNorth topLeft = new EastNorth(
+                Math.min(min.east(), max.east()) - PAINT_MARGIN * scale,
+                Math.max(min.north(), max.north()) + PAINT_MARGIN * scale);
+
+        BufferedImage image = new BufferedImage((int) Math.ceil(width), (int) Math.ceil(height), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            paintPrimitives(g, eastNorth -> new Point(
+                    (int) Math.round((eastNorth.east() - topLeft.east()) / scale),
+                    (int) Math.round((topLeft.north() - eastNorth.north()) / scale)),
+                    wayGraph.getNodes(), wayGraph.getEdges());
+        } finally {
+            g.dispose();
+        }
+
+        return new GraphRaster(image, topLeft, scale);
+    }
+
+    /** returns the scale of the zoom band containing a scale: the nearest power of two */
+    private static double getZoomBandScale(double scale) {
+        return Math.pow(2, Math.round(Math.log(scale) / Math.log(2)));
+    }
+
+    /** returns the number of graph nodes and edges painted individually during the last repaint */
+    public int getPaintedPrimitives() {
+        return paintedPrimitives;
+    }
+
+    /** returns the number of graph nodes and edges */
+    public int getTotalPrimitives() {
+        return totalPrimitives;
+    }
+
+    /** returns the duration of the last repaint in milliseconds */
+    public double getLastPaintMillis() {
+        return lastPaintNanos / 1e6;
+    }
+
     @Override
     public String getToolTipText() {
         return tr("Routing graph calculated by the GraphView plugin");
@@ -391,7 +599,15 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
 
     @Override
     public Object getInfoComponent() {
-        return getToolTipText();
+        StringBuilder info = new StringBuilder("<html>").append(getToolTipText()).append("<br>");
+        if (paintedFromRaster) {
+            info.append(tr("Painted {0} nodes and edges from a cached raster in {1} ms",
+                    totalPrimitives, String.format("%.1f", getLastPaintMillis())));
+        } else {
+            info.append(tr("Painted {0} of {1} nodes and edges in {2} ms",
+                    paintedPrimitives, totalPrimitives, String.format("%.1f", getLastPaintMillis())));
+        }
+        return info.append("</html>").toString();
     }
 
     @Override
@@ -405,9 +621,25 @@ public class GraphViewLayer extends Layer implements  WayGraphObserver {
                 new LayerListPopup.InfoAction(this)};
     }
 
+    @Override
+    public void invalidate() {
+        rasters.clear();
+        super.invalidate();
+    }
+
     @Override
     public void update(WayGraph wayGraph) {
         assert wayGraph == this.wayGraph;
+        indexOutdated = true;
+        invalidate();
+    }
+
+    @Override
+    public void update(WayGraph wayGraph, WayGraphDelta delta) {
+        assert wayGraph == this.wayGraph;
+        if (!indexOutdated) {
+            pendingDeltas.add(delta);
+        }
         invalidate();
     }
 }
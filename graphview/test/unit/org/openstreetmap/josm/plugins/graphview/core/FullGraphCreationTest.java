@@ -36,7 +36,7 @@ import org.openstreetmap.josm.plugins.graphview.plugin.preferences.VehicleProper
 
 class FullGraphCreationTest {
 
-    private static final AccessParameters ACCESS_PARAMS;
+    static final AccessParameters ACCESS_PARAMS;
     static {
         Map<VehiclePropertyType<?>, String> vehiclePropertyValues =
             new HashMap<>();
@@ -52,7 +52,7 @@ class FullGraphCreationTest {
         }
     }
 
-    private static final AccessRuleset TEST_RULESET = new AccessRuleset() {
+    static final AccessRuleset TEST_RULESET = new AccessRuleset() {
         @Override
         public java.util.List<String> getAccessHierarchyAncestors(String transportMode) {
             return Collections.singletonList(transportMode);
@@ -158,7 +158,7 @@ class FullGraphCreationTest {
 
     }
 
-    private TestRelation createTurnRestrictionRelation(
+    static TestRelation createTurnRestrictionRelation(
             TestWay from, TestNode via, TestWay to, String restriction) {
         TestRelation resultRelation = new TestRelation();
         resultRelation.tags.put("type", "restriction");
@@ -169,7 +169,8 @@ class FullGraphCreationTest {
         return resultRelation;
     }
 
-    private TransitionStructure createTestTransitionStructure(TestDataSource dataSource) {
+    static GenericTransitionStructure<TestNode, TestWay, TestRelation, TestRelationMember> createTestTransitionStructure(
+            TestDataSource dataSource) {
 
         LinkedList<RoadPropertyType<?>> properties = new LinkedList<>();
         properties.add(new RoadWidth());
@@ -178,7 +179,7 @@ class FullGraphCreationTest {
                 ACCESS_PARAMS, TEST_RULESET, dataSource, properties);
     }
 
-    private static int size(Iterable<?> iterable) {
+    static int size(Iterable<?> iterable) {
         Iterator<?> iterator = iterable.iterator();
         int size = 0;
         while (iterator.hasNext()) {
@@ -0,0 +1,150 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.graphview.core;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.openstreetmap.josm.plugins.graphview.core.FullGraphCreationTest.createTestTransitionStructure;
+import static org.openstreetmap.josm.plugins.graphview.core.FullGraphCreationTest.createTurnRestrictionRelation;
+import static org.openstreetmap.josm.plugins.graphview.core.FullGraphCreationTest.size;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestNode;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestRelation;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestRelationMember;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestWay;
+import org.openstreetmap.josm.plugins.graphview.core.data.DataSourceDelta;
+import org.openstreetmap.josm.plugins.graphview.core.graph.TSBasedWayGraph;
+import org.openstreetmap.josm.plugins.graphview.core.graph.WayGraph;
+import org.openstreetmap.josm.plugins.graphview.core.transition.GenericTransitionStructure;
+import org.openstreetmap.josm.plugins.graphview.core.transition.TransitionStructure;
+
+/**
+ * checks that incremental updates of transition structure and graph
+ * give the same result as creating them from scratch
+ */
+class IncrementalGraphUpdateTest {
+
+    private TestDataSource ds;
+    private TestNode nodeC;
+    private TestWay wayNC;
+    private TestWay wayCS;
+    private TestWay wayCW;
+
+    private GenericTransitionStructure<TestNode, TestWay, TestRelation, TestRelationMember> ts;
+    private WayGraph graph;
+
+    /** T junction, as in {@link FullGraphCreationTest#testTJunction()} */
+    @BeforeEach
+    void setUp() {
+
+        ds = new TestDataSource();
+
+        TestNode nodeN = new TestNode(2, 1);
+        TestNode nodeW = new TestNode(1, 0);
+        TestNode nodeS = new TestNode(0, 1);
+        nodeC = new TestNode(1, 1);
+
+        ds.nodes.addAll(Arrays.asList(nodeN, nodeW, nodeS, nodeC));
+
+        wayNC = new TestWay();
+        wayNC.tags.put("highway", "test");
+        wayNC.nodes.addAll(Arrays.asList(nodeN, nodeC));
+        wayCS = new TestWay();
+        wayCS.tags.put("highway", "test");
+        wayCS.nodes.addAll(Arrays.asList(nodeC, nodeS));
+        wayCW = new TestWay();
+        wayCW.tags.put("highway", "test");
+        wayCW.nodes.addAll(Arrays.asList(nodeC, nodeW));
+
+        ds.ways.addAll(Arrays.asList(wayNC, wayCS, wayCW));
+
+        ts = createTestTransitionStructure(ds);
+        graph = new TSBasedWayGraph(ts);
+
+        assertSame(12, graph.getNodes().size());
+        assertSame(24, graph.getEdges().size());
+    }
+
+    @Test
+    void testRestrictionAdded() {
+
+        TestRelation relation = createTurnRestrictionRelation(wayCS, nodeC, wayCW, "no_left_turn");
+        ds.relations.add(relation);
+
+        DataSourceDelta<TestNode, TestWay, TestRelation> delta = new DataSourceDelta<>();
+        delta.addRelation(relation, false);
+        ts.update(ds, delta);
+
+        assertSame(1, size(ts.getRestrictions()));
+        assertSame(23, graph.getEdges().size());
+        assertSameAsFullUpdate();
+
+        ds.relations.remove(relation);
+        delta = new DataSourceDelta<>();
+        delta.addRelation(relation, true);
+        ts.update(ds, delta);
+
+        assertSame(0, size(ts.getRestrictions()));
+        assertSame(24, graph.getEdges().size());
+        assertSameAsFullUpdate();
+    }
+
+    @Test
+    void testWayChanged() {
+
+        wayCW.tags.put("oneway", "yes");
+
+        DataSourceDelta<TestNode, TestWay, TestRelation> delta = new DataSourceDelta<>();
+        delta.addWay(wayCW, false);
+        ts.update(ds, delta);
+
+        assertSame(5, size(ts.getSegments()));
+        assertSameAsFullUpdate();
+    }
+
+    @Test
+    void testWayRemoved() {
+
+        ds.ways.remove(wayCW);
+
+        DataSourceDelta<TestNode, TestWay, TestRelation> delta = new DataSourceDelta<>();
+        delta.addWay(wayCW, true);
+        ts.update(ds, delta);
+
+        assertSame(3, size(ts.getNodes()));
+        assertSame(4, size(ts.getSegments()));
+        assertSameAsFullUpdate();
+    }
+
+    @Test
+    void testBarrierNodeChanged() {
+
+        ds.relations.add(createTurnRestrictionRelation(wayCS, nodeC, wayCW, "no_left_turn"));
+        ts.update(ds);
+
+        nodeC.tags.put("width", "1");
+
+        DataSourceDelta<TestNode, TestWay, TestRelation> delta = new DataSourceDelta<>();
+        delta.addNode(nodeC, false);
+        ts.update(ds, delta);
+
+        assertSame(1 + 3 * 3, size(ts.getRestrictions()));
+        assertSameAsFullUpdate();
+    }
+
+    private void assertSameAsFullUpdate() {
+
+        TransitionStructure fullTs = createTestTransitionStructure(ds);
+        WayGraph fullGraph = new TSBasedWayGraph(fullTs);
+
+        assertSame(size(fullTs.getNodes()), size(ts.getNodes()));
+        assertSame(size(fullTs.getSegments()), size(ts.getSegments()));
+        assertSame(size(fullTs.getRestrictions()), size(ts.getRestrictions()));
+
+        assertSame(fullGraph.getNodes().size(), graph.getNodes().size());
+        assertSame(fullGraph.getEdges().size(), graph.getEdges().size());
+    }
+
+}
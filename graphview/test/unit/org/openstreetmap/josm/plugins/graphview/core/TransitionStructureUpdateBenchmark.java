@@ -0,0 +1,132 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.graphview.core;
+
+import static org.openstreetmap.josm.plugins.graphview.core.FullGraphCreationTest.createTestTransitionStructure;
+import static org.openstreetmap.josm.plugins.graphview.core.FullGraphCreationTest.createTurnRestrictionRelation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestNode;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestRelation;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestRelationMember;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestWay;
+import org.openstreetmap.josm.plugins.graphview.core.data.DataSourceDelta;
+import org.openstreetmap.josm.plugins.graphview.core.graph.TSBasedWayGraph;
+import org.openstreetmap.josm.plugins.graphview.core.transition.GenericTransitionStructure;
+
+/**
+ * time of a single edit: incremental update of transition structure and graph
+ * compared with creating them from scratch.
+ * <p>
+ * Not run with unit tests. The data is a square grid of streets with some oneways,
+ * barriers and turn restrictions; each edit toggles the oneway tag of a random way.
+ */
+class TransitionStructureUpdateBenchmark {
+
+    private static final int GRID_SIZE = 60;
+    private static final int EDITS = 200;
+    private static final int FULL_UPDATES = 10;
+
+    @Test
+    void benchmarkSingleEdit() {
+
+        Random random = new Random(42);
+        TestDataSource ds = new TestDataSource();
+        List<TestWay> ways = createGrid(ds, random);
+
+        long start = System.nanoTime();
+        GenericTransitionStructure<TestNode, TestWay, TestRelation, TestRelationMember> ts =
+            createTestTransitionStructure(ds);
+        TSBasedWayGraph graph = new TSBasedWayGraph(ts);
+        System.out.printf("%d ways, %d graph nodes, %d graph edges, created in %.1f ms%n",
+                ways.size(), graph.getNodes().size(), graph.getEdges().size(), (System.nanoTime() - start) / 1e6);
+
+        for (int run = 0; run < 2; run++) {
+
+            start = System.nanoTime();
+            for (int i = 0; i < EDITS; i++) {
+                TestWay way = ways.get(random.nextInt(ways.size()));
+                toggleOneway(way);
+                DataSourceDelta<TestNode, TestWay, TestRelation> delta = new DataSourceDelta<>();
+                delta.addWay(way, false);
+                ts.update(ds, delta);
+            }
+            long incrementalNanos = (System.nanoTime() - start) / EDITS;
+
+            start = System.nanoTime();
+            for (int i = 0; i < FULL_UPDATES; i++) {
+                toggleOneway(ways.get(random.nextInt(ways.size())));
+                ts.update(ds);
+            }
+            long fullNanos = (System.nanoTime() - start) / FULL_UPDATES;
+
+            // the first run is warmup
+            if (run > 0) {
+                System.out.printf("incremental update %.2f ms, full update %.1f ms%n",
+                        incrementalNanos / 1e6, fullNanos / 1e6);
+            }
+        }
+    }
+
+    private static void toggleOneway(TestWay way) {
+        if (way.tags.remove("oneway") == null) {
+            way.tags.put("oneway", "yes");
+        }
+    }
+
+    private static List<TestWay> createGrid(TestDataSource ds, Random random) {
+
+        TestNode[][] nodes = new TestNode[GRID_SIZE][GRID_SIZE];
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                nodes[i][j] = new TestNode(i, j);
+                if (random.nextInt(50) == 0) {
+                    nodes[i][j].tags.put("width", "1");
+                }
+                ds.nodes.add(nodes[i][j]);
+            }
+        }
+
+        /* ways along rows and columns, each spanning a few junctions */
+
+        List<TestWay> ways = new ArrayList<>();
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j + 1 < GRID_SIZE; j += 3) {
+                TestWay way = new TestWay();
+                way.tags.put("highway", "test");
+                for (int k = j; k <= Math.min(j + 3, GRID_SIZE - 1); k++) {
+                    way.nodes.add(nodes[i][k]);
+                }
+                ways.add(way);
+            }
+            for (int j = 0; j + 1 < GRID_SIZE; j += 4) {
+                TestWay way = new TestWay();
+                way.tags.put("highway", "test");
+                for (int k = j; k <= Math.min(j + 4, GRID_SIZE - 1); k++) {
+                    way.nodes.add(nodes[k][i]);
+                }
+                ways.add(way);
+            }
+        }
+        ds.ways.addAll(ways);
+
+        /* turn restrictions between ways that meet end to start */
+
+        for (int r = 0; r < GRID_SIZE * GRID_SIZE / 20; r++) {
+            TestWay from = ways.get(random.nextInt(ways.size()));
+            TestNode via = from.nodes.get(from.nodes.size() - 1);
+            for (TestWay to : ways) {
+                if (to != from && to.nodes.get(0) == via) {
+                    ds.relations.add(createTurnRestrictionRelation(from, via, to, "no_left_turn"));
+                    break;
+                }
+            }
+        }
+
+        return ways;
+    }
+
+}
@@ -0,0 +1,117 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.graphview.core;
+
+import static org.openstreetmap.josm.plugins.graphview.core.FullGraphCreationTest.createTestTransitionStructure;
+
+import java.util.Collection;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestNode;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestWay;
+import org.openstreetmap.josm.plugins.graphview.core.graph.GraphEdge;
+import org.openstreetmap.josm.plugins.graphview.core.graph.GraphNode;
+import org.openstreetmap.josm.plugins.graphview.core.graph.TSBasedWayGraph;
+import org.openstreetmap.josm.plugins.graphview.core.graph.WayGraph;
+import org.openstreetmap.josm.plugins.graphview.core.visualisation.LatLonCoords;
+import org.openstreetmap.josm.plugins.graphview.core.visualisation.NodePositioner;
+import org.openstreetmap.josm.plugins.graphview.core.visualisation.NonMovingNodePositioner;
+import org.openstreetmap.josm.plugins.graphview.core.visualisation.WayGraphGridIndex;
+
+/**
+ * time needed for finding the elements to paint in a view showing a small part of a large graph:
+ * query of a {@link WayGraphGridIndex} compared with checking every element,
+ * which is the lower bound for painting without the index.
+ * <p>
+ * Not run with unit tests.
+ */
+class WayGraphGridIndexBenchmark {
+
+    private static final int GRID_SIZE = 150;
+    private static final double NODE_DISTANCE = 0.001;
+
+    /** size of the view as a fraction of the graph's width and height */
+    private static final double VIEW_FRACTION = 0.1;
+
+    private static final int FRAMES = 200;
+
+    @Test
+    void benchmarkVisibleElements() {
+
+        TestDataSource ds = new TestDataSource();
+        TestNode[][] nodes = new TestNode[GRID_SIZE][GRID_SIZE];
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                nodes[i][j] = new TestNode(i * NODE_DISTANCE, j * NODE_DISTANCE);
+                ds.nodes.add(nodes[i][j]);
+            }
+        }
+        for (int i = 0; i < GRID_SIZE; i++) {
+            TestWay row = new TestWay();
+            TestWay column = new TestWay();
+            row.tags.put("highway", "test");
+            column.tags.put("highway", "test");
+            for (int j = 0; j < GRID_SIZE; j++) {
+                row.nodes.add(nodes[i][j]);
+                column.nodes.add(nodes[j][i]);
+            }
+            ds.ways.add(row);
+            ds.ways.add(column);
+        }
+
+        WayGraph graph = new TSBasedWayGraph(createTestTransitionStructure(ds));
+        NodePositioner positioner = new NonMovingNodePositioner();
+
+        long start = System.nanoTime();
+        WayGraphGridIndex index = new WayGraphGridIndex();
+        index.rebuild(graph, positioner);
+        System.out.printf("%d graph nodes, %d graph edges, indexed in %.1f ms%n",
+                graph.getNodes().size(), graph.getEdges().size(), (System.nanoTime() - start) / 1e6);
+
+        double viewSize = GRID_SIZE * NODE_DISTANCE * VIEW_FRACTION;
+
+        for (int run = 0; run < 2; run++) {
+
+            int visible = 0;
+
+            start = System.nanoTime();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                double minLat = (frame % 9) * viewSize;
+                double minLon = (frame % 7) * viewSize;
+                Collection<GraphNode> visibleNodes = index.getNodes(minLat, minLon, minLat + viewSize, minLon + viewSize);
+                Collection<GraphEdge> visibleEdges = index.getEdges(minLat, minLon, minLat + viewSize, minLon + viewSize);
+                visible = visibleNodes.size() + visibleEdges.size();
+            }
+            long indexNanos = (System.nanoTime() - start) / FRAMES;
+
+            start = System.nanoTime();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                double minLat = (frame % 9) * viewSize;
+                double minLon = (frame % 7) * viewSize;
+                int count = 0;
+                for (GraphNode node : graph.getNodes()) {
+                    LatLonCoords position = positioner.getPosition(node);
+                    if (position.getLat() >= minLat && position.getLat() <= minLat + viewSize
+                            && position.getLon() >= minLon && position.getLon() <= minLon + viewSize) {
+                        count++;
+                    }
+                }
+                for (GraphEdge edge : graph.getEdges()) {
+                    LatLonCoords position = positioner.getPosition(edge.getStartNode());
+                    if (position.getLat() >= minLat && position.getLat() <= minLat + viewSize
+                            && position.getLon() >= minLon && position.getLon() <= minLon + viewSize) {
+                        count++;
+                    }
+                }
+                visible = Math.max(visible, count);
+            }
+            long scanNanos = (System.nanoTime() - start) / FRAMES;
+
+            // the first run is warmup
+            if (run > 0) {
+                System.out.printf("about %d of %d elements visible: index query %.3f ms, checking all %.3f ms%n",
+                        visible, graph.getNodes().size() + graph.getEdges().size(), indexNanos / 1e6, scanNanos / 1e6);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.graphview.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.openstreetmap.josm.plugins.graphview.core.FullGraphCreationTest.createTestTransitionStructure;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestNode;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestRelation;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestRelationMember;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestWay;
+import org.openstreetmap.josm.plugins.graphview.core.data.DataSourceDelta;
+import org.openstreetmap.josm.plugins.graphview.core.graph.GraphEdge;
+import org.openstreetmap.josm.plugins.graphview.core.graph.GraphNode;
+import org.openstreetmap.josm.plugins.graphview.core.graph.TSBasedWayGraph;
+import org.openstreetmap.josm.plugins.graphview.core.graph.WayGraph;
+import org.openstreetmap.josm.plugins.graphview.core.graph.WayGraphDelta;
+import org.openstreetmap.josm.plugins.graphview.core.graph.WayGraphObserver;
+import org.openstreetmap.josm.plugins.graphview.core.transition.GenericTransitionStructure;
+import org.openstreetmap.josm.plugins.graphview.core.visualisation.LatLonCoords;
+import org.openstreetmap.josm.plugins.graphview.core.visualisation.NodePositioner;
+import org.openstreetmap.josm.plugins.graphview.core.visualisation.NonMovingNodePositioner;
+import org.openstreetmap.josm.plugins.graphview.core.visualisation.WayGraphGridIndex;
+
+/**
+ * compares the results of {@link WayGraphGridIndex} queries with checking all elements
+ */
+class WayGraphGridIndexTest {
+
+    private static final int GRID_SIZE = 10;
+
+    private final NodePositioner positioner = new NonMovingNodePositioner();
+
+    private TestDataSource ds;
+    private List<TestWay> ways;
+    private GenericTransitionStructure<TestNode, TestWay, TestRelation, TestRelationMember> ts;
+    private WayGraph graph;
+
+    /** square grid of ways with 0.01 degrees between neighbouring nodes */
+    @BeforeEach
+    void setUp() {
+
+        ds = new TestDataSource();
+        ways = new ArrayList<>();
+
+        TestNode[][] nodes = new TestNode[GRID_SIZE][GRID_SIZE];
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j < GRID_SIZE; j++) {
+                nodes[i][j] = new TestNode(50 + i * 0.01, 8 + j * 0.01);
+                ds.nodes.add(nodes[i][j]);
+            }
+        }
+
+        for (int i = 0; i < GRID_SIZE; i++) {
+            for (int j = 0; j + 1 < GRID_SIZE; j++) {
+                ways.add(createWay(nodes[i][j], nodes[i][j + 1]));
+                ways.add(createWay(nodes[j][i], nodes[j + 1][i]));
+            }
+        }
+        ds.ways.addAll(ways);
+
+        ts = createTestTransitionStructure(ds);
+        graph = new TSBasedWayGraph(ts);
+    }
+
+    @Test
+    void testQueries() {
+
+        WayGraphGridIndex index = new WayGraphGridIndex();
+        index.rebuild(graph, positioner);
+
+        assertEquals(graph.getNodes().size(), index.getNodeCount());
+        assertEquals(graph.getEdges().size(), index.getEdgeCount());
+
+        assertQueriesCorrect(index);
+    }
+
+    @Test
+    void testUpdate() {
+
+        WayGraphGridIndex index = new WayGraphGridIndex();
+        index.rebuild(graph, positioner);
+
+        List<WayGraphDelta> deltas = new ArrayList<>();
+        graph.addObserver(new WayGraphObserver() {
+            @Override
+            public void update(WayGraph wayGraph) {
+                throw new AssertionError("full update instead of delta");
+            }
+
+            @Override
+            public void update(WayGraph wayGraph, WayGraphDelta delta) {
+                deltas.add(delta);
+            }
+        });
+
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20; i++) {
+
+            TestWay way = ways.get(random.nextInt(ways.size()));
+            boolean removed = ds.ways.remove(way);
+            if (!removed) {
+                ds.ways.add(way);
+            }
+
+            DataSourceDelta<TestNode, TestWay, TestRelation> delta = new DataSourceDelta<>();
+            delta.addWay(way, removed);
+            ts.update(ds, delta);
+
+            assertEquals(1, deltas.size());
+            index.update(graph, deltas.remove(0), positioner);
+
+            assertEquals(graph.getNodes().size(), index.getNodeCount());
+            assertEquals(graph.getEdges().size(), index.getEdgeCount());
+        }
+
+        assertQueriesCorrect(index);
+    }
+
+    @Test
+    void testEmptyArea() {
+
+        WayGraphGridIndex index = new WayGraphGridIndex();
+        index.rebuild(graph, positioner);
+
+        assertTrue(index.getNodes(-10, -10, -9, -9).isEmpty());
+        assertTrue(index.getEdges(-10, -10, -9, -9).isEmpty());
+    }
+
+    private void assertQueriesCorrect(WayGraphGridIndex index) {
+
+        Random random = new Random(0);
+
+        for (int i = 0; i < 50; i++) {
+
+            double lat1 = 50 - 0.02 + random.nextDouble() * 0.13;
+            double lat2 = 50 - 0.02 + random.nextDouble() * 0.13;
+            double lon1 = 8 - 0.02 + random.nextDouble() * 0.13;
+            double lon2 = 8 - 0.02 + random.nextDouble() * 0.13;
+
+            double minLat = Math.min(lat1, lat2);
+            double maxLat = Math.max(lat1, lat2);
+            double minLon = Math.min(lon1, lon2);
+            double maxLon = Math.max(lon1, lon2);
+
+            Set<GraphNode> expectedNodes = new HashSet<>();
+            for (GraphNode node : graph.getNodes()) {
+                LatLonCoords position = positioner.getPosition(node);
+                if (position.getLat() >= minLat && position.getLat() <= maxLat
+                        && position.getLon() >= minLon && position.getLon() <= maxLon) {
+                    expectedNodes.add(node);
+                }
+            }
+
+            Set<GraphEdge> expectedEdges = new HashSet<>();
+            for (GraphEdge edge : graph.getEdges()) {
+                LatLonCoords start = positioner.getPosition(edge.getStartNode());
+                LatLonCoords target = positioner.getPosition(edge.getTargetNode());
+                if (Math.min(start.getLat(), target.getLat()) <= maxLat
+                        && Math.max(start.getLat(), target.getLat()) >= minLat
+                        && Math.min(start.getLon(), target.getLon()) <= maxLon
+                        && Math.max(start.getLon(), target.getLon()) >= minLon) {
+                    expectedEdges.add(edge);
+                }
+            }
+
+            List<GraphNode> nodes = new ArrayList<>(index.getNodes(minLat, minLon, maxLat, maxLon));
+            List<GraphEdge> edges = new ArrayList<>(index.getEdges(minLat, minLon, maxLat, maxLon));
+
+            assertEquals(expectedNodes.size(), nodes.size());
+            assertEquals(expectedNodes, new HashSet<>(nodes));
+            assertEquals(expectedEdges.size(), edges.size());
+            assertEquals(expectedEdges, new HashSet<>(edges));
+        }
+    }
+
+    private static TestWay createWay(TestNode node1, TestNode node2) {
+        TestWay way = new TestWay();
+        way.tags.put("highway", "test");
+        way.nodes.add(node1);
+        way.nodes.add(node2);
+        return way;
+    }
+
+}
@@ -0,0 +1,165 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.graphview.core.access;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.graphview.core.access.CompiledAccessRules.TagSetDecision;
+import org.openstreetmap.josm.plugins.graphview.core.data.MapBasedTagGroup;
+import org.openstreetmap.josm.plugins.graphview.core.data.Tag;
+import org.openstreetmap.josm.plugins.graphview.core.data.TagGroup;
+import org.openstreetmap.josm.plugins.graphview.core.property.VehiclePropertyType;
+import org.openstreetmap.josm.plugins.graphview.core.util.TagCondition;
+import org.openstreetmap.josm.plugins.graphview.core.util.TagConditionLogic;
+
+class CompiledAccessRulesTest {
+
+    private static final AccessRuleset RULESET = new AccessRuleset() {
+        @Override
+        public List<String> getAccessHierarchyAncestors(String transportMode) {
+            if ("bicycle".equals(transportMode)) {
+                return Arrays.asList("bicycle", "vehicle", "access");
+            } else {
+                return Arrays.asList("motorcar", "motor_vehicle", "vehicle", "access");
+            }
+        }
+
+        @Override
+        public Collection<Tag> getBaseTags() {
+            return Arrays.asList(new Tag("highway", "residential"), new Tag("highway", "motorway"));
+        }
+
+        @Override
+        public List<Implication> getImplications() {
+            return Arrays.asList(
+                    new Implication(TagConditionLogic.tag(new Tag("highway", "motorway")),
+                            Arrays.asList(new Tag("oneway", "yes"), new Tag("bicycle", "no"))),
+                    new Implication(TagConditionLogic.key("motorroad"),
+                            Collections.singletonList(new Tag("bicycle", "no"))));
+        }
+    };
+
+    private static AccessParameters createParameters(final String accessClass) {
+        return new AccessParameters() {
+            @Override
+            public String getAccessClass() {
+                return accessClass;
+            }
+
+            @Override
+            public boolean getAccessTypeUsable(AccessType accessType) {
+                return accessType != AccessType.NO;
+            }
+
+            @Override
+            public Collection<VehiclePropertyType<?>> getAvailableVehicleProperties() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public <V> V getVehiclePropertyValue(VehiclePropertyType<V> vehicleProperty) {
+                return null;
+            }
+        };
+    }
+
+    private static TagGroup tags(String... keysAndValues) {
+        Map<String, String> tagMap = new HashMap<>();
+        for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+            tagMap.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return new MapBasedTagGroup(tagMap);
+    }
+
+    @Test
+    void testBaseTags() {
+        CompiledAccessRules rules = new CompiledAccessRules(RULESET, createParameters("motorcar"));
+        assertTrue(rules.evaluate(tags("highway", "residential")).isBaseTagged());
+        assertFalse(rules.evaluate(tags("highway", "footway")).isBaseTagged());
+        assertFalse(rules.evaluate(tags()).isBaseTagged());
+    }
+
+    @Test
+    void testImplications() {
+
+        CompiledAccessRules rules = new CompiledAccessRules(RULESET, createParameters("bicycle"));
+
+        TagSetDecision motorway = rules.evaluate(tags("highway", "motorway"));
+        assertEquals("yes", motorway.getOnewayValue());
+        assertFalse(motorway.isAccessTypeUsable());
+
+        TagSetDecision explicitAccess = rules.evaluate(tags("highway", "motorway", "bicycle", "yes", "oneway", "no"));
+        assertEquals("no", explicitAccess.getOnewayValue());
+        assertTrue(explicitAccess.isAccessTypeUsable());
+
+        assertFalse(rules.evaluate(tags("highway", "residential", "motorroad", "yes")).isAccessTypeUsable());
+        assertTrue(rules.evaluate(tags("highway", "residential")).isAccessTypeUsable());
+
+        assertTrue(new CompiledAccessRules(RULESET, createParameters("motorcar"))
+                .evaluate(tags("highway", "motorway")).isAccessTypeUsable());
+    }
+
+    @Test
+    void testAccessHierarchy() {
+        CompiledAccessRules rules = new CompiledAccessRules(RULESET, createParameters("motorcar"));
+        assertFalse(rules.evaluate(tags("highway", "residential", "vehicle", "no")).isAccessTypeUsable());
+        assertTrue(rules.evaluate(tags("highway", "residential", "vehicle", "no", "motorcar", "yes")).isAccessTypeUsable());
+        assertNull(rules.evaluate(tags("highway", "residential", "vehicle", "no")).getOnewayValue());
+    }
+
+    @Test
+    void testIrrelevantTagsIgnored() {
+
+        CompiledAccessRules rules = new CompiledAccessRules(RULESET, createParameters("motorcar"));
+
+        TagSetDecision decision = rules.evaluate(tags("highway", "residential", "name", "Main Street"));
+        assertSame(decision, rules.evaluate(tags("highway", "residential", "name", "Station Road", "maxspeed", "30")));
+        assertNotSame(decision, rules.evaluate(tags("highway", "residential", "access", "no")));
+    }
+
+    @Test
+    void testUnknownConditionKeys() {
+
+        final TagCondition anyTagCondition = new TagCondition() {
+            @Override
+            public boolean matches(TagGroup tags) {
+                return tags.containsValue("private");
+            }
+        };
+
+        AccessRuleset ruleset = new AccessRuleset() {
+            @Override
+            public List<String> getAccessHierarchyAncestors(String transportMode) {
+                return RULESET.getAccessHierarchyAncestors(transportMode);
+            }
+
+            @Override
+            public Collection<Tag> getBaseTags() {
+                return RULESET.getBaseTags();
+            }
+
+            @Override
+            public List<Implication> getImplications() {
+                return Collections.singletonList(new Implication(anyTagCondition,
+                        Collections.singletonList(new Tag("access", "no"))));
+            }
+        };
+
+        CompiledAccessRules rules = new CompiledAccessRules(ruleset, createParameters("motorcar"));
+        assertTrue(rules.evaluate(tags("highway", "residential", "name", "public")).isAccessTypeUsable());
+        assertFalse(rules.evaluate(tags("highway", "residential", "name", "private")).isAccessTypeUsable());
+    }
+
+}
@@ -0,0 +1,153 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.graphview.core.access;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestNode;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestRelation;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestRelationMember;
+import org.openstreetmap.josm.plugins.graphview.core.TestDataSource.TestWay;
+import org.openstreetmap.josm.plugins.graphview.core.property.RoadMaxspeed;
+import org.openstreetmap.josm.plugins.graphview.core.property.RoadMaxweight;
+import org.openstreetmap.josm.plugins.graphview.core.property.RoadPropertyType;
+import org.openstreetmap.josm.plugins.graphview.core.property.RoadWidth;
+import org.openstreetmap.josm.plugins.graphview.core.property.VehiclePropertyType;
+import org.openstreetmap.josm.plugins.graphview.core.property.VehiclePropertyTypes;
+import org.openstreetmap.josm.plugins.graphview.plugin.preferences.PreferenceAccessParameters;
+
+/**
+ * time of access evaluation (property values and wayUsable in both directions)
+ * for ways with a tag distribution similar to a typical urban area, using the default ruleset.
+ * <p>
+ * Not run with unit tests.
+ */
+class RulesetAccessEvaluatorBenchmark {
+
+    private static final int WAYS = 50000;
+    private static final int RUNS = 5;
+
+    /** highway values with their approximate share of all ways in percent */
+    private static final String[][] HIGHWAY_VALUES = {
+        {"residential", "30"}, {"service", "20"}, {"footway", "15"}, {"track", "8"}, {"unclassified", "6"},
+        {"tertiary", "5"}, {"secondary", "4"}, {"primary", "3"}, {"path", "3"}, {"cycleway", "2"},
+        {"living_street", "1"}, {"steps", "1"}, {"motorway", "1"}, {"trunk", "1"}};
+
+    private static final String[] MAXSPEED_VALUES = {"30", "50", "70", "100", "30 mph", "20 km/h", "walk"};
+
+    @Test
+    void benchmarkWayUsable() throws Exception {
+
+        TestDataSource ds = new TestDataSource();
+        List<TestWay> ways = createWays(new Random(42));
+        ds.ways.addAll(ways);
+
+        AccessRuleset ruleset = readDefaultRuleset();
+
+        Map<VehiclePropertyType<?>, String> vehiclePropertyValues = new HashMap<>();
+        vehiclePropertyValues.put(VehiclePropertyTypes.WIDTH, "2.0");
+        vehiclePropertyValues.put(VehiclePropertyTypes.WEIGHT, "3.5");
+        AccessParameters parameters = new PreferenceAccessParameters("motorcar",
+                Arrays.asList(AccessType.YES, AccessType.PERMISSIVE, AccessType.DESIGNATED,
+                        AccessType.DESTINATION, AccessType.UNDEFINED), vehiclePropertyValues);
+
+        Collection<RoadPropertyType<?>> properties = new ArrayList<>();
+        properties.add(new RoadMaxspeed());
+        properties.add(new RoadMaxweight());
+        properties.add(new RoadWidth());
+
+        for (int run = 0; run < RUNS; run++) {
+
+            long start = System.nanoTime();
+
+            // a new evaluator is created whenever the graph is rebuilt with new parameters
+            RulesetAccessEvaluator<TestNode, TestWay, TestRelation, TestRelationMember> evaluator =
+                new RulesetAccessEvaluator<>(ds, ruleset, parameters);
+
+            int usable = 0;
+            for (TestWay way : ways) {
+                for (boolean forward : new boolean[] {true, false}) {
+                    Map<RoadPropertyType<?>, Object> propertyValues = new HashMap<>();
+                    for (RoadPropertyType<?> property : properties) {
+                        Object value = property.evaluateW(way, forward, parameters, ds);
+                        if (value != null) {
+                            propertyValues.put(property, value);
+                        }
+                    }
+                    if (evaluator.wayUsable(way, forward, propertyValues)) {
+                        usable++;
+                    }
+                }
+            }
+
+            System.out.printf("%d ways, %d usable directions, %.1f ms%n",
+                    ways.size(), usable, (System.nanoTime() - start) / 1e6);
+        }
+    }
+
+    private static AccessRuleset readDefaultRuleset() throws IOException {
+        try (InputStream is = new FileInputStream("resources/accessRuleset.xml")) {
+            return AccessRulesetReader.readAccessRuleset(is);
+        }
+    }
+
+    private static List<TestWay> createWays(Random random) {
+
+        List<TestWay> ways = new ArrayList<>(WAYS);
+
+        for (int i = 0; i < WAYS; i++) {
+
+            TestWay way = new TestWay();
+            way.tags.put("highway", randomHighwayValue(random));
+            way.tags.put("name", "Street " + i);
+
+            if (random.nextInt(100) < 15) {
+                way.tags.put("oneway", random.nextInt(10) == 0 ? "-1" : "yes");
+            }
+            if (random.nextInt(100) < 30) {
+                way.tags.put("maxspeed", MAXSPEED_VALUES[random.nextInt(MAXSPEED_VALUES.length)]);
+            }
+            if (random.nextInt(100) < 5) {
+                way.tags.put("access", random.nextBoolean() ? "private" : "destination");
+            }
+            if (random.nextInt(100) < 3) {
+                way.tags.put("maxweight", random.nextBoolean() ? "7.5" : "3.5 t");
+            }
+            if (random.nextInt(100) < 20) {
+                way.tags.put("surface", random.nextBoolean() ? "asphalt" : "paving_stones");
+            }
+            if (random.nextInt(100) < 10) {
+                way.tags.put("lanes", Integer.toString(1 + random.nextInt(4)));
+            }
+
+            way.nodes.add(new TestNode(random.nextDouble(), random.nextDouble()));
+            way.nodes.add(new TestNode(random.nextDouble(), random.nextDouble()));
+
+            ways.add(way);
+        }
+
+        return ways;
+    }
+
+    private static String randomHighwayValue(Random random) {
+        int percent = random.nextInt(100);
+        for (String[] value : HIGHWAY_VALUES) {
+            percent -= Integer.parseInt(value[1]);
+            if (percent < 0) {
+                return value[0];
+            }
+        }
+        return "residential";
+    }
+
+}
@@ -42,6 +42,7 @@ public class JunctionCheckTask extends PleaseWaitRunnable {
     @Override
     protected void cancel() {
         canceled = true;
+        jc.cancel();
         progressMonitor.cancel();
     }
 
@@ -43,6 +43,7 @@ public class JunctionSearchTask extends PleaseWaitRunnable {
     @Override
     protected void cancel() {
         this.canceled = true;
+        jc.cancel();
         progressMonitor.cancel();
     }
 
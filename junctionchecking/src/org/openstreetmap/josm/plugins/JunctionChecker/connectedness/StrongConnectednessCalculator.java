@@ -1,7 +1,12 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.JunctionChecker.connectedness;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.Channel;
 import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.ChannelDiGraph;
@@ -9,10 +14,10 @@ import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.ChannelDiGra
 public class StrongConnectednessCalculator {
 
     private int index = 0;
-    private final ArrayList<Channel> stack = new ArrayList<>();
+    private final ArrayDeque<Channel> stack = new ArrayDeque<>();
+    private final Set<Channel> onStack = Collections.newSetFromMap(new IdentityHashMap<Channel, Boolean>());
     private final ArrayList<ArrayList<Channel>> SCC = new ArrayList<>();
     private final int numberOfNodes;
-    private int calculatedNodes = 0;
     private ArrayList<Channel> nsccchannels = new ArrayList<>();
     private final ChannelDiGraph digraph;
     int biggestPart = 0;
@@ -22,22 +27,14 @@ public class StrongConnectednessCalculator {
         numberOfNodes = digraph.numberOfChannels();
     }
 
-    private int findUncalculatedNodes() {
-        for (int i = 0; i < numberOfNodes; i++) {
-            if (digraph.getChannelAtPosition(i).getLowlink() == -1) {
-                return i;
-            }
-        }
-        return 0;
-    }
-
     /**
      * berechnet die starken Zusammenhangskomponenten
      */
     public void calculateSCC() {
-        while (calculatedNodes != numberOfNodes) {
-            //log.trace("calculatedNodes: " + calculatedNodes + ", gesamtnodes: " + numberOfNodes);
-            tarjan(digraph.getChannelAtPosition(findUncalculatedNodes()));
+        for (int i = 0; i < numberOfNodes; i++) {
+            if (digraph.getChannelAtPosition(i).getIndex() == -1) {
+                tarjan(digraph.getChannelAtPosition(i));
+            }
         }
         //log.trace("Berechnung der starken Zusammenhangskomponenten beendet: \n " +numberOfNodes + " Nodes sind wie folgt aufgeteilt: ");
         for (int i = 0; i < SCC.size(); i++) {
@@ -102,34 +99,57 @@ public class StrongConnectednessCalculator {
         return nsccchannels;
     }
 
-    private void tarjan(Channel v) {
-        //log.trace("tarjan für channel aufgerufen mit id: " + v.getNewid());
+    /**
+     * Tarjan-Algorithmus ohne Rekursion, damit auch große Channel-Digraphen keinen
+     * StackOverflowError auslösen: die Tiefensuche merkt sich für jeden Channel auf dem
+     * Pfad, welcher Nachfolger als nächstes betrachtet wird. Ob ein Channel auf dem
+     * Stack liegt, wird in konstanter Zeit über onStack geprüft.
+     */
+    private void tarjan(Channel root) {
+        ArrayList<Channel> path = new ArrayList<>();
+        int[] nextLeadsTo = new int[16];
+        visit(root);
+        path.add(root);
+        while (!path.isEmpty()) {
+            int depth = path.size() - 1;
+            Channel v = path.get(depth);
+            if (nextLeadsTo[depth] < v.getLeadsTo().size()) {
+                Channel n = v.getLeadsTo().get(nextLeadsTo[depth]++).getToChannel();
+                if (n.getIndex() == -1) {
+                    visit(n);
+                    path.add(n);
+                    if (path.size() > nextLeadsTo.length) {
+                        nextLeadsTo = Arrays.copyOf(nextLeadsTo, 2 * nextLeadsTo.length);
+                    }
+                    nextLeadsTo[depth + 1] = 0;
+                } else if (onStack.contains(n)) {
+                    v.setLowlink(Math.min(v.getLowlink(), n.getIndex()));
+                }
+                continue;
+            }
+            path.remove(depth);
+            if (depth > 0) {
+                Channel parent = path.get(depth - 1);
+                parent.setLowlink(Math.min(parent.getLowlink(), v.getLowlink()));
+            }
+            if (v.getLowlink() == v.getIndex()) {
+                Channel n;
+                ArrayList<Channel> component = new ArrayList<>();
+                do {
+                    n = stack.pop();
+                    onStack.remove(n);
+                    component.add(n);
+                } while (n != v);
+                SCC.add(component);
+            }
+        }
+    }
+
+    private void visit(Channel v) {
         v.setIndex(index);
         v.setLowlink(index);
         index++;
-        stack.add(0, v);
-        //log.trace("channel "+v.getNewid() + " hat nachbarn: " + v.getLeadsTo().size());
-        for (int i = 0; i < v.getLeadsTo().size(); i++) {
-            //log.trace("schleifendurchlauf: " + i);
-            Channel n = v.getLeadsTo().get(i).getToChannel();
-            if (n.getIndex() == -1) {
-                //log.trace("n hat index =-1");
-                tarjan(n);
-                v.setLowlink(Math.min(v.getLowlink(), n.getLowlink()));
-            } else if (stack.contains(n)) {
-                //log.trace("setze lowlink von n auf: " + v.getLowlink());
-                v.setLowlink(Math.min(v.getLowlink(), n.getLowlink()));
-            }
-        }
-        if (v.getLowlink() == v.getIndex()) {
-            Channel n;
-            ArrayList<Channel> component = new ArrayList<>();
-            do {
-                n = stack.remove(0);
-                component.add(n);
-            } while (n != v);
-            SCC.add(component);
-            calculatedNodes += component.size();
-        }
+        stack.push(v);
+        onStack.add(v);
     }
 }
@@ -4,11 +4,14 @@ package org.openstreetmap.josm.plugins.JunctionChecker.junctionchecking;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.Channel;
@@ -20,13 +23,16 @@ import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.ChannelDiGra
  */
 public class JMinimality {
 
+    /** ungefähre Anzahl der Spaltenkombinationen, die in einem Durchgang parallel vorgefiltert werden */
+    private static final long BATCH_COMBINATIONS = 1 << 16;
+
     private boolean CheckMinimal = true;
     private final ArrayList<Channel> E;
     private final int[][] Grid;
     private final ArrayList<Channel> OrEn;
     private final ArrayList<Channel> OrEx;
     private final int n;
-    private final List<List<Object>> L = new ArrayList<>(); //The list of columns to be sorted
+    private final List<Subcolumns> L = new ArrayList<>(); //The subcolumns, grouped by their rows in the order of the row combinations
     private final HashSet<Channel> subgraph = new HashSet<>(); //The candidate subgraph to be tested
     private ProgressMonitor pm;
     private final boolean pmenabled;
@@ -36,6 +42,14 @@ public class JMinimality {
     private final JPrepare jprepare;
     private boolean Check = false;
     private Iterator<int[]> it;
+    private volatile boolean canceled = false;
+    //Die Pfade zwischen den Channels aus E ändern sich während der Tests nicht, die Kandidaten
+    //werden deshalb als Mengen von Channel-Nummern aus den Pfaden zusammengesetzt
+    private final HashMap<Channel, Integer> channelIds = new HashMap<>();
+    private final ArrayList<Channel> channels = new ArrayList<>();
+    private BitSet[] pathChannels;
+    private BitSet subgraphChannels;
+    private final HashSet<BitSet> testedSubgraphs = new HashSet<>();
 
     public JMinimality(int[][] Grid, int n,
             ArrayList<Channel> E,
@@ -74,49 +88,95 @@ public class JMinimality {
         //this.jCheck= new JCheck();
     }
 
+    /**
+     * alle Spalten des Grids, die auf einer Kombination von n Zeilen höchstens einen fehlenden Eintrag haben
+     */
+    private static final class Subcolumns {
+        private final int[] rows; //the n y-indices of the row combination
+        private final int[] columns; //the x-indices of the columns, ascending
+        private final int[] missing; //for each column the position of the missing row in rows, -1 if none
+
+        Subcolumns(int[] rows, int[] columns, int[] missing) {
+            this.rows = rows;
+            this.columns = columns;
+            this.missing = missing;
+        }
+    }
+
     public void GenerateSubcolumns() { //Generates all combinations of subcolumns in the grid
         if (pmenabled) {
             pm.setCustomText(tr("generate all combinations from entrie/exit candidates"));
         }
+        L.clear();
+        if (n < 1 || Grid.length < n) {
+            return;
+        }
+        //The row combinations are split by their first row, which keeps them in lexicographic order
+        L.addAll(ForkJoinPool.commonPool().invoke(new SubcolumnTask(0, Grid.length - n + 1)));
+    }
+
+    private final class SubcolumnTask extends RecursiveTask<List<Subcolumns>> {
+
+        private final int firstRowFrom;
+        private final int firstRowTo;
 
-        Combination c = new Combination(Grid.length, n);
-        //EEovern = (int) Combination.Choose(Grid.length*Grid.length, n*n);
-        long ans = c.Choose(); //This is the number of subcolumns to be generated
-        int[][] v; // this is a column variable containing n y-index entries plus true false values (0/1)
-        List<Object> C; //The column is packed together with 2 indices into this variable
-        for (int i = 0; i < Grid.length; i++) {
-            int h = 0;    //this is the index denoting the "n out of Grid.length"- combination, indicating a subcolumn of length n
-            do {
-                int missing = 0;
-                C = new ArrayList<>(3);
-                v = new int[n][2];
-                C.add(i); //the first position of column variable C is the column index
-                C.add(h); //the second is the entry-subset index
-                for (int t = 0; t < c.data.length; t++) {
-                    if (Grid[(int) c.data[t]][i] == 0) {
-                        missing++;
-                        v[t][1] = 0; //false
-                    } else {
-                        v[t][1] = 1;
-                    } //true
-                    v[t][0] = (int) c.data[t];    //Write a y index of the combination into column
+        SubcolumnTask(int firstRowFrom, int firstRowTo) {
+            this.firstRowFrom = firstRowFrom;
+            this.firstRowTo = firstRowTo;
+        }
+
+        @Override
+        protected List<Subcolumns> compute() {
+            if (firstRowTo - firstRowFrom > 1) {
+                int middle = (firstRowFrom + firstRowTo) / 2;
+                SubcolumnTask left = new SubcolumnTask(firstRowFrom, middle);
+                left.fork();
+                List<Subcolumns> right = new SubcolumnTask(middle, firstRowTo).compute();
+                List<Subcolumns> result = left.join();
+                result.addAll(right);
+                return result;
+            }
+            List<Subcolumns> result = new ArrayList<>();
+            int[] rows = new int[n];
+            rows[0] = firstRowFrom;
+            collectSubcolumns(rows, 1, result);
+            return result;
+        }
+
+        private void collectSubcolumns(int[] rows, int depth, List<Subcolumns> result) {
+            if (depth < n) {
+                for (int y = rows[depth - 1] + 1; y <= Grid.length - n + depth; y++) {
+                    rows[depth] = y;
+                    collectSubcolumns(rows, depth + 1, result);
                 }
-                if (missing <= 1) { //If column has at most one missing entry
-                    C.add(v); //insert column as the third position of column variable C
-                    L.add(C); //Insert C in list to be ordered
+                return;
+            }
+            int[] columns = new int[Grid.length];
+            int[] missing = new int[Grid.length];
+            int count = 0;
+            for (int i = 0; i < Grid.length; i++) {
+                int missingRow = -1;
+                for (int t = 0; t < n; t++) {
+                    if (Grid[rows[t]][i] == 0) {
+                        if (missingRow != -1) {
+                            missingRow = -2;
+                            break;
+                        }
+                        missingRow = t;
+                    }
                 }
-                h++; //Iterate through all subcolumns
-                if (h < ans) {
-                    c = c.Successor(); //generate the next combination
+                if (missingRow != -2) { //If column has at most one missing entry
+                    columns[count] = i;
+                    missing[count] = missingRow;
+                    count++;
                 }
-            } while (h < ans);
-            c = new Combination(Grid.length, n); //For each original column in the grid, generate new subcolumns
+            }
+            //fewer than n columns cannot contain an n*n subgrid
+            if (count >= n) {
+                result.add(new Subcolumns(rows.clone(), Arrays.copyOf(columns, count),
+                        Arrays.copyOf(missing, count)));
+            }
         }
-        Collections.sort(L, new Comparator<List<Object>>() {
-            @Override
-            public int compare(List<Object> o1, List<Object> o2) {
-                return (Integer) o1.get(1) - (Integer) o2.get(1); //sort according to h index in each column
-            } });
     }
 
     public boolean IterateThroughKn() { //Iterates through all K_{n-1} subgrids of the Grid and tests them
@@ -127,106 +187,179 @@ public class JMinimality {
             pm.setTicksCount(L.size());
             pm.setCustomText("Iterates through all K_{n-1} subgrids of the Grid and tests them");
         }
-        Combination c;
-        Iterator<List<Object>> l = L.listIterator();
-        List<Object> C;
+        //Tests, whether a row or column is not an original entry/exit
+        boolean[] notEntry = new boolean[E.size()];
+        boolean[] notExit = new boolean[E.size()];
+        HashSet<Channel> entries = new HashSet<>(OrEn);
+        HashSet<Channel> exits = new HashSet<>(OrEx);
+        for (int i = 0; i < E.size(); i++) {
+            notEntry[i] = !entries.contains(E.get(i));
+            notExit[i] = !exits.contains(E.get(i));
+        }
         ArrayList<int[]> CandidateK = new ArrayList<>(n*n); //saves the candidate K_{n-1} in entry-exit pairs
-        long lindex = 0;
-        int h = 0;
-        int m = 0;
-        int[][] v;
-        int x_i;
-        int y_j;
-        int progressmonitorcounter = 1;
-        boolean mchanged = false;
-        boolean hchanged = false;
-        C = l.next();
-        do { //Loop over list of columns L
-            if (mchanged) {
-                C = l.next(); //Iterator in L
-                lindex++; //Index in L
-                if (hchanged) {
-                    m = 1;
-                    hchanged = false;
+        int lindex = 0;
+        while (lindex < L.size() && CheckMinimal && !isCanceled()) {
+            //The subgrids of a batch of subcolumn sets are filtered in parallel, split by their first column
+            List<FilterTask> tasks = new ArrayList<>();
+            long combinations = 0;
+            int batchEnd = lindex;
+            while (batchEnd < L.size() && combinations < BATCH_COMBINATIONS) {
+                Subcolumns subcolumns = L.get(batchEnd);
+                for (int first = 0; first <= subcolumns.columns.length - n; first++) {
+                    tasks.add(new FilterTask(subcolumns, first, notEntry, notExit));
                 }
+                combinations += Combination.Choose(subcolumns.columns.length, n);
+                batchEnd++;
             }
-            if ((Integer) C.get(1) == h && l.hasNext()) { //m counts the set of columns with index h
-                m++;
-                mchanged = true;
-            } else {
-                if (l.hasNext() == false) {
-                    m++;
-                    lindex++;
-                } //At the end of L, counter are set one up
-                c = new Combination(m, n);
-                long ans = c.Choose();
-                int missing = 0;
-                boolean smallerjunction = false;
-                //Makes sure that subset of m columns contains an n*n subgrid, because ans = m over n would be 0 otherwise
-                for (int k = 0; k < ans; k++) {
-                    for (int y = 0; y < n; y++) { //Iterates over all rows of subgrid k
-                        missing = 0;    //test = "";
-                        for (int x = 0; x < c.data.length; x++) { //Iterates over all columns of subgrid k
-                            x_i = ((Integer) L.get((int) (lindex-m+c.data[x])).get(0)); //columnindex in grid
-                            v = ((int[][]) L.get((int) (lindex-m+c.data[x])).get(2)); //subcolumn of grid
-                            y_j = v[y][0]; //rowindex in grid
-                            if (v[y][1] == 0) {
-                                missing++;
-                            } else {
-                                CandidateK.add(new int[]{y_j, x_i});
+            ForkJoinPool.commonPool().invoke(new BatchTask(tasks, 0, tasks.size()));
+            //The candidates are tested in the same order as they were enumerated, because
+            //testing them changes the state of the channels
+            for (FilterTask task : tasks) {
+                for (int[] combination : task.candidates) {
+                    for (int y = 0; y < n; y++) { //Iterates over all rows of the subgrid
+                        for (int x : combination) { //Iterates over all columns of the subgrid
+                            if (task.subcolumns.missing[x] != y) {
+                                CandidateK.add(new int[]{task.subcolumns.rows[y], task.subcolumns.columns[x]});
                             } //save entry/exit tuple
-                            if (!smallerjunction && (!OrEn.contains(E.get(v[y][0]))
-                                    && !OrEx.contains(E.get(x_i)))) { // Tests, whether y or x is not an original entry/exit
-                                smallerjunction = true; //Then k identifies a different junction than the original one
-                            }
-                            //test = test+" ("+y_j+", "+x_i+", "+v[y][1]+")";
-                        }
-                        if (missing > 1) {
-                            break;
-                        } //If a row has more than one missing value, break
-                    }
-                    if (missing <= 1 && smallerjunction) { //The k-subgrid is a different junction candidate satisfying total reachability
-                        CheckMinimal = !CheckSmallJunction(CandidateK); // If the candidate is a smaller junction, then minimality is false
-                        //log.info("durchlauf: " + durchlauf + " Wert von CheckMinimal: " + CheckMinimal);
-                        if (!CheckMinimal) {
-                            break;
                         }
                     }
+                    CheckMinimal = !CheckSmallJunction(CandidateK); // If the candidate is a smaller junction, then minimality is false
                     CandidateK.clear();
-                    if (k+1 < ans) {
-                        c = c.Successor();
-                    } //Produces the m over n combinations
+                    if (!CheckMinimal || isCanceled()) {
+                        break;
+                    }
+                }
+                if (!CheckMinimal || isCanceled()) {
+                    break;
                 }
-                m = 1; //Sets m to the first column with next index h+1
-                h++;
-                mchanged = false;
-                hchanged = true;
             }
+            lindex = batchEnd;
             if (pmenabled) {
-                progressmonitorcounter++;
-                pm.setTicks(progressmonitorcounter);
+                pm.setTicks(lindex);
             }
         }
-        while (l.hasNext() && CheckMinimal);
         return CheckMinimal;
     }
 
+    /**
+     * sucht alle Kombinationen von n Spalten einer Spaltenmenge mit fester erster Spalte,
+     * die ein Teilgitter mit höchstens einem fehlenden Eintrag je Zeile und Spalte bilden
+     * und eine andere Kreuzung als die ursprüngliche beschreiben
+     */
+    private final class FilterTask {
+
+        private final Subcolumns subcolumns;
+        private final int first;
+        private final boolean[] notEntry;
+        private final boolean[] notExit;
+        private final List<int[]> candidates = new ArrayList<>();
+
+        FilterTask(Subcolumns subcolumns, int first, boolean[] notEntry, boolean[] notExit) {
+            this.subcolumns = subcolumns;
+            this.first = first;
+            this.notEntry = notEntry;
+            this.notExit = notExit;
+        }
+
+        void compute() {
+            boolean rowNotEntry = false;
+            for (int y : subcolumns.rows) {
+                rowNotEntry |= notEntry[y];
+            }
+            int[] combination = new int[n];
+            int[] missingPerRow = new int[n];
+            combination[0] = first;
+            if (subcolumns.missing[first] >= 0) {
+                missingPerRow[subcolumns.missing[first]]++;
+            }
+            collect(combination, 1, missingPerRow, rowNotEntry);
+        }
+
+        private void collect(int[] combination, int depth, int[] missingPerRow, boolean rowNotEntry) {
+            if (depth == n) {
+                boolean smallerjunction = false;
+                for (int x : combination) {
+                    smallerjunction |= rowNotEntry && notExit[subcolumns.columns[x]];
+                }
+                if (smallerjunction) { //Then the subgrid identifies a different junction than the original one
+                    candidates.add(combination.clone());
+                }
+                return;
+            }
+            for (int x = combination[depth - 1] + 1; x <= subcolumns.columns.length - n + depth; x++) {
+                int missingRow = subcolumns.missing[x];
+                if (missingRow >= 0 && missingPerRow[missingRow] > 0) {
+                    continue; //If a row has more than one missing value, the subgrid is no candidate
+                }
+                if (missingRow >= 0) {
+                    missingPerRow[missingRow]++;
+                }
+                combination[depth] = x;
+                collect(combination, depth + 1, missingPerRow, rowNotEntry);
+                if (missingRow >= 0) {
+                    missingPerRow[missingRow]--;
+                }
+            }
+        }
+    }
+
+    private final class BatchTask extends RecursiveTask<Void> {
+
+        private final List<FilterTask> tasks;
+        private final int from;
+        private final int to;
+
+        BatchTask(List<FilterTask> tasks, int from, int to) {
+            this.tasks = tasks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) / 2;
+                BatchTask left = new BatchTask(tasks, from, middle);
+                left.fork();
+                new BatchTask(tasks, middle, to).compute();
+                left.join();
+            } else if (to > from && !isCanceled()) {
+                tasks.get(from).compute();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * bricht die Suche nach dem nächsten getesteten Teilgitter ab
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
+    private boolean isCanceled() {
+        return canceled || (pmenabled && pm.isCanceled());
+    }
+
     /**
      * gibt true zurück, wenn Kandidat eine Kreuzung ist, aber nicht, wenn junctionsearch auf true gesetzt ist
      */
     public boolean CheckSmallJunction(ArrayList<int[]> CandidateK) {
         Check = false;
-        subgraph.clear(); //Zu konstruierender Subgraph
+        subgraphChannels = new BitSet(); //Zu konstruierender Subgraph
         it = CandidateK.iterator();
         //Reconstruct small Junction from paths
         while (it.hasNext()) {
             int[]point = it.next();
-            for (int j = 0; j < E.get(point[0]).getReachableNodes().size(); j++) {
-                if (E.get(point[0]).getReachableNodeAt(j).equals(E.get(point[1]))) {
-                    subgraph.addAll(E.get(point[0]).getPathsAt(E.get(point[0]).getReachableNodeAt(j)));
-                    subgraph.add(E.get(point[0]));
-                }
-            }
+            subgraphChannels.or(getPathChannels(point[0], point[1]));
+        }
+        //verschiedene Teilgitter ergeben oft denselben Subgraphen, der dann nicht erneut getestet werden muss
+        if (!testedSubgraphs.add(subgraphChannels)) {
+            return false;
+        }
+        subgraph.clear();
+        for (int i = subgraphChannels.nextSetBit(0); i >= 0; i = subgraphChannels.nextSetBit(i + 1)) {
+            subgraph.add(channels.get(i));
         }
         jprepare.jPrepare(new ArrayList<>(subgraph));
         JCheck jCheck = new JCheck();
@@ -261,10 +394,48 @@ public class JMinimality {
         return Check;
     }
 
+    /**
+     * gibt die Channels der Pfade von E[y] nach E[x] einschließlich E[y] zurück,
+     * leer, wenn E[x] nicht erreichbar ist
+     */
+    private BitSet getPathChannels(int y, int x) {
+        if (pathChannels == null) {
+            pathChannels = new BitSet[E.size() * E.size()];
+        }
+        BitSet result = pathChannels[y * E.size() + x];
+        if (result == null) {
+            result = new BitSet();
+            if (E.get(y).getReachableNodes().contains(E.get(x))) {
+                for (Channel channel : E.get(y).getPathsAt(E.get(x))) {
+                    result.set(getChannelId(channel));
+                }
+                result.set(getChannelId(E.get(y)));
+            }
+            pathChannels[y * E.size() + x] = result;
+        }
+        return result;
+    }
+
+    private int getChannelId(Channel channel) {
+        Integer id = channelIds.get(channel);
+        if (id == null) {
+            id = channels.size();
+            channelIds.put(channel, id);
+            channels.add(channel);
+        }
+        return id;
+    }
+
     /**
      * enthält alle Channels des zuletzt durchlaufenden Kreuzungskandidaten (muß keine gültige Kreuzung sein)
      */
     public ArrayList<Channel> getSubJunctionCandidate() {
+        if (subgraphChannels != null) {
+            subgraph.clear();
+            for (int i = subgraphChannels.nextSetBit(0); i >= 0; i = subgraphChannels.nextSetBit(i + 1)) {
+                subgraph.add(channels.get(i));
+            }
+        }
         return new ArrayList<>(subgraph);
     }
 
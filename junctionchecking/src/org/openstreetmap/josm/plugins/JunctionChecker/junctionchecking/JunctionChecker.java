@@ -3,6 +3,7 @@ package org.openstreetmap.josm.plugins.JunctionChecker.junctionchecking;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.Channel;
@@ -31,7 +32,8 @@ public class JunctionChecker {
     private int[][] Grid;
     private boolean Check;
     private boolean smallerJunction;
-    private JMinimality m;
+    private volatile JMinimality m;
+    private volatile boolean canceled = false;
     // Variable wird beim KreuzungsSuchen benutzt, sonst ist sie leer!
     private ArrayList<HashSet<Channel>> junctions = new ArrayList<>();
     //dient zur Zeitmessung
@@ -64,6 +66,9 @@ public class JunctionChecker {
             this.ConstructGrid();
             m = new JMinimality(Grid, n, E, entries, exits, channeldigraph, pm,
                     true);
+            if (canceled) {
+                m.cancel();
+            }
             m.GenerateSubcolumns();
             Check = m.IterateThroughKn();
             if (!Check) {
@@ -91,6 +96,9 @@ public class JunctionChecker {
         this.ConstructGrid();
         jPrepare.resetSubgraph();
         m = new JMinimality(Grid, n, E, new ArrayList<Channel>(), new ArrayList<Channel>(), channeldigraph, pm, false);
+        if (canceled) {
+            m.cancel();
+        }
         m.GenerateSubcolumns();
         Check = m.IterateThroughKn();
         junctions = checkJunctionCandidates(m.getJunctionCandidates());
@@ -106,6 +114,9 @@ public class JunctionChecker {
         this.ConstructGrid();
         jPrepare.resetSubgraph();
         m = new JMinimality(Grid, n, E, new ArrayList<Channel>(), new ArrayList<Channel>(), channeldigraph, false);
+        if (canceled) {
+            m.cancel();
+        }
         startGenerate = System.currentTimeMillis();
         m.GenerateSubcolumns();
         startIterate = System.currentTimeMillis();
@@ -118,12 +129,13 @@ public class JunctionChecker {
      * Überprüft die Kreuzunskandidaten, die JMinimality gefunden hat, welche davon eine Kreuzung darstellen (eine Kreuzung
      * darf keine weiteren Kreuzungen enthalten)
      */
-    private ArrayList<HashSet<Channel>> checkJunctionCandidates(ArrayList<HashSet<Channel>> junctioncandidates) {
-        @SuppressWarnings("unchecked")
-        ArrayList<HashSet<Channel>> junctions = (ArrayList<HashSet<Channel>>) junctioncandidates.clone();
+    static ArrayList<HashSet<Channel>> checkJunctionCandidates(ArrayList<HashSet<Channel>> candidates) {
+        //Equal candidates contain each other, they would all be removed
+        ArrayList<HashSet<Channel>> junctioncandidates = new ArrayList<>(new LinkedHashSet<>(candidates));
+        ArrayList<HashSet<Channel>> junctions = new ArrayList<>(junctioncandidates);
         for (int i = 0; i < junctioncandidates.size(); i++) {
             for (int j = 0; j < junctioncandidates.size(); j++) {
-                if (junctioncandidates.get(i).containsAll(junctioncandidates.get(j))) {
+                if (i != j && junctioncandidates.get(i).containsAll(junctioncandidates.get(j))) {
                     junctions.remove(junctioncandidates.get(i));
                 }
             }
@@ -131,6 +143,17 @@ public class JunctionChecker {
         return junctions;
     }
 
+    /**
+     * bricht eine laufende Überprüfung oder Kreuzungssuche ab, die Ergebnisse sind dann unvollständig
+     */
+    public void cancel() {
+        canceled = true;
+        JMinimality minimality = m;
+        if (minimality != null) {
+            minimality.cancel();
+        }
+    }
+
     private void collectECandidates(ArrayList<Channel> subgraph) {
         E = new ArrayList<>();
         for (int i = 0; i < subgraph.size(); i++) {
@@ -0,0 +1,163 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.JunctionChecker.commandlineinterface;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Random;
+
+import org.openstreetmap.josm.plugins.JunctionChecker.connectedness.StrongConnectednessCalculator;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.Channel;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.ChannelDiGraph;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.LeadsTo;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.OSMNode;
+import org.openstreetmap.josm.plugins.JunctionChecker.junctionchecking.JunctionChecker;
+
+/**
+ * Misst die Laufzeit der Berechnung der starken Zusammenhangskomponenten und der Kreuzungssuche
+ * auf künstlichen Channel-Digraphen wachsender Größe, ohne dass OSM-Daten benötigt werden.
+ * Die Digraphen sind quadratische Straßengitter mit Zweirichtungsstraßen, an jeder Kreuzung
+ * darf in alle Richtungen außer zurück abgebogen werden; einige Straßen sind Einbahnstraßen.
+ * Die Unit-Tests verwenden dieselben Digraphen.
+ */
+public final class SyntheticDigraphBenchmark {
+
+    private static final int[] SCC_GRID_SIZES = {25, 50, 100, 200};
+    private static final int[] SEARCH_NODE_COUNTS = {1, 2, 3, 4};
+    private static final int SEARCH_GRID_SIZE = 12;
+    private static final int N = 4;
+    private static final int RUNS = 3;
+
+    private SyntheticDigraphBenchmark() {
+        // Hide default constructor for utilities classes
+    }
+
+    public static void main(String[] args) {
+
+        for (int size : SCC_GRID_SIZES) {
+            long time = 0;
+            int notConnected = 0;
+            for (int run = 0; run < RUNS; run++) {
+                ChannelDiGraph digraph = createGridDigraph(size, new Random(run));
+                long start = System.nanoTime();
+                StrongConnectednessCalculator scc = new StrongConnectednessCalculator(digraph);
+                scc.calculateSCC();
+                time += System.nanoTime() - start;
+                notConnected = scc.getNotConnectedChannels().size();
+            }
+            System.out.println("SCC: grid " + size + "x" + size
+                    + " channels: " + createGridDigraph(size, new Random(0)).numberOfChannels()
+                    + " not connected: " + notConnected
+                    + " Time: " + (time / RUNS / 1000000) + " ms");
+        }
+
+        for (int nodeCount : SEARCH_NODE_COUNTS) {
+            long time = 0;
+            int junctions = 0;
+            int subsetSize = 0;
+            for (int run = 0; run < RUNS; run++) {
+                ChannelDiGraph digraph = createGridDigraph(SEARCH_GRID_SIZE, new Random(run));
+                ArrayList<Channel> subset = createConnectedSubset(digraph, nodeCount);
+                subsetSize = subset.size();
+                JunctionChecker jc = new JunctionChecker(digraph, N);
+                long start = System.nanoTime();
+                jc.junctionSearch(subset);
+                time += System.nanoTime() - start;
+                junctions += jc.getJunctions().size();
+            }
+            System.out.println("Search: crossings: " + nodeCount + " channels: " + subsetSize + " n: " + N
+                    + " junctionsfound: " + junctions
+                    + " Time: " + (time / RUNS / 1000000) + " ms");
+        }
+    }
+
+    /**
+     * erzeugt ein Straßengitter mit size x size Knoten als Channel-Digraph
+     */
+    public static ChannelDiGraph createGridDigraph(int size, Random random) {
+
+        ChannelDiGraph digraph = new ChannelDiGraph();
+
+        OSMNode[][] nodes = new OSMNode[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                nodes[x][y] = new OSMNode();
+                nodes[x][y].setId((long) (x * size + y));
+                nodes[x][y].setLatitude(y);
+                nodes[x][y].setLongitude(x);
+            }
+        }
+
+        /* Channels für beide Richtungen jeder Straße, jede zehnte ist eine Einbahnstraße */
+
+        ArrayList<ArrayList<Channel>> outgoing = new ArrayList<>();
+        for (int i = 0; i < size * size; i++) {
+            outgoing.add(new ArrayList<Channel>());
+        }
+
+        int newid = 0;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int[] d : new int[][] {{1, 0}, {0, 1}}) {
+                    if (x + d[0] < size && y + d[1] < size) {
+                        OSMNode a = nodes[x][y];
+                        OSMNode b = nodes[x + d[0]][y + d[1]];
+                        boolean oneway = random.nextInt(10) == 0;
+                        if (!oneway || random.nextBoolean()) {
+                            newid = addChannel(digraph, outgoing, a, b, newid);
+                        }
+                        if (!oneway || random.nextBoolean()) {
+                            newid = addChannel(digraph, outgoing, b, a, newid);
+                        }
+                    }
+                }
+            }
+        }
+
+        /* an den Kreuzungen in alle Channels außer dem Gegenchannel abbiegen */
+
+        for (Channel from : digraph.getChannels()) {
+            for (Channel to : outgoing.get((int) from.getToNode().getId())) {
+                if (to.getToNode() != from.getFromNode()) {
+                    LeadsTo leadsTo = new LeadsTo(from, to);
+                    digraph.getLeadsTo().add(leadsTo);
+                    from.addLeadsTo(leadsTo);
+                    to.addPredChannel(from);
+                }
+            }
+        }
+
+        return digraph;
+    }
+
+    private static int addChannel(ChannelDiGraph digraph, ArrayList<ArrayList<Channel>> outgoing,
+            OSMNode from, OSMNode to, int newid) {
+        Channel channel = new Channel(from, to);
+        channel.setNewid(newid);
+        digraph.addChannel(channel);
+        outgoing.get((int) from.getId()).add(channel);
+        return newid + 1;
+    }
+
+    /**
+     * wählt alle Channels an den ersten nodeCount Kreuzungen einer Breitensuche
+     * von der Kreuzung in der Mitte des Gitters aus
+     */
+    public static ArrayList<Channel> createConnectedSubset(ChannelDiGraph digraph, int nodeCount) {
+        LinkedHashSet<Channel> subset = new LinkedHashSet<>();
+        ArrayList<OSMNode> queue = new ArrayList<>();
+        LinkedHashSet<OSMNode> visited = new LinkedHashSet<>();
+        Channel center = digraph.getChannelAtPosition(digraph.numberOfChannels() / 2);
+        queue.add(center.getFromNode());
+        visited.add(center.getFromNode());
+        for (int i = 0; i < queue.size() && i < nodeCount; i++) {
+            for (Channel channel : digraph.getChannelsTouchingOSMNode(queue.get(i).getId())) {
+                subset.add(channel);
+                OSMNode other = channel.getFromNode() == queue.get(i) ? channel.getToNode() : channel.getFromNode();
+                if (visited.add(other)) {
+                    queue.add(other);
+                }
+            }
+        }
+        return new ArrayList<>(subset);
+    }
+}
@@ -0,0 +1,144 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.JunctionChecker.connectedness;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.JunctionChecker.commandlineinterface.SyntheticDigraphBenchmark;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.Channel;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.ChannelDiGraph;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.LeadsTo;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.OSMNode;
+
+/**
+ * Unit tests of {@link StrongConnectednessCalculator}.
+ */
+class StrongConnectednessCalculatorTest {
+
+    private static Channel addChannel(ChannelDiGraph digraph) {
+        Channel channel = new Channel(new OSMNode(), new OSMNode());
+        channel.setNewid(digraph.numberOfChannels());
+        digraph.addChannel(channel);
+        return channel;
+    }
+
+    private static void connect(ChannelDiGraph digraph, Channel from, Channel to) {
+        LeadsTo leadsTo = new LeadsTo(from, to);
+        digraph.getLeadsTo().add(leadsTo);
+        from.addLeadsTo(leadsTo);
+        to.addPredChannel(from);
+    }
+
+    private static HashSet<Channel> calculateNotConnected(ChannelDiGraph digraph) {
+        StrongConnectednessCalculator scc = new StrongConnectednessCalculator(digraph);
+        scc.calculateSCC();
+        HashSet<Channel> notConnected = new HashSet<>(scc.getNotConnectedChannels());
+        for (Channel channel : digraph.getChannels()) {
+            assertEquals(!notConnected.contains(channel), channel.isStrongConnected(), "channel " + channel.getNewid());
+        }
+        return notConnected;
+    }
+
+    /**
+     * A cycle with a tail: the channels of the tail are not strongly connected to the cycle.
+     */
+    @Test
+    void testCycleWithTail() {
+        ChannelDiGraph digraph = new ChannelDiGraph();
+        Channel[] c = new Channel[6];
+        for (int i = 0; i < c.length; i++) {
+            c[i] = addChannel(digraph);
+        }
+        // the tail starts before the cycle and goes on after it
+        connect(digraph, c[0], c[1]);
+        connect(digraph, c[1], c[2]);
+        connect(digraph, c[2], c[3]);
+        connect(digraph, c[3], c[1]);
+        connect(digraph, c[3], c[4]);
+        connect(digraph, c[4], c[5]);
+        connect(digraph, c[5], c[4]);
+        connect(digraph, c[2], c[2]);
+
+        HashSet<Channel> expected = new HashSet<>();
+        expected.add(c[0]);
+        expected.add(c[4]);
+        expected.add(c[5]);
+        assertEquals(expected, calculateNotConnected(digraph));
+    }
+
+    /**
+     * The depth of the search is the number of channels of a long cycle: it must not overflow the thread stack.
+     */
+    @Test
+    void testLongCycle() {
+        ChannelDiGraph digraph = new ChannelDiGraph();
+        Channel first = addChannel(digraph);
+        Channel previous = first;
+        for (int i = 1; i < 200_000; i++) {
+            Channel channel = addChannel(digraph);
+            connect(digraph, previous, channel);
+            previous = channel;
+        }
+        connect(digraph, previous, first);
+        assertTrue(calculateNotConnected(digraph).isEmpty());
+    }
+
+    private static BitSet reachable(ChannelDiGraph digraph, Channel from) {
+        BitSet visited = new BitSet();
+        ArrayDeque<Channel> queue = new ArrayDeque<>();
+        visited.set(from.getNewid());
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            for (LeadsTo leadsTo : queue.poll().getLeadsTo()) {
+                Channel to = leadsTo.getToChannel();
+                if (!visited.get(to.getNewid())) {
+                    visited.set(to.getNewid());
+                    queue.add(to);
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * On street grids with oneways, the channels outside of the biggest component are the ones
+     * that cannot reach and be reached from all the channels of the biggest component.
+     */
+    @Test
+    void testGridsAgainstReachability() {
+        for (int seed = 0; seed < 5; seed++) {
+            ChannelDiGraph digraph = SyntheticDigraphBenchmark.createGridDigraph(8, new Random(seed));
+            ArrayList<BitSet> reachable = new ArrayList<>();
+            for (Channel channel : digraph.getChannels()) {
+                reachable.add(reachable(digraph, channel));
+            }
+            BitSet biggest = new BitSet();
+            for (int i = 0; i < reachable.size(); i++) {
+                BitSet component = new BitSet();
+                for (int j = reachable.get(i).nextSetBit(0); j >= 0; j = reachable.get(i).nextSetBit(j + 1)) {
+                    if (reachable.get(j).get(i)) {
+                        component.set(j);
+                    }
+                }
+                if (component.cardinality() > biggest.cardinality()) {
+                    biggest = component;
+                }
+            }
+            HashSet<Channel> expected = new HashSet<>();
+            for (Channel channel : digraph.getChannels()) {
+                if (!biggest.get(channel.getNewid())) {
+                    expected.add(channel);
+                }
+            }
+            assertEquals(expected, calculateNotConnected(digraph), "seed " + seed);
+            assertTrue(biggest.cardinality() > digraph.numberOfChannels() / 2);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.JunctionChecker.junctionchecking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.plugins.JunctionChecker.commandlineinterface.SyntheticDigraphBenchmark;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.Channel;
+import org.openstreetmap.josm.plugins.JunctionChecker.datastructure.ChannelDiGraph;
+
+/**
+ * Unit tests of the junction search and check of {@link JunctionChecker}, including the minimality test of {@link JMinimality}.
+ * The expected junctions were found with the implementation of the minimality test that sorted all the subcolumns.
+ */
+class JunctionCheckerTest {
+
+    private static final int GRID_SIZE = 12;
+
+    private static List<List<Integer>> sortedIds(List<HashSet<Channel>> junctions) {
+        List<List<Integer>> result = new ArrayList<>();
+        for (HashSet<Channel> junction : junctions) {
+            List<Integer> ids = new ArrayList<>();
+            for (Channel channel : junction) {
+                ids.add(channel.getNewid());
+            }
+            Collections.sort(ids);
+            result.add(ids);
+        }
+        result.sort((a, b) -> a.toString().compareTo(b.toString()));
+        return result;
+    }
+
+    private static List<List<Integer>> search(int n, int crossings, int seed) {
+        ChannelDiGraph digraph = SyntheticDigraphBenchmark.createGridDigraph(GRID_SIZE, new Random(seed));
+        JunctionChecker jc = new JunctionChecker(digraph, n);
+        jc.junctionSearch(SyntheticDigraphBenchmark.createConnectedSubset(digraph, crossings));
+        return sortedIds(jc.getJunctions());
+    }
+
+    private static JunctionChecker check(int n, int seed, List<Integer> ids) {
+        ChannelDiGraph digraph = SyntheticDigraphBenchmark.createGridDigraph(GRID_SIZE, new Random(seed));
+        ArrayList<Channel> subgraph = new ArrayList<>();
+        for (int id : ids) {
+            subgraph.add(digraph.getChannelWithID(id));
+        }
+        JunctionChecker jc = new JunctionChecker(digraph, n);
+        jc.checkjunctions(subgraph, NullProgressMonitor.INSTANCE);
+        return jc;
+    }
+
+    /**
+     * Junctions found around one, two or three crossings of street grids with oneways.
+     */
+    @Test
+    void testJunctionSearch() {
+        assertEquals(Arrays.asList(Arrays.asList(157, 158, 199, 200, 201, 202)), search(3, 2, 0));
+        assertEquals(Arrays.asList(Arrays.asList(202, 203, 204, 205, 206, 207)), search(3, 2, 9));
+        assertEquals(Arrays.asList(Arrays.asList(201, 202, 243, 244, 245, 246, 247, 248)), search(4, 1, 0));
+        assertEquals(Arrays.asList(
+                Arrays.asList(162, 163, 203, 204, 205, 206, 207, 208),
+                Arrays.asList(205, 206, 248, 249, 250, 251, 252, 253)), search(4, 2, 1));
+        assertEquals(Arrays.asList(
+                Arrays.asList(207, 208, 251, 252, 253, 254, 255, 256),
+                Arrays.asList(253, 254, 296, 297, 298, 299, 300, 301)), search(4, 2, 4));
+        assertEquals(Arrays.asList(Arrays.asList(204, 205, 248, 249, 250, 251, 252, 253)), search(4, 2, 9));
+        for (int seed = 0; seed < 3; seed++) {
+            assertTrue(search(2, 3, seed).isEmpty());
+            assertTrue(search(3, 3, seed).isEmpty());
+            assertTrue(search(4, 3, seed).isEmpty());
+        }
+    }
+
+    /**
+     * The junctions found by the search are junctions without a smaller junction.
+     */
+    @Test
+    void testCheckFoundJunctions() {
+        for (int seed = 0; seed < 5; seed++) {
+            for (List<Integer> junction : search(4, 2, seed)) {
+                JunctionChecker jc = check(4, seed, junction);
+                assertTrue(jc.getCheck(), junction.toString());
+                assertFalse(jc.isSmallerJunction(), junction.toString());
+            }
+        }
+        // Two adjacent crossings are a junction with 6 entries and exits, but not with 4
+        ChannelDiGraph digraph = SyntheticDigraphBenchmark.createGridDigraph(GRID_SIZE, new Random(1));
+        ArrayList<Channel> crossings = SyntheticDigraphBenchmark.createConnectedSubset(digraph, 2);
+        List<Integer> ids = new ArrayList<>();
+        for (Channel channel : crossings) {
+            ids.add(channel.getNewid());
+        }
+        assertTrue(check(6, 1, ids).getCheck());
+        assertFalse(check(4, 1, ids).getCheck());
+    }
+
+    /**
+     * A subgraph with less entry and exit candidates than n contains no junction.
+     */
+    @Test
+    void testLessCandidatesThanN() {
+        assertTrue(search(20, 1, 0).isEmpty());
+        assertTrue(search(8, 2, 0).isEmpty());
+    }
+
+    /**
+     * Candidates containing another candidate are not junctions, equal candidates are kept once.
+     */
+    @Test
+    void testCheckJunctionCandidates() {
+        Channel a = new Channel();
+        Channel b = new Channel();
+        Channel c = new Channel();
+        HashSet<Channel> ab = new HashSet<>(Arrays.asList(a, b));
+        HashSet<Channel> abc = new HashSet<>(Arrays.asList(a, b, c));
+        HashSet<Channel> bc = new HashSet<>(Arrays.asList(b, c));
+        ArrayList<HashSet<Channel>> candidates = new ArrayList<>(Arrays.asList(
+                ab, abc, new HashSet<>(ab), bc));
+        assertEquals(Arrays.asList(ab, bc), JunctionChecker.checkJunctionCandidates(candidates));
+    }
+}
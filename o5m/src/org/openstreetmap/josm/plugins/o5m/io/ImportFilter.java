@@ -0,0 +1,102 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.o5m.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.util.function.Predicate;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.Tagged;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler;
+import org.openstreetmap.josm.data.osm.search.SearchParseError;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Selection criteria of a filtered import: a bounding box and/or a tag predicate.
+ * <p>
+ * Nodes are selected if they are inside the bounding box and match the tag predicate.
+ * Ways are selected if at least one of their nodes is inside the bounding box and they match the tag predicate.
+ * All nodes of selected ways are loaded, so that selected ways are complete.
+ * Relations are selected if at least one of their node or way members is inside the bounding box
+ * and they match the tag predicate. Their members are not loaded unless selected on their own.
+ */
+public class ImportFilter {
+
+    private final Bounds bounds;
+    private final Predicate<Tagged> tagPredicate;
+
+    /**
+     * Constructs a new {@code ImportFilter}.
+     * @param bounds bounding box, can be null
+     * @param tagPredicate tag predicate, can be null
+     * @throws IllegalArgumentException if both bounds and predicate are null
+     */
+    public ImportFilter(Bounds bounds, Predicate<Tagged> tagPredicate) {
+        if (bounds == null && tagPredicate == null) {
+            throw new IllegalArgumentException("Filter requires bounds and/or a tag predicate");
+        }
+        this.bounds = bounds;
+        this.tagPredicate = tagPredicate;
+    }
+
+    /**
+     * Returns the filter defined in preferences, if any.
+     * @param prefix preference key prefix. {@code <prefix>.bbox} defines the bounding box as
+     *        {@code minlat,minlon,maxlat,maxlon}, {@code <prefix>.search} the tag predicate as a JOSM search expression
+     * @return the filter defined in preferences, or {@code null}
+     * @throws IllegalDataException if preferences do not define a valid filter
+     */
+    public static ImportFilter fromPreferences(String prefix) throws IllegalDataException {
+        String bbox = Config.getPref().get(prefix + ".bbox", null);
+        String search = Config.getPref().get(prefix + ".search", null);
+        try {
+            Bounds bounds = Utils.isStripEmpty(bbox) ? null : new Bounds(bbox, ",");
+            Predicate<Tagged> predicate = null;
+            if (!Utils.isStripEmpty(search)) {
+                predicate = SearchCompiler.compile(search)::match;
+            }
+            return bounds == null && predicate == null ? null : new ImportFilter(bounds, predicate);
+        } catch (IllegalArgumentException | SearchParseError e) {
+            throw new IllegalDataException(tr("Invalid import filter: {0}", e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Returns the bounding box.
+     * @return the bounding box, can be null
+     */
+    public Bounds getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Returns the bounds of the data source to add to filtered data.
+     * @return the filter bounds if it only filters by location, or {@code null} as tag filtered data is never complete
+     */
+    Bounds getDataSourceBounds() {
+        return tagPredicate == null ? bounds : null;
+    }
+
+    boolean hasBounds() {
+        return bounds != null;
+    }
+
+    boolean matchesLocation(double lat, double lon) {
+        if (bounds == null) {
+            return true;
+        }
+        if (lat < bounds.getMinLat() || lat > bounds.getMaxLat()) {
+            return false;
+        }
+        if (bounds.crosses180thMeridian()) {
+            return lon >= bounds.getMinLon() || lon <= bounds.getMaxLon();
+        }
+        return lon >= bounds.getMinLon() && lon <= bounds.getMaxLon();
+    }
+
+    boolean matchesTags(Tagged tagged) {
+        return tagPredicate == null || tagPredicate.test(tagged);
+    }
+}
@@ -0,0 +1,84 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.o5m.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.GridBagLayout;
+import java.io.File;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+
+import org.openstreetmap.josm.gui.ExtendedDialog;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.gui.widgets.JosmTextField;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.GBC;
+
+/**
+ * Asks whether a large local file is imported whole or with an {@link ImportFilter}.
+ * <p>
+ * The dialog edits the preferences read by {@link ImportFilter#fromPreferences},
+ * so the last filter is proposed again for the next import.
+ */
+final class ImportFilterDialog {
+
+    /** Smaller files are imported without asking, with the filter defined in preferences if any */
+    static final long MIN_FILE_SIZE = 64L * 1024 * 1024;
+
+    private ImportFilterDialog() {
+        // Hide default constructor for utilities classes
+    }
+
+    /**
+     * Returns the filter to import a local file with.
+     * The user is asked for large files, unless JOSM is headless or they chose not to be asked again.
+     * @param prefix preference key prefix of the filter, see {@link ImportFilter#fromPreferences}
+     * @param file local file to import
+     * @return the filter, or {@code null} to import the whole file
+     * @throws IllegalDataException if the filter is not valid
+     */
+    static ImportFilter getFilter(String prefix, File file) throws IllegalDataException {
+        if (!GraphicsEnvironment.isHeadless() && file.length() >= MIN_FILE_SIZE
+                && !GuiHelper.runInEDTAndWaitAndReturn(() -> askFilter(prefix, file))) {
+            return null;
+        }
+        return ImportFilter.fromPreferences(prefix);
+    }
+
+    private static boolean askFilter(String prefix, File file) {
+        JosmTextField bbox = new JosmTextField(Config.getPref().get(prefix + ".bbox", ""), 30);
+        JosmTextField search = new JosmTextField(Config.getPref().get(prefix + ".search", ""), 30);
+
+        JPanel panel = new JPanel(new GridBagLayout());
+        panel.add(new JLabel(tr("{0} is a large file. You can import only the data inside a bounding box and/or matching a search expression.",
+                file.getName())), GBC.eol().insets(0, 0, 0, 10));
+        panel.add(new JLabel(tr("Bounding box (min lat, min lon, max lat, max lon):")), GBC.std());
+        if (MainApplication.isDisplayingMapView()) {
+            JButton currentView = new JButton(tr("Current view"));
+            currentView.addActionListener(e -> bbox.setText(MainApplication.getMap().mapView.getRealBounds().encodeAsString(",")));
+            panel.add(bbox, GBC.std().fill(GBC.HORIZONTAL).insets(5, 0, 0, 5));
+            panel.add(currentView, GBC.eol());
+        } else {
+            panel.add(bbox, GBC.eol().fill(GBC.HORIZONTAL).insets(5, 0, 0, 5));
+        }
+        panel.add(new JLabel(tr("Search expression:")), GBC.std());
+        panel.add(search, GBC.eol().fill(GBC.HORIZONTAL).insets(5, 0, 0, 5));
+
+        ExtendedDialog dialog = new ExtendedDialog(MainApplication.getMainFrame(), tr("Import {0}", file.getName()),
+                tr("Import filtered data"), tr("Import all data"));
+        dialog.setButtonIcons("dialogs/filter", "open");
+        dialog.setContent(panel);
+        dialog.toggleEnable(prefix + ".dialog");
+        if (dialog.showDialog().getValue() != 1) {
+            return false;
+        }
+        Config.getPref().put(prefix + ".bbox", bbox.getText().trim());
+        Config.getPref().put(prefix + ".search", search.getText().trim());
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.o5m.io;
+
+import java.util.Arrays;
+
+/**
+ * Compact set of primitive ids, backed by a sorted {@code long} array.
+ * <p>
+ * Ids are appended while scanning a file, then the set is frozen before being queried.
+ * Files sorted by id (the usual case) do not need to be sorted again.
+ * This uses 8 bytes per id instead of about 50 for a {@code HashSet<Long>}.
+ */
+final class LongIdSet {
+
+    private long[] ids = new long[1024];
+    private int size;
+    private boolean sorted = true;
+    private boolean frozen;
+
+    /**
+     * Adds an id to this set.
+     * @param id id to add
+     * @throws IllegalStateException if the set is frozen
+     */
+    void add(long id) {
+        if (frozen) {
+            throw new IllegalStateException("Frozen set");
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size + (size >> 1));
+        }
+        if (size > 0 && id <= ids[size - 1]) {
+            sorted = false;
+        }
+        ids[size++] = id;
+    }
+
+    /**
+     * Sorts the ids, removes duplicates and trims the backing array. The set cannot be modified anymore.
+     * @return this
+     */
+    LongIdSet freeze() {
+        if (!frozen) {
+            if (!sorted) {
+                Arrays.sort(ids, 0, size);
+                int n = 0;
+                for (int i = 0; i < size; i++) {
+                    if (n == 0 || ids[i] != ids[n - 1]) {
+                        ids[n++] = ids[i];
+                    }
+                }
+                size = n;
+                sorted = true;
+            }
+            ids = Arrays.copyOf(ids, size);
+            frozen = true;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the position of the given id in this frozen set.
+     * @param id id to look for
+     * @return the position of the id in the set, or a negative value if it is absent
+     * @throws IllegalStateException if the set is not frozen
+     */
+    int indexOf(long id) {
+        if (!frozen) {
+            throw new IllegalStateException("Set must be frozen");
+        }
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    /**
+     * Determines if this frozen set contains the given id.
+     * @param id id to look for
+     * @return {@code true} if the set contains the id
+     * @throws IllegalStateException if the set is not frozen
+     */
+    boolean contains(long id) {
+        return indexOf(id) >= 0;
+    }
+
+    /**
+     * Returns the number of ids in this set.
+     * @return the number of ids in this set (including duplicates if the set is not frozen)
+     */
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,46 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.o5m.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+import org.openstreetmap.josm.actions.ExtensionFileFilter;
+import org.openstreetmap.josm.gui.io.importexport.OsmExporter;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+
+/**
+ * OSM Exporter for o5m format (*.o5m).
+ */
+public class O5mExporter extends OsmExporter {
+    /**
+     * File extension.
+     */
+    private static final String EXTENSION = "o5m";
+
+    /**
+     * Constructs a new {@code O5mExporter}.
+     */
+    public O5mExporter() {
+        super(new ExtensionFileFilter(EXTENSION, EXTENSION,
+                tr("OSM Server Files o5m compressed") + " (*."+EXTENSION+")"));
+    }
+
+    @Override
+    protected void doSave(File file, OsmDataLayer layer) throws IOException {
+        try (
+            OutputStream out = Files.newOutputStream(file.toPath());
+            O5mWriter w = new O5mWriter(out);
+        ) {
+            layer.data.getReadLock().lock();
+            try {
+                w.writeLayer(layer);
+            } finally {
+                layer.data.getReadLock().unlock();
+            }
+        }
+    }
+}
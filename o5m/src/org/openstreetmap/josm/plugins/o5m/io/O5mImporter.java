@@ -3,12 +3,14 @@ package org.openstreetmap.josm.plugins.o5m.io;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
 import org.openstreetmap.josm.actions.ExtensionFileFilter;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.gui.io.importexport.OsmImporter;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.IllegalDataException;
@@ -16,6 +18,10 @@ import org.openstreetmap.josm.io.CachedFile;
 
 /**
  * OSM Importer for o5m format (*.o5m).
+ * <p>
+ * Local files are imported with the filter defined in preferences, if any, see {@link ImportFilter#fromPreferences}.
+ * The user can edit it, or import the whole file, when a large file is imported, see {@link ImportFilterDialog}.
+ * Uncompressed local files are mapped in memory.
  * @author GerdP
  *
  */
@@ -24,14 +30,47 @@ public class O5mImporter extends OsmImporter {
      * File extension.
      */
     private static final String EXTENSION = "o5m";
-    
+
+    /**
+     * Preference key prefix of the import filter.
+     */
+    public static final String PREF_FILTER = "o5m.import.filter";
+
     public O5mImporter() {
         super(new ExtensionFileFilter(EXTENSION, EXTENSION, 
                 tr("OSM Server Files o5m compressed") + " (*."+EXTENSION+")"));
     }
 
+    @Override
+    public OsmImporterData loadLayer(InputStream in, File associatedFile, String layerName, ProgressMonitor progressMonitor)
+            throws IllegalDataException {
+        final DataSet dataSet = parseDataSet(in, associatedFile, progressMonitor);
+        OsmDataLayer layer = createLayer(dataSet, associatedFile, layerName);
+        return new OsmImporterData(layer, createPostLayerTask(dataSet, associatedFile, layerName, layer));
+    }
+
     @Override
     protected DataSet parseDataSet(InputStream in, ProgressMonitor progressMonitor) throws IllegalDataException {
+        return parseDataSet(in, null, progressMonitor);
+    }
+
+    /**
+     * Parses a data set, from the local file if there is one.
+     * @param in input stream of the data
+     * @param file local file read by {@code in}, can be {@code null}
+     * @param progressMonitor progress monitor
+     * @return the data set
+     * @throws IllegalDataException if the data is invalid
+     */
+    private static DataSet parseDataSet(InputStream in, File file, ProgressMonitor progressMonitor) throws IllegalDataException {
+        if (file != null && file.isFile()) {
+            ImportFilter filter = ImportFilterDialog.getFilter(PREF_FILTER, file);
+            if (filter != null) {
+                return O5mReader.parseDataSet(file.toPath(), filter, progressMonitor);
+            }
+            // Decode the file in place rather than through the stream
+            return O5mReader.parseDataSet(file.toPath(), progressMonitor);
+        }
         return O5mReader.parseDataSet(in, progressMonitor);
     }
 
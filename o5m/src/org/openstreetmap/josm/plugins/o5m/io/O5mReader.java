@@ -3,12 +3,14 @@ package org.openstreetmap.josm.plugins.o5m.io;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -29,6 +31,7 @@ import org.openstreetmap.josm.data.osm.UploadPolicy;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.AbstractReader;
+import org.openstreetmap.josm.io.Compression;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.io.ImportCancelException;
 import org.openstreetmap.josm.tools.CheckParameterUtil;
@@ -79,22 +82,32 @@ public class O5mReader extends AbstractReader {
     private static final String[] REL_REF_TYPES = {"node", "way", "relation", "?"};
     private static final double FACTOR = 1d/1_000_000_000; // used with 100*<Val>*FACTOR 
 
-    private BufferedInputStream fis;
+    private static final int MAX_VARINT_SIZE = 10;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int MAP_WINDOW_SIZE = 256 * 1024 * 1024;
+
+    // the source: either a stream copied into a reused heap buffer, or a file mapped in memory
     private InputStream is;
+    private FileChannel channel;
+
+    // data is decoded in place from buf, bytes from pos to limit are available 
+    private ByteBuffer buf;
+    private int pos;
+    private int limit;
+    // file offset of the first byte of buf
+    private long bufOffset;
+    // end of the current data set in buf
+    private int end;
 
     // buffer for byte -> String conversions
     private byte[] cnvBuffer; 
+    private final StringInterner interner = new StringInterner();
 
-    private byte[] ioBuf;
-    private int ioBufPos;
     // the o5m string table
-    private String[][] stringTable;
+    private final String[] stringTableKeys;
+    private final String[] stringTableValues;
     private String[] stringPair;
     private int currStringTablePos;
-    // a counter that must be maintained by all routines that read data from the stream
-    private int bytesToRead;
-    // total number of bytes read from stream
-    private long countBytes;
 
     // for delta calculations
     private long lastNodeId;
@@ -108,13 +121,28 @@ public class O5mReader extends AbstractReader {
     private int version;
     private User osmUser;
     private String header; 
+    // true once the bounding box data set has been read
+    private boolean hasBBox;
+    // selected primitives of a filtered import, or null
+    private final ImportSelection selection;
+
     /**
      * A parser for the o5m format
      */
     O5mReader() {
+        this(null);
+    }
+
+    /**
+     * A parser for the o5m format, that only loads selected primitives
+     * @param selection the selection of a filtered import, or {@code null}.
+     * While the selection is being scanned, primitives are added to the selection instead of the data set.
+     */
+    O5mReader(ImportSelection selection) {
+        this.selection = selection;
         this.cnvBuffer = new byte[4000]; // OSM data should not contain string pairs with length > 512
-        this.ioBuf = new byte[8192];
-        this.ioBufPos = 0;
+        this.stringTableKeys = new String[STRING_TABLE_SIZE];
+        this.stringTableValues = new String[STRING_TABLE_SIZE];
         this.stringPair = new String[2];
         this.lastRef = new long[3];
         reset();
@@ -126,15 +154,36 @@ public class O5mReader extends AbstractReader {
      * @throws ParsingCancelException if operation was canceled 
      */
     public void parse(InputStream source) throws ParsingCancelException {
-        this.fis = new BufferedInputStream(source);
-        is = fis;
+        this.is = source;
+        this.buf = ByteBuffer.wrap(new byte[STREAM_BUFFER_SIZE]);
+        read();
+    }
 
+    /**
+     * parse the file opened by the given channel, mapping it in memory 
+     * @param source The channel of an uncompressed file that contains the OSM data in o5m format
+     * @throws ParsingCancelException if operation was canceled 
+     */
+    void parse(FileChannel source) throws ParsingCancelException {
+        this.channel = source;
+        this.buf = ByteBuffer.allocate(0);
+        read();
+    }
+
+    private void read() throws ParsingCancelException {
+        pos = 0;
+        limit = 0;
+        bufOffset = 0;
         try {
-            int start = is.read();
-            ++countBytes;
+            int start = fill(1) ? buf.get(pos++) & 0xff : EOF_FLAG;
             if (start != RESET_FLAG) 
                 throw new IOException(tr("wrong header byte ") + Integer.toHexString(start));
             readFile();
+            if (selection != null && !selection.isScanning() && !hasBBox
+                    && selection.getFilter().getDataSourceBounds() != null) {
+                // The data source is only added for the bounding box data set, see readBBox
+                Logging.warn("No bounding box in o5m file, the import filter bounds are not added as data source");
+            }
             if (discourageUpload)
                 ds.setUploadPolicy(UploadPolicy.DISCOURAGED);
         } catch (IOException e) {
@@ -143,61 +192,77 @@ public class O5mReader extends AbstractReader {
     }
 
     private void readFile() throws IOException, ParsingCancelException {
-        boolean done = false;
-        while (!done) {
+        while (true) {
             if (cancel) {
                 cancel = false;
-                throw new ParsingCancelException(tr("Reading was canceled at file offset {0}", countBytes));
-            }
-            is = fis;
-            long size = 0;
-            int fileType = is.read();
-            ++countBytes;
-            if (fileType >= 0 && fileType < 0xf0) {
-                bytesToRead = 0;
-                size = readUnsignedNum64FromStream();
-                countBytes += size - bytesToRead; // bytesToRead is negative 
-                bytesToRead = (int) size;
-
-                switch(fileType) {
-                case NODE_DATASET: 
-                case WAY_DATASET: 
-                case REL_DATASET: 
-                case BBOX_DATASET:
-                case TIMESTAMP_DATASET:
-                case HEADER_DATASET:
-                    is = fillByteArray();
-                    break;                    
-                default: break;    
-                }
+                throw new ParsingCancelException(tr("Reading was canceled at file offset {0}", bufOffset + pos));
             }
-            if (fileType == EOF_FLAG) done = true; 
-            else if (fileType == NODE_DATASET) readNode();
-            else if (fileType == WAY_DATASET) readWay();
-            else if (fileType == REL_DATASET) readRel();
-            else if (fileType == BBOX_DATASET) readBBox();
-            else if (fileType == TIMESTAMP_DATASET) readFileTimestamp();
-            else if (fileType == HEADER_DATASET) readHeader();
-            else if (fileType == EOD_FLAG) done = true;
+            if (!fill(1))
+                return; // EOF
+            int fileType = buf.get(pos++) & 0xff;
+            if (fileType < 0xf0) {
+                fill(MAX_VARINT_SIZE);
+                long size = readUnsignedNum64();
+                if (size > Integer.MAX_VALUE || !fill((int) size))
+                    throw new IOException(tr("Unexpected end of file at offset {0}", bufOffset + pos));
+                end = pos + (int) size;
+
+                if (fileType == NODE_DATASET) readNode();
+                else if (fileType == WAY_DATASET) readWay();
+                else if (fileType == REL_DATASET) readRel();
+                else if (fileType == BBOX_DATASET) readBBox();
+                else if (fileType == TIMESTAMP_DATASET) readFileTimestamp();
+                else if (fileType == HEADER_DATASET) readHeader();
+                // skip unknown data sets and delete actions
+                pos = end;
+            } 
+            else if (fileType == EOD_FLAG) return;
             else if (fileType == RESET_FLAG) reset();
-            else {
-                if (fileType < 0xf0) skip(size); // skip unknown data set 
-            }
         }
     }
 
-    private InputStream fillByteArray() throws IOException {
-        if (bytesToRead > ioBuf.length) {
-            ioBuf = new byte[bytesToRead + 100];
-        }
-        int bytesRead = 0;
-        int neededBytes = bytesToRead;
-        while (neededBytes > 0) {
-            bytesRead += is.read(ioBuf, bytesRead, neededBytes);
-            neededBytes -= bytesRead;
+    /**
+     * Make sure that the given number of bytes is available in the buffer, from the current position.
+     * Streams are read into the same heap buffer, unless a larger one is needed. 
+     * Files are mapped in windows of {@value #MAP_WINDOW_SIZE} bytes. 
+     * @param n number of bytes
+     * @return false if the end of the source is reached before
+     * @throws IOException in case of I/O error
+     */
+    private boolean fill(int n) throws IOException {
+        if (limit - pos >= n)
+            return true;
+        if (channel != null) {
+            long offset = bufOffset + pos;
+            long size = Math.min(Math.max(MAP_WINDOW_SIZE, n), channel.size() - offset);
+            if (size > 0) {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+                bufOffset = offset;
+                pos = 0;
+                limit = (int) size;
+            }
+        } else {
+            byte[] arr = buf.array();
+            int remaining = limit - pos;
+            if (n > arr.length) {
+                byte[] larger = new byte[Math.max(n, 2 * arr.length)];
+                System.arraycopy(arr, pos, larger, 0, remaining);
+                buf = ByteBuffer.wrap(larger);
+                arr = larger;
+            } else {
+                System.arraycopy(arr, pos, arr, 0, remaining);
+            }
+            bufOffset += pos;
+            pos = 0;
+            limit = remaining;
+            while (limit < n) {
+                int bytesRead = is.read(arr, limit, arr.length - limit);
+                if (bytesRead < 0)
+                    break;
+                limit += bytesRead;
+            }
         }
-        ioBufPos = 0;
-        return new ByteArrayInputStream(ioBuf, 0, bytesToRead);
+        return limit - pos >= n;
     }
 
     /**
@@ -207,18 +272,6 @@ public class O5mReader extends AbstractReader {
         /*long fileTimeStamp = */readSignedNum64();
     }
 
-    /**
-     * Skip the given number of bytes
-     * @param bytes number of bytes to skip 
-     * @throws IOException in case of I/O error
-     */
-    private void skip(long bytes) throws IOException {
-        long toSkip = bytes;
-        while (toSkip > 0) {
-            toSkip -= is.skip(toSkip);
-        }
-    }
-
     /**
      * read the bounding box data set
      */
@@ -229,7 +282,14 @@ public class O5mReader extends AbstractReader {
         double maxlat = FACTOR * 100L * readSignedNum32();
 
         Bounds b = new Bounds(minlat, minlon, maxlat, maxlon);
-        if (!b.isCollapsed() && LatLon.isValidLat(minlat) && LatLon.isValidLat(maxlat) 
+        hasBBox = true;
+        if (selection != null) {
+            // Filtered data is only complete inside the filter bounds, if any
+            Bounds filterBounds = selection.getFilter().getDataSourceBounds();
+            if (filterBounds != null) {
+                ds.addDataSource(new DataSource(filterBounds, header));
+            }
+        } else if (!b.isCollapsed() && LatLon.isValidLat(minlat) && LatLon.isValidLat(maxlat) 
                 && LatLon.isValidLon(minlon) && LatLon.isValidLon(maxlon)) {
             ds.addDataSource(new DataSource(b, header));
         } else {
@@ -258,11 +318,11 @@ public class O5mReader extends AbstractReader {
             return;
         try {
             lastNodeId += readSignedNum64();
-            if (bytesToRead == 0)
+            if (pos >= end)
                 return; // only nodeId: this is a delete action, we ignore it
             readVersionTsAuthor();
 
-            if (bytesToRead == 0)
+            if (pos >= end)
                 return; // only nodeId+version: this is a delete action, we ignore it 
             int lon = readSignedNum32() + lastLon; lastLon = lon;
             int lat = readSignedNum32() + lastLat; lastLat = lat;
@@ -271,6 +331,10 @@ public class O5mReader extends AbstractReader {
             double flat = FACTOR * (100L*lat);
             assert flat >= -90.0 && flat <= 90.0;  
             assert flon >= -180.0 && flon <= 180.0;  
+            if (selection != null && !selection.acceptNode(lastNodeId)) {
+                skipTags(); // maintain the string table
+                return;
+            }
             if (version == 0)
                 discourageUpload = true;
             NodeData nd = new NodeData(lastNodeId);
@@ -278,11 +342,15 @@ public class O5mReader extends AbstractReader {
             checkCoordinates(nd.getCoor());
             setMeta(nd);
 
-            if (bytesToRead > 0) {
+            if (pos < end) {
                 Map<String, String> keys = readTags();
                 nd.setKeys(keys);
             }
-            buildPrimitive(nd);
+            if (selection != null && selection.isScanning()) {
+                selection.scanNode(nd);
+            } else {
+                buildPrimitive(nd);
+            }
             
         } catch (IllegalDataException e) {
             exception = e;
@@ -297,30 +365,42 @@ public class O5mReader extends AbstractReader {
             return;
         try {
             lastWayId += readSignedNum64();
-            if (bytesToRead == 0)
+            if (pos >= end)
                 return; // only wayId: this is a delete action, we ignore it 
 
             readVersionTsAuthor();
-            if (bytesToRead == 0)
+            if (pos >= end)
                 return; // only wayId + version: this is a delete action, we ignore it
+            int refSize = readUnsignedNum32();
+            int stop = pos + refSize;
+            if (selection != null && !selection.acceptWay(lastWayId)) {
+                // node refs are delta coded, they must be read anyway
+                while (pos < stop) {
+                    lastRef[0] += readSignedNum64();
+                }
+                skipTags(); // maintain the string table
+                return;
+            }
             if (version == 0)
                 discourageUpload = true;
             final WayData wd = new WayData(lastWayId);
             setMeta(wd);
 
-            long refSize = readUnsignedNum32();
-            long stop = bytesToRead - refSize;
             Collection<Long> nodeIds = new ArrayList<>();
 
-            while (bytesToRead > stop) {
+            while (pos < stop) {
                 lastRef[0] += readSignedNum64();
                 nodeIds.add(lastRef[0]);
             }
 
             Map<String, String> keys = readTags();
             wd.setKeys(keys);
-            ways.put(wd.getUniqueId(), nodeIds);
-            buildPrimitive(wd);
+            if (selection != null && selection.isScanning()) {
+                selection.scanWay(wd, nodeIds.stream().mapToLong(Long::longValue).toArray());
+            } else {
+                ways.put(wd.getUniqueId(), nodeIds);
+                buildPrimitive(wd);
+            }
         } catch (IllegalDataException e) {
             exception = e;
         }
@@ -335,20 +415,29 @@ public class O5mReader extends AbstractReader {
             return;
         try {
             lastRelId += readSignedNum64(); 
-            if (bytesToRead == 0)
+            if (pos >= end)
                 return; // only relId: this is a delete action, we ignore it 
             readVersionTsAuthor();
-            if (bytesToRead == 0)
+            if (pos >= end)
                 return; // only relId + version: this is a delete action, we ignore it 
+            int refSize = readUnsignedNum32();
+            int stop = pos + refSize;
+            if (selection != null && !selection.acceptRelation(lastRelId)) {
+                // member refs are delta coded and roles are in the string table, they must be read anyway
+                while (pos < stop) {
+                    long deltaRef = readSignedNum64();
+                    lastRef[readRelRef()] += deltaRef;
+                }
+                skipTags(); // maintain the string table
+                return;
+            }
             if (version == 0)
                 discourageUpload = true;
             final RelationData rel = new RelationData(lastRelId);
             setMeta(rel);
 
-            long refSize = readUnsignedNum32();
-            long stop = bytesToRead - refSize;
             Collection<RelationMemberData> members = new ArrayList<>();
-            while (bytesToRead > stop) {
+            while (pos < stop) {
                 long deltaRef = readSignedNum64();
                 int refType = readRelRef();
                 String role = stringPair[1];
@@ -367,8 +456,12 @@ public class O5mReader extends AbstractReader {
             }
             Map<String, String> keys = readTags();
             rel.setKeys(keys);
-            relations.put(rel.getUniqueId(), members);
-            buildPrimitive(rel);
+            if (selection != null && selection.isScanning()) {
+                selection.scanRelation(rel, members);
+            } else {
+                relations.put(rel.getUniqueId(), members);
+                buildPrimitive(rel);
+            }
         } catch (IllegalDataException e) {
             exception = e;
         }
@@ -376,20 +469,26 @@ public class O5mReader extends AbstractReader {
 
     private Map<String, String> readTags() {
         Map<String, String> keys = new HashMap<>();
-        while (bytesToRead > 0) {
+        while (pos < end) {
             readStringPair();
             keys.put(stringPair[0], stringPair[1]);
         }
-        assert bytesToRead == 0;
+        assert pos == end;
         return keys;
     }
 
+    private void skipTags() {
+        while (pos < end) {
+            readStringPair();
+        }
+    }
+
     /**
      * Store a new string pair (length check must be performed by caller)
      */
     private void storeStringPair() {
-        stringTable[0][currStringTablePos] = stringPair[0];
-        stringTable[1][currStringTablePos] = stringPair[1];
+        stringTableKeys[currStringTablePos] = stringPair[0];
+        stringTableValues[currStringTablePos] = stringPair[1];
         ++currStringTablePos;
         if (currStringTablePos >= STRING_TABLE_SIZE)
             currStringTablePos = 0;
@@ -401,11 +500,11 @@ public class O5mReader extends AbstractReader {
      * @param ref valid values are 1 .. STRING_TABLE_SIZE
      */
     private void setStringRefPair(int ref) {
-        int pos = currStringTablePos - ref;
-        if (pos < 0) 
-            pos += STRING_TABLE_SIZE;
-        stringPair[0] = stringTable[0][pos];
-        stringPair[1] = stringTable[1][pos];
+        int i = currStringTablePos - ref;
+        if (i < 0) 
+            i += STRING_TABLE_SIZE;
+        stringPair[0] = stringTableKeys[i];
+        stringPair[1] = stringTableValues[i];
     }
 
     /**
@@ -432,28 +531,16 @@ public class O5mReader extends AbstractReader {
     private void readAuthor() {
         int stringRef = readUnsignedNum32();
         if (stringRef == 0) {
-            long toReadStart = bytesToRead;
+            int start = pos;
             long uidNum = readUnsignedNum64();
             if (uidNum == 0)
                 stringPair[0] = "";
             else {
                 stringPair[0] = Long.toUnsignedString(uidNum);
-                ioBufPos++; // skip terminating zero from uid
-                --bytesToRead;
+                pos++; // skip terminating zero from uid
             }
-            int start = 0;
-            int buffPos = 0; 
-            stringPair[1] = null;
-            while (stringPair[1] == null) {
-                final int b = ioBuf[ioBufPos++];
-                --bytesToRead;
-                cnvBuffer[buffPos++] = (byte) b;
-
-                if (b == 0)
-                    stringPair[1] = new String(cnvBuffer, start, buffPos-1, StandardCharsets.UTF_8);
-            }
-            long bytes = toReadStart - bytesToRead;
-            if (bytes <= MAX_STRING_PAIR_SIZE)
+            stringPair[1] = readString();
+            if (pos - start <= MAX_STRING_PAIR_SIZE)
                 storeStringPair();
         } else 
             setStringRefPair(stringRef);
@@ -470,29 +557,16 @@ public class O5mReader extends AbstractReader {
      */
     private int readRelRef() {
         int refType = -1;
-        long toReadStart = bytesToRead;
+        int start = pos;
         int stringRef = readUnsignedNum32();
         if (stringRef == 0) {
-            refType = ioBuf[ioBufPos++] - 0x30;
-            --bytesToRead;
+            refType = buf.get(pos++) - 0x30;
 
             if (refType < 0 || refType > 2)
                 refType = 3;
             stringPair[0] = REL_REF_TYPES[refType];
-
-            int start = 0;
-            int buffPos = 0; 
-            stringPair[1] = null;
-            while (stringPair[1] == null) {
-                final int b = ioBuf[ioBufPos++];
-                --bytesToRead;
-                cnvBuffer[buffPos++] = (byte) b;
-
-                if (b == 0)
-                    stringPair[1] = new String(cnvBuffer, start, buffPos-1, StandardCharsets.UTF_8);
-            }
-            long bytes = toReadStart - bytesToRead;
-            if (bytes <= MAX_STRING_PAIR_SIZE)
+            stringPair[1] = readString();
+            if (pos - start <= MAX_STRING_PAIR_SIZE)
                 storeStringPair();
         } else {
             setStringRefPair(stringRef);
@@ -513,35 +587,38 @@ public class O5mReader extends AbstractReader {
     private void readStringPair() {
         int stringRef = readUnsignedNum32();
         if (stringRef == 0) {
-            long toReadStart = bytesToRead;
-            int cnt = 0;
-            int buffPos = 0; 
-            int start = 0;
-            while (cnt < 2) {
-                final int b = ioBuf[ioBufPos++];
-                --bytesToRead;
-                cnvBuffer[buffPos++] = (byte) b;
-
-                if (b == 0) {
-                    stringPair[cnt] = new String(cnvBuffer, start, buffPos-start-1, StandardCharsets.UTF_8);
-                    ++cnt;
-                    start = buffPos;
-                }
-            }
-            long bytes = toReadStart - bytesToRead;
-            if (bytes <= MAX_STRING_PAIR_SIZE)
+            int start = pos;
+            stringPair[0] = readString();
+            stringPair[1] = readString();
+            if (pos - start <= MAX_STRING_PAIR_SIZE)
                 storeStringPair();
         } else 
             setStringRefPair(stringRef);
     }
 
+    /**
+     * read a zero terminated UTF-8 string. Identical strings share the same instance.
+     * @return the string
+     */
+    private String readString() {
+        int len = 0;
+        byte b;
+        while ((b = buf.get(pos++)) != 0) {
+            if (len == cnvBuffer.length)
+                cnvBuffer = Arrays.copyOf(cnvBuffer, 2 * len);
+            cnvBuffer[len++] = b;
+        }
+        return interner.get(cnvBuffer, 0, len);
+    }
+
     /** reset the delta values and string table */
     private void reset() {
         lastNodeId = 0; lastWayId = 0; lastRelId = 0;
         lastRef[0] = 0; lastRef[1] = 0; lastRef[2] = 0;
         lastTs = 0; lastChangeSet = 0;
         lastLon = 0; lastLat = 0;
-        stringTable = new String[2][STRING_TABLE_SIZE];
+        Arrays.fill(stringTableKeys, null);
+        Arrays.fill(stringTableValues, null);
         currStringTablePos = 0;
     }
 
@@ -550,10 +627,11 @@ public class O5mReader extends AbstractReader {
      * @throws IOException in case of I/O error
      */
     private void readHeader() throws IOException {
-        if (ioBuf[0] != 'o' || ioBuf[1] != '5' || (ioBuf[2] != 'c' && ioBuf[2] != 'm') || ioBuf[3] != '2') {
+        if (end - pos < 4 || buf.get(pos) != 'o' || buf.get(pos + 1) != '5' 
+                || (buf.get(pos + 2) != 'c' && buf.get(pos + 2) != 'm') || buf.get(pos + 3) != '2') {
             throw new IOException(tr("unsupported header"));
         }
-        header = new String(ioBuf, 0, 3, StandardCharsets.UTF_8);
+        header = buf.get(pos + 2) == 'c' ? "o5c" : "o5m";
     }
 
     /**
@@ -570,8 +648,7 @@ public class O5mReader extends AbstractReader {
      */
     private long readSignedNum64() {
         long result;
-        int b = ioBuf[ioBufPos++];
-        --bytesToRead;
+        int b = buf.get(pos++);
         result = b;
         if ((b & 0x80) == 0) {  // just one byte
             if ((b & 0x01) == 1)
@@ -581,62 +658,32 @@ public class O5mReader extends AbstractReader {
         int sign = b & 0x01;
         result = (result & 0x7e) >> 1;
         int shift = 6;
-        while (((b = ioBuf[ioBufPos++]) & 0x80) != 0) { // more bytes will follow
-            --bytesToRead;
+        while (((b = buf.get(pos++)) & 0x80) != 0) { // more bytes will follow
             result += ((long) (b & 0x7f)) << shift;
             shift += 7;
         }
-        --bytesToRead;
         result += ((long) b) << shift;
         if (sign == 1) // negative
             return -1 - result;
         return result;
     }
 
-    /**
-     * read a varying length unsigned number (see o5m definition)
-     * @return the number as long
-     * @throws IOException in case of I/O error
-     */
-    private long readUnsignedNum64FromStream()throws IOException {
-        int b = is.read();
-        --bytesToRead;
-        long result = b;
-        if ((b & 0x80) == 0) {  // just one byte
-            return result;
-        }
-        result &= 0x7f;
-        int shift = 7;
-        while (((b = is.read()) & 0x80) != 0) { // more bytes will follow
-            --bytesToRead;
-            result += ((long) (b & 0x7f)) << shift;
-            shift += 7;
-        }
-        --bytesToRead;
-        result += ((long) b) << shift;
-        return result;
-    }
-
-
     /**
      * read a varying length unsigned number (see o5m definition)
      * @return the number as long
      */
     private long readUnsignedNum64() {
-        int b = ioBuf[ioBufPos++];
-        --bytesToRead;
+        int b = buf.get(pos++);
         long result = b;
         if ((b & 0x80) == 0) {  // just one byte
             return result;
         }
         result &= 0x7f;
         int shift = 7;
-        while (((b = ioBuf[ioBufPos++]) & 0x80) != 0) { // more bytes will follow
-            --bytesToRead;
+        while (((b = buf.get(pos++)) & 0x80) != 0) { // more bytes will follow
             result += ((long) (b & 0x7f)) << shift;
             shift += 7;
         }
-        --bytesToRead;
         result += ((long) b) << shift;
         return result;
     }
@@ -678,16 +725,95 @@ public class O5mReader extends AbstractReader {
         return new O5mReader().doParseDataSet(source, progressMonitor);
     }
 
+    /**
+     * Parse the given file and return the dataset.
+     * <p>
+     * Uncompressed files are mapped in memory and decoded in place, without copying them to an intermediate buffer.
+     *
+     * @param file the source file. Must not be null.
+     * @param progressMonitor  the progress monitor. If null, {@link NullProgressMonitor#INSTANCE} is assumed
+     *
+     * @return the dataset with the parsed data
+     * @throws IllegalDataException thrown if the an error was found while parsing the data from the source
+     * @throws IllegalArgumentException thrown if file is null
+     */
+    public static DataSet parseDataSet(Path file, ProgressMonitor progressMonitor) throws IllegalDataException {
+        if (progressMonitor == null) {
+            progressMonitor = NullProgressMonitor.INSTANCE;
+        }
+        CheckParameterUtil.ensureParameterNotNull(file, "file");
+        return new O5mReader().doParseDataSet(file, progressMonitor);
+    }
+
+    /**
+     * Parse the given file with a filter and return the dataset.
+     * <p>
+     * The file is read twice: the first pass selects the primitives to load, the second pass only decodes them.
+     * Memory usage thus depends on the size of the selection, not on the size of the file.
+     *
+     * @param file the source file, where nodes come before ways and ways before relations. Must not be null.
+     * @param filter the import filter. Must not be null.
+     * @param progressMonitor  the progress monitor. If null, {@link NullProgressMonitor#INSTANCE} is assumed
+     *
+     * @return the dataset with the filtered data
+     * @throws IllegalDataException thrown if the an error was found while parsing the data from the source
+     * @throws IllegalArgumentException thrown if file or filter is null
+     */
+    public static DataSet parseDataSet(Path file, ImportFilter filter, ProgressMonitor progressMonitor)
+            throws IllegalDataException {
+        if (progressMonitor == null) {
+            progressMonitor = NullProgressMonitor.INSTANCE;
+        }
+        CheckParameterUtil.ensureParameterNotNull(file, "file");
+        CheckParameterUtil.ensureParameterNotNull(filter, "filter");
+        ImportSelection selection = new ImportSelection(filter);
+        progressMonitor.beginTask(tr("Selecting OSM data..."), 2);
+        try {
+            new O5mReader(selection).doParseDataSet(file, progressMonitor.createSubTaskMonitor(1, false));
+            selection.finishScan();
+            return new O5mReader(selection).doParseDataSet(file, progressMonitor.createSubTaskMonitor(1, false));
+        } finally {
+            progressMonitor.finishTask();
+        }
+    }
+
+    private DataSet doParseDataSet(Path file, ProgressMonitor progressMonitor) throws IllegalDataException {
+        try {
+            if (Compression.byExtension(file.toString()) == Compression.NONE) {
+                try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ)) {
+                    return doParseDataSet(() -> parse(fc), progressMonitor);
+                }
+            }
+            try (InputStream in = Compression.getUncompressedFileInputStream(file)) {
+                return doParseDataSet(in, progressMonitor);
+            }
+        } catch (IOException e) {
+            throw new IllegalDataException(e);
+        }
+    }
+
     @Override
     protected DataSet doParseDataSet(InputStream source, ProgressMonitor progressMonitor)
             throws IllegalDataException {
+        return doParseDataSet(() -> parse(source), progressMonitor);
+    }
+
+    /**
+     * Parses the source of this reader.
+     */
+    @FunctionalInterface
+    private interface ParseTask {
+        void parse() throws ParsingCancelException;
+    }
+
+    private DataSet doParseDataSet(ParseTask task, ProgressMonitor progressMonitor) throws IllegalDataException {
         ProgressMonitor.CancelListener cancelListener = () -> cancel = true;
         progressMonitor.addCancelListener(cancelListener);
         try {
             progressMonitor.beginTask(tr("Prepare OSM data..."), 3); // read, prepare, create data layer
             progressMonitor.indeterminateSubTask(tr("Reading OSM data..."));
 
-            parse(source);
+            task.parse();
             progressMonitor.worked(1);
             progressMonitor.indeterminateSubTask(tr("Preparing data set..."));
             prepareDataSet();
@@ -0,0 +1,358 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.o5m.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.DataSource;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+
+/**
+ * Write stream in o5m format.
+ * <p>
+ * Primitives are written in id order, nodes first, then ways, then relations. Ids, coordinates, timestamps,
+ * changesets and references are delta coded, strings go through the o5m string table.
+ * A reset marker is written before each primitive type and every {@link #setResetInterval reset interval} primitives,
+ * so readers can start decoding from any of them.
+ */
+public class O5mWriter implements Closeable {
+
+    /** Default number of primitives between two reset markers */
+    public static final int DEFAULT_RESET_INTERVAL = 100_000;
+
+    // O5M data set constants, see O5mReader
+    private static final int NODE_DATASET = 0x10;
+    private static final int WAY_DATASET = 0x11;
+    private static final int REL_DATASET = 0x12;
+    private static final int BBOX_DATASET = 0xdb;
+    private static final int HEADER_DATASET = 0xe0;
+    private static final int EOD_FLAG = 0xfe;
+    private static final int RESET_FLAG = 0xff;
+
+    // o5m constants
+    private static final int STRING_TABLE_SIZE = 15000;
+    private static final int MAX_STRING_PAIR_SIZE = 250 + 2;
+    private static final double FACTOR = 10_000_000d; // inverse of O5mReader 100*FACTOR
+
+    private final OutputStream out;
+    private int resetInterval = DEFAULT_RESET_INTERVAL;
+
+    // the data set being written, the references section of ways and relations, and other reused buffers
+    private final Buffer body = new Buffer();
+    private final Buffer refs = new Buffer();
+    private final Buffer author = new Buffer();
+    private final Buffer length = new Buffer();
+
+    // the o5m string table, as maintained by readers: position of the last occurrence of each stored pair
+    private final Map<String, Integer> stringTable = new HashMap<>();
+    private final String[] stringTableKeys = new String[STRING_TABLE_SIZE];
+    private int stringTableCount;
+
+    // for delta calculations
+    private long lastId;
+    private final long[] lastRef = new long[3];
+    private long lastTs;
+    private long lastChangeSet;
+    private int lastLon;
+    private int lastLat;
+    private int count;
+
+    /**
+     * Growable byte array, that can be reused for each data set.
+     */
+    private static final class Buffer {
+        private byte[] data = new byte[4096];
+        private int size;
+
+        private void ensure(int n) {
+            if (size + n > data.length) {
+                data = Arrays.copyOf(data, Math.max(size + n, 2 * data.length));
+            }
+        }
+
+        void write(int b) {
+            ensure(1);
+            data[size++] = (byte) b;
+        }
+
+        void write(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, data, size, b.length);
+            size += b.length;
+        }
+
+        void write(Buffer b) {
+            ensure(b.size);
+            System.arraycopy(b.data, 0, data, size, b.size);
+            size += b.size;
+        }
+
+        /**
+         * write a varying length unsigned number (see o5m definition)
+         * @param v the number
+         */
+        void writeUnsigned(long v) {
+            ensure(10);
+            while ((v & ~0x7fL) != 0) {
+                data[size++] = (byte) ((v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            data[size++] = (byte) v;
+        }
+
+        /**
+         * write a varying length signed number (see o5m definition)
+         * @param v the number
+         */
+        void writeSigned(long v) {
+            writeUnsigned(v < 0 ? ((-1 - v) << 1) | 1 : v << 1);
+        }
+    }
+
+    /**
+     * Constructs a new {@code O5mWriter}.
+     * @param out output stream
+     */
+    public O5mWriter(OutputStream out) {
+        this.out = out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out, 64 * 1024);
+    }
+
+    /**
+     * Sets the number of primitives between two reset markers.
+     * @param resetInterval number of primitives between two reset markers
+     * @throws IllegalArgumentException if {@code resetInterval} is not positive
+     */
+    public void setResetInterval(int resetInterval) {
+        if (resetInterval <= 0) {
+            throw new IllegalArgumentException("Invalid reset interval: " + resetInterval);
+        }
+        this.resetInterval = resetInterval;
+    }
+
+    /**
+     * Writes data from an OSM data layer.
+     * @param layer data layer
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeLayer(OsmDataLayer layer) throws IOException {
+        writeData(layer.getDataSet());
+    }
+
+    /**
+     * Writes data from a dataset.
+     * @param ds dataset
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeData(DataSet ds) throws IOException {
+        out.write(RESET_FLAG);
+        body.write('o');
+        body.write('5');
+        body.write('m');
+        body.write('2');
+        writeDataSet(HEADER_DATASET);
+        if (!ds.getDataSources().isEmpty()) {
+            // o5m can only store one bbox
+            writeBBox(ds.getDataSources().iterator().next());
+        }
+        Comparator<OsmPrimitive> byId = Comparator.comparingLong(OsmPrimitive::getUniqueId);
+        List<Node> nodes = ds.getNodes().stream().filter(n -> n.isUsable() && n.isLatLonKnown())
+                .sorted(byId).collect(Collectors.toList());
+        reset();
+        for (Node n : nodes) {
+            writeNode(n);
+        }
+        List<Way> ways = ds.getWays().stream().filter(OsmPrimitive::isUsable).sorted(byId).collect(Collectors.toList());
+        reset();
+        for (Way w : ways) {
+            writeWay(w);
+        }
+        List<Relation> relations = ds.getRelations().stream().filter(OsmPrimitive::isUsable).sorted(byId)
+                .collect(Collectors.toList());
+        reset();
+        for (Relation r : relations) {
+            writeRel(r);
+        }
+        out.write(EOD_FLAG);
+        out.flush();
+    }
+
+    private void writeBBox(DataSource source) throws IOException {
+        Bounds b = source.bounds;
+        body.writeSigned(toFixed(b.getMinLon()));
+        body.writeSigned(toFixed(b.getMinLat()));
+        body.writeSigned(toFixed(b.getMaxLon()));
+        body.writeSigned(toFixed(b.getMaxLat()));
+        writeDataSet(BBOX_DATASET);
+    }
+
+    private static int toFixed(double degrees) {
+        return (int) Math.round(degrees * FACTOR);
+    }
+
+    private void writeNode(Node n) throws IOException {
+        writeIdAndMeta(n);
+        int lon = toFixed(n.lon());
+        int lat = toFixed(n.lat());
+        body.writeSigned((long) lon - lastLon);
+        lastLon = lon;
+        body.writeSigned((long) lat - lastLat);
+        lastLat = lat;
+        writeTags(n);
+        writeDataSet(NODE_DATASET);
+    }
+
+    private void writeWay(Way w) throws IOException {
+        writeIdAndMeta(w);
+        for (Node n : w.getNodes()) {
+            long ref = n.getUniqueId();
+            refs.writeSigned(ref - lastRef[0]);
+            lastRef[0] = ref;
+        }
+        writeRefs();
+        writeTags(w);
+        writeDataSet(WAY_DATASET);
+    }
+
+    private void writeRel(Relation r) throws IOException {
+        writeIdAndMeta(r);
+        for (RelationMember m : r.getMembers()) {
+            int type = m.getType().ordinal(); // NODE, WAY, RELATION
+            long ref = m.getUniqueId();
+            refs.writeSigned(ref - lastRef[type]);
+            lastRef[type] = ref;
+            byte[] role = m.getRole().getBytes(StandardCharsets.UTF_8);
+            byte[] pair = new byte[role.length + 2];
+            pair[0] = (byte) ('0' + type);
+            System.arraycopy(role, 0, pair, 1, role.length);
+            // readers count the zero string reference in the pair size
+            writeStringPair(refs, 'r', pair, pair.length + 1);
+        }
+        writeRefs();
+        writeTags(r);
+        writeDataSet(REL_DATASET);
+    }
+
+    private void writeRefs() {
+        body.writeUnsigned(refs.size);
+        body.write(refs);
+        refs.size = 0;
+    }
+
+    private void writeIdAndMeta(OsmPrimitive p) throws IOException {
+        if (count > 0 && count % resetInterval == 0) {
+            reset();
+        }
+        count++;
+        long id = p.getUniqueId();
+        body.writeSigned(id - lastId);
+        lastId = id;
+        int version = p.getVersion();
+        body.writeUnsigned(version);
+        if (version != 0) {
+            long ts = p.getInstant().getEpochSecond();
+            body.writeSigned(ts - lastTs);
+            lastTs = ts;
+            if (ts != 0) {
+                long changeSet = p.getChangesetId();
+                body.writeSigned(changeSet - lastChangeSet);
+                lastChangeSet = changeSet;
+                writeAuthor(p.getUser());
+            }
+        }
+    }
+
+    private void writeAuthor(User user) {
+        author.size = 0;
+        if (user != null && user.getId() > 0) {
+            author.writeUnsigned(user.getId());
+            author.write(0);
+        } else {
+            // anonymous, the uid is an empty string
+            author.write(0);
+        }
+        author.write(user != null && user.getName() != null ? user.getName().getBytes(StandardCharsets.UTF_8) : new byte[0]);
+        author.write(0);
+        writeStringPair(body, 'u', Arrays.copyOf(author.data, author.size), author.size);
+    }
+
+    private void writeTags(OsmPrimitive p) {
+        for (Map.Entry<String, String> tag : p.getKeys().entrySet()) {
+            byte[] k = tag.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] v = tag.getValue().getBytes(StandardCharsets.UTF_8);
+            byte[] pair = new byte[k.length + v.length + 2];
+            System.arraycopy(k, 0, pair, 0, k.length);
+            System.arraycopy(v, 0, pair, k.length + 1, v.length);
+            writeStringPair(body, 't', pair, pair.length);
+        }
+    }
+
+    /**
+     * Write a string pair, either by reference to the string table or inline (see o5m definition)
+     * @param buf the destination buffer
+     * @param kind kind of pair, as the same bytes are decoded differently for tags, authors and member roles
+     * @param pair the encoded pair, with its zero terminators
+     * @param size the size of the pair, as computed by readers to decide whether it is stored in the table
+     */
+    private void writeStringPair(Buffer buf, char kind, byte[] pair, int size) {
+        String key = kind + new String(pair, StandardCharsets.ISO_8859_1);
+        Integer stored = stringTable.get(key);
+        if (stored != null) {
+            buf.writeUnsigned(stringTableCount - stored);
+            return;
+        }
+        buf.write(0);
+        buf.write(pair);
+        if (size <= MAX_STRING_PAIR_SIZE) {
+            int pos = stringTableCount % STRING_TABLE_SIZE;
+            // this entry is overwritten and cannot be referenced anymore
+            if (stringTableKeys[pos] != null) {
+                stringTable.remove(stringTableKeys[pos]);
+            }
+            stringTableKeys[pos] = key;
+            stringTable.put(key, stringTableCount++);
+        }
+    }
+
+    private void writeDataSet(int type) throws IOException {
+        out.write(type);
+        length.writeUnsigned(body.size);
+        out.write(length.data, 0, length.size);
+        length.size = 0;
+        out.write(body.data, 0, body.size);
+        body.size = 0;
+    }
+
+    /** write a reset marker and reset the delta values and string table */
+    private void reset() throws IOException {
+        out.write(RESET_FLAG);
+        lastId = 0;
+        lastRef[0] = 0; lastRef[1] = 0; lastRef[2] = 0;
+        lastTs = 0; lastChangeSet = 0;
+        lastLon = 0; lastLat = 0;
+        stringTable.clear();
+        Arrays.fill(stringTableKeys, null);
+        stringTableCount = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
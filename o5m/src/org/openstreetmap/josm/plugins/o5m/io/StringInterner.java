@@ -0,0 +1,88 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.o5m.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Decodes UTF-8 strings, returning the same instance for identical byte sequences.
+ * <p>
+ * Keys and most values are repeated a lot in OSM data, so this avoids creating a new {@code String}
+ * each time a string pair is read inline. The number of distinct strings is bounded: once full,
+ * new strings are decoded without being remembered.
+ */
+final class StringInterner {
+
+    private static final int MAX_SIZE = 1 << 18;
+
+    private byte[][] bytes = new byte[1024][];
+    private String[] strings = new String[1024];
+    private int[] hashes = new int[1024];
+    private int size;
+
+    /**
+     * Returns the string encoded by the given bytes.
+     * @param buf buffer containing UTF-8 bytes
+     * @param offset offset of the first byte
+     * @param length number of bytes
+     * @return the decoded string, shared with previous calls for the same bytes
+     */
+    String get(byte[] buf, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        int mask = strings.length - 1;
+        int i = hash & mask;
+        while (strings[i] != null) {
+            if (hashes[i] == hash && equals(bytes[i], buf, offset, length)) {
+                return strings[i];
+            }
+            i = (i + 1) & mask;
+        }
+        String s = new String(buf, offset, length, StandardCharsets.UTF_8);
+        if (size < MAX_SIZE) {
+            bytes[i] = Arrays.copyOfRange(buf, offset, offset + length);
+            strings[i] = s;
+            hashes[i] = hash;
+            // Keep the load factor under 1/2
+            if (++size * 2 > strings.length) {
+                grow();
+            }
+        }
+        return s;
+    }
+
+    private static boolean equals(byte[] a, byte[] buf, int offset, int length) {
+        if (a.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (a[i] != buf[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void grow() {
+        byte[][] oldBytes = bytes;
+        String[] oldStrings = strings;
+        int[] oldHashes = hashes;
+        bytes = new byte[oldStrings.length * 2][];
+        strings = new String[oldStrings.length * 2];
+        hashes = new int[oldStrings.length * 2];
+        int mask = strings.length - 1;
+        for (int j = 0; j < oldStrings.length; j++) {
+            if (oldStrings[j] != null) {
+                int i = oldHashes[j] & mask;
+                while (strings[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                bytes[i] = oldBytes[j];
+                strings[i] = oldStrings[j];
+                hashes[i] = oldHashes[j];
+            }
+        }
+    }
+}
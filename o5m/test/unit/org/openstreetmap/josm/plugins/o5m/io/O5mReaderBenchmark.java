@@ -0,0 +1,187 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.o5m.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Throughput and allocation benchmark of {@link O5mReader} on a large synthetic file,
+ * decoded from a stream and from a file mapped in memory.
+ * <p>
+ * Not run with unit tests. The baseline figures come from {@link BaselineO5mReader}, a copy of the reader
+ * used before data sets were decoded in place, run on the same file in the same JVM.
+ */
+@BasicPreferences
+class O5mReaderBenchmark {
+
+    private static final int NODES = 2_000_000;
+    private static final int NODES_PER_WAY = 10;
+    private static final int RUNS = 5;
+
+    /**
+     * Minimal o5m encoder, just what is needed to create a realistic file.
+     */
+    private static final class SyntheticWriter {
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private final Map<String, Integer> table = new HashMap<>();
+        private int tableCount;
+
+        private static void writeUnsigned(OutputStream out, long v) {
+            while ((v & ~0x7fL) != 0) {
+                out.write((int) (v & 0x7f) | 0x80);
+                v >>>= 7;
+            }
+            out.write((int) v);
+        }
+
+        private static void writeSigned(OutputStream out, long v) {
+            writeUnsigned(out, v < 0 ? ((-1 - v) << 1) | 1 : v << 1);
+        }
+
+        private void writeStringPair(ByteArrayOutputStream out, byte[] pair) {
+            String key = new String(pair, StandardCharsets.ISO_8859_1);
+            Integer stored = table.get(key);
+            if (stored != null && tableCount - stored <= 15000) {
+                writeUnsigned(out, tableCount - stored);
+            } else {
+                out.write(0);
+                out.write(pair, 0, pair.length);
+                if (pair.length <= 252) {
+                    table.put(key, tableCount++);
+                }
+            }
+        }
+
+        private static byte[] pair(String k, String v) {
+            return (k + '\0' + v + '\0').getBytes(StandardCharsets.UTF_8);
+        }
+
+        private void writeDataSet(int type, ByteArrayOutputStream body) {
+            data.write(type);
+            writeUnsigned(data, body.size());
+            data.write(body.toByteArray(), 0, body.size());
+        }
+
+        byte[] create() {
+            Random random = new Random(42);
+            data.write(0xff);
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            header.write('o'); header.write('5'); header.write('m'); header.write('2');
+            writeDataSet(0xe0, header);
+            long lastId = 0, lastTs = 0, lastCs = 0;
+            int lastLon = 0, lastLat = 0;
+            for (int i = 1; i <= NODES; i++) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                writeSigned(body, i - lastId);
+                lastId = i;
+                writeUnsigned(body, 1 + random.nextInt(5));
+                long ts = 1_500_000_000L + random.nextInt(100_000_000);
+                writeSigned(body, ts - lastTs);
+                lastTs = ts;
+                long cs = 1 + random.nextInt(1_000_000);
+                writeSigned(body, cs - lastCs);
+                lastCs = cs;
+                int uid = 1 + random.nextInt(1000);
+                ByteArrayOutputStream user = new ByteArrayOutputStream();
+                writeUnsigned(user, uid);
+                user.write(0);
+                byte[] name = ("user" + uid + '\0').getBytes(StandardCharsets.UTF_8);
+                user.write(name, 0, name.length);
+                writeStringPair(body, user.toByteArray());
+                int lon = 74_000_000 + random.nextInt(1_000_000);
+                int lat = 437_000_000 + random.nextInt(1_000_000);
+                writeSigned(body, lon - lastLon);
+                writeSigned(body, lat - lastLat);
+                lastLon = lon;
+                lastLat = lat;
+                // ~10% of nodes are tagged, as in real extracts
+                if (random.nextInt(10) == 0) {
+                    writeStringPair(body, pair("amenity", "bench"));
+                    writeStringPair(body, pair("name", "Bench " + random.nextInt(100_000)));
+                }
+                writeDataSet(0x10, body);
+            }
+            lastId = 0;
+            long lastRef = 0;
+            for (int i = 1; i <= NODES / NODES_PER_WAY; i++) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                writeSigned(body, i - lastId);
+                lastId = i;
+                writeUnsigned(body, 1);
+                writeSigned(body, 0 - lastTs); // no timestamp nor author
+                lastTs = 0;
+                ByteArrayOutputStream refs = new ByteArrayOutputStream();
+                for (int j = 0; j < NODES_PER_WAY; j++) {
+                    long ref = (i - 1) * NODES_PER_WAY + j + 1;
+                    writeSigned(refs, ref - lastRef);
+                    lastRef = ref;
+                }
+                writeUnsigned(body, refs.size());
+                body.write(refs.toByteArray(), 0, refs.size());
+                writeStringPair(body, pair("highway", random.nextBoolean() ? "residential" : "service"));
+                writeDataSet(0x11, body);
+            }
+            data.write(0xfe);
+            return data.toByteArray();
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private interface Parse {
+        DataSet parse() throws Exception;
+    }
+
+    private static void run(String name, long size, Parse parse) throws Exception {
+        for (int run = -RUNS; run < RUNS; run++) {
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            DataSet ds = parse.parse();
+            long nanos = System.nanoTime() - start;
+            bytes = allocatedBytes() - bytes;
+            // Negative runs are warmup
+            if (run >= 0) {
+                System.out.printf("%-8s: %d primitives, %7.1f ms, %6.1f MB/s, %6.1f bytes allocated/primitive%n",
+                        name, ds.allPrimitives().size(), nanos / 1e6, size * 1e3 / nanos,
+                        (double) bytes / ds.allPrimitives().size());
+            }
+        }
+    }
+
+    @Test
+    void benchmarkReader() throws Exception {
+        Path file = Files.createTempFile("o5m-benchmark", ".o5m");
+        try {
+            Files.write(file, new SyntheticWriter().create());
+            long size = Files.size(file);
+            run("baseline", size, () -> {
+                try (InputStream in = Files.newInputStream(file)) {
+                    return BaselineO5mReader.parseDataSet(in, null);
+                }
+            });
+            run("stream", size, () -> {
+                try (InputStream in = Files.newInputStream(file)) {
+                    return O5mReader.parseDataSet(in, null);
+                }
+            });
+            run("mapped", size, () -> O5mReader.parseDataSet(file, null));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
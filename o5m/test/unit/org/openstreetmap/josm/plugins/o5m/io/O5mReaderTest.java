@@ -0,0 +1,98 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.o5m.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit tests for {@link O5mReader}.
+ */
+@BasicPreferences
+class O5mReaderTest {
+
+    private static List<Long> nodeIds(Way w) {
+        return w.getNodes().stream().map(Node::getUniqueId).collect(Collectors.toList());
+    }
+
+    /**
+     * Checks that decoding a file mapped in memory produces exactly the same data set as decoding a stream.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testMappedFileIsIdenticalToStream() throws Exception {
+        for (String name : new String[] {"monaco-latest.o5m", "monaco-drop-version.o5m"}) {
+            Path file = Paths.get(TestUtils.getTestDataRoot(), name);
+            DataSet expected;
+            try (InputStream in = Files.newInputStream(file)) {
+                expected = O5mReader.parseDataSet(in, null);
+            }
+            DataSet actual = O5mReader.parseDataSet(file, null);
+            assertEquals(expected.getNodes().size(), actual.getNodes().size());
+            assertEquals(expected.getWays().size(), actual.getWays().size());
+            assertEquals(expected.getRelations().size(), actual.getRelations().size());
+            assertEquals(expected.getUploadPolicy(), actual.getUploadPolicy());
+            assertEquals(expected.getDataSourceBounds(), actual.getDataSourceBounds());
+            for (OsmPrimitive p : expected.allPrimitives()) {
+                OsmPrimitive q = actual.getPrimitiveById(p);
+                assertNotNull(q, p.toString());
+                assertTrue(p.hasEqualSemanticAttributes(q), p.toString());
+                assertEquals(p.getVersion(), q.getVersion(), p.toString());
+                assertEquals(p.getUser(), q.getUser(), p.toString());
+                assertEquals(p.getInstant(), q.getInstant(), p.toString());
+            }
+        }
+    }
+
+    /**
+     * Unit test of filtered import by bounding box.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testBoundsFilter() throws Exception {
+        Path file = Paths.get(TestUtils.getTestDataRoot() + "/monaco-latest.o5m");
+        Bounds bounds = new Bounds(43.730, 7.415, 43.735, 7.425);
+        DataSet full;
+        try (InputStream in = Files.newInputStream(file)) {
+            full = O5mReader.parseDataSet(in, null);
+        }
+        DataSet ds = O5mReader.parseDataSet(file, new ImportFilter(bounds, null), null);
+        assertTrue(ds.getNodes().size() < full.getNodes().size());
+        assertTrue(ds.getWays().size() < full.getWays().size());
+        assertFalse(ds.getWays().isEmpty());
+        // Incomplete ways are members of selected relations
+        for (Way w : ds.getWays()) {
+            if (w.isIncomplete()) {
+                continue;
+            }
+            assertFalse(w.hasIncompleteNodes(), w.toString());
+            assertTrue(w.getNodes().stream().anyMatch(n -> bounds.contains(n.getCoor())), w.toString());
+        }
+        // Every way of the full data set with a node inside the bounds has been loaded, with the same nodes
+        for (Way w : full.getWays()) {
+            if (w.getNodes().stream().anyMatch(n -> bounds.contains(n.getCoor()))) {
+                Way loaded = (Way) ds.getPrimitiveById(w);
+                assertNotNull(loaded, w.toString());
+                assertEquals(nodeIds(w), nodeIds(loaded));
+                assertEquals(w.getKeys(), loaded.getKeys());
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.o5m.io;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.io.OsmWriter;
+import org.openstreetmap.josm.io.OsmWriterFactory;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Export throughput of {@link O5mWriter}, compared to the JOSM XML writer on the same data.
+ * <p>
+ * Not run with unit tests. Use the {@code o5m.benchmark.file} system property to benchmark a larger extract.
+ */
+@BasicPreferences
+class O5mWriterBenchmark {
+
+    private static final int RUNS = 5;
+
+    /** Counts written bytes and discards them, so the benchmark does not depend on disk speed */
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private interface Writer {
+        void write(DataSet ds, OutputStream out) throws Exception;
+    }
+
+    private static void run(String name, DataSet ds, Writer writer) throws Exception {
+        for (int run = -RUNS; run < RUNS; run++) {
+            CountingOutputStream out = new CountingOutputStream();
+            long start = System.nanoTime();
+            writer.write(ds, out);
+            long nanos = System.nanoTime() - start;
+            // Negative runs are warmup
+            if (run >= 0) {
+                System.out.printf("%-4s: %7.1f ms, %7.1f MB written, %7.1f kprimitives/s%n",
+                        name, nanos / 1e6, out.count / 1e6, ds.allPrimitives().size() * 1e6 / nanos);
+            }
+        }
+    }
+
+    @Test
+    void benchmarkWriter() throws Exception {
+        Path file = Paths.get(System.getProperty("o5m.benchmark.file", TestUtils.getTestDataRoot() + "/monaco-latest.o5m"));
+        DataSet ds = O5mReader.parseDataSet(file, null);
+        run("o5m", ds, (data, out) -> {
+            try (O5mWriter writer = new O5mWriter(out)) {
+                writer.writeData(data);
+            }
+        });
+        run("osm", ds, (data, out) -> {
+            try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                 OsmWriter writer = OsmWriterFactory.createOsmWriter(pw, false, "0.6")) {
+                writer.write(data);
+            }
+        });
+    }
+}
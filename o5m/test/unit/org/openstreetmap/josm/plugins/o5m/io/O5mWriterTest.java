@@ -0,0 +1,114 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.o5m.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit tests for {@link O5mWriter}.
+ */
+@BasicPreferences
+class O5mWriterTest {
+
+    private static byte[] write(DataSet ds, int resetInterval) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (O5mWriter writer = new O5mWriter(out)) {
+            writer.setResetInterval(resetInterval);
+            writer.writeData(ds);
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertRoundTrip(DataSet expected, byte[] data) throws Exception {
+        DataSet actual = O5mReader.parseDataSet(new ByteArrayInputStream(data), null);
+        assertEquals(expected.getNodes().size(), actual.getNodes().size());
+        assertEquals(expected.getWays().size(), actual.getWays().size());
+        assertEquals(expected.getRelations().size(), actual.getRelations().size());
+        assertEquals(expected.getDataSourceBounds(), actual.getDataSourceBounds());
+        for (OsmPrimitive p : expected.allPrimitives()) {
+            OsmPrimitive q = actual.getPrimitiveById(p);
+            assertNotNull(q, p.toString());
+            assertTrue(p.hasEqualSemanticAttributes(q), p.toString());
+            assertEquals(p.getVersion(), q.getVersion(), p.toString());
+            assertEquals(p.getUser(), q.getUser(), p.toString());
+            assertEquals(p.getChangesetId(), q.getChangesetId(), p.toString());
+            assertEquals(p.getInstant(), q.getInstant(), p.toString());
+            if (p instanceof Node) {
+                assertEquals(((Node) p).getCoor(), ((Node) q).getCoor(), p.toString());
+            }
+        }
+    }
+
+    /**
+     * Checks that data written to o5m is read back identically.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testRoundTrip() throws Exception {
+        DataSet ds;
+        try (InputStream in = Files.newInputStream(Paths.get(TestUtils.getTestDataRoot(), "monaco-latest.o5m"))) {
+            ds = O5mReader.parseDataSet(in, null);
+        }
+        assertRoundTrip(ds, write(ds, O5mWriter.DEFAULT_RESET_INTERVAL));
+        // Frequent resets, so that string table references and deltas restart often
+        assertRoundTrip(ds, write(ds, 100));
+    }
+
+    /**
+     * Checks that long strings, not stored in the string table, anonymous users and member roles are written correctly.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testStrings() throws Exception {
+        DataSet ds = new DataSet();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        Node n1 = new Node(1, 3);
+        n1.setCoor(new LatLon(-33.5, -70.25));
+        n1.setUser(User.createOsmUser(42, "Zoë"));
+        n1.setInstant(Instant.parse("2021-05-01T12:00:00Z"));
+        n1.setChangesetId(1234);
+        n1.put("name", sb.toString());
+        n1.put("note", "été");
+        Node n2 = new Node(2, 1);
+        n2.setCoor(new LatLon(89.9999999, 179.9999999));
+        n2.put("name", sb.toString());
+        Way w = new Way(10, 1);
+        w.setNodes(Arrays.asList(n1, n2, n1));
+        w.put("highway", "service");
+        Relation r = new Relation(20, 1);
+        r.addMember(new RelationMember("", n1));
+        r.addMember(new RelationMember(sb.toString(), w));
+        r.addMember(new RelationMember("outer", w));
+        r.put("type", "multipolygon");
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(w);
+        ds.addPrimitive(r);
+        assertRoundTrip(ds, write(ds, 1));
+        assertRoundTrip(ds, write(ds, O5mWriter.DEFAULT_RESET_INTERVAL));
+    }
+}
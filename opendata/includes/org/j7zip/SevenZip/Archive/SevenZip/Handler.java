@@ -289,10 +289,9 @@ public class Handler implements org.j7zip.SevenZip.Archive.IInArchive {
         _database.Clear();
         return 0;
     }
-    /*
     public int size() {
         return _database.Files.size();
-    }*/
+    }
     
     long getPackSize(int index2) {
         long packSize = 0;
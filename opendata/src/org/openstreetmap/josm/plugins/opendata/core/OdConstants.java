@@ -57,6 +57,15 @@ public abstract class OdConstants {
 
     public static final String PREF_CRS_COMPARISON_DEBUG = "opendata.crs.comparison_debug";
 
+    public static final String PREF_CRS_CACHE = "opendata.crs.cache";
+    public static final boolean DEFAULT_CRS_CACHE = true;
+
+    public static final String PREF_CONVERTER_THREADS = "opendata.converter.threads";
+    public static final int DEFAULT_CONVERTER_THREADS = Runtime.getRuntime().availableProcessors();
+
+    public static final String PREF_ARCHIVE_EXTRACT_ALL = "opendata.archive.extract_all";
+    public static final boolean DEFAULT_ARCHIVE_EXTRACT_ALL = false;
+
     /**
      * Icons
      */
@@ -7,11 +7,17 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import javax.xml.stream.FactoryConfigurationError;
 import javax.xml.stream.XMLStreamException;
@@ -37,10 +43,15 @@ import org.openstreetmap.josm.plugins.opendata.core.io.tabular.CsvReader;
 import org.openstreetmap.josm.plugins.opendata.core.io.tabular.OdsReader;
 import org.openstreetmap.josm.plugins.opendata.core.io.tabular.XlsReader;
 import org.openstreetmap.josm.plugins.opendata.core.util.OdUtils;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
 
 public abstract class ArchiveReader extends AbstractReader {
 
+    /** Extensions of the files read along with a document of the same name (shapefile, MapInfo MIF and TAB sidecar files) */
+    private static final Set<String> SIDECAR_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "shx", "dbf", "prj", "cpg", "qix", "sbn", "sbx", "fix", "mid", "dat", "id", "map", "ind"));
+
     protected final AbstractDataSetHandler handler;
     protected final ArchiveHandler archiveHandler;
     protected final boolean promptUser;
@@ -57,18 +68,64 @@ public abstract class ArchiveReader extends AbstractReader {
         return file;
     }
 
-    protected abstract void extractArchive(File temp, List<File> candidates) throws IOException, FileNotFoundException;
+    /**
+     * Lists the files of the archive, without extracting them.
+     * <p>
+     * Readers which cannot read the archive twice, such as readers of a stream, extract the files which
+     * {@linkplain #mayBeNeeded may be needed} at the same time.
+     * @param temp directory where files are extracted
+     * @return paths of the files in the archive, in the archive order
+     * @throws IOException if the archive cannot be read
+     */
+    protected abstract List<String> listEntries(File temp) throws IOException;
+
+    /**
+     * Extracts files of the archive. {@link ArchiveHandler#notifyTempFileWritten} is called for each extracted file.
+     * @param temp directory where files are extracted
+     * @param entries paths of the files to extract
+     * @throws IOException if the files cannot be extracted
+     */
+    protected abstract void extractEntries(File temp, Collection<String> entries) throws IOException;
+
+    /**
+     * Releases the resources of the archive, once all documents have been parsed.
+     * @throws IOException if an I/O error occurs
+     */
+    protected void closeArchive() throws IOException {
+        // Do nothing by default
+    }
 
     protected abstract String getTaskMessage();
 
     protected Collection<File> getDocsToParse(final File temp, final ProgressMonitor progressMonitor) throws FileNotFoundException, IOException {
-        final List<File> candidates = new ArrayList<>();
-
         if (progressMonitor != null) {
             progressMonitor.beginTask(getTaskMessage());
         }
-        extractArchive(temp, candidates);
+        final List<String> entries = listEntries(temp);
+        final Set<String> extracted = new HashSet<>();
+        if (Config.getPref().getBoolean(OdConstants.PREF_ARCHIVE_EXTRACT_ALL, OdConstants.DEFAULT_ARCHIVE_EXTRACT_ALL)) {
+            extract(temp, entries, extracted);
+        } else if (archiveHandler == null || !archiveHandler.skipXsdValidation()) {
+            // Supported XML files are recognized by their content
+            List<String> xmlEntries = new ArrayList<>();
+            for (String entry : entries) {
+                if (XmlImporter.XML_FILE_FILTER.accept(getTempFile(temp, entry))) {
+                    xmlEntries.add(entry);
+                }
+            }
+            extract(temp, xmlEntries, extracted);
+        }
+
+        final Map<File, String> candidateEntries = new LinkedHashMap<>();
+        for (String entry : entries) {
+            File f = getTempFile(temp, entry);
+            if (isCandidate(entry, f)) {
+                candidateEntries.put(f, entry);
+            }
+        }
+        final List<File> candidates = new ArrayList<>(candidateEntries.keySet());
 
+        Collection<File> docs = Collections.emptyList();
         if (promptUser && candidates.size() > 1) {
             DialogPrompter<CandidateChooser> prompt = new DialogPrompter<CandidateChooser>() {
                 @Override
@@ -77,12 +134,37 @@ public abstract class ArchiveReader extends AbstractReader {
                 }
             };
             if (prompt.promptInEdt().getValue() == 1) {
-                return Collections.singleton(prompt.getDialog().getSelectedFile());
+                docs = Collections.singleton(prompt.getDialog().getSelectedFile());
             }
         } else if (!candidates.isEmpty()) {
-            return candidates;
+            docs = candidates;
+        }
+
+        // Only extract the chosen files, with the files sharing their name (.shx, .dbf, .prj, .cpg for a shapefile...)
+        Set<String> needed = new LinkedHashSet<>();
+        for (File doc : docs) {
+            String entry = candidateEntries.get(doc);
+            String prefix = entry.substring(0, entry.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+            for (String other : entries) {
+                if (other.equals(entry) || other.toLowerCase(Locale.ROOT).startsWith(prefix)) {
+                    needed.add(other);
+                }
+            }
+        }
+        extract(temp, needed, extracted);
+        return docs;
+    }
+
+    private void extract(File temp, Collection<String> entries, Set<String> extracted) throws IOException {
+        List<String> toExtract = new ArrayList<>();
+        for (String entry : entries) {
+            if (extracted.add(entry)) {
+                toExtract.add(entry);
+            }
+        }
+        if (!toExtract.isEmpty()) {
+            extractEntries(temp, toExtract);
         }
-        return Collections.emptyList();
     }
 
     public Map<File, DataSet> parseDocs(final ProgressMonitor progressMonitor)
@@ -98,6 +180,7 @@ public abstract class ArchiveReader extends AbstractReader {
                 }
             }
         } finally {
+            closeArchive();
             OdUtils.deleteDir(temp);
             if (progressMonitor != null) {
                 progressMonitor.finishTask();
@@ -124,6 +207,7 @@ public abstract class ArchiveReader extends AbstractReader {
         } catch (IllegalArgumentException e) {
             Logging.error(e);
         } finally {
+            closeArchive();
             OdUtils.deleteDir(temp);
             if (progressMonitor != null) {
                 progressMonitor.finishTask();
@@ -186,18 +270,42 @@ public abstract class ArchiveReader extends AbstractReader {
         }
     }
 
-    protected final void lookForCandidate(String entryName, final List<File> candidates, File file) {
+    /**
+     * Returns the file where an entry of the archive is extracted.
+     * @param temp directory where files are extracted
+     * @param entryName path of the file in the archive
+     * @return the extracted file
+     */
+    protected static File getTempFile(File temp, String entryName) {
+        return new File(temp + File.separator + entryName);
+    }
+
+    private static boolean hasReadableExtension(String entryName) {
         // Test file name to see if it may contain useful data
         for (String ext : NetworkReader.FILE_READERS.keySet()) {
             if (entryName.toLowerCase().endsWith("."+ext)) {
-                candidates.add(file);
-                break;
+                return true;
             }
         }
+        return false;
+    }
+
+    private boolean isCandidate(String entryName, File file) {
         // Special treatment for XML files (check supported XSD), unless handler explicitely skip it
-        if (XmlImporter.XML_FILE_FILTER.accept(file) && ((archiveHandler != null && archiveHandler.skipXsdValidation())
-                || OdPlugin.getInstance().xmlImporter.acceptFile(file))) {
-            candidates.add(file);
-        }
+        return hasReadableExtension(entryName)
+                || (XmlImporter.XML_FILE_FILTER.accept(file) && ((archiveHandler != null && archiveHandler.skipXsdValidation())
+                || OdPlugin.getInstance().xmlImporter.acceptFile(file)));
+    }
+
+    /**
+     * Determines if an entry of the archive may have to be extracted, before the documents to parse are chosen.
+     * @param entryName path of the file in the archive
+     * @return {@code true} if the file may be a document to parse, or a file read along with a document
+     */
+    protected static boolean mayBeNeeded(String entryName) {
+        String name = entryName.toLowerCase(Locale.ROOT);
+        return Config.getPref().getBoolean(OdConstants.PREF_ARCHIVE_EXTRACT_ALL, OdConstants.DEFAULT_ARCHIVE_EXTRACT_ALL)
+                || hasReadableExtension(name) || name.endsWith("." + OdConstants.XML_EXT)
+                || SIDECAR_EXTENSIONS.contains(name.substring(name.lastIndexOf('.') + 1));
     }
 }
@@ -3,10 +3,12 @@ package org.openstreetmap.josm.plugins.opendata.core.io.archive;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.io.File;
 import java.io.InputStream;
 
 import org.openstreetmap.josm.actions.ExtensionFileFilter;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.plugins.opendata.core.OdConstants;
@@ -21,10 +23,35 @@ public class SevenZipImporter extends AbstractImporter {
         super(SEVENZIP_FILE_FILTER);
     }
 
+    @Override
+    public OsmImporterData loadLayer(InputStream in, File associatedFile, String layerName, ProgressMonitor progressMonitor)
+            throws IllegalDataException {
+        final DataSet dataSet = parseDataSet(in, associatedFile, progressMonitor);
+        OsmDataLayer layer = createLayer(dataSet, associatedFile, layerName);
+        return new OsmImporterData(layer, createPostLayerTask(dataSet, associatedFile, layerName, layer));
+    }
+
     @Override
     protected DataSet parseDataSet(InputStream in, ProgressMonitor instance)
             throws IllegalDataException {
+        return parseDataSet(in, null, instance);
+    }
+
+    /**
+     * Parses the archive, with random access to the entries if it is a local file.
+     * @param in input stream of the archive
+     * @param file local file read by {@code in}, can be {@code null}
+     * @param instance progress monitor
+     * @return the data set
+     * @throws IllegalDataException if the data is invalid
+     */
+    private DataSet parseDataSet(InputStream in, File file, ProgressMonitor instance)
+            throws IllegalDataException {
         try {
+            if (file != null && file.isFile()) {
+                // Random access to the archive, to only read the entries to load
+                return SevenZipReader.parseDataSet(file, handler, instance, true);
+            }
             return SevenZipReader.parseDataSet(in, handler, instance, true);
         } catch (Exception e) {
             throw new IllegalDataException(e);
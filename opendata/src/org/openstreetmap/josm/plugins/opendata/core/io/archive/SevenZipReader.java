@@ -4,12 +4,14 @@ package org.openstreetmap.josm.plugins.opendata.core.io.archive;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +23,7 @@ import org.j7zip.SevenZip.HRESULT;
 import org.j7zip.SevenZip.IInStream;
 import org.j7zip.SevenZip.MyRandomAccessFile;
 import org.j7zip.SevenZip.Archive.IInArchive;
+import org.j7zip.SevenZip.Archive.SevenZipEntry;
 import org.j7zip.SevenZip.Archive.SevenZip.Handler;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
@@ -29,23 +32,47 @@ import org.openstreetmap.josm.plugins.opendata.core.datasets.AbstractDataSetHand
 import org.openstreetmap.josm.plugins.opendata.core.util.OdUtils;
 import org.openstreetmap.josm.tools.Logging;
 
+/**
+ * Reader of 7Zip archives. Entries are listed from the archive header, and only the chosen documents
+ * and the files sharing their name are extracted.
+ */
 public class SevenZipReader extends ArchiveReader {
 
-    private final IInArchive archive = new Handler();
+    private final Handler archive = new Handler();
+    /** Copy of the archive read from a stream, {@code null} if the archive is read from a file */
+    private final File tmpFile;
+    private final Map<String, Integer> indexes = new HashMap<>();
 
     public SevenZipReader(InputStream in, AbstractDataSetHandler handler, boolean promptUser) throws IOException {
         super(handler, handler != null ? handler.getArchiveHandler() : null, promptUser);
         // Write entire 7z file as a temp file on disk as we need random access later, and "in" can be a network stream
-        File tmpFile = File.createTempFile("7z_", ".7z", OdUtils.createTempDir());
+        tmpFile = File.createTempFile("7z_", ".7z", OdUtils.createTempDir());
         Files.copy(in, tmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        open(tmpFile);
+    }
+
+    /**
+     * Constructs a new {@code SevenZipReader} reading a 7Zip file, without copying it.
+     * @param file 7Zip file
+     * @param handler data set handler, can be {@code null}
+     * @param promptUser {@code true} to ask the user which document to load if there are several ones
+     * @throws IOException if the 7Zip file cannot be opened
+     */
+    public SevenZipReader(File file, AbstractDataSetHandler handler, boolean promptUser) throws IOException {
+        super(handler, handler != null ? handler.getArchiveHandler() : null, promptUser);
+        tmpFile = null;
+        open(file);
+    }
+
+    private void open(File file) throws IOException {
         // random must be kept open for later extracting
         @SuppressWarnings("resource")
-        IInStream random = new MyRandomAccessFile(tmpFile.getPath(), "r");
+        IInStream random = new MyRandomAccessFile(file.getPath(), "r");
         if (archive.Open(random) != 0) {
-            String message = "Unable to open 7z archive: "+tmpFile.getPath();
+            String message = "Unable to open 7z archive: "+file.getPath();
             Logging.warn(message);
             random.close();
-            if (!tmpFile.delete()) {
+            if (tmpFile != null && !tmpFile.delete()) {
                 tmpFile.deleteOnExit();
             }
             throw new IOException(message);
@@ -57,6 +84,11 @@ public class SevenZipReader extends ArchiveReader {
         return new SevenZipReader(in, handler, promptUser).parseDoc(instance);
     }
 
+    public static DataSet parseDataSet(File file, AbstractDataSetHandler handler, ProgressMonitor instance, boolean promptUser)
+            throws IOException, XMLStreamException, FactoryConfigurationError, IllegalDataException {
+        return new SevenZipReader(file, handler, promptUser).parseDoc(instance);
+    }
+
     public static Map<File, DataSet> parseDataSets(InputStream in, AbstractDataSetHandler handler, ProgressMonitor instance, boolean promptUser)
             throws IOException, XMLStreamException, FactoryConfigurationError, IllegalDataException {
         return new SevenZipReader(in, handler, promptUser).parseDocs(instance);
@@ -68,26 +100,56 @@ public class SevenZipReader extends ArchiveReader {
     }
 
     @Override
-    protected void extractArchive(File temp, List<File> candidates) throws IOException, FileNotFoundException {
-        archive.Extract(null, -1, IInArchive.NExtract_NAskMode_kExtract, new ExtractCallback(archive, temp, candidates));
+    protected List<String> listEntries(File temp) throws IOException {
+        List<String> entries = new ArrayList<>();
+        for (int i = 0; i < archive.size(); i++) {
+            SevenZipEntry entry = archive.getEntry(i);
+            if (!entry.isDirectory()) {
+                entries.add(entry.getName());
+                indexes.put(entry.getName(), i);
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    protected void extractEntries(File temp, Collection<String> entries) throws IOException {
+        // Files of a solid block have to be extracted in the archive order
+        int[] indices = entries.stream().mapToInt(indexes::get).sorted().toArray();
+        archive.Extract(indices, indices.length, IInArchive.NExtract_NAskMode_kExtract, new ExtractCallback(archive, temp));
+    }
+
+    @Override
+    protected void closeArchive() throws IOException {
         archive.close();
+        if (tmpFile != null) {
+            OdUtils.deleteDir(tmpFile.getParentFile());
+        }
     }
 
     private class ExtractCallback extends ArchiveExtractCallback {
-        private final List<File> candidates;
+        private boolean extracting;
 
-        ExtractCallback(IInArchive archive, File tempDir, List<File> candidates) {
+        ExtractCallback(IInArchive archive, File tempDir) {
             Init(archive);
             super.outputDir = tempDir.getPath();
-            this.candidates = candidates;
         }
 
         @Override
         public int GetStream(int index, OutputStream[] outStream, int askExtractMode) throws IOException {
             int res = super.GetStream(index, outStream, askExtractMode);
-            if (res == HRESULT.S_OK) {
-                lookForCandidate(_filePath, candidates, file);
+            extracting = res == HRESULT.S_OK && outStream[0] != null;
+            return res;
+        }
+
+        @Override
+        public int SetOperationResult(int operationResult) throws IOException {
+            int res = super.SetOperationResult(operationResult);
+            // Allow handler to perform specific treatments (for example, fix invalid .prj files)
+            if (extracting && archiveHandler != null) {
+                archiveHandler.notifyTempFileWritten(file);
             }
+            extracting = false;
             return res;
         }
     }
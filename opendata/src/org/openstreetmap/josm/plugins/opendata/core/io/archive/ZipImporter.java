@@ -12,6 +12,7 @@ import javax.xml.stream.XMLStreamException;
 
 import org.openstreetmap.josm.actions.ExtensionFileFilter;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.plugins.opendata.core.OdConstants;
@@ -26,10 +27,35 @@ public class ZipImporter extends AbstractImporter {
         super(ZIP_FILE_FILTER);
     }
 
+    @Override
+    public OsmImporterData loadLayer(InputStream in, File associatedFile, String layerName, ProgressMonitor progressMonitor)
+            throws IllegalDataException {
+        final DataSet dataSet = parseDataSet(in, associatedFile, progressMonitor);
+        OsmDataLayer layer = createLayer(dataSet, associatedFile, layerName);
+        return new OsmImporterData(layer, createPostLayerTask(dataSet, associatedFile, layerName, layer));
+    }
+
     @Override
     protected DataSet parseDataSet(InputStream in, ProgressMonitor instance)
             throws IllegalDataException {
+        return parseDataSet(in, null, instance);
+    }
+
+    /**
+     * Parses the archive, with random access to the entries if it is a local file.
+     * @param in input stream of the archive
+     * @param file local file read by {@code in}, can be {@code null}
+     * @param instance progress monitor
+     * @return the data set
+     * @throws IllegalDataException if the data is invalid
+     */
+    private DataSet parseDataSet(InputStream in, File file, ProgressMonitor instance)
+            throws IllegalDataException {
         try {
+            if (file != null && file.isFile()) {
+                // Random access to the archive, to only read the entries to load
+                return ZipReader.parseDataSet(file, handler, instance, true);
+            }
             return ZipReader.parseDataSet(in, handler, instance, true);
         } catch (IOException | XMLStreamException | FactoryConfigurationError e) {
             throw new IllegalDataException(e);
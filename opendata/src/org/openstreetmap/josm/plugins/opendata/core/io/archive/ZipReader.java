@@ -4,13 +4,17 @@ package org.openstreetmap.josm.plugins.opendata.core.io.archive;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 
 import javax.xml.stream.FactoryConfigurationError;
@@ -22,15 +26,36 @@ import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.plugins.opendata.core.datasets.AbstractDataSetHandler;
 import org.openstreetmap.josm.tools.Logging;
 
+/**
+ * Reader of Zip archives.
+ * <p>
+ * A Zip file is read with random access: its entries are listed from the central directory, and only the chosen
+ * documents and the files sharing their name are extracted. A Zip stream can only be read once, so the entries which
+ * may be needed are extracted while listing the entries, and the other ones are skipped.
+ */
 public class ZipReader extends ArchiveReader {
 
     private final ZipInputStream zis;
-
-    private ZipEntry entry;
+    private final ZipFile zipFile;
+    private final Set<String> extractedWhileListing = new HashSet<>();
 
     public ZipReader(InputStream in, AbstractDataSetHandler handler, boolean promptUser) {
         super(handler, handler != null ? handler.getArchiveHandler() : null, promptUser);
         this.zis = in instanceof ZipInputStream ? (ZipInputStream) in : new ZipInputStream(in);
+        this.zipFile = null;
+    }
+
+    /**
+     * Constructs a new {@code ZipReader} reading a Zip file with random access.
+     * @param file Zip file
+     * @param handler data set handler, can be {@code null}
+     * @param promptUser {@code true} to ask the user which document to load if there are several ones
+     * @throws IOException if the Zip file cannot be opened
+     */
+    public ZipReader(File file, AbstractDataSetHandler handler, boolean promptUser) throws IOException {
+        super(handler, handler != null ? handler.getArchiveHandler() : null, promptUser);
+        this.zis = null;
+        this.zipFile = new ZipFile(file);
     }
 
     public static DataSet parseDataSet(InputStream in, AbstractDataSetHandler handler, ProgressMonitor instance, boolean promptUser)
@@ -38,49 +63,94 @@ public class ZipReader extends ArchiveReader {
         return new ZipReader(in, handler, promptUser).parseDoc(instance);
     }
 
+    public static DataSet parseDataSet(File file, AbstractDataSetHandler handler, ProgressMonitor instance, boolean promptUser)
+            throws IOException, XMLStreamException, FactoryConfigurationError, IllegalDataException {
+        return new ZipReader(file, handler, promptUser).parseDoc(instance);
+    }
+
     public static Map<File, DataSet> parseDataSets(InputStream in, AbstractDataSetHandler handler, ProgressMonitor instance, boolean promptUser)
             throws IOException, XMLStreamException, FactoryConfigurationError, IllegalDataException {
         return new ZipReader(in, handler, promptUser).parseDocs(instance);
     }
 
+    public static Map<File, DataSet> parseDataSets(File file, AbstractDataSetHandler handler, ProgressMonitor instance, boolean promptUser)
+            throws IOException, XMLStreamException, FactoryConfigurationError, IllegalDataException {
+        return new ZipReader(file, handler, promptUser).parseDocs(instance);
+    }
+
     @Override
-    protected void extractArchive(final File temp, final List<File> candidates) throws IOException, FileNotFoundException {
-        while ((entry = zis.getNextEntry()) != null) {
-            Logging.debug("Extracting {0}", entry.getName());
-            File file = new File(temp + File.separator + entry.getName());
-            File parent = file.getParentFile();
-            if (parent != null && !parent.exists()) {
-                parent.mkdirs();
-            }
-            if (file.exists() && !file.delete()) {
-                throw new IOException("Could not delete temp file/dir: " + file.getAbsolutePath());
-            }
-            if (!entry.isDirectory()) {
-                if (!file.createNewFile()) {
-                    throw new IOException("Could not create temp file: " + file.getAbsolutePath());
-                }
-                // Write temp file
-                try (FileOutputStream fos = new FileOutputStream(file)) {
-                    byte[] buffer = new byte[8192];
-                    int count = 0;
-                    while ((count = zis.read(buffer, 0, buffer.length)) > 0) {
-                        fos.write(buffer, 0, count);
+    protected List<String> listEntries(File temp) throws IOException {
+        List<String> entries = new ArrayList<>();
+        if (zipFile != null) {
+            zipFile.stream().filter(e -> !e.isDirectory()).forEach(e -> entries.add(e.getName()));
+        } else {
+            ZipEntry entry;
+            while ((entry = zis.getNextEntry()) != null) {
+                if (!entry.isDirectory()) {
+                    entries.add(entry.getName());
+                    if (mayBeNeeded(entry.getName())) {
+                        extractEntry(temp, entry, zis);
+                        extractedWhileListing.add(entry.getName());
+                    } else {
+                        Logging.debug("Skipping {0}", entry.getName());
                     }
                 }
-                // Allow handler to perform specific treatments (for example, fix invalid .prj files)
-                if (archiveHandler != null) {
-                    archiveHandler.notifyTempFileWritten(file);
-                }
-                // Set last modification date
-                long time = entry.getTime();
-                if (time > -1) {
-                    file.setLastModified(time);
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    protected void extractEntries(File temp, Collection<String> entries) throws IOException {
+        for (String name : entries) {
+            if (zipFile != null) {
+                ZipEntry entry = zipFile.getEntry(name);
+                try (InputStream in = zipFile.getInputStream(entry)) {
+                    extractEntry(temp, entry, in);
                 }
-                lookForCandidate(entry.getName(), candidates, file);
-            } else if (!file.mkdir()) {
-                throw new IOException("Could not create temp dir: " + file.getAbsolutePath());
+            } else if (!extractedWhileListing.contains(name)) {
+                Logging.warn("Zip stream already read, cannot extract " + name);
+            }
+        }
+    }
+
+    private void extractEntry(File temp, ZipEntry entry, InputStream in) throws IOException {
+        Logging.debug("Extracting {0}", entry.getName());
+        File file = getTempFile(temp, entry.getName());
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not delete temp file/dir: " + file.getAbsolutePath());
+        }
+        if (!file.createNewFile()) {
+            throw new IOException("Could not create temp file: " + file.getAbsolutePath());
+        }
+        // Write temp file
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            byte[] buffer = new byte[8192];
+            int count = 0;
+            while ((count = in.read(buffer, 0, buffer.length)) > 0) {
+                fos.write(buffer, 0, count);
             }
         }
+        // Allow handler to perform specific treatments (for example, fix invalid .prj files)
+        if (archiveHandler != null) {
+            archiveHandler.notifyTempFileWritten(file);
+        }
+        // Set last modification date
+        long time = entry.getTime();
+        if (time > -1) {
+            file.setLastModified(time);
+        }
+    }
+
+    @Override
+    protected void closeArchive() throws IOException {
+        if (zipFile != null) {
+            zipFile.close();
+        }
     }
 
     @Override
@@ -0,0 +1,280 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.opendata.core.io.geographic;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.geotools.referencing.CRS;
+import org.opengis.referencing.FactoryException;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.opengis.referencing.crs.ProjectedCRS;
+import org.opengis.referencing.datum.Ellipsoid;
+import org.openstreetmap.josm.plugins.opendata.core.OdConstants;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+import si.uom.SI;
+
+/**
+ * Index of the projected CRS of the EPSG database, used by {@link GeographicReader#findMathTransform}
+ * to find the EPSG CRS similar to a CRS without Bursa-Wolf parameters.
+ * <p>
+ * Each EPSG CRS is decoded once to compute the fingerprint of its ellipsoid, then the index is saved in the cache
+ * directory, so that only the CRS sharing the ellipsoid of the searched CRS are decoded in the next sessions.
+ * The EPSG codes found for a given WKT are cached as well, so files seen before resolve without any search.
+ */
+final class EpsgCrsIndex {
+
+    private static final String INDEX_FILE = "epsg-projected-crs.txt";
+    private static final String RESOLVED_FILE = "resolved-crs.properties";
+
+    /** Fingerprint of the ellipsoid of a projected CRS, with the semi-major axis in metres, NaN if it cannot be computed */
+    static final class Fingerprint {
+        final String code;
+        final double semiMajorAxis;
+        final double inverseFlattening;
+
+        Fingerprint(String code, double semiMajorAxis, double inverseFlattening) {
+            this.code = code;
+            this.semiMajorAxis = semiMajorAxis;
+            this.inverseFlattening = inverseFlattening;
+        }
+
+        boolean isKnown() {
+            return !Double.isNaN(semiMajorAxis);
+        }
+
+        /**
+         * Determines if the ellipsoid of this CRS may be equal to the one of another CRS.
+         * This is much more lenient than the CRS comparison, so that no candidate is missed.
+         */
+        boolean hasSimilarEllipsoid(Fingerprint other) {
+            return Math.abs(semiMajorAxis - other.semiMajorAxis) <= 1 + semiMajorAxis * 1e-6
+                && Math.abs(inverseFlattening - other.inverseFlattening) <= 1e-3 + inverseFlattening * 1e-6;
+        }
+    }
+
+    private static List<Fingerprint> index;
+    private static Properties resolved;
+
+    private EpsgCrsIndex() {
+        // Hide default constructor for utilities classes
+    }
+
+    /**
+     * Computes the fingerprint of a CRS.
+     * @param code EPSG code, or {@code null}
+     * @param crs CRS
+     * @return the fingerprint of the CRS, unknown if it is not a projected CRS
+     */
+    static Fingerprint fingerprint(String code, CoordinateReferenceSystem crs) {
+        if (crs instanceof ProjectedCRS) {
+            return fingerprint(code, ((ProjectedCRS) crs).getDatum().getEllipsoid());
+        }
+        return new Fingerprint(code, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Computes the fingerprint of an ellipsoid. Some ellipsoids of the EPSG database are defined in feet,
+     * so the semi-major axis is converted to metres.
+     * @param code EPSG code, or {@code null}
+     * @param ellipsoid ellipsoid
+     * @return the fingerprint of the ellipsoid
+     */
+    static Fingerprint fingerprint(String code, Ellipsoid ellipsoid) {
+        double semiMajorAxis = ellipsoid.getAxisUnit().getConverterTo(SI.METRE).convert(ellipsoid.getSemiMajorAxis());
+        return new Fingerprint(code, semiMajorAxis, ellipsoid.isSphere() ? 0 : ellipsoid.getInverseFlattening());
+    }
+
+    /**
+     * Returns the EPSG codes of the projected CRS which may be equal to a CRS, in the order of the EPSG database.
+     * The first candidate found equal is then the same one as when all the EPSG CRS are compared.
+     * @param crs CRS to look for
+     * @return EPSG codes of the CRS with a similar ellipsoid, or of all CRS if the ellipsoid is unknown
+     * @throws FactoryException if the EPSG codes cannot be listed
+     */
+    static synchronized List<String> getCandidateCodes(CoordinateReferenceSystem crs) throws FactoryException {
+        return getCandidateCodes(fingerprint(null, crs), getIndex());
+    }
+
+    static List<String> getCandidateCodes(Fingerprint searched, List<Fingerprint> fingerprints) {
+        List<String> codes = new ArrayList<>();
+        for (Fingerprint candidate : fingerprints) {
+            if (!searched.isKnown() || !candidate.isKnown() || searched.hasSimilarEllipsoid(candidate)) {
+                codes.add(candidate.code);
+            }
+        }
+        return codes;
+    }
+
+    private static List<Fingerprint> getIndex() throws FactoryException {
+        if (index == null) {
+            String version = getEpsgVersion();
+            File file = getCacheFile(INDEX_FILE);
+            if (file != null && file.exists()) {
+                try {
+                    index = readIndex(file, version);
+                } catch (IOException | RuntimeException e) {
+                    Logging.warn("Unable to read EPSG CRS index " + file + ": " + e.getMessage());
+                }
+            }
+            if (index == null) {
+                index = buildIndex();
+                if (file != null) {
+                    try {
+                        writeIndex(file, version, index);
+                    } catch (IOException e) {
+                        Logging.warn("Unable to write EPSG CRS index " + file + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    private static List<Fingerprint> buildIndex() throws FactoryException {
+        Logging.info("Indexing EPSG projected CRS...");
+        long start = System.currentTimeMillis();
+        List<Fingerprint> result = new ArrayList<>();
+        for (String code : CRS.getAuthorityFactory(false).getAuthorityCodes(ProjectedCRS.class)) {
+            try {
+                result.add(fingerprint(code, CRS.decode(code)));
+            } catch (FactoryException | RuntimeException ex) {
+                Logging.trace(ex);
+            }
+        }
+        Logging.info("EPSG projected CRS indexed in " + Utils.getDurationString(System.currentTimeMillis() - start));
+        return result;
+    }
+
+    /**
+     * Reads an index file.
+     * @return the fingerprints, or {@code null} if the index is the one of another EPSG database or has another format
+     */
+    static List<Fingerprint> readIndex(File file, String version) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            if (!("# " + version).equals(reader.readLine())) {
+                // index of another EPSG database
+                return null;
+            }
+            List<Fingerprint> result = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 3) {
+                    return null;
+                }
+                result.add(new Fingerprint(fields[0], Double.parseDouble(fields[1]), Double.parseDouble(fields[2])));
+            }
+            return result;
+        }
+    }
+
+    static void writeIndex(File file, String version, List<Fingerprint> fingerprints) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("# " + version);
+            writer.newLine();
+            for (Fingerprint f : fingerprints) {
+                writer.write(f.code + '\t' + f.semiMajorAxis + '\t' + f.inverseFlattening);
+                writer.newLine();
+            }
+        }
+    }
+
+    private static String getEpsgVersion() {
+        try {
+            return String.valueOf(CRS.getVersion("EPSG"));
+        } catch (FactoryException e) {
+            Logging.trace(e);
+            return "unknown";
+        }
+    }
+
+    /**
+     * Returns the EPSG code found before for a CRS.
+     * @param crs CRS
+     * @return the EPSG code found before, an empty string if none was found, or {@code null} if the CRS has never been searched
+     */
+    static synchronized String getResolvedCode(CoordinateReferenceSystem crs) {
+        return getResolved().getProperty(getKey(crs));
+    }
+
+    /**
+     * Records the EPSG code found for a CRS, so that it is not searched again.
+     * @param crs CRS
+     * @param code EPSG code, or an empty string if none was found
+     */
+    static synchronized void setResolvedCode(CoordinateReferenceSystem crs, String code) {
+        getResolved().setProperty(getKey(crs), code);
+        File file = getCacheFile(RESOLVED_FILE);
+        if (file != null) {
+            writeResolved(file, resolved);
+        }
+    }
+
+    private static Properties getResolved() {
+        if (resolved == null) {
+            File file = getCacheFile(RESOLVED_FILE);
+            resolved = file != null && file.exists() ? readResolved(file) : new Properties();
+        }
+        return resolved;
+    }
+
+    static Properties readResolved(File file) {
+        Properties result = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            result.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            Logging.warn("Unable to read resolved CRS cache " + file + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    static void writeResolved(File file, Properties properties) {
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            properties.store(out, null);
+        } catch (IOException e) {
+            Logging.warn("Unable to write resolved CRS cache " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The search result depends on the CRS, the EPSG database and the comparison tolerance.
+     */
+    private static String getKey(CoordinateReferenceSystem crs) {
+        String text = crs.toWKT() + '|' + getEpsgVersion() + '|'
+                + Config.getPref().getDouble(OdConstants.PREF_CRS_COMPARISON_TOLERANCE, OdConstants.DEFAULT_CRS_COMPARISON_TOLERANCE);
+        try {
+            StringBuilder key = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8))) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static File getCacheFile(String name) {
+        if (!Config.getPref().getBoolean(OdConstants.PREF_CRS_CACHE, OdConstants.DEFAULT_CRS_CACHE)) {
+            return null;
+        }
+        File dir = new File(Config.getDirs().getCacheDirectory(true), "opendata");
+        if (!dir.exists() && !dir.mkdirs()) {
+            return null;
+        }
+        return new File(dir, name);
+    }
+}
@@ -12,7 +12,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -32,19 +32,18 @@ import org.geotools.referencing.crs.AbstractCRS;
 import org.geotools.referencing.crs.AbstractDerivedCRS;
 import org.geotools.referencing.crs.AbstractSingleCRS;
 import org.geotools.util.factory.Hints;
+import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.LineString;
 import org.locationtech.jts.geom.Point;
 import org.opengis.geometry.MismatchedDimensionException;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.IdentifiedObject;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
-import org.opengis.referencing.crs.ProjectedCRS;
 import org.opengis.referencing.cs.CoordinateSystem;
 import org.opengis.referencing.datum.Datum;
 import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.OperationNotFoundException;
 import org.opengis.referencing.operation.TransformException;
-import org.openstreetmap.josm.data.coor.ILatLon;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
@@ -85,7 +84,7 @@ public abstract class GeographicReader extends AbstractReader {
     private final GeographicHandler handler;
     private final GeographicHandler[] defaultHandlers;
 
-    protected final Map<LatLon, Node> nodes;
+    protected final NodeIndex nodes;
 
     protected CoordinateReferenceSystem crs;
     protected MathTransform transform;
@@ -93,7 +92,7 @@ public abstract class GeographicReader extends AbstractReader {
     private static final Map<String, Integer> esriWkid = new TreeMap<>();
 
     protected GeographicReader(GeographicHandler handler, GeographicHandler[] defaultHandlers) {
-        this.nodes = new HashMap<>();
+        this.nodes = new NodeIndex();
         this.handler = handler;
         this.defaultHandlers = defaultHandlers;
     }
@@ -107,17 +106,15 @@ public abstract class GeographicReader extends AbstractReader {
         return this.handler;
     }
 
-    protected Node getNode(Point p, LatLon key) {
-        Node n = nodes.get(key);
-        if (n == null && handler != null && handler.checkNodeProximity()) {
-            LatLon ll = new LatLon(p.getY(), p.getX());
-            for (Node node : nodes.values()) {
-                if (node.equalsEpsilon(ll, ILatLon.MAX_SERVER_PRECISION)) {
-                    return node;
-                }
-            }
+    protected Node getNode(Point p) {
+        return getNode(p.getY(), p.getX());
+    }
+
+    private Node getNode(double lat, double lon) {
+        if (handler != null && handler.checkNodeProximity()) {
+            return nodes.getNear(lat, lon);
         }
-        return n;
+        return nodes.get(lat, lon);
     }
 
     protected Node createOrGetNode(Point p) throws MismatchedDimensionException, TransformException {
@@ -128,16 +125,46 @@ public abstract class GeographicReader extends AbstractReader {
         if (!p.isValid()) {
             throw new IllegalArgumentException("Invalid point: " + p);
         }
+        double[] ll = transformPoint(p);
+        return createOrGetNode(ll[0], ll[1], ele, false);
+    }
+
+    protected Node createOrGetEmptyNode(Point p) throws MismatchedDimensionException, TransformException {
+        double[] ll = transformPoint(p);
+        return createOrGetNode(ll[0], ll[1], null, true);
+    }
+
+    /**
+     * Transforms a point to WGS84. This does not access the data set, so it may be called from several threads.
+     * @param p point
+     * @return latitude and longitude of the point
+     * @throws TransformException if the point cannot be transformed
+     */
+    protected double[] transformPoint(Point p) throws TransformException {
         Point p2 = (Point) JTS.transform(p, transform);
-        LatLon key = new LatLon(p2.getY(), p2.getX());
-        Node n = getNode(p2, key);
+        return new double[] {p2.getY(), p2.getX()};
+    }
+
+    /**
+     * Creates or gets the node at the given coordinates.
+     * @param lat latitude
+     * @param lon longitude
+     * @param ele elevation, or {@code null}
+     * @param empty {@code true} if the node must not have tags yet, i.e. if an existing node with tags cannot be reused
+     * @return the node
+     */
+    protected Node createOrGetNode(double lat, double lon, String ele, boolean empty) {
+        Node n = getNode(lat, lon);
+        if (empty && n != null && n.hasKeys()) {
+            n = null;
+        }
         if (n == null) {
-            n = new Node(key);
+            n = new Node(new LatLon(lat, lon));
             if (ele != null) {
                 n.put("ele", ele);
             }
             if (handler == null || handler.useNodeMap()) {
-                nodes.put(key, n);
+                nodes.put(lat, lon, n);
             }
             ds.addPrimitive(n);
         } else if (n.getDataSet() == null) {
@@ -147,24 +174,102 @@ public abstract class GeographicReader extends AbstractReader {
         return n;
     }
 
-    protected Node createOrGetEmptyNode(Point p) throws MismatchedDimensionException, TransformException {
-        Point p2 = (Point) JTS.transform(p, transform);
-        LatLon key = new LatLon(p2.getY(), p2.getX());
-        Node n = getNode(p2, key);
-        if (n != null && n.hasKeys()) {
-            n = null;
+    /**
+     * Creates or gets the nodes of a line string.
+     * @param ls line string
+     * @return nodes of the line string
+     * @see #transformCoordinates(LineString)
+     */
+    protected final List<Node> createOrGetNodes(LineString ls) {
+        return createOrGetNodes(transformCoordinates(ls));
+    }
+
+    /**
+     * Creates or gets the nodes at the given coordinates.
+     * @param latLons latitudes and longitudes, as returned by {@link #transformCoordinates(LineString)}
+     * @return nodes, without the ones of invalid points
+     */
+    protected List<Node> createOrGetNodes(double[] latLons) {
+        final List<Node> result = new ArrayList<>(latLons.length / 2);
+        for (int i = 0; i < latLons.length; i += 2) {
+            if (!Double.isNaN(latLons[i])) {
+                result.add(createOrGetNode(latLons[i], latLons[i + 1], null, false));
+            }
         }
-        if (n == null) {
-            n = new Node(key);
-            if (handler == null || handler.useNodeMap()) {
-                nodes.put(key, n);
+        return result;
+    }
+
+    /**
+     * Transforms the coordinates of a line string to WGS84. Unlike {@link #transformPoint(Point)} called for each point,
+     * all coordinates are transformed in place with a single call to the math transform, without creating
+     * intermediate geometries. This does not access the data set, so it may be called from several threads.
+     * @param ls line string
+     * @return latitude and longitude of each point, {@code NaN} for invalid points
+     */
+    protected double[] transformCoordinates(LineString ls) {
+        CoordinateSequence seq = ls.getCoordinateSequence();
+        int size = seq.size();
+        int srcDim = transform.getSourceDimensions();
+        int tgtDim = transform.getTargetDimensions();
+        if (srcDim < 2 || srcDim > 3 || tgtDim < 2) {
+            return transformCoordinatesPointByPoint(ls);
+        }
+        double[] buffer = new double[size * Math.max(srcDim, tgtDim)];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            double x = seq.getX(i);
+            double y = seq.getY(i);
+            if (Double.isFinite(x) && Double.isFinite(y)) {
+                buffer[count * srcDim] = x;
+                buffer[count * srcDim + 1] = y;
+                if (srcDim > 2) {
+                    buffer[count * srcDim + 2] = seq.getZ(i);
+                }
+                count++;
             }
-            ds.addPrimitive(n);
-        } else if (n.getDataSet() == null) {
-            // handler may have removed the node from DataSet (see Paris public light handler for example)
-            ds.addPrimitive(n);
         }
-        return n;
+        try {
+            transform.transform(buffer, 0, buffer, 0, count);
+        } catch (TransformException e) {
+            // transform points one by one, to skip only the ones which cannot be transformed
+            Logging.trace(e);
+            return transformCoordinatesPointByPoint(ls);
+        }
+        final double[] result = new double[2 * size];
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            if (Double.isFinite(seq.getX(i)) && Double.isFinite(seq.getY(i))) {
+                result[2 * i] = buffer[j * tgtDim + 1];
+                result[2 * i + 1] = buffer[j * tgtDim];
+                j++;
+            } else {
+                result[2 * i] = Double.NaN;
+                result[2 * i + 1] = Double.NaN;
+                Logging.error("Exception for " + ls + ": " + IllegalArgumentException.class.getName()
+                        + ": Invalid point: " + ls.getPointN(i));
+            }
+        }
+        return result;
+    }
+
+    private double[] transformCoordinatesPointByPoint(LineString ls) {
+        final double[] result = new double[2 * ls.getNumPoints()];
+        for (int i = 0; i < ls.getNumPoints(); i++) {
+            result[2 * i] = Double.NaN;
+            result[2 * i + 1] = Double.NaN;
+            try {
+                Point p = ls.getPointN(i);
+                if (!p.isValid()) {
+                    throw new IllegalArgumentException("Invalid point: " + p);
+                }
+                double[] ll = transformPoint(p);
+                result[2 * i] = ll[0];
+                result[2 * i + 1] = ll[1];
+            } catch (TransformException | IllegalArgumentException e) {
+                Logging.error("Exception for " + ls + ": " + e.getClass().getName() + ": " + e.getMessage());
+            }
+        }
+        return result;
     }
 
     protected <T extends OsmPrimitive> T addOsmPrimitive(T p) {
@@ -177,19 +282,20 @@ public abstract class GeographicReader extends AbstractReader {
     }
 
     protected final Way createOrGetWay(LineString ls) {
+        return createOrGetWay(ls != null ? transformCoordinates(ls) : null);
+    }
+
+    /**
+     * Creates or gets the way with the given coordinates.
+     * @param latLons latitudes and longitudes, as returned by {@link #transformCoordinates(LineString)}, or {@code null}
+     * @return the way
+     */
+    protected final Way createOrGetWay(double[] latLons) {
         Way w = null;
         Way tempWay = new Way();
-        if (ls != null) {
-            final List<Node> nodes = new ArrayList<>(ls.getNumPoints());
+        if (latLons != null) {
             // Build list of nodes
-            for (int i = 0; i < ls.getNumPoints(); i++) {
-                try {
-                    nodes.add(createOrGetNode(ls.getPointN(i)));
-                } catch (TransformException | IllegalArgumentException e) {
-                    Logging.error("Exception for " + ls + ": " + e.getClass().getName() + ": " + e.getMessage());
-                }
-            }
-            tempWay.setNodes(nodes);
+            tempWay.setNodes(createOrGetNodes(latLons));
             // Find possible duplicated ways
             if (tempWay.getNodesCount() > 0) {
                 Collection<Way> candidates = Utils.filteredCollection(tempWay.firstNode().getReferrers(), Way.class);
@@ -341,6 +447,65 @@ public abstract class GeographicReader extends AbstractReader {
         return esriWkid.get(wkid);
     }
 
+    /**
+     * Find a CRS with Bursa Wolf parameters in EPSG database matching the CRS used by this reader.
+     * The EPSG code found is remembered, so that the search is not done again for the same CRS.
+     * @return the matching CRS, or {@code null}
+     * @throws FactoryException See {@link org.opengis.referencing.AuthorityFactory#getAuthorityCodes}
+     */
+    private CoordinateReferenceSystem findSimilarCrs() throws FactoryException {
+        String resolvedCode = EpsgCrsIndex.getResolvedCode(crs);
+        if (resolvedCode != null) {
+            if (resolvedCode.isEmpty()) {
+                Logging.info("No potential CRS found before for "+crs.getName());
+                return null;
+            }
+            try {
+                CoordinateReferenceSystem resolved = CRS.decode(resolvedCode);
+                Logging.info("Using CRS found before: "+resolved.getName());
+                return resolved;
+            } catch (FactoryException ex) {
+                Logging.trace(ex);
+            }
+        }
+
+        // Only CRS with the same ellipsoid can match, they are compared in the order of the EPSG database
+        Map<String, CoordinateReferenceSystem> candidates = findSimilarCrs(EpsgCrsIndex.getCandidateCodes(crs));
+
+        if (candidates.size() > 1) {
+            Logging.warn("Found several potential CRS: "+Arrays.toString(candidates.values().toArray()));
+            // TODO: ask user which one to use
+        }
+
+        String code = candidates.isEmpty() ? "" : candidates.keySet().iterator().next();
+        EpsgCrsIndex.setResolvedCode(crs, code);
+        return candidates.get(code);
+    }
+
+    private Map<String, CoordinateReferenceSystem> findSimilarCrs(List<String> codes) {
+        Map<String, CoordinateReferenceSystem> candidates = new LinkedHashMap<>();
+        for (String code : codes) {
+            try {
+                CoordinateReferenceSystem candidate = CRS.decode(code);
+                if (candidate instanceof AbstractCRS && crs instanceof AbstractIdentifiedObject) {
+
+                    Hints.putSystemDefault(Hints.COMPARISON_TOLERANCE, Config.getPref().getDouble(
+                            OdConstants.PREF_CRS_COMPARISON_TOLERANCE, OdConstants.DEFAULT_CRS_COMPARISON_TOLERANCE));
+                    if (((AbstractCRS) candidate).equals((AbstractIdentifiedObject) crs, false)) {
+                        Logging.info("Found a potential CRS: "+candidate.getName());
+                        candidates.put(code, candidate);
+                    } else if (Config.getPref().getBoolean(OdConstants.PREF_CRS_COMPARISON_DEBUG, false)) {
+                        compareDebug(crs, candidate);
+                    }
+                    Hints.removeSystemDefault(Hints.COMPARISON_TOLERANCE);
+                }
+            } catch (FactoryException ex) {
+                Logging.trace(ex);
+            }
+        }
+        return candidates;
+    }
+
     /**
      * Find the math transform for the CRS used by this reader
      * @param parent The parent component, used for showing dialogs
@@ -376,36 +541,8 @@ public abstract class GeographicReader extends AbstractReader {
             Logging.info(crs.getName()+": "+e.getMessage()); // Bursa wolf parameters required.
 
             if (findSimiliarCrs) {
-                List<CoordinateReferenceSystem> candidates = new ArrayList<>();
-
-                // Find matching CRS with Bursa Wolf parameters in EPSG database
-                for (String code : CRS.getAuthorityFactory(false).getAuthorityCodes(ProjectedCRS.class)) {
-                    try {
-                        CoordinateReferenceSystem candidate = CRS.decode(code);
-                        if (candidate instanceof AbstractCRS && crs instanceof AbstractIdentifiedObject) {
-
-                            Hints.putSystemDefault(Hints.COMPARISON_TOLERANCE, Config.getPref().getDouble(
-                                    OdConstants.PREF_CRS_COMPARISON_TOLERANCE, OdConstants.DEFAULT_CRS_COMPARISON_TOLERANCE));
-                            if (((AbstractCRS) candidate).equals((AbstractIdentifiedObject) crs, false)) {
-                                Logging.info("Found a potential CRS: "+candidate.getName());
-                                candidates.add(candidate);
-                            } else if (Config.getPref().getBoolean(OdConstants.PREF_CRS_COMPARISON_DEBUG, false)) {
-                                compareDebug(crs, candidate);
-                            }
-                            Hints.removeSystemDefault(Hints.COMPARISON_TOLERANCE);
-                        }
-                    } catch (FactoryException ex) {
-                        Logging.trace(ex);
-                    }
-                }
-
-                if (candidates.size() > 1) {
-                    Logging.warn("Found several potential CRS: "+Arrays.toString(candidates.toArray()));
-                    // TODO: ask user which one to use
-                }
-
-                if (!candidates.isEmpty()) {
-                    CoordinateReferenceSystem newCRS = candidates.get(0);
+                CoordinateReferenceSystem newCRS = findSimilarCrs();
+                if (newCRS != null) {
                     try {
                         transform = CRS.findMathTransform(newCRS, wgs84, false);
                     } catch (OperationNotFoundException ex) {
@@ -8,12 +8,21 @@ import java.awt.Component;
 import java.awt.GraphicsEnvironment;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.swing.JOptionPane;
 
@@ -32,7 +41,6 @@ import org.opengis.feature.GeometryAttribute;
 import org.opengis.feature.Property;
 import org.opengis.feature.type.GeometryDescriptor;
 import org.opengis.feature.type.Name;
-import org.opengis.geometry.MismatchedDimensionException;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.operation.TransformException;
 import org.openstreetmap.josm.data.osm.DataSet;
@@ -42,13 +50,24 @@ import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.plugins.opendata.core.OdConstants;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.JosmRuntimeException;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.UserCancelException;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
  * Convert a {@link DataStore} to a {@link DataSet}
+ * <p>
+ * Features are converted by worker threads (see {@link OdConstants#PREF_CONVERTER_THREADS}): their geometry is transformed
+ * to WGS84 and their attributes are read, without accessing the data set. The converted features are then added
+ * to the data set in their original order by the thread which runs the conversion, where nodes and ways are deduplicated.
  */
 public class GeotoolsConverter {
+    /** Maximum number of converted features waiting to be added to the data set, per worker thread */
+    private static final int PENDING_FEATURES_PER_THREAD = 64;
+
     private final DataStore dataStore;
     private final GeographicReader reader;
     private final Set<OsmPrimitive> featurePrimitives = new HashSet<>();
@@ -116,33 +135,32 @@ public class GeotoolsConverter {
             progressMonitor.beginTask(tr("Loading shapefile ({0} features)", collection.size()), collection.size());
         }
 
-        int n = 0;
-
         Component parent = progressMonitor != null ? progressMonitor.getWindowParent() : MainApplication.getMainFrame();
 
-        int size = collection.size();
         this.reader.getDataSet().beginUpdate();
-        try (FeatureIterator<?> iterator = collection.features()) {
-            while (iterator.hasNext()) {
-                n++;
-                try {
-                    Feature feature = iterator.next();
-                    parseFeature(feature, parent);
-                    if (reader.getHandler() instanceof ShpHandler) {
-                        ((ShpHandler) reader.getHandler()).notifyFeatureParsed(feature, reader.getDataSet(), featurePrimitives);
+        try (FeatureIterator<?> iterator = collection.features();
+             FeaturePipeline pipeline = new FeaturePipeline(progressMonitor, collection.size())) {
+            Feature feature;
+            while ((feature = pipeline.next(iterator)) != null) {
+                GeometryAttribute geometry = feature.getDefaultGeometryProperty();
+                if (reader.crs == null && geometry != null) {
+                    // The user may be asked for the CRS, do it after the previous features have been added
+                    if (!pipeline.commit(0)) {
+                        return;
                     }
-                } catch (UserCancelException e) {
-                    Logging.error(e);
-                    return;
-                }
-                if (progressMonitor != null) {
-                    progressMonitor.worked(1);
-                    progressMonitor.setCustomText(n+"/"+size);
-                    if (progressMonitor.isCanceled()) {
+                    try {
+                        findCrs(geometry.getDescriptor(), parent);
+                    } catch (UserCancelException e) {
+                        Logging.error(e);
                         return;
                     }
                 }
+                pipeline.submit(feature);
+                if (!pipeline.commitIfFull()) {
+                    return;
+                }
             }
+            pipeline.commit(0);
         } finally {
             reader.nodes.clear();
             this.reader.getDataSet().endUpdate();
@@ -152,129 +170,142 @@ public class GeotoolsConverter {
         }
     }
 
-    private void parseFeature(Feature feature, final Component parent) throws UserCancelException, GeoMathTransformException,
-            FactoryException, GeoCrsException, MismatchedDimensionException, TransformException {
-        featurePrimitives.clear();
-        GeometryAttribute geometry = feature.getDefaultGeometryProperty();
-        if (geometry != null) {
-
-            GeometryDescriptor desc = geometry.getDescriptor();
-            if (reader.crs == null) {
-                if (desc != null && desc.getCoordinateReferenceSystem() != null) {
-                    reader.crs = desc.getCoordinateReferenceSystem();
-                } else if (!GraphicsEnvironment.isHeadless()) {
-                    GuiHelper.runInEDTAndWait(() -> {
-                        if (0 == JOptionPane.showConfirmDialog(
-                                parent,
-                                tr("Unable to detect Coordinate Reference System.\nWould you like to fallback to ESPG:4326 (WGS 84) ?"),
-                                tr("Warning: CRS not found"),
-                                JOptionPane.YES_NO_CANCEL_OPTION
-                        )) {
-                            reader.crs = wgs84;
-                        }
-                    });
-                } else {
-                    // Always use WGS84 in headless mode (used for unit tests only)
+    private void findCrs(GeometryDescriptor desc, final Component parent) throws UserCancelException, GeoMathTransformException,
+            FactoryException, GeoCrsException {
+        if (desc != null && desc.getCoordinateReferenceSystem() != null) {
+            reader.crs = desc.getCoordinateReferenceSystem();
+        } else if (!GraphicsEnvironment.isHeadless()) {
+            GuiHelper.runInEDTAndWait(() -> {
+                if (0 == JOptionPane.showConfirmDialog(
+                        parent,
+                        tr("Unable to detect Coordinate Reference System.\nWould you like to fallback to ESPG:4326 (WGS 84) ?"),
+                        tr("Warning: CRS not found"),
+                        JOptionPane.YES_NO_CANCEL_OPTION
+                )) {
                     reader.crs = wgs84;
                 }
-                if (reader.crs != null) {
-                    reader.findMathTransform(parent, true);
-                } else {
-                    throw new GeoCrsException(tr("Unable to detect CRS !"));
-                }
-            }
+            });
+        } else {
+            // Always use WGS84 in headless mode (used for unit tests only)
+            reader.crs = wgs84;
+        }
+        if (reader.crs != null) {
+            reader.findMathTransform(parent, true);
+        } else {
+            throw new GeoCrsException(tr("Unable to detect CRS !"));
+        }
+    }
 
-            Object geomObject = geometry.getValue();
-            if (geomObject instanceof Point) {
-                // Sure you could have a Set of 1 object and join these 2 branches of
-                // code, but I feel there would be a performance hit.
-                OsmPrimitive primitive = reader.createOrGetEmptyNode((Point) geomObject);
-                readNonGeometricAttributes(feature, primitive);
-            } else if (geomObject instanceof LineString) {
-                OsmPrimitive primitive = reader.createOrGetWay((LineString) geomObject);
-                readNonGeometricAttributes(feature, primitive);
-            } else if (geomObject instanceof Polygon) {
-                Polygon polygon = (Polygon) geomObject;
-                Way outer = reader.createOrGetWay(polygon.getExteriorRing());
-                Way[] inner = new Way[polygon.getNumInteriorRing()];
-                for (int i = 0; i < inner.length; i++) {
-                    inner[i] = reader.createOrGetWay(polygon.getInteriorRingN(i));
-                }
-                final OsmPrimitive primitive;
-                if (inner.length == 0) {
-                    primitive = outer;
+    /**
+     * Converts a feature, without accessing the data set. This is called from worker threads.
+     * @param feature feature
+     * @return the converted feature
+     */
+    private ConvertedFeature convert(Feature feature) {
+        ConvertedFeature converted = new ConvertedFeature(feature);
+        try {
+            GeometryAttribute geometry = feature.getDefaultGeometryProperty();
+            if (geometry != null) {
+                Object geomObject = geometry.getValue();
+                if (geomObject instanceof Point) {
+                    converted.shapes.add(Shape.node(reader.transformPoint((Point) geomObject), true));
+                } else if (geomObject instanceof LineString) {
+                    converted.shapes.add(Shape.way(reader.transformCoordinates((LineString) geomObject)));
+                } else if (geomObject instanceof Polygon) {
+                    converted.shapes.add(convertPolygon((Polygon) geomObject, false));
+                } else if (geomObject instanceof GeometryCollection) { // Deals with both MultiLineString and MultiPolygon
+                    convertGeometryCollection((GeometryCollection) geomObject, converted.shapes);
                 } else {
-                    Relation relation = reader.createMultipolygon();
-                    GeographicReader.addWayToMp(relation, "outer", outer);
-                    for (Way iWay : inner) {
-                        GeographicReader.addWayToMp(relation, "inner", iWay);
-                    }
-                    primitive = relation;
-                }
-                readNonGeometricAttributes(feature, primitive);
-            } else if (geomObject instanceof GeometryCollection) { // Deals with both MultiLineString and MultiPolygon
-                Set<OsmPrimitive> primitives = processGeometryCollection((GeometryCollection) geomObject);
-                for (OsmPrimitive prim : primitives) {
-                    readNonGeometricAttributes(feature, prim);
+                    // Debug unknown geometry
+                    Logging.debug("\ttype: "+geometry.getType());
+                    Logging.debug("\tbounds: "+geometry.getBounds());
+                    Logging.debug("\tdescriptor: "+geometry.getDescriptor());
+                    Logging.debug("\tname: "+geometry.getName());
+                    Logging.debug("\tvalue: "+geomObject);
+                    Logging.debug("\tid: "+geometry.getIdentifier());
+                    Logging.debug("-------------------------------------------------------------");
+                    return converted;
                 }
-            } else {
-                // Debug unknown geometry
-                Logging.debug("\ttype: "+geometry.getType());
-                Logging.debug("\tbounds: "+geometry.getBounds());
-                Logging.debug("\tdescriptor: "+desc);
-                Logging.debug("\tname: "+geometry.getName());
-                Logging.debug("\tvalue: "+geomObject);
-                Logging.debug("\tid: "+geometry.getIdentifier());
-                Logging.debug("-------------------------------------------------------------");
+                converted.tags = readNonGeometricAttributes(feature);
             }
+        } catch (TransformException | RuntimeException e) {
+            converted.error = e;
         }
+        return converted;
     }
 
-    protected Set<OsmPrimitive> processGeometryCollection(GeometryCollection gc) throws TransformException {
-        // A feture may be a collection.  This set holds the items of the collection.
-        Set<OsmPrimitive> primitives = new HashSet<>();
+    private Shape convertPolygon(Polygon polygon, boolean multipolygon) {
+        double[] outer = reader.transformCoordinates(polygon.getExteriorRing());
+        if (!multipolygon && polygon.getNumInteriorRing() == 0) {
+            return Shape.way(outer);
+        }
+        double[][] rings = new double[1 + polygon.getNumInteriorRing()][];
+        String[] roles = new String[rings.length];
+        rings[0] = outer;
+        roles[0] = "outer";
+        for (int i = 1; i < rings.length; i++) {
+            rings[i] = reader.transformCoordinates(polygon.getInteriorRingN(i - 1));
+            roles[i] = "inner";
+        }
+        return Shape.multipolygon(rings, roles);
+    }
+
+    private void convertGeometryCollection(GeometryCollection gc, List<Shape> shapes) throws TransformException {
         int nGeometries = gc.getNumGeometries();
         if (nGeometries < 1) {
             Logging.error("empty geometry collection found");
         } else {
-            // Create the primitive "op" and add it to the set of primitives.
             for (int i = 0; i < nGeometries; i++) {
-                OsmPrimitive op = null;
                 Geometry g = gc.getGeometryN(i);
                 if (g instanceof Polygon) {
                     // TODO: Split this section between Polygon and MultiPolygon.
-                    Relation r = (Relation) op;
                     Polygon p = (Polygon) g;
                     // Do not create relation if there's only one polygon without interior ring
                     // except if handler prefers it
-                    if (r == null && (nGeometries > 1 || p.getNumInteriorRing() > 0 ||
-                            (reader.getHandler() != null && reader.getHandler().preferMultipolygonToSimpleWay()))) {
-                        r = reader.createMultipolygon();
-                    }
-                    Way w = reader.createOrGetWay(p.getExteriorRing());
-                    if (r != null) {
-                        GeographicReader.addWayToMp(r, "outer", w);
-                        for (int j = 0; j < p.getNumInteriorRing(); j++) {
-                            GeographicReader.addWayToMp(r, "inner", reader.createOrGetWay(p.getInteriorRingN(j)));
-                        }
-                    }
-                    op = r != null ? r : w;
+                    shapes.add(convertPolygon(p, nGeometries > 1 || p.getNumInteriorRing() > 0 ||
+                            (reader.getHandler() != null && reader.getHandler().preferMultipolygonToSimpleWay())));
                 } else if (g instanceof LineString) {
-                    op = reader.createOrGetWay((LineString) g);
+                    shapes.add(Shape.way(reader.transformCoordinates((LineString) g)));
                 } else if (g instanceof Point) {
-                    op = reader.createOrGetNode((Point) g);
+                    if (!g.isValid()) {
+                        throw new IllegalArgumentException("Invalid point: " + g);
+                    }
+                    shapes.add(Shape.node(reader.transformPoint((Point) g), false));
                 } else {
                     Logging.error("unsupported geometry : "+g);
                 }
-                if (op != null) {
-                    primitives.add(op);
-                }
             }
         }
-        return primitives;
     }
 
-    private static void readNonGeometricAttributes(Feature feature, OsmPrimitive primitive) {
+    /**
+     * Adds a converted feature to the data set. This is called from the thread which runs the conversion.
+     * @param converted converted feature
+     * @throws TransformException if the geometry of the feature could not be transformed
+     */
+    private void commit(ConvertedFeature converted) throws TransformException {
+        featurePrimitives.clear();
+        if (converted.error instanceof TransformException) {
+            throw (TransformException) converted.error;
+        } else if (converted.error != null) {
+            throw (RuntimeException) converted.error;
+        }
+        // A feature may be a collection. This set holds the items of the collection.
+        Set<OsmPrimitive> primitives = new HashSet<>();
+        for (Shape shape : converted.shapes) {
+            primitives.add(shape.createOrGet(reader));
+        }
+        if (converted.tags != null) {
+            for (OsmPrimitive primitive : primitives) {
+                primitive.putAll(converted.tags);
+            }
+        }
+        if (reader.getHandler() instanceof ShpHandler) {
+            ((ShpHandler) reader.getHandler()).notifyFeatureParsed(converted.feature, reader.getDataSet(), featurePrimitives);
+        }
+    }
+
+    private static Map<String, String> readNonGeometricAttributes(Feature feature) {
         try {
             Collection<Property> properties = feature.getProperties();
             Map<String, String> tagMap = new LinkedHashMap<>(properties.size());
@@ -290,14 +321,174 @@ public class GeotoolsConverter {
                         }
                         if (!sName.isEmpty() && !sValue.isEmpty()) {
                             tagMap.put(sName, sValue);
-                            //primitive.put(sName, sValue);
                         }
                     }
                 }
             }
-            primitive.putAll(tagMap);
+            return tagMap;
         } catch (Exception e) {
             Logging.error(e);
+            return null;
+        }
+    }
+
+    /**
+     * A feature converted by a worker thread: its geometry transformed to WGS84 and its tags, not yet added to the data set.
+     */
+    private static final class ConvertedFeature {
+        final Feature feature;
+        final List<Shape> shapes = new ArrayList<>();
+        Map<String, String> tags;
+        Exception error;
+
+        ConvertedFeature(Feature feature) {
+            this.feature = feature;
+        }
+    }
+
+    /**
+     * A node, a way or a multipolygon to create, with coordinates already transformed to WGS84.
+     */
+    private static final class Shape {
+        /** latitude and longitude of the node, or latitudes and longitudes of the way or of each ring of the multipolygon */
+        final double[][] coordinates;
+        /** roles of the rings of a multipolygon, {@code null} for a node or a way */
+        final String[] roles;
+        final boolean node;
+        /** for a node which will get the tags of the feature, {@code true} as an existing node with tags cannot be reused */
+        final boolean empty;
+
+        private Shape(double[][] coordinates, String[] roles, boolean node, boolean empty) {
+            this.coordinates = coordinates;
+            this.roles = roles;
+            this.node = node;
+            this.empty = empty;
+        }
+
+        static Shape node(double[] latLon, boolean empty) {
+            return new Shape(new double[][] {latLon}, null, true, empty);
+        }
+
+        static Shape way(double[] latLons) {
+            return new Shape(new double[][] {latLons}, null, false, false);
+        }
+
+        static Shape multipolygon(double[][] rings, String[] roles) {
+            return new Shape(rings, roles, false, false);
+        }
+
+        OsmPrimitive createOrGet(GeographicReader reader) {
+            if (node) {
+                return reader.createOrGetNode(coordinates[0][0], coordinates[0][1], null, empty);
+            } else if (roles == null) {
+                return reader.createOrGetWay(coordinates[0]);
+            }
+            Way[] ways = new Way[coordinates.length];
+            for (int i = 0; i < ways.length; i++) {
+                ways[i] = reader.createOrGetWay(coordinates[i]);
+            }
+            Relation relation = reader.createMultipolygon();
+            for (int i = 0; i < ways.length; i++) {
+                GeographicReader.addWayToMp(relation, roles[i], ways[i]);
+            }
+            return relation;
+        }
+    }
+
+    /**
+     * Converts features on worker threads, while they are added to the data set in their original order
+     * by the thread which runs the conversion. Only a limited number of converted features wait to be added,
+     * so the features are streamed from the iterator.
+     */
+    private final class FeaturePipeline implements AutoCloseable {
+        private final ExecutorService workers;
+        private final int maxPending;
+        private final Deque<Future<ConvertedFeature>> pending = new ArrayDeque<>();
+        private final ProgressMonitor progressMonitor;
+        private final int size;
+        private int committed;
+
+        FeaturePipeline(ProgressMonitor progressMonitor, int size) {
+            int threads = Config.getPref().getInt(OdConstants.PREF_CONVERTER_THREADS, OdConstants.DEFAULT_CONVERTER_THREADS);
+            this.workers = threads > 1
+                    ? Executors.newFixedThreadPool(threads, Utils.newThreadFactory("opendata-converter-%d", Thread.NORM_PRIORITY))
+                    : null;
+            this.maxPending = threads > 1 ? threads * PENDING_FEATURES_PER_THREAD : 1;
+            this.progressMonitor = progressMonitor;
+            this.size = size;
+        }
+
+        /**
+         * Returns the next feature of an iterator.
+         * @param iterator feature iterator
+         * @return the next feature, or {@code null} at the end of the iteration
+         * @throws TransformException if a previous feature could not be transformed
+         */
+        Feature next(FeatureIterator<?> iterator) throws TransformException {
+            try {
+                return iterator.hasNext() ? iterator.next() : null;
+            } catch (RuntimeException e) {
+                // Keep the features read before the one which cannot be read
+                commit(0);
+                throw e;
+            }
+        }
+
+        void submit(Feature feature) {
+            FutureTask<ConvertedFeature> task = new FutureTask<>(() -> convert(feature));
+            if (workers != null) {
+                workers.execute(task);
+            } else {
+                task.run();
+            }
+            pending.add(task);
+        }
+
+        boolean commitIfFull() throws TransformException {
+            return commit(maxPending - 1);
+        }
+
+        /**
+         * Adds the oldest converted features to the data set.
+         * @param remaining number of features which may still be pending
+         * @return {@code false} if the user cancelled the conversion
+         * @throws TransformException if a feature could not be transformed
+         */
+        boolean commit(int remaining) throws TransformException {
+            while (pending.size() > remaining) {
+                GeotoolsConverter.this.commit(get(pending.remove()));
+                committed++;
+                if (progressMonitor != null) {
+                    progressMonitor.worked(1);
+                    progressMonitor.setCustomText(committed+"/"+size);
+                    if (progressMonitor.isCanceled()) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private ConvertedFeature get(Future<ConvertedFeature> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JosmRuntimeException(e);
+            } catch (ExecutionException e) {
+                // Conversion errors are kept in the converted feature, only errors such as OutOfMemoryError are left
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new JosmRuntimeException(e.getCause());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (workers != null) {
+                workers.shutdownNow();
+            }
         }
     }
 }
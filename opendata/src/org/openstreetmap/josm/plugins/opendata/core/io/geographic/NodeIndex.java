@@ -0,0 +1,182 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.opendata.core.io.geographic;
+
+import java.util.Arrays;
+
+import org.openstreetmap.josm.data.coor.ILatLon;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+
+/**
+ * Nodes created by a {@link GeographicReader}, indexed by their coordinates.
+ * <p>
+ * Nodes are registered in the cells of a regular grid whose cell size is {@link ILatLon#MAX_SERVER_PRECISION},
+ * so that an exact match is found in a single cell, and a match within the server precision
+ * in the cell of the coordinates or one of its eight neighbours.
+ * Coordinates are stored in primitive arrays, so that looking up a node does not allocate any key.
+ */
+public class NodeIndex {
+
+    private static final double CELL_SIZE = ILatLon.MAX_SERVER_PRECISION;
+    private static final int NONE = -1;
+
+    // nodes in insertion order, with their coordinates and the previous node of the same cell
+    private Node[] nodes;
+    private double[] lats;
+    private double[] lons;
+    private int[] next;
+    private int size;
+
+    // open addressing table of the non-empty cells, with the most recently added node of each cell
+    private long[] cellLats;
+    private long[] cellLons;
+    private int[] heads;
+    private int cells;
+
+    /**
+     * Constructs a new empty {@code NodeIndex}.
+     */
+    public NodeIndex() {
+        clear();
+    }
+
+    /**
+     * Removes all nodes from the index.
+     */
+    public final void clear() {
+        nodes = new Node[16];
+        lats = new double[16];
+        lons = new double[16];
+        next = new int[16];
+        size = 0;
+        cellLats = new long[32];
+        cellLons = new long[32];
+        heads = new int[32];
+        Arrays.fill(heads, NONE);
+        cells = 0;
+    }
+
+    /**
+     * Returns the number of nodes in the index.
+     * @return the number of nodes in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a node. If another node has been added with the same coordinates, the new node replaces it.
+     * @param lat latitude of the node
+     * @param lon longitude of the node
+     * @param node node
+     */
+    public void put(double lat, double lon, Node node) {
+        if (size == nodes.length) {
+            int capacity = size * 2;
+            nodes = Arrays.copyOf(nodes, capacity);
+            lats = Arrays.copyOf(lats, capacity);
+            lons = Arrays.copyOf(lons, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        if (2 * (cells + 1) > heads.length) {
+            rehash(heads.length * 2);
+        }
+        int slot = slot(cell(lat), cell(lon));
+        if (heads[slot] == NONE) {
+            cellLats[slot] = cell(lat);
+            cellLons[slot] = cell(lon);
+            cells++;
+        }
+        nodes[size] = node;
+        lats[size] = lat;
+        lons[size] = lon;
+        next[size] = heads[slot];
+        heads[slot] = size++;
+    }
+
+    /**
+     * Returns the node added with exactly these coordinates.
+     * @param lat latitude
+     * @param lon longitude
+     * @return the most recently added node with these coordinates, or {@code null}
+     */
+    public Node get(double lat, double lon) {
+        long latBits = Double.doubleToLongBits(lat);
+        long lonBits = Double.doubleToLongBits(lon);
+        for (int i = heads[slot(cell(lat), cell(lon))]; i != NONE; i = next[i]) {
+            if (Double.doubleToLongBits(lats[i]) == latBits && Double.doubleToLongBits(lons[i]) == lonBits) {
+                return nodes[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a node equal to these coordinates within the server precision.
+     * @param lat latitude
+     * @param lon longitude
+     * @return the most recently added node matching these coordinates, or {@code null}
+     * @see Node#equalsEpsilon(ILatLon, double)
+     */
+    public Node getNear(double lat, double lon) {
+        Node exact = get(lat, lon);
+        if (exact != null) {
+            return exact;
+        }
+        LatLon ll = null;
+        int found = NONE;
+        long cellLat = cell(lat);
+        long cellLon = cell(lon);
+        for (long y = cellLat - 1; y <= cellLat + 1; y++) {
+            for (long x = cellLon - 1; x <= cellLon + 1; x++) {
+                int slot = slot(y, x);
+                // nodes of a cell are chained from the most recently added, so the first match is the best of the cell
+                for (int i = heads[slot]; i > found; i = next[i]) {
+                    if (ll == null) {
+                        ll = new LatLon(lat, lon);
+                    }
+                    if (nodes[i].equalsEpsilon(ll, ILatLon.MAX_SERVER_PRECISION)) {
+                        found = i;
+                        break;
+                    }
+                }
+            }
+        }
+        return found != NONE ? nodes[found] : null;
+    }
+
+    private static long cell(double coordinate) {
+        return (long) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    /**
+     * Returns the slot of a cell: the slot holding it, or the empty slot where it has to be added.
+     */
+    private int slot(long cellLat, long cellLon) {
+        int mask = heads.length - 1;
+        long h = cellLat * 0x9E3779B97F4A7C15L + cellLon;
+        int slot = (int) (h ^ (h >>> 29) ^ (h >>> 47)) & mask;
+        while (heads[slot] != NONE && (cellLats[slot] != cellLat || cellLons[slot] != cellLon)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldLats = cellLats;
+        long[] oldLons = cellLons;
+        int[] oldHeads = heads;
+        cellLats = new long[capacity];
+        cellLons = new long[capacity];
+        heads = new int[capacity];
+        Arrays.fill(heads, NONE);
+        for (int i = 0; i < oldHeads.length; i++) {
+            if (oldHeads[i] != NONE) {
+                int slot = slot(oldLats[i], oldLons[i]);
+                cellLats[slot] = oldLats[i];
+                cellLons[slot] = oldLons[i];
+                heads[slot] = oldHeads[i];
+            }
+        }
+    }
+}
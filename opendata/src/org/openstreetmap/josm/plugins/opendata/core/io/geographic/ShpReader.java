@@ -22,9 +22,6 @@ import java.util.Set;
 
 import org.geotools.data.DataStore;
 import org.geotools.data.shapefile.ShapefileDataStoreFactory;
-import org.locationtech.jts.geom.Point;
-import org.opengis.geometry.MismatchedDimensionException;
-import org.opengis.referencing.operation.TransformException;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
@@ -119,8 +116,8 @@ public class ShpReader extends GeographicReader {
     }
 
     @Override
-    protected Node createOrGetNode(Point p) throws MismatchedDimensionException, TransformException {
-        Node n = super.createOrGetNode(p);
+    protected Node createOrGetNode(double lat, double lon, String ele, boolean empty) {
+        Node n = super.createOrGetNode(lat, lon, ele, empty);
         featurePrimitives.add(n);
         return n;
     }
@@ -176,6 +176,8 @@ public abstract class SpreadSheetReader extends AbstractReader {
         Logging.info("Loading data using projections "+message);
 
         final DataSet ds = new DataSet();
+        final double tolerance = Config.getPref().getDouble(OdConstants.PREF_TOLERANCE, OdConstants.DEFAULT_TOLERANCE);
+        final boolean rawData = Config.getPref().getBoolean(OdConstants.PREF_RAWDATA);
         int lineNumber = 1;
 
         String[] fields;
@@ -252,15 +254,14 @@ public abstract class SpreadSheetReader extends AbstractReader {
                     if (firstNode == null) {
                         firstNode = n;
                     }
-                    if (n == firstNode || n.greatCircleDistance(firstNode)
-                            > Config.getPref().getDouble(OdConstants.PREF_TOLERANCE, OdConstants.DEFAULT_TOLERANCE)) {
+                    if (n == firstNode || n.greatCircleDistance(firstNode) > tolerance) {
                         ds.addPrimitive(n);
                     } else {
                         nodes.remove(c);
                     }
                 }
             }
-            if (handler != null && !Config.getPref().getBoolean(OdConstants.PREF_RAWDATA)) {
+            if (handler != null && !rawData) {
                 handler.nodesAdded(ds, nodes, header, lineNumber);
             }
         }
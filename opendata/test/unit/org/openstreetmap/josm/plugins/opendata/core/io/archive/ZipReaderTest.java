@@ -41,4 +41,21 @@ class ZipReaderTest {
             }
         }
     }
+
+    /**
+     * Test for various zip files reading with random access
+     * @throws Exception if an error occurs during reading
+     */
+    @Test
+    void testReadZipFilesRandomAccess() throws Exception {
+        for (Path p : NonRegFunctionalTests.listDataFiles("zip")) {
+            File zipfile = p.toFile();
+            Logging.info("Testing reading file "+zipfile.getPath());
+            for (Entry<File, DataSet> entry : ZipReader.parseDataSets(zipfile, null, null, false).entrySet()) {
+                String name = entry.getKey().getName();
+                Logging.info("Checking dataset for entry "+name);
+                NonRegFunctionalTests.testGeneric(zipfile.getName()+"/"+name, entry.getValue());
+            }
+        }
+    }
 }
@@ -0,0 +1,77 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.opendata.core.io.geographic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.geotools.referencing.CRS;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LineString;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.testutils.annotations.Projection;
+
+/**
+ * Transform throughput of geographic readers, in points per second, from Lambert 93 to WGS84:
+ * point by point as before, and with a single transform call per line string.
+ * <p>
+ * Not run with unit tests.
+ */
+@BasicPreferences
+@Projection
+class CoordinateTransformBenchmark {
+
+    private static final int LINES = 2000;
+    private static final int POINTS_PER_LINE = 500;
+    private static final int RUNS = 3;
+
+    @Test
+    void benchmarkTransform() throws Exception {
+        GeometryFactory factory = new GeometryFactory();
+        List<LineString> lines = new ArrayList<>(LINES);
+        for (int i = 0; i < LINES; i++) {
+            Coordinate[] coordinates = new Coordinate[POINTS_PER_LINE];
+            for (int j = 0; j < POINTS_PER_LINE; j++) {
+                coordinates[j] = new Coordinate(570000 + i * 10.0 + j * 0.5, 6280000 + j * 10.0);
+            }
+            lines.add(factory.createLineString(coordinates));
+        }
+        int points = LINES * POINTS_PER_LINE;
+
+        for (int run = 0; run < RUNS; run++) {
+            ShpReader reader = newReader();
+            long start = System.nanoTime();
+            for (LineString ls : lines) {
+                for (int j = 0; j < ls.getNumPoints(); j++) {
+                    reader.createOrGetNode(ls.getPointN(j));
+                }
+            }
+            report("point by point", points, System.nanoTime() - start);
+            assertEquals(points, reader.getDataSet().getNodes().size());
+
+            reader = newReader();
+            start = System.nanoTime();
+            for (LineString ls : lines) {
+                List<Node> nodes = reader.createOrGetNodes(ls);
+                assertEquals(POINTS_PER_LINE, nodes.size());
+            }
+            report("batched", points, System.nanoTime() - start);
+            assertEquals(points, reader.getDataSet().getNodes().size());
+        }
+    }
+
+    private static ShpReader newReader() throws Exception {
+        ShpReader reader = new ShpReader(null);
+        reader.crs = CRS.decode("EPSG:2154");
+        reader.transform = CRS.findMathTransform(reader.crs, GeographicReader.wgs84);
+        return reader;
+    }
+
+    private static void report(String mode, int points, long nanos) {
+        System.out.printf("%s: %d points in %.1f ms (%.0f points/s)%n", mode, points, nanos / 1e6, points / (nanos / 1e9));
+    }
+}
@@ -0,0 +1,155 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.opendata.core.io.geographic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.geotools.referencing.datum.DefaultEllipsoid;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+import org.openstreetmap.josm.plugins.opendata.core.OdConstants;
+import org.openstreetmap.josm.plugins.opendata.core.io.geographic.EpsgCrsIndex.Fingerprint;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+import si.uom.SI;
+
+/**
+ * Unit tests of {@link EpsgCrsIndex}.
+ */
+@BasicPreferences
+class EpsgCrsIndexTest {
+
+    private static final double GRS80_A = 6378137;
+    private static final double GRS80_INVF = 298.257222101;
+
+    @TempDir
+    File tempDir;
+
+    private static Fingerprint fingerprint(String code, double semiMajorAxis, double inverseFlattening) {
+        return new Fingerprint(code, semiMajorAxis, inverseFlattening);
+    }
+
+    /**
+     * The fingerprint of a projected CRS is the one of its ellipsoid, a geographic CRS has no fingerprint.
+     * @throws Exception if the CRS cannot be decoded
+     */
+    @Test
+    void testFingerprint() throws Exception {
+        Fingerprint lambert93 = EpsgCrsIndex.fingerprint("2154", CRS.decode("EPSG:2154"));
+        assertEquals("2154", lambert93.code);
+        assertTrue(lambert93.isKnown());
+        assertEquals(GRS80_A, lambert93.semiMajorAxis, 1e-6);
+        assertEquals(GRS80_INVF, lambert93.inverseFlattening, 1e-9);
+
+        assertFalse(EpsgCrsIndex.fingerprint(null, DefaultGeographicCRS.WGS84).isKnown());
+    }
+
+    /**
+     * The semi-major axis of an ellipsoid defined in feet is converted to metres.
+     */
+    @Test
+    void testFingerprintInFeet() {
+        Fingerprint feet = EpsgCrsIndex.fingerprint(null, DefaultEllipsoid.createFlattenedSphere(
+                "GRS80 in feet", GRS80_A / 0.3048, GRS80_INVF, SI.METRE.multiply(0.3048)));
+        assertEquals(GRS80_A, feet.semiMajorAxis, 1e-6);
+        assertTrue(feet.hasSimilarEllipsoid(fingerprint("2154", GRS80_A, GRS80_INVF)));
+
+        Fingerprint sphere = EpsgCrsIndex.fingerprint(null, DefaultEllipsoid.createEllipsoid(
+                "sphere", 6371007, 6371007, SI.METRE));
+        assertEquals(0, sphere.inverseFlattening, 0);
+        assertFalse(sphere.hasSimilarEllipsoid(feet));
+    }
+
+    /**
+     * The candidates are the CRS with a similar ellipsoid or an unknown one, in the order of the index.
+     */
+    @Test
+    void testCandidateCodes() {
+        List<Fingerprint> index = Arrays.asList(
+                fingerprint("2154", GRS80_A, GRS80_INVF),
+                fingerprint("27572", 6378249.2, 293.4660212936269),
+                fingerprint("3857", Double.NaN, Double.NaN),
+                fingerprint("2056", 6377397.155, 299.1528128),
+                fingerprint("32631", 6378137, 298.257223563),
+                fingerprint("3942", GRS80_A, GRS80_INVF));
+        assertEquals(Arrays.asList("2154", "3857", "32631", "3942"),
+                EpsgCrsIndex.getCandidateCodes(fingerprint(null, GRS80_A, GRS80_INVF), index));
+        assertEquals(Arrays.asList("27572", "3857"),
+                EpsgCrsIndex.getCandidateCodes(fingerprint(null, 6378249.145, 293.465), index));
+        assertEquals(Arrays.asList("2154", "27572", "3857", "2056", "32631", "3942"),
+                EpsgCrsIndex.getCandidateCodes(fingerprint(null, Double.NaN, Double.NaN), index));
+    }
+
+    /**
+     * The index is read as written, and rebuilt when it comes from another EPSG database or has another format.
+     * @throws IOException if any I/O error occurs
+     */
+    @Test
+    void testIndexFile() throws IOException {
+        File file = new File(tempDir, "index.txt");
+        List<Fingerprint> index = Arrays.asList(
+                fingerprint("2154", GRS80_A, GRS80_INVF),
+                fingerprint("3857", Double.NaN, Double.NaN),
+                fingerprint("3395", 6378137, 0));
+        EpsgCrsIndex.writeIndex(file, "9.8", index);
+
+        List<Fingerprint> read = EpsgCrsIndex.readIndex(file, "9.8");
+        assertEquals(index.size(), read.size());
+        for (int i = 0; i < index.size(); i++) {
+            assertEquals(index.get(i).code, read.get(i).code);
+            assertEquals(index.get(i).semiMajorAxis, read.get(i).semiMajorAxis, 0);
+            assertEquals(index.get(i).inverseFlattening, read.get(i).inverseFlattening, 0);
+        }
+        assertNull(EpsgCrsIndex.readIndex(file, "9.9"));
+
+        Files.write(file.toPath(), Arrays.asList("# 9.8", "2154\t6378137.0\t298.257222101\t700000.000,6600000.000"),
+                StandardCharsets.UTF_8);
+        assertNull(EpsgCrsIndex.readIndex(file, "9.8"));
+    }
+
+    /**
+     * The code found for a CRS is remembered for the same comparison tolerance only.
+     * @throws Exception if the CRS cannot be decoded
+     */
+    @Test
+    void testResolvedCode() throws Exception {
+        Config.getPref().putBoolean(OdConstants.PREF_CRS_CACHE, false);
+        CoordinateReferenceSystem lambert93 = CRS.decode("EPSG:2154");
+        CoordinateReferenceSystem utm31 = CRS.decode("EPSG:32631");
+        EpsgCrsIndex.setResolvedCode(lambert93, "EPSG:2154");
+        EpsgCrsIndex.setResolvedCode(utm31, "");
+        assertEquals("EPSG:2154", EpsgCrsIndex.getResolvedCode(lambert93));
+        assertEquals("", EpsgCrsIndex.getResolvedCode(utm31));
+
+        Config.getPref().putDouble(OdConstants.PREF_CRS_COMPARISON_TOLERANCE, 1.234e-3);
+        assertNull(EpsgCrsIndex.getResolvedCode(lambert93));
+        assertNull(EpsgCrsIndex.getResolvedCode(utm31));
+    }
+
+    /**
+     * The resolved codes are read as written.
+     */
+    @Test
+    void testResolvedFile() {
+        File file = new File(tempDir, "resolved.properties");
+        Properties resolved = new Properties();
+        resolved.setProperty("0123abcd", "EPSG:2154");
+        resolved.setProperty("4567ef89", "");
+        EpsgCrsIndex.writeResolved(file, resolved);
+        assertEquals(resolved, EpsgCrsIndex.readResolved(file));
+    }
+}
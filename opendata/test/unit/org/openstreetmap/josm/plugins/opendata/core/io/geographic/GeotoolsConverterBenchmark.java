@@ -0,0 +1,122 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.opendata.core.io.geographic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.CRS;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.plugins.opendata.core.OdConstants;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.testutils.annotations.Projection;
+
+/**
+ * Import time of a large synthetic shapefile in Lambert 93, depending on the number of feature conversion threads.
+ * <p>
+ * Not run with unit tests. Each feature is a multipolygon of two parcels with a hole, and has a few attributes,
+ * so that coordinate transformations, tags and multipolygon relations are all involved.
+ */
+@BasicPreferences
+@Projection
+class GeotoolsConverterBenchmark {
+
+    private static final int FEATURES = 100_000;
+    private static final int RUNS = 3;
+    private static final double STEP = 10;
+
+    @Test
+    void benchmarkConversion() throws Exception {
+        Path dir = Files.createTempDirectory("shp");
+        try {
+            File file = dir.resolve("parcels.shp").toFile();
+            writeParcels(file);
+
+            int processors = Runtime.getRuntime().availableProcessors();
+            for (int threads : new int[] {1, 2, 4, processors}) {
+                Config.getPref().putInt(OdConstants.PREF_CONVERTER_THREADS, threads);
+                for (int run = 0; run < RUNS; run++) {
+                    long start = System.nanoTime();
+                    DataSet ds = new ShpReader(null).parse(file, null);
+                    double ms = (System.nanoTime() - start) / 1e6;
+                    System.out.printf("%d threads: %d features imported in %.1f ms (%.0f features/s)%n",
+                            threads, FEATURES, ms, FEATURES / ms * 1000);
+
+                    assertEquals(2 * FEATURES, ds.getRelations().size());
+                    assertEquals(4 * FEATURES, ds.getWays().size());
+                }
+            }
+        } finally {
+            Config.getPref().put(OdConstants.PREF_CONVERTER_THREADS, null);
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static void writeParcels(File file) throws Exception {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName("parcels");
+        builder.setCRS(CRS.decode("EPSG:2154"));
+        builder.add("the_geom", MultiPolygon.class);
+        builder.add("id", Integer.class);
+        builder.add("section", String.class);
+        builder.add("area", Double.class);
+        SimpleFeatureType type = builder.buildFeatureType();
+
+        ShapefileDataStore store = (ShapefileDataStore) new ShapefileDataStoreFactory().createNewDataStore(
+                Collections.singletonMap(ShapefileDataStoreFactory.URLP.key, file.toURI().toURL()));
+        try {
+            store.createSchema(type);
+            GeometryFactory factory = new GeometryFactory();
+            try (FeatureWriter<SimpleFeatureType, SimpleFeature> writer = store.getFeatureWriterAppend(Transaction.AUTO_COMMIT)) {
+                for (int i = 0; i < FEATURES; i++) {
+                    double x = 570000 + (i % 1000) * 3 * STEP;
+                    double y = 6280000 + (i / 1000) * STEP;
+                    SimpleFeature feature = writer.next();
+                    feature.setAttribute("the_geom", factory.createMultiPolygon(new Polygon[] {
+                        parcel(factory, x, y), parcel(factory, x + STEP, y)
+                    }));
+                    feature.setAttribute("id", i);
+                    feature.setAttribute("section", "AB" + (i % 100));
+                    feature.setAttribute("area", 2 * STEP * STEP);
+                    writer.write();
+                }
+            }
+        } finally {
+            store.dispose();
+        }
+    }
+
+    private static Polygon parcel(GeometryFactory factory, double x, double y) {
+        double h = STEP / 4;
+        LinearRing shell = factory.createLinearRing(new Coordinate[] {
+            new Coordinate(x, y), new Coordinate(x, y + STEP), new Coordinate(x + STEP, y + STEP),
+            new Coordinate(x + STEP, y), new Coordinate(x, y)
+        });
+        LinearRing hole = factory.createLinearRing(new Coordinate[] {
+            new Coordinate(x + h, y + h), new Coordinate(x + 3 * h, y + h), new Coordinate(x + 3 * h, y + 3 * h),
+            new Coordinate(x + h, y + 3 * h), new Coordinate(x + h, y + h)
+        });
+        return factory.createPolygon(shell, new LinearRing[] {hole});
+    }
+}
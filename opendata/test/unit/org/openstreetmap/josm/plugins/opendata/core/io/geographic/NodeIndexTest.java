@@ -0,0 +1,66 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.opendata.core.io.geographic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.ILatLon;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+
+/**
+ * Unit tests of {@link NodeIndex} class.
+ */
+class NodeIndexTest {
+
+    private static Node put(NodeIndex index, double lat, double lon) {
+        Node n = new Node(new LatLon(lat, lon));
+        index.put(lat, lon, n);
+        return n;
+    }
+
+    /**
+     * Test of exact lookups.
+     */
+    @Test
+    void testGet() {
+        NodeIndex index = new NodeIndex();
+        Node a = put(index, 43.6, 1.44);
+        Node b = put(index, 43.6, 1.4400001);
+        assertSame(a, index.get(43.6, 1.44));
+        assertSame(b, index.get(43.6, 1.4400001));
+        assertNull(index.get(43.6, 1.44000001));
+        // a node added with the same coordinates replaces the previous one
+        Node c = put(index, 43.6, 1.44);
+        assertSame(c, index.get(43.6, 1.44));
+        assertEquals(3, index.size());
+        index.clear();
+        assertNull(index.get(43.6, 1.44));
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * Test of lookups within the server precision, including across cell boundaries.
+     */
+    @Test
+    void testGetNear() {
+        NodeIndex index = new NodeIndex();
+        double eps = ILatLon.MAX_SERVER_PRECISION / 4;
+        for (int i = 0; i < 1000; i++) {
+            double lat = -45 + i * ILatLon.MAX_SERVER_PRECISION * 10;
+            double lon = 2 - i * ILatLon.MAX_SERVER_PRECISION * 10;
+            Node n = put(index, lat, lon);
+            assertSame(n, index.getNear(lat + eps, lon - eps));
+            assertSame(n, index.getNear(lat - eps, lon + eps));
+            assertNull(index.get(lat + eps, lon));
+        }
+        assertNull(index.getNear(-45 - 5 * ILatLon.MAX_SERVER_PRECISION, 2));
+        // the most recently added matching node is returned
+        Node a = put(index, 10, 10);
+        Node b = put(index, 10 + eps, 10);
+        assertSame(b, index.getNear(10 + eps / 2, 10));
+        assertSame(a, index.getNear(10, 10));
+    }
+}
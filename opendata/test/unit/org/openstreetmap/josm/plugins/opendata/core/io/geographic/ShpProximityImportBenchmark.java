@@ -0,0 +1,102 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.opendata.core.io.geographic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.openstreetmap.josm.data.coor.ILatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.testutils.annotations.Projection;
+
+/**
+ * Import time of large synthetic polygon shapefiles with node proximity checks.
+ * <p>
+ * Not run with unit tests. Each layer is a grid of square parcels whose shared vertices are moved
+ * by less than the server precision from one parcel to the other, so they are only merged by proximity checks.
+ */
+@BasicPreferences
+@Projection
+class ShpProximityImportBenchmark {
+
+    private static final int[] GRID_SIZES = {50, 100, 200, 400};
+    private static final double STEP = 1e-4;
+
+    @Test
+    void benchmarkImport() throws Exception {
+        Path dir = Files.createTempDirectory("shp");
+        try {
+            for (int size : GRID_SIZES) {
+                File file = dir.resolve("parcels" + size + ".shp").toFile();
+                writeGrid(file, size);
+
+                DefaultShpHandler handler = new DefaultShpHandler();
+                handler.setCheckNodeProximity(true);
+                long start = System.nanoTime();
+                DataSet ds = new ShpReader(handler).parse(file, null);
+                double ms = (System.nanoTime() - start) / 1e6;
+                System.out.printf("%d parcels, %d vertices: imported in %.1f ms (%.0f vertices/s)%n",
+                        size * size, 5 * size * size, ms, 5 * size * size / ms * 1000);
+
+                assertEquals((size + 1) * (size + 1), ds.getNodes().size());
+                assertEquals(size * size, ds.getWays().size());
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private static void writeGrid(File file, int size) throws Exception {
+        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
+        builder.setName("parcels");
+        builder.setCRS(DefaultGeographicCRS.WGS84);
+        builder.add("the_geom", Polygon.class);
+        builder.add("id", Integer.class);
+        SimpleFeatureType type = builder.buildFeatureType();
+
+        ShapefileDataStore store = (ShapefileDataStore) new ShapefileDataStoreFactory().createNewDataStore(
+                Collections.singletonMap(ShapefileDataStoreFactory.URLP.key, file.toURI().toURL()));
+        try {
+            store.createSchema(type);
+            GeometryFactory factory = new GeometryFactory();
+            try (FeatureWriter<SimpleFeatureType, SimpleFeature> writer = store.getFeatureWriterAppend(Transaction.AUTO_COMMIT)) {
+                for (int i = 0; i < size * size; i++) {
+                    // each parcel moves its vertices by a different amount, always below the server precision
+                    double jitter = (i % 3) * ILatLon.MAX_SERVER_PRECISION / 8;
+                    double x = 1.4 + (i % size) * STEP + jitter;
+                    double y = 43.6 + (i / size) * STEP - jitter;
+                    Coordinate[] ring = {
+                        new Coordinate(x, y), new Coordinate(x, y + STEP), new Coordinate(x + STEP, y + STEP),
+                        new Coordinate(x + STEP, y), new Coordinate(x, y)
+                    };
+                    SimpleFeature feature = writer.next();
+                    feature.setAttribute("the_geom", factory.createPolygon(ring));
+                    feature.setAttribute("id", i);
+                    writer.write();
+                }
+            }
+        } finally {
+            store.dispose();
+        }
+    }
+}
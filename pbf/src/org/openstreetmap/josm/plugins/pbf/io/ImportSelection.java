@@ -0,0 +1,133 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.util.Collection;
+
+import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.RelationData;
+import org.openstreetmap.josm.data.osm.RelationMemberData;
+import org.openstreetmap.josm.data.osm.WayData;
+
+/**
+ * Ids of primitives selected by an {@link ImportFilter}.
+ * <p>
+ * The selection is built by a first scan of the file, where nodes must come before ways and ways before relations.
+ * Its size only depends on the selected data, not on the size of the file.
+ * It is then frozen and used during the second pass to skip primitives that are not selected.
+ */
+final class ImportSelection {
+
+    private final ImportFilter filter;
+    /** Nodes inside the bounding box, whatever their tags */
+    private final LongIdSet nodesInBounds = new LongIdSet();
+    /** Ways with at least one node inside the bounding box, whatever their tags */
+    private final LongIdSet waysInBounds = new LongIdSet();
+    /** Nodes to load: selected nodes and nodes of selected ways */
+    private final LongIdSet nodes = new LongIdSet();
+    private final LongIdSet ways = new LongIdSet();
+    private final LongIdSet relations = new LongIdSet();
+    private boolean scanning = true;
+
+    ImportSelection(ImportFilter filter) {
+        this.filter = filter;
+    }
+
+    ImportFilter getFilter() {
+        return filter;
+    }
+
+    void scanNode(NodeData nd) {
+        if (filter.matchesLocation(nd.lat(), nd.lon())) {
+            if (filter.hasBounds()) {
+                add(nodesInBounds, nd.getUniqueId());
+            }
+            if (filter.matchesTags(nd)) {
+                nodes.add(nd.getUniqueId());
+            }
+        }
+    }
+
+    void scanWay(WayData wd, long[] nodeIds) {
+        boolean inBounds = !filter.hasBounds();
+        if (!inBounds) {
+            nodesInBounds.freeze();
+            for (long id : nodeIds) {
+                if (nodesInBounds.contains(id)) {
+                    inBounds = true;
+                    break;
+                }
+            }
+        }
+        if (inBounds) {
+            if (filter.hasBounds()) {
+                add(waysInBounds, wd.getUniqueId());
+            }
+            if (filter.matchesTags(wd)) {
+                ways.add(wd.getUniqueId());
+                for (long id : nodeIds) {
+                    nodes.add(id);
+                }
+            }
+        }
+    }
+
+    void scanRelation(RelationData rd, Collection<RelationMemberData> members) {
+        if (!filter.matchesTags(rd)) {
+            return;
+        }
+        boolean inBounds = !filter.hasBounds();
+        if (!inBounds) {
+            nodesInBounds.freeze();
+            waysInBounds.freeze();
+            for (RelationMemberData member : members) {
+                if ((member.getMemberType() == OsmPrimitiveType.NODE && nodesInBounds.contains(member.getMemberId()))
+                 || (member.getMemberType() == OsmPrimitiveType.WAY && waysInBounds.contains(member.getMemberId()))) {
+                    inBounds = true;
+                    break;
+                }
+            }
+        }
+        if (inBounds) {
+            relations.add(rd.getUniqueId());
+        }
+    }
+
+    private static void add(LongIdSet set, long id) {
+        try {
+            set.add(id);
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(tr("Filtered import requires nodes, then ways, then relations"), e);
+        }
+    }
+
+    /**
+     * Ends the first pass. The selection cannot be modified anymore.
+     */
+    void finishScan() {
+        nodesInBounds.freeze();
+        waysInBounds.freeze();
+        nodes.freeze();
+        ways.freeze();
+        relations.freeze();
+        scanning = false;
+    }
+
+    boolean isScanning() {
+        return scanning;
+    }
+
+    boolean acceptNode(long id) {
+        return scanning || nodes.contains(id);
+    }
+
+    boolean acceptWay(long id) {
+        return scanning || ways.contains(id);
+    }
+
+    boolean acceptRelation(long id) {
+        return scanning || relations.contains(id);
+    }
+}
@@ -0,0 +1,138 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import java.util.Arrays;
+
+import org.openstreetmap.josm.data.osm.Node;
+
+/**
+ * Index of parsed nodes by external id, used to resolve way nodes without boxing ids.
+ * <p>
+ * Nodes are stored in parsing order. Ids are kept in a sorted {@code long} array, with an {@code int} array
+ * giving the slot of each node. Files sorted by id (the usual case) do not need the slot array.
+ */
+final class NodeIndex {
+
+    private long[] ids = new long[1024];
+    private Node[] nodes = new Node[1024];
+    /** Slot of the node of each sorted id, or {@code null} if nodes were added in id order */
+    private int[] slots;
+    private int size;
+    private boolean sorted = true;
+    private boolean frozen;
+
+    /**
+     * Adds a node to the index.
+     * @param id external node id
+     * @param node node
+     * @throws IllegalStateException if the index is frozen
+     */
+    void add(long id, Node node) {
+        if (frozen) {
+            throw new IllegalStateException("Frozen index");
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size + (size >> 1));
+            nodes = Arrays.copyOf(nodes, ids.length);
+        }
+        if (size > 0 && id <= ids[size - 1]) {
+            sorted = false;
+        }
+        ids[size] = id;
+        nodes[size++] = node;
+    }
+
+    /**
+     * Sorts the index if needed. The index cannot be modified anymore.
+     */
+    void freeze() {
+        if (!frozen) {
+            if (!sorted) {
+                slots = new int[size];
+                for (int i = 0; i < size; i++) {
+                    slots[i] = i;
+                }
+                sort(ids, slots, 0, size - 1);
+            }
+            frozen = true;
+        }
+    }
+
+    /**
+     * Returns the node with the given external id.
+     * @param id external node id
+     * @return the node, or {@code null}
+     * @throws IllegalStateException if the index is not frozen
+     */
+    Node get(long id) {
+        if (!frozen) {
+            throw new IllegalStateException("Index must be frozen");
+        }
+        int i = Arrays.binarySearch(ids, 0, size, id);
+        if (i < 0) {
+            return null;
+        }
+        return nodes[slots == null ? i : slots[i]];
+    }
+
+    /**
+     * Returns a node in the order of addition.
+     * @param index position of the node, from 0 to {@link #size()} - 1
+     * @return the node added at this position
+     */
+    Node getAt(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * Returns the number of indexed nodes.
+     * @return the number of indexed nodes
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Sorts ids and their slots in place, by ascending id.
+     */
+    private static void sort(long[] ids, int[] slots, int from, int to) {
+        while (to - from > 16) {
+            long pivot = ids[(from + to) >>> 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (ids[i] < pivot) {
+                    i++;
+                }
+                while (ids[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(ids, slots, i++, j--);
+                }
+            }
+            // Recurse into the smaller part to bound the stack depth
+            if (j - from < to - i) {
+                sort(ids, slots, from, j);
+                from = i;
+            } else {
+                sort(ids, slots, i, to);
+                to = j;
+            }
+        }
+        for (int i = from + 1; i <= to; i++) {
+            for (int j = i; j > from && ids[j - 1] > ids[j]; j--) {
+                swap(ids, slots, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(long[] ids, int[] slots, int i, int j) {
+        long id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        int slot = slots[i];
+        slots[i] = slots[j];
+        slots[j] = slot;
+    }
+}
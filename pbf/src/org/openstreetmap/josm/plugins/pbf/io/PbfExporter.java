@@ -5,10 +5,12 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.zip.Deflater;
 
 import org.openstreetmap.josm.gui.io.importexport.OsmExporter;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.plugins.pbf.PbfConstants;
+import org.openstreetmap.josm.spi.preferences.Config;
 
 /**
  * Exports data to a .pbf file.
@@ -29,6 +31,10 @@ public class PbfExporter extends OsmExporter {
             OutputStream out = new FileOutputStream(file);
             PbfWriter w = new PbfWriter(out);
         ) {
+            w.setThreads(Math.max(1, Config.getPref().getInt(PbfWriter.PREF_THREADS, 1)));
+            w.setBlockSize(Config.getPref().getInt(PbfWriter.PREF_BLOCK_SIZE, PbfWriter.DEFAULT_BLOCK_SIZE));
+            w.setCompressionLevel(Config.getPref().getInt(PbfWriter.PREF_COMPRESSION_LEVEL, Deflater.DEFAULT_COMPRESSION));
+            w.setCompress(Config.getPref().getBoolean(PbfWriter.PREF_COMPRESS, true));
             layer.data.getReadLock().lock();
             try {
                 w.writeLayer(layer);
@@ -1,23 +1,34 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.pbf.io;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.gui.io.importexport.OsmImporter;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.CachedFile;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.plugins.pbf.PbfConstants;
+import org.openstreetmap.josm.spi.preferences.Config;
 
 /**
  * Imports data from a .pbf file.
+ * <p>
+ * Local files are imported with the filter defined in preferences, if any, see {@link ImportFilter#fromPreferences}.
+ * The user can edit it, or import the whole file, when a large file is imported, see {@link ImportFilterDialog}.
  * @author Don-vip
  */
 public class PbfImporter extends OsmImporter {
 
+    /**
+     * Preference key prefix of the import filter.
+     */
+    public static final String PREF_FILTER = "pbf.import.filter";
+
     /**
      * Constructs a new {@code PbfImporter}.
      */
@@ -25,9 +36,39 @@ public class PbfImporter extends OsmImporter {
         super(PbfConstants.FILE_FILTER);
     }
 
+    @Override
+    public OsmImporterData loadLayer(InputStream in, File associatedFile, String layerName, ProgressMonitor progressMonitor)
+            throws IllegalDataException {
+        final DataSet dataSet = parseDataSet(in, associatedFile, progressMonitor);
+        OsmDataLayer layer = createLayer(dataSet, associatedFile, layerName);
+        return new OsmImporterData(layer, createPostLayerTask(dataSet, associatedFile, layerName, layer));
+    }
+
     @Override
     protected DataSet parseDataSet(InputStream in, ProgressMonitor progressMonitor) throws IllegalDataException {
-        return PbfReader.parseDataSet(in, progressMonitor);
+        return parseDataSet(in, null, progressMonitor);
+    }
+
+    /**
+     * Parses a data set, with the import filter if the data comes from a local file.
+     * @param in input stream of the data
+     * @param file local file read by {@code in}, can be {@code null}
+     * @param progressMonitor progress monitor
+     * @return the data set
+     * @throws IllegalDataException if the data is invalid
+     */
+    private static DataSet parseDataSet(InputStream in, File file, ProgressMonitor progressMonitor) throws IllegalDataException {
+        int threads = Config.getPref().getInt(PbfReader.PREF_DECODING_THREADS, 1);
+        PbfReader.Options[] options = Config.getPref().getBoolean(PbfReader.PREF_COMPACT_REFERENCES, false)
+                ? new PbfReader.Options[] {PbfReader.Options.COMPACT_REFERENCES}
+                : new PbfReader.Options[0];
+        if (file != null && file.isFile()) {
+            ImportFilter filter = ImportFilterDialog.getFilter(PREF_FILTER, file);
+            if (filter != null) {
+                return PbfReader.parseDataSet(file.toPath(), filter, progressMonitor, threads, options);
+            }
+        }
+        return PbfReader.parseDataSet(in, progressMonitor, threads, options);
     }
 
     protected DataSet parseDataSet(final String source) throws IOException, IllegalDataException {
@@ -0,0 +1,175 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import org.openstreetmap.josm.io.IllegalDataException;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+import crosby.binary.Fileformat;
+
+/**
+ * A PBF file block as found on disk: its type and the still serialized (and possibly compressed) blob.
+ * <p>
+ * Unlike {@link crosby.binary.file.BlockInputStream}, reading a raw block does not inflate it,
+ * so decompression can be deferred to another thread. Likewise, blocks can be encoded by any thread
+ * before being written in order.
+ */
+final class PbfRawBlock {
+
+    /** Type of header blocks */
+    static final String OSM_HEADER = "OSMHeader";
+    /** Type of data blocks */
+    static final String OSM_DATA = "OSMData";
+
+    /** Maximum size of a blob header, as defined by the PBF specification */
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+    /** Maximum size of a blob, as defined by the PBF specification */
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+
+    private final String type;
+    private final byte[] blob;
+    private final long position;
+    private final int size;
+
+    private PbfRawBlock(String type, byte[] blob, long position, int size) {
+        this.type = type;
+        this.blob = blob;
+        this.position = position;
+        this.size = size;
+    }
+
+    /**
+     * Reads the next block from the given stream.
+     * @param in input stream
+     * @param position offset of the block in the file, for error reporting
+     * @return the next block, or {@code null} at end of stream
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalDataException if the block framing is invalid
+     */
+    static PbfRawBlock read(DataInputStream in, long position) throws IOException, IllegalDataException {
+        int headerSize;
+        try {
+            headerSize = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (headerSize < 0 || headerSize > MAX_HEADER_SIZE) {
+            throw new IllegalDataException(tr("Invalid PBF block header size {0} at offset {1}", headerSize, position));
+        }
+        byte[] header = new byte[headerSize];
+        in.readFully(header);
+        Fileformat.BlobHeader blobHeader = Fileformat.BlobHeader.parseFrom(header);
+        int dataSize = blobHeader.getDatasize();
+        if (dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+            throw new IllegalDataException(tr("Invalid PBF block size {0} at offset {1}", dataSize, position));
+        }
+        byte[] data = new byte[dataSize];
+        in.readFully(data);
+        return new PbfRawBlock(blobHeader.getType(), data, position, 4 + headerSize + dataSize);
+    }
+
+    /**
+     * Returns the block type.
+     * @return the block type ({@link #OSM_HEADER}, {@link #OSM_DATA} or unknown)
+     */
+    String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the offset of the block in the file.
+     * @return the offset of the block in the file
+     */
+    long getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the number of bytes this block occupies in the file, framing included.
+     * @return the number of bytes this block occupies in the file
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Decodes the blob and inflates it if needed.
+     * @return the uncompressed block data
+     * @throws IOException if the blob cannot be decoded
+     * @throws IllegalDataException if the blob uses an unsupported compression
+     */
+    ByteString getData() throws IOException, IllegalDataException {
+        Fileformat.Blob b = Fileformat.Blob.parseFrom(blob);
+        if (b.hasRaw()) {
+            return b.getRaw();
+        } else if (b.hasZlibData()) {
+            byte[] result = new byte[b.getRawSize()];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(b.getZlibData().toByteArray());
+                int n = inflater.inflate(result);
+                if (n != result.length || !inflater.finished()) {
+                    throw new IllegalDataException(tr("Invalid compressed PBF block at offset {0}", position));
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalDataException(e);
+            } finally {
+                inflater.end();
+            }
+            // The array is not shared, no need to copy it
+            return UnsafeByteOperations.unsafeWrap(result);
+        }
+        throw new IllegalDataException(tr("Unsupported PBF block compression at offset {0}", position));
+    }
+
+    /**
+     * Encodes a block, with its framing, as it must be written in the file.
+     * @param type block type ({@link #OSM_HEADER} or {@link #OSM_DATA})
+     * @param data uncompressed block data
+     * @param compress {@code true} to compress the blob with zlib, {@code false} to write it raw
+     * @param level zlib compression level, see {@link Deflater#setLevel(int)}
+     * @return the encoded block
+     * @throws IOException if the blob cannot be encoded
+     */
+    static byte[] encode(String type, ByteString data, boolean compress, int level) throws IOException {
+        Fileformat.Blob.Builder blob = Fileformat.Blob.newBuilder();
+        if (compress) {
+            Deflater deflater = new Deflater(level);
+            try {
+                ByteString.Output compressed = ByteString.newOutput(data.size() / 2 + 64);
+                try (DeflaterOutputStream zout = new DeflaterOutputStream(compressed, deflater)) {
+                    data.writeTo(zout);
+                }
+                blob.setRawSize(data.size()).setZlibData(compressed.toByteString());
+            } finally {
+                deflater.end();
+            }
+        } else {
+            blob.setRaw(data);
+        }
+        ByteString blobData = blob.build().toByteString();
+        if (blobData.size() > MAX_BLOB_SIZE) {
+            throw new IOException(tr("PBF block too large: {0} bytes", blobData.size()));
+        }
+        Fileformat.BlobHeader header = Fileformat.BlobHeader.newBuilder().setType(type).setDatasize(blobData.size()).build();
+        ByteArrayOutputStream result = new ByteArrayOutputStream(4 + header.getSerializedSize() + blobData.size());
+        DataOutputStream out = new DataOutputStream(result);
+        out.writeInt(header.getSerializedSize());
+        header.writeTo(out);
+        blobData.writeTo(out);
+        return result.toByteArray();
+    }
+}
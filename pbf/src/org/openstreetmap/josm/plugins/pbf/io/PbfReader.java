@@ -3,34 +3,53 @@ package org.openstreetmap.josm.plugins.pbf.io;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.DataSource;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.AbstractPrimitive;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.NodeData;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.PrimitiveData;
 import org.openstreetmap.josm.data.osm.RelationData;
 import org.openstreetmap.josm.data.osm.RelationMemberData;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
+import org.openstreetmap.josm.data.osm.TagMap;
 import org.openstreetmap.josm.data.osm.UploadPolicy;
 import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.data.osm.WayData;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.AbstractReader;
+import org.openstreetmap.josm.io.Compression;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.io.ImportCancelException;
 import org.openstreetmap.josm.tools.CheckParameterUtil;
 import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
 
 import crosby.binary.BinaryParser;
 import crosby.binary.Osmformat;
@@ -49,10 +68,22 @@ import crosby.binary.file.FileBlockPosition;
  */
 public class PbfReader extends AbstractReader {
 
+    /**
+     * Preference key of the number of threads used to decode PBF blocks. {@code 1} means serial decoding.
+     */
+    public static final String PREF_DECODING_THREADS = "pbf.reader.threads";
+
+    /**
+     * Preference key enabling {@link Options#COMPACT_REFERENCES}.
+     */
+    public static final String PREF_COMPACT_REFERENCES = "pbf.reader.compact-references";
+
     protected class PbfParser extends BinaryParser {
 
-        private IllegalDataException exception;
-        private boolean discourageUpload;
+        IllegalDataException exception;
+        boolean discourageUpload;
+        /** Users of the current block, indexed by string id of their name */
+        private User[] userCache = new User[64];
         private double parseRawDegrees(long raw) {
             return raw * .000000001;
         }
@@ -72,7 +103,13 @@ public class PbfReader extends AbstractReader {
                 }
             }
 
-            if (header.hasBbox()) {
+            if (selection != null) {
+                // Filtered data is only complete inside the filter bounds, if any
+                Bounds b = selection.getFilter().getDataSourceBounds();
+                if (b != null) {
+                    ds.addDataSource(new DataSource(b, header.getSource()));
+                }
+            } else if (header.hasBbox()) {
                 HeaderBBox bbox = header.getBbox();
                     double minlat = parseRawDegrees(bbox.getBottom());
                     double minlon = parseRawDegrees(bbox.getLeft());
@@ -87,6 +124,67 @@ public class PbfReader extends AbstractReader {
             }
         }
 
+        void parseHeader(HeaderBlock header) {
+            parse(header);
+        }
+
+        void parseBlock(Osmformat.PrimitiveBlock block) {
+            parse(block);
+        }
+
+        /**
+         * Determines if the node with the given id must be decoded.
+         * @param id node id
+         * @return {@code true} if the node must be decoded
+         */
+        protected boolean acceptNode(long id) {
+            return selection == null || selection.acceptNode(id);
+        }
+
+        /**
+         * Determines if the way with the given id must be decoded.
+         * @param id way id
+         * @return {@code true} if the way must be decoded
+         */
+        protected boolean acceptWay(long id) {
+            return selection == null || selection.acceptWay(id);
+        }
+
+        /**
+         * Determines if the relation with the given id must be decoded.
+         * @param id relation id
+         * @return {@code true} if the relation must be decoded
+         */
+        protected boolean acceptRelation(long id) {
+            return selection == null || selection.acceptRelation(id);
+        }
+
+        /**
+         * Called for each decoded node.
+         * @param nd node data
+         */
+        protected void onNode(NodeData nd) {
+            addNode(nd);
+        }
+
+        /**
+         * Called for each decoded way.
+         * @param wd way data
+         * @param nodeIds ids of way nodes
+         */
+        protected void onWay(WayData wd, long[] nodeIds) {
+            addWay(wd, nodeIds);
+        }
+
+        /**
+         * Called for each decoded relation.
+         * @param rd relation data
+         * @param members relation members
+         */
+        protected void onRelation(RelationData rd, Collection<RelationMemberData> members) {
+            addRelation(rd, members);
+        }
+
         private boolean areCoordinatesValid(double minlat, double minlon, double maxlat, double maxlon) {
             return LatLon.isValidLat(minlat) && LatLon.isValidLat(maxlat)
                 && LatLon.isValidLon(minlon) && LatLon.isValidLon(maxlon);
@@ -129,12 +227,35 @@ public class PbfReader extends AbstractReader {
             }
         }
 
+        /**
+         * Returns the user for the given uid and user name string id, using the current block cache.
+         * @param uid user id
+         * @param sid string id of user name
+         * @return the user
+         */
+        private User getUser(int uid, int sid) {
+            if (sid >= userCache.length) {
+                userCache = Arrays.copyOf(userCache, Math.max(sid + 1, 2 * userCache.length));
+            }
+            User user = userCache[sid];
+            if (user == null || user.getId() != uid) {
+                user = User.createOsmUser(uid, getStringById(sid));
+                userCache[sid] = user;
+            }
+            return user;
+        }
+
         @Override
         protected void parseDense(DenseNodes nodes) {
-            if (!nodes.hasDenseinfo())
+            final boolean hasDenseInfo = nodes.hasDenseinfo();
+            if (!hasDenseInfo)
                 discourageUpload = true;
             if (exception == null) {
                 try {
+                    // String ids are only valid in the current block
+                    Arrays.fill(userCache, null);
+                    final DenseInfo info = hasDenseInfo ? nodes.getDenseinfo() : null;
+                    final int keysValsCount = nodes.getKeysValsCount();
                     int keyIndex = 0;
                     // Almost all data is DELTA coded
                     long nodeId = 0;
@@ -144,53 +265,79 @@ public class PbfReader extends AbstractReader {
                     int uid = 0;
                     int suid = 0;
                     long timestamp = 0;
+                    // Consecutive nodes often share the same timestamp, share the same instance too
+                    long lastTimestamp = -1;
+                    Instant instant = null;
                     for (int i = 0; i < nodes.getIdCount(); i++) {
-                        // Id (delta) and version (normal)
+                        // All delta coded values must be decoded, even for nodes that are skipped
                         nodeId += nodes.getId(i);
-                        NodeData nd = new NodeData(nodeId);
-                        nd.setVersion(nodes.hasDenseinfo() ? nodes.getDenseinfo().getVersion(i) : 1);
-                        // Lat/Lon (delta)
                         nodeLat += nodes.getLat(i);
                         nodeLon += nodes.getLon(i);
-                        nd.setCoor(new LatLon(parseLat(nodeLat), parseLon(nodeLon)).getRoundedToOsmPrecision());
-                        checkCoordinates(nd.getCoor());
-                        if (nodes.hasDenseinfo()) {
-                            DenseInfo info = nodes.getDenseinfo();
-                            // Changeset (delta)
-                            if (info.getChangesetCount() > i) {
-                                changesetId += info.getChangeset(i);
-                                checkChangesetId(changesetId);
-                                nd.setChangesetId((int) changesetId);
-                            }
-                            // User (delta)
-                            if (info.getUidCount() > i && info.getUserSidCount() > i) {
-                                uid += info.getUid(i);
-                                suid += info.getUserSid(i);
-                                nd.setUser(User.createOsmUser(uid, getStringById(suid)));
-                            }
-                            // Timestamp (delta)
-                            if (info.getTimestampCount() > i) {
-                                timestamp += info.getTimestamp(i);
-                                checkTimestamp(timestamp);
-                                nd.setInstant(new Date(date_granularity * timestamp).toInstant());
-                            }
+                        final boolean hasChangeset = hasDenseInfo && info.getChangesetCount() > i;
+                        final boolean hasUser = hasDenseInfo && info.getUidCount() > i && info.getUserSidCount() > i;
+                        final boolean hasTimestamp = hasDenseInfo && info.getTimestampCount() > i;
+                        if (hasChangeset) {
+                            changesetId += info.getChangeset(i);
+                        }
+                        if (hasUser) {
+                            uid += info.getUid(i);
+                            suid += info.getUserSid(i);
+                        }
+                        if (hasTimestamp) {
+                            timestamp += info.getTimestamp(i);
                         }
                         // A single table contains all keys/values of all nodes.
                         // Each node's tags are encoded in alternating <key_id> <value_id>.
                         // A single stringid of 0 delimit when the tags of a node ends and the tags of the next node begin.
-                        Map<String, String> keys = new HashMap<>();
-                        while (keyIndex < nodes.getKeysValsCount()) {
-                            int keyId = nodes.getKeysVals(keyIndex++);
-                            if (keyId == 0) {
-                                break; // End of current node's tags
-                            } else if (keyIndex < nodes.getKeysValsCount()) {
-                                keys.put(getStringById(keyId), getStringById(nodes.getKeysVals(keyIndex++)));
-                            } else {
+                        final int start = keyIndex;
+                        int end = keyIndex;
+                        while (end < keysValsCount && nodes.getKeysVals(end) != 0) {
+                            if (end + 1 >= keysValsCount) {
                                 throw new IllegalDataException(tr("Invalid DenseNodes key/values table"));
                             }
+                            end += 2;
                         }
-                        nd.setKeys(keys);
-                        buildPrimitive(nd);
+                        // Skip end of current node's tags
+                        keyIndex = end < keysValsCount ? end + 1 : end;
+                        if (!acceptNode(nodeId)) {
+                            continue;
+                        }
+                        // Id (delta) and version (normal)
+                        NodeData nd = new NodeData(nodeId);
+                        nd.setVersion(hasDenseInfo ? info.getVersion(i) : 1);
+                        // Lat/Lon (delta), rounded without an intermediate LatLon
+                        LatLon coor = new LatLon(
+                                LatLon.roundToOsmPrecision(parseLat(nodeLat)),
+                                LatLon.roundToOsmPrecision(parseLon(nodeLon)));
+                        checkCoordinates(coor);
+                        nd.setCoor(coor);
+                        // Changeset (delta)
+                        if (hasChangeset) {
+                            checkChangesetId(changesetId);
+                            nd.setChangesetId((int) changesetId);
+                        }
+                        // User (delta)
+                        if (hasUser) {
+                            nd.setUser(getUser(uid, suid));
+                        }
+                        // Timestamp (delta)
+                        if (hasTimestamp) {
+                            checkTimestamp(timestamp);
+                            if (timestamp != lastTimestamp) {
+                                instant = Instant.ofEpochMilli(date_granularity * timestamp);
+                                lastTimestamp = timestamp;
+                            }
+                            nd.setInstant(instant);
+                        }
+                        // Most nodes have no tags: do not allocate anything for them
+                        if (end > start) {
+                            String[] tags = new String[end - start];
+                            for (int j = 0; j < tags.length; j++) {
+                                tags[j] = getStringById(nodes.getKeysVals(start + j));
+                            }
+                            nd.setKeys(new TagMap(tags));
+                        }
+                        onNode(nd);
                     }
                 } catch (IllegalDataException e) {
                     exception = e;
@@ -203,6 +350,8 @@ public class PbfReader extends AbstractReader {
             if (exception == null) {
                 try {
                     for (Osmformat.Node n : osmNodes) {
+                        if (!acceptNode(n.getId()))
+                            continue;
                         final Info info = n.getInfo();
                         if (!info.hasVersion())
                             discourageUpload = true;
@@ -216,7 +365,7 @@ public class PbfReader extends AbstractReader {
                             keys.put(getStringById(n.getKeys(i)), getStringById(n.getVals(i)));
                         }
                         nd.setKeys(keys);
-                        buildPrimitive(nd);
+                        onNode(nd);
                     }
                 } catch (IllegalDataException e) {
                     exception = e;
@@ -229,6 +378,8 @@ public class PbfReader extends AbstractReader {
             if (exception == null) {
                 try {
                     for (Osmformat.Way w : osmWays) {
+                        if (!acceptWay(w.getId()))
+                            continue;
                         final Info info = w.getInfo();
                         if (!info.hasVersion())
                             discourageUpload = true;
@@ -241,13 +392,12 @@ public class PbfReader extends AbstractReader {
                         }
                         wd.setKeys(keys);
                         long id = 0; // Node ids are delta coded
-                        Collection<Long> nodeIds = new ArrayList<>();
-                        for (Long idDelta : w.getRefsList()) {
-                            id += idDelta;
-                            nodeIds.add(id);
+                        long[] nodeIds = new long[w.getRefsCount()];
+                        for (int i = 0; i < nodeIds.length; i++) {
+                            id += w.getRefs(i);
+                            nodeIds[i] = id;
                         }
-                        ways.put(wd.getUniqueId(), nodeIds);
-                        buildPrimitive(wd);
+                        onWay(wd, nodeIds);
                     }
                 } catch (IllegalDataException e) {
                     exception = e;
@@ -260,6 +410,8 @@ public class PbfReader extends AbstractReader {
             if (exception == null) {
                 try {
                     for (Osmformat.Relation r : osmRels) {
+                        if (!acceptRelation(r.getId()))
+                            continue;
                         final Info info = r.getInfo();
                         if (!info.hasVersion())
                             discourageUpload = true;
@@ -280,15 +432,13 @@ public class PbfReader extends AbstractReader {
                                     mapOsmType(r.getTypes(i)),
                                     memId));
                         }
-                        relations.put(rd.getUniqueId(), members);
-                        buildPrimitive(rd);
+                        onRelation(rd, members);
                     }
                 } catch (IllegalDataException e) {
                     exception = e;
                 }
             }
-            if (discourageUpload)
-                ds.setUploadPolicy(UploadPolicy.DISCOURAGED);
+            complete();
         }
 
         private OsmPrimitiveType mapOsmType(MemberType type) {
@@ -311,7 +461,186 @@ public class PbfReader extends AbstractReader {
         }
     }
 
-    private PbfParser parser = new PbfParser();
+    /**
+     * Decodes a single data block into a detached batch of primitives, merged later in file order.
+     */
+    private final class BlockDecoder extends PbfParser {
+        private final List<PrimitiveData> primitives = new ArrayList<>();
+        private final List<long[]> wayNodes = new ArrayList<>();
+        private final List<Collection<RelationMemberData>> relationMembers = new ArrayList<>();
+
+        @Override
+        protected void onNode(NodeData nd) {
+            primitives.add(nd);
+        }
+
+        @Override
+        protected void onWay(WayData wd, long[] nodeIds) {
+            primitives.add(wd);
+            wayNodes.add(nodeIds);
+        }
+
+        @Override
+        protected void onRelation(RelationData rd, Collection<RelationMemberData> members) {
+            primitives.add(rd);
+            relationMembers.add(members);
+        }
+
+        @Override
+        public void complete() {
+            // Upload policy is set once all blocks have been merged
+        }
+    }
+
+    /**
+     * Builds the selection of a filtered import, during the first pass.
+     */
+    private final class SelectionScanner extends PbfParser {
+        private final ImportSelection scanSelection;
+
+        SelectionScanner(ImportSelection scanSelection) {
+            this.scanSelection = scanSelection;
+        }
+
+        @Override
+        protected void parse(HeaderBlock header) {
+            // Header is handled during the second pass
+        }
+
+        @Override
+        protected void onNode(NodeData nd) {
+            scanSelection.scanNode(nd);
+        }
+
+        @Override
+        protected void onWay(WayData wd, long[] nodeIds) {
+            scanSelection.scanWay(wd, nodeIds);
+        }
+
+        @Override
+        protected void onRelation(RelationData rd, Collection<RelationMemberData> members) {
+            scanSelection.scanRelation(rd, members);
+        }
+
+        @Override
+        public void complete() {
+            // Upload policy is set during the second pass
+        }
+    }
+
+    /**
+     * Way with the external ids of its nodes.
+     */
+    private static final class CompactWay {
+        private final Way way;
+        private final long[] nodeIds;
+
+        CompactWay(Way way, long[] nodeIds) {
+            this.way = way;
+            this.nodeIds = nodeIds;
+        }
+    }
+
+    /**
+     * Way node ids of the default mode, seen as the collection expected by {@link AbstractReader} without copying them.
+     */
+    private static final class WayNodeIds extends AbstractList<Long> implements RandomAccess {
+        private final long[] ids;
+
+        WayNodeIds(long[] ids) {
+            this.ids = ids;
+        }
+
+        @Override
+        public Long get(int index) {
+            return ids[index];
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+
+    /**
+     * Relation members stored as arrays.
+     */
+    private static final class CompactMembers {
+        private static final OsmPrimitiveType[] TYPES = OsmPrimitiveType.values();
+        private final long[] ids;
+        private final byte[] types;
+        private final String[] roles;
+
+        CompactMembers(Collection<RelationMemberData> members) {
+            ids = new long[members.size()];
+            types = new byte[ids.length];
+            roles = new String[ids.length];
+            int i = 0;
+            for (RelationMemberData member : members) {
+                ids[i] = member.getMemberId();
+                types[i] = (byte) member.getMemberType().ordinal();
+                roles[i++] = member.getRole();
+            }
+        }
+
+        Collection<RelationMemberData> toMemberData() {
+            List<RelationMemberData> members = new ArrayList<>(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                members.add(new RelationMemberData(roles[i], TYPES[types[i]], ids[i]));
+            }
+            return members;
+        }
+    }
+
+    /**
+     * Reader options.
+     */
+    public enum Options {
+        /**
+         * Store way nodes and relation members in primitive arrays instead of boxed collections,
+         * and resolve way nodes through a sorted node index instead of hash lookups.
+         */
+        COMPACT_REFERENCES
+    }
+
+    private final PbfParser parser = new PbfParser();
+    private final int threads;
+    /** Nodes by external id, in compact mode */
+    private final NodeIndex nodeIndex;
+    /** Ways and node ids, in compact mode */
+    private final List<CompactWay> compactWays;
+    /** Relation ids and members, in compact mode */
+    private final List<Long> relationIds;
+    private final List<CompactMembers> compactRelations;
+    /** Selected primitives of a filtered import, or {@code null} */
+    private ImportSelection selection;
+
+    /**
+     * Constructs a new {@code PbfReader} decoding blocks serially.
+     */
+    public PbfReader() {
+        this(1);
+    }
+
+    /**
+     * Constructs a new {@code PbfReader}.
+     * @param threads number of threads used to decode blocks. {@code 1} or less means serial decoding
+     * @param options reader options
+     */
+    public PbfReader(int threads, Options... options) {
+        this.threads = threads;
+        if (Arrays.asList(options).contains(Options.COMPACT_REFERENCES)) {
+            nodeIndex = new NodeIndex();
+            compactWays = new ArrayList<>();
+            relationIds = new ArrayList<>();
+            compactRelations = new ArrayList<>();
+        } else {
+            nodeIndex = null;
+            compactWays = null;
+            relationIds = null;
+            compactRelations = null;
+        }
+    }
 
     /**
      * Parse the given input source and return the dataset.
@@ -324,9 +653,94 @@ public class PbfReader extends AbstractReader {
      * @throws IllegalArgumentException thrown if source is null
      */
     public static DataSet parseDataSet(InputStream source, ProgressMonitor progressMonitor) throws IllegalDataException {
+        return parseDataSet(source, progressMonitor, 1);
+    }
+
+    /**
+     * Parse the given input source and return the dataset.
+     *
+     * @param source the source input stream. Must not be null.
+     * @param progressMonitor  the progress monitor. If null, {link NullProgressMonitor#INSTANCE} is assumed
+     * @param threads number of threads used to decode blocks. {@code 1} or less means serial decoding
+     * @param options reader options
+     *
+     * @return the dataset with the parsed data
+     * @throws IllegalDataException thrown if the an error was found while parsing the data from the source
+     * @throws IllegalArgumentException thrown if source is null
+     */
+    public static DataSet parseDataSet(InputStream source, ProgressMonitor progressMonitor, int threads, Options... options)
+            throws IllegalDataException {
         ProgressMonitor monitor = progressMonitor == null ? NullProgressMonitor.INSTANCE : progressMonitor;
         CheckParameterUtil.ensureParameterNotNull(source, "source");
-        return new PbfReader().doParseDataSet(source, monitor);
+        return new PbfReader(threads, options).doParseDataSet(source, monitor);
+    }
+
+    /**
+     * Parse the given file with a filter and return the dataset.
+     * <p>
+     * The file is read twice: the first pass selects the primitives to load, the second pass only decodes them.
+     * Memory usage thus depends on the size of the selection, not on the size of the file.
+     *
+     * @param file the source file, where nodes come before ways and ways before relations. Must not be null.
+     * @param filter the import filter. Must not be null.
+     * @param progressMonitor  the progress monitor. If null, {link NullProgressMonitor#INSTANCE} is assumed
+     * @param threads number of threads used to decode blocks. {@code 1} or less means serial decoding
+     * @param options reader options
+     *
+     * @return the dataset with the filtered data
+     * @throws IllegalDataException thrown if the an error was found while parsing the data from the source
+     * @throws IllegalArgumentException thrown if file or filter is null
+     */
+    public static DataSet parseDataSet(Path file, ImportFilter filter, ProgressMonitor progressMonitor, int threads,
+            Options... options) throws IllegalDataException {
+        ProgressMonitor monitor = progressMonitor == null ? NullProgressMonitor.INSTANCE : progressMonitor;
+        CheckParameterUtil.ensureParameterNotNull(file, "file");
+        CheckParameterUtil.ensureParameterNotNull(filter, "filter");
+        PbfReader reader = new PbfReader(threads, options);
+        monitor.beginTask(tr("Prepare OSM data..."), 2);
+        try {
+            reader.scan(file, filter, monitor.createSubTaskMonitor(1, false));
+            try (InputStream in = Compression.getUncompressedFileInputStream(file)) {
+                return reader.doParseDataSet(in, monitor.createSubTaskMonitor(1, false));
+            }
+        } catch (IOException e) {
+            throw new IllegalDataException(e);
+        } finally {
+            monitor.finishTask();
+        }
+    }
+
+    /**
+     * First pass of a filtered import: selects the primitives to load.
+     * @param file the source file
+     * @param filter the import filter
+     * @param monitor the progress monitor
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalDataException if invalid data is found or if the import is canceled
+     */
+    private void scan(Path file, ImportFilter filter, ProgressMonitor monitor) throws IOException, IllegalDataException {
+        ProgressMonitor.CancelListener cancelListener = () -> cancel = true;
+        monitor.addCancelListener(cancelListener);
+        try {
+            monitor.beginTask(tr("Selecting OSM data..."));
+            monitor.indeterminateSubTask(tr("Selecting OSM data..."));
+            ImportSelection scanSelection = new ImportSelection(filter);
+            SelectionScanner scanner = new SelectionScanner(scanSelection);
+            try (InputStream in = Compression.getUncompressedFileInputStream(file)) {
+                new BlockInputStream(in, scanner).process();
+            }
+            if (scanner.exception != null) {
+                throw scanner.exception;
+            }
+            if (cancel) {
+                throw new IllegalDataException(new ParsingCancelException(tr("Import was canceled")));
+            }
+            scanSelection.finishScan();
+            selection = scanSelection;
+        } finally {
+            monitor.finishTask();
+            monitor.removeCancelListener(cancelListener);
+        }
     }
 
     @Override
@@ -366,12 +780,232 @@ public class PbfReader extends AbstractReader {
 
     @SuppressWarnings("resource")
     public void parse(InputStream source) throws IOException, IllegalDataException {
-        new BlockInputStream(source, parser).process();
+        if (threads > 1) {
+            parseParallel(source);
+        } else {
+            new BlockInputStream(source, parser).process();
+        }
         if (parser.exception != null) {
             throw parser.exception;
         }
     }
 
+    /**
+     * Parses the given input source with a pool of decoding threads.
+     * The calling thread reads the raw blocks, workers inflate and decode them,
+     * and the calling thread merges decoded blocks in file order, so that the result is identical to serial parsing.
+     * @param source the source input stream
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalDataException if invalid data is found
+     */
+    private void parseParallel(InputStream source) throws IOException, IllegalDataException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                Utils.newThreadFactory("pbf-decoder-%d", Thread.NORM_PRIORITY));
+        Deque<Future<BlockDecoder>> pending = new ArrayDeque<>();
+        try {
+            DataInputStream in = new DataInputStream(source);
+            long position = 0;
+            PbfRawBlock block;
+            while (!cancel && (block = PbfRawBlock.read(in, position)) != null) {
+                position += block.getSize();
+                if (PbfRawBlock.OSM_HEADER.equals(block.getType())) {
+                    // Header blocks update the data set, merge everything decoded before
+                    mergePending(pending, 0);
+                    parser.parseHeader(HeaderBlock.parseFrom(block.getData()));
+                } else if (PbfRawBlock.OSM_DATA.equals(block.getType())) {
+                    final PbfRawBlock dataBlock = block;
+                    pending.add(executor.submit(() -> decode(dataBlock)));
+                    // Bound the number of decoded blocks waiting in memory
+                    mergePending(pending, 2 * threads);
+                }
+            }
+            if (!cancel) {
+                mergePending(pending, 0);
+                parser.complete();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private BlockDecoder decode(PbfRawBlock block) throws IOException, IllegalDataException {
+        BlockDecoder decoder = new BlockDecoder();
+        decoder.parseBlock(Osmformat.PrimitiveBlock.parseFrom(block.getData()));
+        return decoder;
+    }
+
+    private void mergePending(Deque<Future<BlockDecoder>> pending, int maxPending) throws IOException, IllegalDataException {
+        while (pending.size() > maxPending && !cancel) {
+            merge(waitFor(pending.poll()));
+        }
+    }
+
+    private static BlockDecoder waitFor(Future<BlockDecoder> future) throws IOException, IllegalDataException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof IllegalDataException) {
+                throw (IllegalDataException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalDataException(cause);
+        }
+    }
+
+    private void merge(BlockDecoder block) throws IllegalDataException {
+        if (block.exception != null) {
+            throw block.exception;
+        }
+        parser.discourageUpload |= block.discourageUpload;
+        int way = 0;
+        int relation = 0;
+        for (PrimitiveData pd : block.primitives) {
+            if (pd instanceof NodeData) {
+                addNode((NodeData) pd);
+            } else if (pd instanceof WayData) {
+                addWay((WayData) pd, block.wayNodes.get(way++));
+            } else if (pd instanceof RelationData) {
+                addRelation((RelationData) pd, block.relationMembers.get(relation++));
+            }
+        }
+    }
+
+    private void addNode(NodeData nd) {
+        if (nodeIndex != null) {
+            // The node index replaces the external id map for nodes
+            nodeIndex.add(nd.getUniqueId(), newNode(nd));
+        } else {
+            buildPrimitive(nd);
+        }
+    }
+
+    /**
+     * Creates a node as {@link AbstractReader#buildPrimitive} does, without adding it to the external id map.
+     * @param nd node data
+     * @return the new node
+     */
+    private static Node newNode(NodeData nd) {
+        Node node;
+        if (nd.getUniqueId() < AbstractPrimitive.currentUniqueId()) {
+            node = (Node) OsmPrimitiveType.NODE.newInstance(nd.getUniqueId(), true);
+            AbstractPrimitive.advanceUniqueId(nd.getUniqueId());
+        } else {
+            node = (Node) OsmPrimitiveType.NODE.newVersionedInstance(nd.getId(), nd.getVersion());
+        }
+        node.setVisible(nd.isVisible());
+        node.load(nd);
+        return node;
+    }
+
+    private void addWay(WayData wd, long[] nodeIds) {
+        if (compactWays != null) {
+            compactWays.add(new CompactWay((Way) buildPrimitive(wd), nodeIds));
+        } else {
+            ways.put(wd.getUniqueId(), new WayNodeIds(nodeIds));
+            buildPrimitive(wd);
+        }
+    }
+
+    private void addRelation(RelationData rd, Collection<RelationMemberData> members) {
+        if (compactRelations != null) {
+            relationIds.add(rd.getUniqueId());
+            compactRelations.add(new CompactMembers(members));
+        } else {
+            relations.put(rd.getUniqueId(), members);
+        }
+        buildPrimitive(rd);
+    }
+
+    @Override
+    protected void processNodesAfterParsing() {
+        super.processNodesAfterParsing();
+        if (nodeIndex != null) {
+            for (int i = 0; i < nodeIndex.size(); i++) {
+                ds.addPrimitive(nodeIndex.getAt(i));
+            }
+        }
+    }
+
+    @Override
+    protected void processWaysAfterParsing() throws IllegalDataException {
+        super.processWaysAfterParsing();
+        if (compactWays != null) {
+            nodeIndex.freeze();
+            for (int i = 0; i < compactWays.size(); i++) {
+                CompactWay cw = compactWays.get(i);
+                // Free memory as we go
+                compactWays.set(i, null);
+                assembleWay(cw.way, cw.nodeIds);
+            }
+            compactWays.clear();
+        }
+    }
+
+    /**
+     * Resolves the nodes of a way through the node index, as {@link AbstractReader#processWaysAfterParsing} does.
+     * @param w way
+     * @param nodeIds external ids of the way nodes
+     * @throws IllegalDataException if a node with a negative id is missing
+     */
+    private void assembleWay(Way w, long[] nodeIds) throws IllegalDataException {
+        List<Node> wayNodes = new ArrayList<>(nodeIds.length);
+        for (long id : nodeIds) {
+            Node n = nodeIndex.get(id);
+            if (n == null) {
+                if (id <= 0)
+                    throw new IllegalDataException(
+                            tr("Way with external ID ''{0}'' includes missing node with external ID ''{1}''.",
+                                    Long.toString(w.getUniqueId()), Long.toString(id)));
+                // create an incomplete node if necessary
+                n = (Node) ds.getPrimitiveById(id, OsmPrimitiveType.NODE);
+                if (n == null) {
+                    n = new Node(id);
+                    ds.addPrimitive(n);
+                }
+            }
+            if (n.isDeleted()) {
+                Logging.info(tr("Deleted node {0} is part of way {1}", Long.toString(id), Long.toString(w.getId())));
+            } else {
+                wayNodes.add(n);
+            }
+        }
+        w.setNodes(wayNodes);
+        if (w.hasIncompleteNodes()) {
+            Logging.info(tr("Way {0} with {1} nodes is incomplete because at least one node was missing in the loaded data.",
+                    Long.toString(w.getId()), w.getNodesCount()));
+        }
+        ds.addPrimitive(w);
+    }
+
+    @Override
+    protected void processRelationsAfterParsing() throws IllegalDataException {
+        if (compactRelations != null) {
+            // Relations are few, expanding their members only now keeps the peak memory low
+            for (int i = 0; i < compactRelations.size(); i++) {
+                Collection<RelationMemberData> members = compactRelations.get(i).toMemberData();
+                for (RelationMemberData member : members) {
+                    // Nodes with a positive id are found in the data set, new nodes only through the external id map
+                    if (member.getMemberType() == OsmPrimitiveType.NODE && member.getMemberId() <= 0) {
+                        Node n = nodeIndex.get(member.getMemberId());
+                        if (n != null) {
+                            externalIdMap.put(new SimplePrimitiveId(member.getMemberId(), OsmPrimitiveType.NODE), n);
+                        }
+                    }
+                }
+                relations.put(relationIds.get(i), members);
+            }
+            compactRelations.clear();
+        }
+        super.processRelationsAfterParsing();
+    }
+
     /**
      * Exception thrown after user cancellation.
      */
@@ -1,14 +1,26 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.pbf.io;
 
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import java.util.zip.Deflater;
 
 import org.openstreetmap.josm.data.DataSource;
 import org.openstreetmap.josm.data.osm.DataSet;
@@ -19,7 +31,9 @@ import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
-import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+import com.google.protobuf.ByteString;
 
 import crosby.binary.BinarySerializer;
 import crosby.binary.Osmformat;
@@ -31,18 +45,120 @@ import crosby.binary.file.FileBlock;
 
 /**
  * OSM writer for the PBF file format.
+ * <p>
+ * Blocks are filled on the calling thread. Building their string tables, serializing and compressing them
+ * can be done by several worker threads, blocks being still written in order.
  * @author Don-vip
  */
 public class PbfWriter implements Closeable {
 
-    private final PbfSerializer out;
+    /**
+     * Default maximum number of entities per block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 4000;
+
+    /**
+     * Preference key of the number of threads used to serialize and compress PBF blocks. {@code 1} means serial encoding.
+     */
+    public static final String PREF_THREADS = "pbf.writer.threads";
+
+    /**
+     * Preference key of the maximum number of entities per block.
+     */
+    public static final String PREF_BLOCK_SIZE = "pbf.writer.block-size";
+
+    /**
+     * Preference key of the zlib compression level, from 0 to 9, or -1 for the default level.
+     */
+    public static final String PREF_COMPRESSION_LEVEL = "pbf.writer.compression-level";
+
+    /**
+     * Preference key of whether blocks are compressed. Raw blocks are written if {@code false}.
+     */
+    public static final String PREF_COMPRESS = "pbf.writer.compress";
+
+    private final OutputStream out;
+    private int blockSize = DEFAULT_BLOCK_SIZE;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private boolean compress = true;
+    private int threads = 1;
+
+    private ExecutorService executor;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
 
     /**
      * Constructs a new {@code PbfWriter}.
      * @param out output stream
      */
     public PbfWriter(OutputStream out) {
-        this.out = new PbfSerializer(new BlockOutputStream(out));
+        this.out = out;
+    }
+
+    /**
+     * Sets the maximum number of entities per block. Larger blocks compress better but need more memory.
+     * @param blockSize maximum number of entities per block
+     * @throws IllegalArgumentException if {@code blockSize} is not positive
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Sets the zlib compression level of blocks.
+     * @param compressionLevel compression level, from 0 to 9, or -1 for the default level
+     * @throws IllegalArgumentException if {@code compressionLevel} is not a valid level
+     * @see Deflater#setLevel(int)
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Sets whether blocks are compressed. Uncompressed (raw) blocks are faster to write and read, but larger.
+     * @param compress {@code true} to write zlib compressed blocks, {@code false} to write raw blocks
+     */
+    public void setCompress(boolean compress) {
+        this.compress = compress;
+    }
+
+    /**
+     * Sets the number of threads used to serialize and compress blocks.
+     * @param threads number of threads. With 1, everything is done by the calling thread
+     * @throws IllegalArgumentException if {@code threads} is not positive
+     */
+    public void setThreads(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Invalid number of threads: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Block stream keeping serialized blocks in memory instead of writing them.
+     */
+    private static final class CapturingBlockOutputStream extends BlockOutputStream {
+        private ByteString data;
+
+        CapturingBlockOutputStream() {
+            super(new ByteArrayOutputStream(0));
+        }
+
+        @Override
+        public void write(FileBlock block) {
+            data = block.getData();
+        }
+
+        ByteString pop() {
+            ByteString result = data;
+            data = null;
+            return result;
+        }
     }
 
     // Copied from OsmosisSerializer (public domain)
@@ -54,13 +170,18 @@ public class PbfWriter implements Closeable {
         /** Has the header been written yet? */
         protected boolean headerWritten;
 
+        private final CapturingBlockOutputStream capture;
+
         /**
-         * Constructs a new {@code PbfSerializer}.
-         *
-         * @param output The PBF block stream to send serialized data
+         * Constructs a new {@code PbfSerializer}, serializing a single block at a time.
          */
-        public PbfSerializer(BlockOutputStream output) {
-            super(output);
+        PbfSerializer() {
+            this(new CapturingBlockOutputStream());
+        }
+
+        private PbfSerializer(CapturingBlockOutputStream capture) {
+            super(capture);
+            this.capture = capture;
         }
 
         /**
@@ -338,102 +459,58 @@ public class PbfWriter implements Closeable {
             }
         }
 
-        /* One list for each type */
-        private WayGroup ways;
-        private NodeGroup nodes;
-        private RelationGroup relations;
-
-        private Processor processor = new Processor();
-
         /**
-         * Buffer up events into groups that are all of the same type, or all of the
-         * same length, then process each buffer.
+         * Serializes a header block.
+         * @param sources data sources. Only the first one is written, as PBF can only store one bbox
+         * @return the serialized header block
          */
-        public class Processor {
-
-            public void processSources(Collection<DataSource> sources) {
-                switchTypes();
-                // Can only write one bbox
-                if (!sources.isEmpty()) {
-                    processBounds(sources.iterator().next());
-                }
-            }
-
-            /**
-             * Check if we've reached the batch size limit and process the batch if we have.
-             */
-            public void checkLimit() {
-                total_entities++;
-                if (++batch_size < batch_limit) {
-                    return;
-                }
-                switchTypes();
-                processBatch();
-            }
-
-            /**
-             * Process node.
-             * @param node node
-             */
-            public void processNode(Node node) {
-                if (nodes == null) {
-                    writeEmptyHeaderIfNeeded();
-                    switchTypes();
-                    nodes = new NodeGroup();
-                }
-                if (node.isLatLonKnown()) {
-                    nodes.add(node);
-                    checkLimit();
-                }
+        ByteString serializeHeader(Collection<DataSource> sources) {
+            if (!sources.isEmpty()) {
+                processBounds(sources.iterator().next());
+            } else {
+                writeEmptyHeaderIfNeeded();
             }
+            return capture.pop();
+        }
 
-            /**
-             * Process way.
-             * @param way way
-             */
-            public void processWay(Way way) {
-                if (ways == null) {
-                    writeEmptyHeaderIfNeeded();
-                    switchTypes();
-                    ways = new WayGroup();
-                }
-                ways.add(way);
-                checkLimit();
-            }
+        /**
+         * Serializes a data block of nodes.
+         * @param nodes nodes
+         * @return the serialized data block
+         */
+        ByteString serializeNodes(List<Node> nodes) {
+            NodeGroup group = new NodeGroup();
+            group.contents.addAll(nodes);
+            return serialize(group);
+        }
 
-            /**
-             * Process relation.
-             * @param relation relation
-             */
-            public void processRelation(Relation relation) {
-                if (relations == null) {
-                    writeEmptyHeaderIfNeeded();
-                    switchTypes();
-                    relations = new RelationGroup();
-                }
-                relations.add(relation);
-                checkLimit();
-            }
+        /**
+         * Serializes a data block of ways.
+         * @param ways ways
+         * @return the serialized data block
+         */
+        ByteString serializeWays(List<Way> ways) {
+            WayGroup group = new WayGroup();
+            group.contents.addAll(ways);
+            return serialize(group);
         }
 
         /**
-         * At the end of this function, all of the lists of unprocessed 'things'
-         * must be null
+         * Serializes a data block of relations.
+         * @param relations relations
+         * @return the serialized data block
          */
-        private void switchTypes() {
-            if (nodes != null) {
-                groups.add(nodes);
-                nodes = null;
-            } else if (ways != null) {
-                groups.add(ways);
-                ways = null;
-            } else if (relations != null) {
-                groups.add(relations);
-                relations = null;
-            } else {
-                // No data. Is this an empty file?
-                Logging.debug("No PBF data. Is this an empty file?");
-            }
+        ByteString serializeRelations(List<Relation> relations) {
+            RelationGroup group = new RelationGroup();
+            group.contents.addAll(relations);
+            return serialize(group);
+        }
+
+        private ByteString serialize(PrimGroupWriterInterface group) {
+            groups.add(group);
+            // Builds the string table, serializes the group and hands the block to the capturing stream
+            processBatch();
+            return capture.pop();
         }
 
         public void processBounds(DataSource entity) {
@@ -480,41 +557,98 @@ public class PbfWriter implements Closeable {
             }
             headerWritten = true;
         }
-
-        public void process(DataSet ds) {
-            processor.processSources(ds.getDataSources());
-            Comparator<OsmPrimitive> cmp = Comparator.comparingLong(OsmPrimitive::getUniqueId);
-            ds.getNodes().stream().sorted(cmp).filter(Node::isUsable).forEach(processor::processNode);
-            ds.getWays().stream().sorted(cmp).filter(Way::isUsable).forEach(processor::processWay);
-            ds.getRelations().stream().sorted(cmp).filter(Relation::isUsable).forEach(processor::processRelation);
-        }
-
-        public void complete() {
-            try {
-                switchTypes();
-                processBatch();
-                flush();
-            } catch (IOException e) {
-                throw new RuntimeException("Unable to complete the PBF file.", e);
-            }
-        }
     }
 
     /**
      * Writes data from an OSM data layer.
      * @param layer data layer
+     * @throws IOException if an I/O error occurs
      */
-    public void writeLayer(OsmDataLayer layer) {
+    public void writeLayer(OsmDataLayer layer) throws IOException {
         writeData(layer.getDataSet());
     }
 
     /**
      * Writes data from a dataset.
      * @param ds dataset
+     * @throws IOException if an I/O error occurs
      */
-    public void writeData(DataSet ds) {
-        out.process(ds);
-        out.complete();
+    public void writeData(DataSet ds) throws IOException {
+        if (threads > 1) {
+            executor = Executors.newFixedThreadPool(threads, Utils.newThreadFactory("pbf-writer-%d", Thread.NORM_PRIORITY));
+        }
+        try {
+            writeBlock(PbfRawBlock.encode(PbfRawBlock.OSM_HEADER, new PbfSerializer().serializeHeader(ds.getDataSources()),
+                    compress, compressionLevel));
+            Comparator<OsmPrimitive> byId = Comparator.comparingLong(OsmPrimitive::getUniqueId);
+            writeBlocks(ds.getNodes().stream().filter(n -> n.isUsable() && n.isLatLonKnown()).sorted(byId).iterator(),
+                    PbfSerializer::serializeNodes);
+            writeBlocks(ds.getWays().stream().filter(OsmPrimitive::isUsable).sorted(byId).iterator(),
+                    PbfSerializer::serializeWays);
+            writeBlocks(ds.getRelations().stream().filter(OsmPrimitive::isUsable).sorted(byId).iterator(),
+                    PbfSerializer::serializeRelations);
+            while (!pending.isEmpty()) {
+                writeBlock(waitFor(pending.removeFirst()));
+            }
+            out.flush();
+        } finally {
+            if (executor != null) {
+                pending.forEach(f -> f.cancel(true));
+                pending.clear();
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+    }
+
+    private <T extends OsmPrimitive> void writeBlocks(Iterator<T> primitives,
+            BiFunction<PbfSerializer, List<T>, ByteString> serializer) throws IOException {
+        while (primitives.hasNext()) {
+            List<T> batch = new ArrayList<>(blockSize);
+            while (primitives.hasNext() && batch.size() < blockSize) {
+                batch.add(primitives.next());
+            }
+            Callable<byte[]> task = () -> PbfRawBlock.encode(PbfRawBlock.OSM_DATA,
+                    serializer.apply(new PbfSerializer(), batch), compress, compressionLevel);
+            if (executor == null) {
+                try {
+                    writeBlock(task.call());
+                } catch (IOException | RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException(e);
+                }
+            } else {
+                // Bound the number of blocks held in memory
+                while (pending.size() >= 2 * threads) {
+                    writeBlock(waitFor(pending.removeFirst()));
+                }
+                pending.addLast(executor.submit(task));
+            }
+        }
+    }
+
+    private static byte[] waitFor(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private void writeBlock(byte[] block) throws IOException {
+        out.write(block);
     }
 
     @Override
@@ -0,0 +1,208 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+import crosby.binary.Osmformat;
+import crosby.binary.Osmformat.DenseInfo;
+import crosby.binary.Osmformat.DenseNodes;
+
+/**
+ * Throughput and allocation benchmark of {@code DenseNodes} decoding on synthetic blocks.
+ * <p>
+ * Not run with unit tests. The baseline figures come from {@link BaselineParser}, a copy of the decoding
+ * loop used before allocations were reduced, run on the same blocks in the same JVM.
+ */
+@BasicPreferences
+class DenseNodesBenchmark {
+
+    private static final int NODES = 1_000_000;
+    private static final int RUNS = 10;
+
+    private static byte[] createSyntheticFile() throws Exception {
+        Random random = new Random(42);
+        List<User> users = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            users.add(User.createOsmUser(i, "user" + i));
+        }
+        DataSet ds = new DataSet();
+        Instant instant = Instant.parse("2020-01-01T00:00:00Z");
+        for (int i = 1; i <= NODES; i++) {
+            Node n = new Node(i, 1);
+            n.setCoor(new LatLon(43.7 + random.nextDouble() / 10, 7.4 + random.nextDouble() / 10));
+            n.setUser(users.get(random.nextInt(users.size())));
+            if (i % 16 == 0) {
+                instant = instant.plusSeconds(random.nextInt(3600));
+            }
+            n.setInstant(instant);
+            // ~10% of nodes are tagged, as in real extracts
+            if (random.nextInt(10) == 0) {
+                n.put("amenity", "bench");
+                n.put("name", "Bench " + random.nextInt(100));
+            }
+            ds.addPrimitive(n);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PbfWriter writer = new PbfWriter(out)) {
+            writer.writeData(ds);
+        }
+        return out.toByteArray();
+    }
+
+    private static List<Osmformat.PrimitiveBlock> readBlocks(byte[] data) throws Exception {
+        List<Osmformat.PrimitiveBlock> blocks = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        PbfRawBlock block;
+        while ((block = PbfRawBlock.read(in, 0)) != null) {
+            if (PbfRawBlock.OSM_DATA.equals(block.getType())) {
+                blocks.add(Osmformat.PrimitiveBlock.parseFrom(block.getData()));
+            }
+        }
+        return blocks;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * {@code DenseNodes} decoding as it was done before allocations were reduced:
+     * one {@link LatLon} rounded into another, a {@link User} lookup, a {@link Date} and a {@link HashMap} per node.
+     */
+    private static class BaselineParser extends PbfReader.PbfParser {
+        private final long[] decoded;
+
+        BaselineParser(PbfReader reader, long[] decoded) {
+            reader.super();
+            this.decoded = decoded;
+        }
+
+        @Override
+        protected void onNode(NodeData nd) {
+            decoded[0]++;
+        }
+
+        @Override
+        protected void parseDense(DenseNodes nodes) {
+            if (!nodes.hasDenseinfo())
+                discourageUpload = true;
+            if (exception == null) {
+                try {
+                    int keyIndex = 0;
+                    // Almost all data is DELTA coded
+                    long nodeId = 0;
+                    long nodeLat = 0;
+                    long nodeLon = 0;
+                    long changesetId = 0;
+                    int uid = 0;
+                    int suid = 0;
+                    long timestamp = 0;
+                    for (int i = 0; i < nodes.getIdCount(); i++) {
+                        // Id (delta) and version (normal)
+                        nodeId += nodes.getId(i);
+                        NodeData nd = new NodeData(nodeId);
+                        nd.setVersion(nodes.hasDenseinfo() ? nodes.getDenseinfo().getVersion(i) : 1);
+                        // Lat/Lon (delta)
+                        nodeLat += nodes.getLat(i);
+                        nodeLon += nodes.getLon(i);
+                        nd.setCoor(new LatLon(parseLat(nodeLat), parseLon(nodeLon)).getRoundedToOsmPrecision());
+                        checkCoordinates(nd.getCoor());
+                        if (nodes.hasDenseinfo()) {
+                            DenseInfo info = nodes.getDenseinfo();
+                            // Changeset (delta)
+                            if (info.getChangesetCount() > i) {
+                                changesetId += info.getChangeset(i);
+                                checkChangesetId(changesetId);
+                                nd.setChangesetId((int) changesetId);
+                            }
+                            // User (delta)
+                            if (info.getUidCount() > i && info.getUserSidCount() > i) {
+                                uid += info.getUid(i);
+                                suid += info.getUserSid(i);
+                                nd.setUser(User.createOsmUser(uid, getStringById(suid)));
+                            }
+                            // Timestamp (delta)
+                            if (info.getTimestampCount() > i) {
+                                timestamp += info.getTimestamp(i);
+                                checkTimestamp(timestamp);
+                                nd.setInstant(new Date(date_granularity * timestamp).toInstant());
+                            }
+                        }
+                        // A single table contains all keys/values of all nodes.
+                        // Each node's tags are encoded in alternating <key_id> <value_id>.
+                        // A single stringid of 0 delimit when the tags of a node ends and the tags of the next node begin.
+                        Map<String, String> keys = new HashMap<>();
+                        while (keyIndex < nodes.getKeysValsCount()) {
+                            int keyId = nodes.getKeysVals(keyIndex++);
+                            if (keyId == 0) {
+                                break; // End of current node's tags
+                            } else if (keyIndex < nodes.getKeysValsCount()) {
+                                keys.put(getStringById(keyId), getStringById(nodes.getKeysVals(keyIndex++)));
+                            } else {
+                                throw new IllegalDataException(tr("Invalid DenseNodes key/values table"));
+                            }
+                        }
+                        nd.setKeys(keys);
+                        onNode(nd);
+                    }
+                } catch (IllegalDataException e) {
+                    exception = e;
+                }
+            }
+        }
+    }
+
+    private static void run(String name, List<Osmformat.PrimitiveBlock> blocks, PbfReader.PbfParser parser, long[] decoded) {
+        for (int run = -RUNS; run < RUNS; run++) {
+            decoded[0] = 0;
+            long bytes = allocatedBytes();
+            long start = System.nanoTime();
+            for (Osmformat.PrimitiveBlock block : blocks) {
+                parser.parseBlock(block);
+            }
+            long nanos = System.nanoTime() - start;
+            bytes = allocatedBytes() - bytes;
+            // Negative runs are warmup
+            if (run >= 0) {
+                System.out.printf("%-8s %d nodes: %6.1f ms, %5.2f Mnodes/s, %6.1f bytes/node, %7.1f MB/s allocated%n",
+                        name, decoded[0], nanos / 1e6, decoded[0] * 1e3 / nanos, (double) bytes / decoded[0], bytes * 1e3 / nanos);
+            }
+        }
+    }
+
+    @Test
+    void benchmarkParseDense() throws Exception {
+        List<Osmformat.PrimitiveBlock> blocks = readBlocks(createSyntheticFile());
+        long[] decoded = new long[1];
+        PbfReader.PbfParser parser = new PbfReader().new PbfParser() {
+            @Override
+            protected void onNode(NodeData nd) {
+                decoded[0]++;
+            }
+        };
+        run("baseline", blocks, new BaselineParser(new PbfReader(), decoded), decoded);
+        run("current", blocks, parser, decoded);
+    }
+}
@@ -0,0 +1,42 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Throughput benchmark of {@link PbfReader} for an increasing number of decoding threads.
+ * <p>
+ * Not run with unit tests. Use the {@code pbf.benchmark.file} system property to benchmark a larger extract.
+ */
+@BasicPreferences
+class PbfReaderBenchmark {
+
+    private static final int WARMUP = 3;
+    private static final int RUNS = 5;
+
+    @Test
+    void benchmarkDecodingThreads() throws Exception {
+        Path file = Paths.get(System.getProperty("pbf.benchmark.file", TestUtils.getTestDataRoot() + "/monaco-latest.osm.pbf"));
+        byte[] data = Files.readAllBytes(file);
+        int cpus = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= Math.max(cpus, 4); threads *= 2) {
+            for (int i = 0; i < WARMUP; i++) {
+                PbfReader.parseDataSet(new ByteArrayInputStream(data), null, threads);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                PbfReader.parseDataSet(new ByteArrayInputStream(data), null, threads);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9 / RUNS;
+            System.out.printf("%s: %2d thread(s): %8.1f ms, %6.1f MB/s%n",
+                    file.getFileName(), threads, seconds * 1000, data.length / seconds / 1e6);
+        }
+    }
+}
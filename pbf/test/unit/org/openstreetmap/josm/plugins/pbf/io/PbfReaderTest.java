@@ -0,0 +1,195 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.RelationMember;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.search.SearchCompiler;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit tests for {@link PbfReader}.
+ */
+@BasicPreferences
+class PbfReaderTest {
+
+    private static DataSet parse(String file, int threads, PbfReader.Options... options) throws Exception {
+        try (InputStream in = Files.newInputStream(Paths.get(file))) {
+            return PbfReader.parseDataSet(in, null, threads, options);
+        }
+    }
+
+    private static void assertSameData(DataSet expected, DataSet actual) {
+        assertEquals(expected.getNodes().size(), actual.getNodes().size());
+        assertEquals(expected.getWays().size(), actual.getWays().size());
+        assertEquals(expected.getRelations().size(), actual.getRelations().size());
+        assertEquals(expected.getUploadPolicy(), actual.getUploadPolicy());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getDataSourceBounds(), actual.getDataSourceBounds());
+        for (OsmPrimitive p : expected.allPrimitives()) {
+            OsmPrimitive q = actual.getPrimitiveById(p);
+            assertNotNull(q, p.toString());
+            assertTrue(p.hasEqualSemanticAttributes(q), p.toString());
+            assertEquals(p.isIncomplete(), q.isIncomplete(), p.toString());
+            assertEquals(p.getVersion(), q.getVersion(), p.toString());
+            assertEquals(p.getUser(), q.getUser(), p.toString());
+            assertEquals(p.getChangesetId(), q.getChangesetId(), p.toString());
+            assertEquals(p.getInstant(), q.getInstant(), p.toString());
+            if (p instanceof Node) {
+                assertEquals(((Node) p).getCoor(), ((Node) q).getCoor(), p.toString());
+            }
+        }
+    }
+
+    private static String[] testFiles() {
+        return new String[] {
+                TestUtils.getTestDataRoot() + "/monaco-latest.osm.pbf",
+                TestUtils.getRegressionDataFile(10132, "Monaco-SP.osm.pbf"),
+                TestUtils.getRegressionDataFile(12567, "12390008.osm.pbf")};
+    }
+
+    /**
+     * Checks that parallel decoding produces exactly the same data set as serial decoding.
+     * @param threads number of decoding threads
+     * @throws Exception if an error occurs
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {2, 4})
+    void testParallelDecodingIsIdenticalToSerial(int threads) throws Exception {
+        for (String file : testFiles()) {
+            assertSameData(parse(file, 1), parse(file, threads));
+        }
+    }
+
+    /**
+     * Checks that {@link PbfReader.Options#COMPACT_REFERENCES} produces exactly the same data set as the default mode.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testCompactReferencesIsIdentical() throws Exception {
+        for (String file : testFiles()) {
+            DataSet expected = parse(file, 1);
+            assertSameData(expected, parse(file, 1, PbfReader.Options.COMPACT_REFERENCES));
+            assertSameData(expected, parse(file, 2, PbfReader.Options.COMPACT_REFERENCES));
+        }
+    }
+
+    /**
+     * Checks that {@link PbfReader.Options#COMPACT_REFERENCES} resolves the new nodes, with negative ids,
+     * referenced by ways and relations.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testCompactReferencesNewPrimitives() throws Exception {
+        DataSet ds = new DataSet();
+        Node n1 = new Node(new LatLon(43.73, 7.42));
+        Node n2 = new Node(new LatLon(43.74, 7.43));
+        Node n3 = new Node(new LatLon(43.75, 7.41));
+        Way w = new Way();
+        w.setNodes(Arrays.asList(n1, n2));
+        Relation r = new Relation();
+        r.addMember(new RelationMember("outer", w));
+        r.addMember(new RelationMember("label", n3));
+        ds.addPrimitive(n1);
+        ds.addPrimitive(n2);
+        ds.addPrimitive(n3);
+        ds.addPrimitive(w);
+        ds.addPrimitive(r);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PbfWriter writer = new PbfWriter(out)) {
+            writer.writeData(ds);
+        }
+        DataSet expected = PbfReader.parseDataSet(new ByteArrayInputStream(out.toByteArray()), null);
+        DataSet actual = PbfReader.parseDataSet(new ByteArrayInputStream(out.toByteArray()), null, 1,
+                PbfReader.Options.COMPACT_REFERENCES);
+        assertSameData(expected, actual);
+        Relation relation = actual.getRelations().iterator().next();
+        assertFalse(relation.hasIncompleteMembers());
+        assertEquals(2, relation.getMember(0).getWay().getNodesCount());
+        assertEquals(3, actual.getNodes().size());
+    }
+
+    /**
+     * Unit test of filtered import by bounding box.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testBoundsFilter() throws Exception {
+        Path file = Paths.get(TestUtils.getTestDataRoot() + "/monaco-latest.osm.pbf");
+        Bounds bounds = new Bounds(43.730, 7.415, 43.735, 7.425);
+        DataSet full = parse(file.toString(), 1);
+        DataSet ds = PbfReader.parseDataSet(file, new ImportFilter(bounds, null), null, 1);
+        assertTrue(ds.getNodes().size() < full.getNodes().size());
+        assertTrue(ds.getWays().size() < full.getWays().size());
+        assertFalse(ds.getWays().isEmpty());
+        assertEquals(1, ds.getDataSources().size());
+        assertEquals(bounds, ds.getDataSources().iterator().next().bounds);
+        // Incomplete ways are members of selected relations
+        for (Way w : ds.getWays()) {
+            if (w.isIncomplete()) {
+                continue;
+            }
+            assertFalse(w.hasIncompleteNodes(), w.toString());
+            assertTrue(w.getNodes().stream().anyMatch(n -> bounds.contains(n.getCoor())), w.toString());
+        }
+        for (Node n : ds.getNodes()) {
+            if (!n.isIncomplete()) {
+                assertTrue(bounds.contains(n.getCoor()) || n.getReferrers().stream().anyMatch(Way.class::isInstance),
+                        n.toString());
+            }
+        }
+        // Every way of the full data set with a node inside the bounds has been loaded
+        for (Way w : full.getWays()) {
+            if (w.getNodes().stream().anyMatch(n -> bounds.contains(n.getCoor()))) {
+                assertNotNull(ds.getPrimitiveById(w), w.toString());
+            }
+        }
+    }
+
+    /**
+     * Unit test of filtered import by tags.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testTagFilter() throws Exception {
+        Path file = Paths.get(TestUtils.getTestDataRoot() + "/monaco-latest.osm.pbf");
+        DataSet full = parse(file.toString(), 1);
+        DataSet ds = PbfReader.parseDataSet(file, new ImportFilter(null, SearchCompiler.compile("highway")::match), null, 2);
+        assertTrue(ds.getDataSources().isEmpty());
+        long highways = full.getWays().stream().filter(w -> w.hasKey("highway")).count();
+        assertEquals(highways, ds.getWays().stream().filter(w -> !w.isIncomplete()).count());
+        for (Way w : ds.getWays()) {
+            if (!w.isIncomplete()) {
+                assertTrue(w.hasKey("highway"), w.toString());
+                assertFalse(w.hasIncompleteNodes(), w.toString());
+            }
+        }
+        for (Relation r : ds.getRelations()) {
+            if (!r.isIncomplete()) {
+                assertTrue(r.hasKey("highway"), r.toString());
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Export throughput of {@link PbfWriter} depending on the number of threads, block size and compression level.
+ * <p>
+ * Not run with unit tests. Use the {@code pbf.benchmark.file} system property to benchmark a larger extract.
+ */
+@BasicPreferences
+class PbfWriterBenchmark {
+
+    private static final int RUNS = 5;
+
+    /** Counts written bytes and discards them, so the benchmark does not depend on disk speed */
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private static void run(DataSet ds, int threads, int blockSize, boolean compress, int level) throws Exception {
+        for (int run = -RUNS; run < RUNS; run++) {
+            CountingOutputStream out = new CountingOutputStream();
+            long start = System.nanoTime();
+            try (PbfWriter writer = new PbfWriter(out)) {
+                writer.setThreads(threads);
+                writer.setBlockSize(blockSize);
+                writer.setCompress(compress);
+                writer.setCompressionLevel(level);
+                writer.writeData(ds);
+            }
+            long nanos = System.nanoTime() - start;
+            // Negative runs are warmup
+            if (run >= 0) {
+                System.out.printf("%2d threads, %6d entities/block, %-4s: %7.1f ms, %7.1f MB written, %7.1f kprimitives/s%n",
+                        threads, blockSize, compress ? "z" + level : "raw", nanos / 1e6, out.count / 1e6,
+                        ds.allPrimitives().size() * 1e6 / nanos);
+            }
+        }
+    }
+
+    @Test
+    void benchmarkWriter() throws Exception {
+        Path file = Paths.get(System.getProperty("pbf.benchmark.file", TestUtils.getTestDataRoot() + "/monaco-latest.osm.pbf"));
+        DataSet ds;
+        try (InputStream in = Files.newInputStream(file)) {
+            ds = PbfReader.parseDataSet(in, null, Runtime.getRuntime().availableProcessors());
+        }
+        int cpus = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cpus; threads *= 2) {
+            run(ds, threads, PbfWriter.DEFAULT_BLOCK_SIZE, true, Deflater.DEFAULT_COMPRESSION);
+        }
+        run(ds, cpus, 8000, true, Deflater.DEFAULT_COMPRESSION);
+        run(ds, cpus, PbfWriter.DEFAULT_BLOCK_SIZE, true, Deflater.BEST_SPEED);
+        run(ds, cpus, PbfWriter.DEFAULT_BLOCK_SIZE, false, Deflater.DEFAULT_COMPRESSION);
+    }
+}
@@ -0,0 +1,101 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit tests for {@link PbfWriter}.
+ */
+@BasicPreferences
+class PbfWriterTest {
+
+    private static DataSet read(String file) throws Exception {
+        try (InputStream in = Files.newInputStream(Paths.get(file))) {
+            return PbfReader.parseDataSet(in, null);
+        }
+    }
+
+    private static byte[] write(DataSet ds, int threads, int blockSize, boolean compress, int level) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PbfWriter writer = new PbfWriter(out)) {
+            writer.setThreads(threads);
+            writer.setBlockSize(blockSize);
+            writer.setCompress(compress);
+            writer.setCompressionLevel(level);
+            writer.writeData(ds);
+        }
+        return out.toByteArray();
+    }
+
+    private static void assertRoundTrip(DataSet expected, byte[] data) throws Exception {
+        DataSet actual = PbfReader.parseDataSet(new ByteArrayInputStream(data), null);
+        assertEquals(expected.getNodes().size(), actual.getNodes().size());
+        assertEquals(expected.getWays().size(), actual.getWays().size());
+        assertEquals(expected.getRelations().size(), actual.getRelations().size());
+        assertEquals(expected.getDataSourceBounds(), actual.getDataSourceBounds());
+        for (OsmPrimitive p : expected.allPrimitives()) {
+            OsmPrimitive q = actual.getPrimitiveById(p);
+            assertNotNull(q, p.toString());
+            assertTrue(p.hasEqualSemanticAttributes(q), p.toString());
+            assertEquals(p.getVersion(), q.getVersion(), p.toString());
+            assertEquals(p.getUser(), q.getUser(), p.toString());
+            assertEquals(p.getChangesetId(), q.getChangesetId(), p.toString());
+            assertEquals(p.getInstant(), q.getInstant(), p.toString());
+            if (p instanceof Node) {
+                assertEquals(((Node) p).getCoor(), ((Node) q).getCoor(), p.toString());
+            }
+        }
+    }
+
+    /**
+     * Checks that data written with various block sizes and compression settings is read back identically.
+     * @param threads number of encoding threads
+     * @throws Exception if an error occurs
+     */
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void testRoundTrip(int threads) throws Exception {
+        DataSet ds = read(TestUtils.getTestDataRoot() + "/monaco-latest.osm.pbf");
+        assertRoundTrip(ds, write(ds, threads, PbfWriter.DEFAULT_BLOCK_SIZE, true, -1));
+        assertRoundTrip(ds, write(ds, threads, 100, true, 1));
+        assertRoundTrip(ds, write(ds, threads, 20_000, true, 9));
+        assertRoundTrip(ds, write(ds, threads, 1000, false, -1));
+    }
+
+    /**
+     * Checks that parallel encoding produces exactly the same file as serial encoding.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testParallelEncodingIsIdenticalToSerial() throws Exception {
+        DataSet ds = read(TestUtils.getTestDataRoot() + "/monaco-latest.osm.pbf");
+        assertArrayEquals(write(ds, 1, 500, true, -1), write(ds, 4, 500, true, -1));
+    }
+
+    /**
+     * Checks that an empty data set produces a valid file.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testEmptyDataSet() throws Exception {
+        assertRoundTrip(new DataSet(), write(new DataSet(), 2, PbfWriter.DEFAULT_BLOCK_SIZE, true, -1));
+    }
+}
@@ -0,0 +1,76 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.IllegalDataException;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Peak heap and way assembly time of {@link PbfReader}, with and without {@link PbfReader.Options#COMPACT_REFERENCES}.
+ * <p>
+ * Not run with unit tests. Use the {@code pbf.benchmark.file} system property to benchmark a larger extract.
+ * Peak heap is only meaningful with a single collector generation, e.g. with {@code -XX:+UseSerialGC}.
+ */
+@BasicPreferences
+class WayAssemblyBenchmark {
+
+    private static final int RUNS = 5;
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    private static void run(byte[] data, String name, PbfReader.Options... options) throws Exception {
+        long[] assemblyNanos = new long[1];
+        for (int run = -RUNS; run < RUNS; run++) {
+            PbfReader reader = new PbfReader(1, options) {
+                @Override
+                protected void processWaysAfterParsing() throws IllegalDataException {
+                    long start = System.nanoTime();
+                    super.processWaysAfterParsing();
+                    assemblyNanos[0] = System.nanoTime() - start;
+                }
+            };
+            resetPeakHeap();
+            long start = System.nanoTime();
+            reader.doParseDataSet(new ByteArrayInputStream(data), NullProgressMonitor.INSTANCE);
+            long nanos = System.nanoTime() - start;
+            // Negative runs are warmup
+            if (run >= 0) {
+                System.out.printf("%-8s: total %7.1f ms, way assembly %6.1f ms, peak heap %6.1f MB%n",
+                        name, nanos / 1e6, assemblyNanos[0] / 1e6, peakHeap() / 1e6);
+            }
+        }
+    }
+
+    @Test
+    void benchmarkWayAssembly() throws Exception {
+        Path file = Paths.get(System.getProperty("pbf.benchmark.file", TestUtils.getTestDataRoot() + "/monaco-latest.osm.pbf"));
+        byte[] data = Files.readAllBytes(file);
+        run(data, "map");
+        run(data, "compact", PbfReader.Options.COMPACT_REFERENCES);
+    }
+}
@@ -0,0 +1,157 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jgrapht.Graph;
+import org.openstreetmap.josm.data.osm.Node;
+
+import com.innovant.josm.jrt.osm.OsmEdge;
+
+/**
+ * Immutable copy of a routing graph, stored in compressed sparse row arrays.
+ * <p>
+ * Vertices are numbered from 0 to {@link #getVertexCount()} - 1. The outgoing edges of vertex {@code v} are
+ * the edges {@code outEdge[outStart[v]]} to {@code outEdge[outStart[v + 1] - 1]}, and the same layout is used
+ * for incoming edges, so that searches do not need any boxed object.
+ *
+ * @see ArrayGraphRouter
+ */
+public class ArrayGraph {
+
+    /** Earth radius used by {@link org.openstreetmap.josm.data.coor.LatLon#greatCircleDistance} */
+    private static final double EARTH_RADIUS = 6378137.0;
+
+    private final Node[] nodes;
+    private final Map<Node, Integer> ids;
+    private final double[] lat;
+    private final double[] lon;
+    private final double[] cosLat;
+
+    final OsmEdge[] edges;
+    final int[] edgeFrom;
+    final int[] edgeTo;
+    final double[] weight;
+
+    final int[] outStart;
+    final int[] outEdge;
+    final int[] inStart;
+    final int[] inEdge;
+
+    private final double maxSpeed;
+
+    /**
+     * Copies the given graph.
+     * @param graph the routing graph, with edge weights already computed
+     */
+    public ArrayGraph(Graph<Node, OsmEdge> graph) {
+        int vertexCount = graph.vertexSet().size();
+        nodes = new Node[vertexCount];
+        ids = new HashMap<>(vertexCount * 2);
+        lat = new double[vertexCount];
+        lon = new double[vertexCount];
+        cosLat = new double[vertexCount];
+        int v = 0;
+        for (Node node : graph.vertexSet()) {
+            nodes[v] = node;
+            ids.put(node, v);
+            lat[v] = Math.toRadians(node.lat());
+            lon[v] = Math.toRadians(node.lon());
+            cosLat[v] = Math.cos(lat[v]);
+            v++;
+        }
+
+        int edgeCount = graph.edgeSet().size();
+        edges = new OsmEdge[edgeCount];
+        edgeFrom = new int[edgeCount];
+        edgeTo = new int[edgeCount];
+        weight = new double[edgeCount];
+        outStart = new int[vertexCount + 1];
+        inStart = new int[vertexCount + 1];
+        double speed = 0;
+        int e = 0;
+        for (OsmEdge edge : graph.edgeSet()) {
+            edges[e] = edge;
+            edgeFrom[e] = ids.get(graph.getEdgeSource(edge));
+            edgeTo[e] = ids.get(graph.getEdgeTarget(edge));
+            weight[e] = graph.getEdgeWeight(edge);
+            outStart[edgeFrom[e] + 1]++;
+            inStart[edgeTo[e] + 1]++;
+            if (weight[e] > 0) {
+                speed = Math.max(speed, edge.getLength() / weight[e]);
+            }
+            e++;
+        }
+        // The fastest edge bounds the cost of the remaining distance
+        maxSpeed = speed;
+
+        for (v = 0; v < vertexCount; v++) {
+            outStart[v + 1] += outStart[v];
+            inStart[v + 1] += inStart[v];
+        }
+        outEdge = new int[edgeCount];
+        inEdge = new int[edgeCount];
+        int[] outPos = new int[vertexCount];
+        int[] inPos = new int[vertexCount];
+        for (e = 0; e < edgeCount; e++) {
+            outEdge[outStart[edgeFrom[e]] + outPos[edgeFrom[e]]++] = e;
+            inEdge[inStart[edgeTo[e]] + inPos[edgeTo[e]]++] = e;
+        }
+    }
+
+    /**
+     * @return the number of vertices
+     */
+    public int getVertexCount() {
+        return nodes.length;
+    }
+
+    /**
+     * @return the number of edges
+     */
+    public int getEdgeCount() {
+        return edges.length;
+    }
+
+    /**
+     * Returns the id of the vertex of a node.
+     * @param node the node
+     * @return the vertex id, or -1 if the node is not in the graph
+     */
+    public int getVertex(Node node) {
+        Integer v = ids.get(node);
+        return v == null ? -1 : v;
+    }
+
+    /**
+     * Returns the node of a vertex.
+     * @param v the vertex id
+     * @return the node
+     */
+    public Node getNode(int v) {
+        return nodes[v];
+    }
+
+    /**
+     * Returns the highest ratio between the length and the weight of an edge, i.e. the highest speed of the graph.
+     * @return the highest speed, 0 if the graph has no edge of positive weight
+     */
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    /**
+     * Returns the great circle distance between two vertices, in meters.
+     * @param u first vertex
+     * @param v second vertex
+     * @return the distance between {@code u} and {@code v}
+     */
+    public double distance(int u, int v) {
+        double sinHalfLat = Math.sin((lat[v] - lat[u]) / 2);
+        double sinHalfLon = Math.sin((lon[v] - lon[u]) / 2);
+        double d = 2 * EARTH_RADIUS * Math.asin(Math.sqrt(sinHalfLat * sinHalfLat
+                + cosLat[u] * cosLat[v] * sinHalfLon * sinHalfLon));
+        return Double.isNaN(d) ? 0 : d;
+    }
+}
@@ -0,0 +1,245 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.openstreetmap.josm.data.osm.Node;
+
+import com.innovant.josm.jrt.osm.OsmEdge;
+
+/**
+ * Shortest path searches on an {@link ArrayGraph}.
+ * <p>
+ * The search state is allocated once for the graph and reused by each search: the arrays are not cleared,
+ * a search only considers the entries stamped with its own number. Searching the legs of a route
+ * with the same router is thus much cheaper than creating a new search object for each leg.
+ * <p>
+ * A router is not thread safe.
+ */
+public class ArrayGraphRouter {
+
+    private final ArrayGraph graph;
+
+    // forward search state
+    private final double[] dist;
+    private final int[] parent;
+    private final int[] seen;
+    private final int[] closed;
+    private final VertexHeap heap = new VertexHeap();
+
+    // backward search state, for the bidirectional search
+    private final double[] distBack;
+    private final int[] parentBack;
+    private final int[] seenBack;
+    private final int[] closedBack;
+    private final VertexHeap heapBack = new VertexHeap();
+
+    private int stamp;
+    private final double invMaxSpeed;
+    private double pathWeight;
+    private int settled;
+
+    /**
+     * Constructs a new {@code ArrayGraphRouter}.
+     * @param graph the graph to search
+     */
+    public ArrayGraphRouter(ArrayGraph graph) {
+        this.graph = graph;
+        int n = graph.getVertexCount();
+        dist = new double[n];
+        parent = new int[n];
+        seen = new int[n];
+        closed = new int[n];
+        distBack = new double[n];
+        parentBack = new int[n];
+        seenBack = new int[n];
+        closedBack = new int[n];
+        invMaxSpeed = graph.getMaxSpeed() > 0 ? 1 / graph.getMaxSpeed() : 0;
+    }
+
+    /**
+     * @return the searched graph
+     */
+    public ArrayGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return the weight of the last path found
+     */
+    public double getPathWeight() {
+        return pathWeight;
+    }
+
+    /**
+     * @return the number of vertices settled by the last search, in both directions
+     */
+    public int getSettledCount() {
+        return settled;
+    }
+
+    private void newSearch() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(closed, 0);
+            Arrays.fill(seenBack, 0);
+            Arrays.fill(closedBack, 0);
+            stamp = 1;
+        }
+        heap.clear();
+        heapBack.clear();
+        pathWeight = Double.POSITIVE_INFINITY;
+        settled = 0;
+    }
+
+    /**
+     * Finds the shortest path between two nodes with the A* algorithm.
+     * The remaining cost is estimated by the great circle distance at the highest speed of the graph,
+     * which never overestimates it, so the path found is a shortest path.
+     * @param from the start node
+     * @param to the end node
+     * @return the edges of the path, or {@code null} if there is no path
+     */
+    public List<OsmEdge> aStar(Node from, Node to) {
+        int s = graph.getVertex(from);
+        int t = graph.getVertex(to);
+        if (s < 0 || t < 0) {
+            return null;
+        }
+        newSearch();
+        dist[s] = 0;
+        parent[s] = -1;
+        seen[s] = stamp;
+        heap.add(s, invMaxSpeed * graph.distance(s, t));
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            if (closed[v] == stamp) {
+                continue;
+            }
+            closed[v] = stamp;
+            settled++;
+            if (v == t) {
+                pathWeight = dist[t];
+                return path(t, -1);
+            }
+            for (int i = graph.outStart[v]; i < graph.outStart[v + 1]; i++) {
+                int e = graph.outEdge[i];
+                int w = graph.edgeTo[e];
+                double d = dist[v] + graph.weight[e];
+                if (seen[w] != stamp || d < dist[w]) {
+                    seen[w] = stamp;
+                    dist[w] = d;
+                    parent[w] = e;
+                    heap.add(w, d + invMaxSpeed * graph.distance(w, t));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the shortest path between two nodes with a bidirectional Dijkstra search:
+     * a forward search from the start node and a backward search from the end node
+     * are run alternately, until no better path can be found where they meet.
+     * @param from the start node
+     * @param to the end node
+     * @return the edges of the path, or {@code null} if there is no path
+     */
+    public List<OsmEdge> bidirectionalDijkstra(Node from, Node to) {
+        int s = graph.getVertex(from);
+        int t = graph.getVertex(to);
+        if (s < 0 || t < 0) {
+            return null;
+        }
+        newSearch();
+        dist[s] = 0;
+        parent[s] = -1;
+        seen[s] = stamp;
+        heap.add(s, 0);
+        distBack[t] = 0;
+        parentBack[t] = -1;
+        seenBack[t] = stamp;
+        heapBack.add(t, 0);
+        int meet = s == t ? s : -1;
+        double best = s == t ? 0 : Double.POSITIVE_INFINITY;
+        while (true) {
+            skipClosed(heap, closed);
+            skipClosed(heapBack, closedBack);
+            // Any better path would go through a vertex at least this far from both ends
+            if (heap.isEmpty() || heapBack.isEmpty() || heap.peekKey() + heapBack.peekKey() >= best) {
+                break;
+            }
+            if (heap.peekKey() <= heapBack.peekKey()) {
+                int v = heap.poll();
+                closed[v] = stamp;
+                settled++;
+                for (int i = graph.outStart[v]; i < graph.outStart[v + 1]; i++) {
+                    int e = graph.outEdge[i];
+                    int w = graph.edgeTo[e];
+                    double d = dist[v] + graph.weight[e];
+                    if (seen[w] != stamp || d < dist[w]) {
+                        seen[w] = stamp;
+                        dist[w] = d;
+                        parent[w] = e;
+                        heap.add(w, d);
+                        if (seenBack[w] == stamp && d + distBack[w] < best) {
+                            best = d + distBack[w];
+                            meet = w;
+                        }
+                    }
+                }
+            } else {
+                int v = heapBack.poll();
+                closedBack[v] = stamp;
+                settled++;
+                for (int i = graph.inStart[v]; i < graph.inStart[v + 1]; i++) {
+                    int e = graph.inEdge[i];
+                    int w = graph.edgeFrom[e];
+                    double d = distBack[v] + graph.weight[e];
+                    if (seenBack[w] != stamp || d < distBack[w]) {
+                        seenBack[w] = stamp;
+                        distBack[w] = d;
+                        parentBack[w] = e;
+                        heapBack.add(w, d);
+                        if (seen[w] == stamp && d + dist[w] < best) {
+                            best = d + dist[w];
+                            meet = w;
+                        }
+                    }
+                }
+            }
+        }
+        if (meet < 0) {
+            return null;
+        }
+        pathWeight = best;
+        return path(meet, meet);
+    }
+
+    private void skipClosed(VertexHeap h, int[] closedStamps) {
+        while (!h.isEmpty() && closedStamps[h.peekVertex()] == stamp) {
+            h.poll();
+        }
+    }
+
+    /**
+     * Builds the path from the parents of the forward search up to {@code last},
+     * followed by the parents of the backward search from {@code meet}.
+     */
+    private List<OsmEdge> path(int last, int meet) {
+        List<OsmEdge> path = new ArrayList<>();
+        for (int v = last; parent[v] != -1; v = graph.edgeFrom[parent[v]]) {
+            path.add(graph.edges[parent[v]]);
+        }
+        Collections.reverse(path);
+        if (meet >= 0) {
+            for (int v = meet; parentBack[v] != -1; v = graph.edgeTo[parentBack[v]]) {
+                path.add(graph.edges[parentBack[v]]);
+            }
+        }
+        return path;
+    }
+}
@@ -0,0 +1,572 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.openstreetmap.josm.data.osm.Node;
+
+import com.innovant.josm.jrt.osm.OsmEdge;
+
+/**
+ * Contraction hierarchy of an {@link ArrayGraph}, to answer many shortest path queries on the same graph.
+ * <p>
+ * Vertices are contracted one after the other, least important first: a shortcut replaces each shortest path
+ * going through the contracted vertex, unless a witness path avoids it. A query is then a bidirectional Dijkstra
+ * search that only follows arcs to vertices contracted later, which settles a small part of the graph.
+ * Shortcuts remember the two arcs they replace, so that paths are unpacked to the edges of the graph.
+ * <p>
+ * The hierarchy is only valid for the graph it was built from, it must be built again when the graph changes.
+ * Queries are not thread safe.
+ */
+public class ContractionHierarchy {
+
+    /** Maximum number of vertices settled by a witness search, more shortcuts are added with lower values */
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    /** Maximum number of vertices settled by a witness search when computing priorities */
+    private static final int PRIORITY_WITNESS_SETTLE_LIMIT = 50;
+
+    private final ArrayGraph graph;
+
+    // arcs: the edges of the graph, followed by shortcuts
+    private final int[] arcFrom;
+    private final int[] arcTo;
+    private final double[] arcWeight;
+    private final int[] arcChild1;
+    private final int[] arcChild2;
+
+    // arcs to higher vertices, by source, and arcs from higher vertices, by target
+    private final int[] upStart;
+    private final int[] upArc;
+    private final int[] downStart;
+    private final int[] downArc;
+
+    private final long preprocessingNanos;
+
+    // query state
+    private final double[] dist;
+    private final int[] parent;
+    private final int[] seen;
+    private final double[] distBack;
+    private final int[] parentBack;
+    private final int[] seenBack;
+    private final VertexHeap heap = new VertexHeap();
+    private final VertexHeap heapBack = new VertexHeap();
+    private int stamp;
+    private double pathWeight;
+    private int settled;
+
+    /**
+     * Builds the contraction hierarchy of a graph.
+     * @param graph the graph
+     */
+    public ContractionHierarchy(ArrayGraph graph) {
+        long start = System.nanoTime();
+        this.graph = graph;
+        int n = graph.getVertexCount();
+        Contractor contractor = new Contractor(graph);
+        contractor.contractAll();
+        int arcCount = contractor.arcCount;
+        arcFrom = Arrays.copyOf(contractor.from, arcCount);
+        arcTo = Arrays.copyOf(contractor.to, arcCount);
+        arcWeight = Arrays.copyOf(contractor.weight, arcCount);
+        arcChild1 = Arrays.copyOf(contractor.child1, arcCount);
+        arcChild2 = Arrays.copyOf(contractor.child2, arcCount);
+        int[] rank = contractor.rank;
+
+        upStart = new int[n + 1];
+        downStart = new int[n + 1];
+        int upCount = 0;
+        for (int a = 0; a < arcCount; a++) {
+            if (rank[arcFrom[a]] < rank[arcTo[a]]) {
+                upStart[arcFrom[a] + 1]++;
+                upCount++;
+            } else if (rank[arcFrom[a]] > rank[arcTo[a]]) {
+                downStart[arcTo[a] + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            upStart[v + 1] += upStart[v];
+            downStart[v + 1] += downStart[v];
+        }
+        upArc = new int[upCount];
+        downArc = new int[downStart[n]];
+        int[] upPos = Arrays.copyOf(upStart, n);
+        int[] downPos = Arrays.copyOf(downStart, n);
+        for (int a = 0; a < arcCount; a++) {
+            if (rank[arcFrom[a]] < rank[arcTo[a]]) {
+                upArc[upPos[arcFrom[a]]++] = a;
+            } else if (rank[arcFrom[a]] > rank[arcTo[a]]) {
+                downArc[downPos[arcTo[a]]++] = a;
+            }
+        }
+
+        dist = new double[n];
+        parent = new int[n];
+        seen = new int[n];
+        distBack = new double[n];
+        parentBack = new int[n];
+        seenBack = new int[n];
+        preprocessingNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Contracts the vertices of a graph, adding shortcuts to a growing copy of its arcs.
+     */
+    private static final class Contractor {
+        private final int n;
+        private final boolean[] contracted;
+        private final int[] contractedNeighbors;
+        final int[] rank;
+
+        int arcCount;
+        int[] from;
+        int[] to;
+        double[] weight;
+        int[] child1;
+        int[] child2;
+
+        // arcs of each vertex to and from vertices not contracted yet
+        private final int[][] out;
+        private final int[] outSize;
+        private final int[][] in;
+        private final int[] inSize;
+
+        // neighbors of the vertex being contracted, with the lightest arc to or from each of them
+        private final int[] neighborStamp;
+        private final int[] inArc;
+        private final int[] outArc;
+        private int[] ins = new int[16];
+        private int[] outs = new int[16];
+        private int inCount;
+        private int outCount;
+        private int stamp;
+
+        // witness search state
+        private final double[] witnessDist;
+        private final int[] witnessSeen;
+        private final VertexHeap witnessHeap = new VertexHeap();
+        private int witnessStamp;
+
+        Contractor(ArrayGraph graph) {
+            n = graph.getVertexCount();
+            contracted = new boolean[n];
+            contractedNeighbors = new int[n];
+            rank = new int[n];
+            int m = graph.getEdgeCount();
+            // the edges of the graph keep their index as arc
+            from = Arrays.copyOf(graph.edgeFrom, Math.max(16, 2 * m));
+            to = Arrays.copyOf(graph.edgeTo, from.length);
+            weight = Arrays.copyOf(graph.weight, from.length);
+            child1 = new int[from.length];
+            child2 = new int[from.length];
+            Arrays.fill(child1, -1);
+            Arrays.fill(child2, -1);
+            arcCount = m;
+            out = new int[n][];
+            in = new int[n][];
+            outSize = new int[n];
+            inSize = new int[n];
+            for (int v = 0; v < n; v++) {
+                out[v] = new int[Math.max(2, graph.outStart[v + 1] - graph.outStart[v])];
+                in[v] = new int[Math.max(2, graph.inStart[v + 1] - graph.inStart[v])];
+            }
+            for (int a = 0; a < m; a++) {
+                if (from[a] != to[a]) {
+                    link(a);
+                }
+            }
+            neighborStamp = new int[n];
+            inArc = new int[n];
+            outArc = new int[n];
+            witnessDist = new double[n];
+            witnessSeen = new int[n];
+        }
+
+        /**
+         * Removes the arcs to and from contracted vertices from the lists of a vertex, so that searches skip them.
+         */
+        private void unlinkContracted(int v) {
+            int k = 0;
+            for (int i = 0; i < outSize[v]; i++) {
+                if (!contracted[to[out[v][i]]]) {
+                    out[v][k++] = out[v][i];
+                }
+            }
+            outSize[v] = k;
+            k = 0;
+            for (int i = 0; i < inSize[v]; i++) {
+                if (!contracted[from[in[v][i]]]) {
+                    in[v][k++] = in[v][i];
+                }
+            }
+            inSize[v] = k;
+        }
+
+        private void link(int a) {
+            int u = from[a];
+            int w = to[a];
+            if (outSize[u] == out[u].length) {
+                out[u] = Arrays.copyOf(out[u], 2 * outSize[u]);
+            }
+            out[u][outSize[u]++] = a;
+            if (inSize[w] == in[w].length) {
+                in[w] = Arrays.copyOf(in[w], 2 * inSize[w]);
+            }
+            in[w][inSize[w]++] = a;
+        }
+
+        private void addShortcut(int u, int w, double d, int a1, int a2) {
+            if (arcCount == from.length) {
+                int size = 2 * arcCount;
+                from = Arrays.copyOf(from, size);
+                to = Arrays.copyOf(to, size);
+                weight = Arrays.copyOf(weight, size);
+                child1 = Arrays.copyOf(child1, size);
+                child2 = Arrays.copyOf(child2, size);
+            }
+            int a = arcCount++;
+            from[a] = u;
+            to[a] = w;
+            weight[a] = d;
+            child1[a] = a1;
+            child2[a] = a2;
+            link(a);
+        }
+
+        void contractAll() {
+            VertexHeap queue = new VertexHeap();
+            for (int v = 0; v < n; v++) {
+                queue.add(v, priority(v));
+            }
+            int next = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                // Priorities of the other vertices may be outdated, so this one is computed again before contraction
+                double p = priority(v);
+                if (!queue.isEmpty() && p > queue.peekKey()) {
+                    queue.add(v, p);
+                    continue;
+                }
+                contract(v, false);
+                contracted[v] = true;
+                rank[v] = next++;
+                for (int i = 0; i < inCount; i++) {
+                    contractedNeighbors[ins[i]]++;
+                    unlinkContracted(ins[i]);
+                }
+                for (int i = 0; i < outCount; i++) {
+                    contractedNeighbors[outs[i]]++;
+                    unlinkContracted(outs[i]);
+                }
+            }
+        }
+
+        /**
+         * Returns the priority of a vertex: the vertices adding the fewest shortcuts, compared to the arcs they remove,
+         * are contracted first. Counting contracted neighbors spreads contraction evenly over the graph.
+         */
+        private double priority(int v) {
+            int shortcuts = contract(v, true);
+            return 2 * (shortcuts - (inCount + outCount)) + contractedNeighbors[v];
+        }
+
+        /**
+         * Contracts a vertex.
+         * @param v the vertex
+         * @param simulate if {@code true}, only count the shortcuts
+         * @return the number of shortcuts
+         */
+        private int contract(int v, boolean simulate) {
+            collectNeighbors(v);
+            int shortcuts = 0;
+            for (int i = 0; i < inCount; i++) {
+                int u = ins[i];
+                double maxDist = 0;
+                for (int j = 0; j < outCount; j++) {
+                    if (outs[j] != u) {
+                        maxDist = Math.max(maxDist, weight[inArc[u]] + weight[outArc[outs[j]]]);
+                    }
+                }
+                witnessSearch(u, v, maxDist, simulate ? PRIORITY_WITNESS_SETTLE_LIMIT : WITNESS_SETTLE_LIMIT);
+                for (int j = 0; j < outCount; j++) {
+                    int w = outs[j];
+                    double d = weight[inArc[u]] + weight[outArc[w]];
+                    if (w == u || (witnessSeen[w] == witnessStamp && witnessDist[w] <= d)) {
+                        continue;
+                    }
+                    shortcuts++;
+                    if (!simulate) {
+                        addShortcut(u, w, d, inArc[u], outArc[w]);
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        private void collectNeighbors(int v) {
+            stamp++;
+            inCount = 0;
+            for (int i = 0; i < inSize[v]; i++) {
+                int a = in[v][i];
+                int u = from[a];
+                if (!contracted[u]) {
+                    if (neighborStamp[u] != stamp) {
+                        neighborStamp[u] = stamp;
+                        inArc[u] = a;
+                        if (inCount == ins.length) {
+                            ins = Arrays.copyOf(ins, 2 * inCount);
+                        }
+                        ins[inCount++] = u;
+                    } else if (weight[a] < weight[inArc[u]]) {
+                        inArc[u] = a;
+                    }
+                }
+            }
+            stamp++;
+            outCount = 0;
+            for (int i = 0; i < outSize[v]; i++) {
+                int a = out[v][i];
+                int w = to[a];
+                if (!contracted[w]) {
+                    if (neighborStamp[w] != stamp) {
+                        neighborStamp[w] = stamp;
+                        outArc[w] = a;
+                        if (outCount == outs.length) {
+                            outs = Arrays.copyOf(outs, 2 * outCount);
+                        }
+                        outs[outCount++] = w;
+                    } else if (weight[a] < weight[outArc[w]]) {
+                        outArc[w] = a;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Searches the shortest paths from {@code s} that avoid {@code avoid}, up to {@code maxDist}
+         * or {@code limit} settled vertices.
+         */
+        private void witnessSearch(int s, int avoid, double maxDist, int limit) {
+            witnessStamp++;
+            witnessHeap.clear();
+            witnessDist[s] = 0;
+            witnessSeen[s] = witnessStamp;
+            witnessHeap.add(s, 0);
+            int count = 0;
+            while (!witnessHeap.isEmpty()) {
+                double d = witnessHeap.peekKey();
+                int x = witnessHeap.poll();
+                if (d > witnessDist[x]) {
+                    continue;
+                }
+                if (d > maxDist || ++count > limit) {
+                    break;
+                }
+                for (int i = 0; i < outSize[x]; i++) {
+                    int a = out[x][i];
+                    int y = to[a];
+                    if (contracted[y] || y == avoid) {
+                        continue;
+                    }
+                    double dy = d + weight[a];
+                    if (witnessSeen[y] != witnessStamp || dy < witnessDist[y]) {
+                        witnessSeen[y] = witnessStamp;
+                        witnessDist[y] = dy;
+                        witnessHeap.add(y, dy);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the graph of this hierarchy
+     */
+    public ArrayGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return the number of shortcuts added to the graph
+     */
+    public int getShortcutCount() {
+        return arcFrom.length - graph.getEdgeCount();
+    }
+
+    /**
+     * @return the time spent to build the hierarchy, in nanoseconds
+     */
+    public long getPreprocessingNanos() {
+        return preprocessingNanos;
+    }
+
+    /**
+     * Returns an estimate of the memory used by the hierarchy, not counting the graph.
+     * @return the size of the arrays of the hierarchy, in bytes
+     */
+    public long getSizeInBytes() {
+        long arcs = arcFrom.length;
+        long vertices = dist.length;
+        return arcs * (4 + 4 + 8 + 4 + 4 + 4) + vertices * (2 * 4 + 2 * (8 + 4 + 4));
+    }
+
+    /**
+     * @return the weight of the last path found
+     */
+    public double getPathWeight() {
+        return pathWeight;
+    }
+
+    /**
+     * @return the number of vertices settled by the last query, in both directions
+     */
+    public int getSettledCount() {
+        return settled;
+    }
+
+    /**
+     * Finds the shortest path between two nodes.
+     * @param from the start node
+     * @param to the end node
+     * @return the edges of the path, or {@code null} if there is no path
+     */
+    public List<OsmEdge> route(Node from, Node to) {
+        int s = graph.getVertex(from);
+        int t = graph.getVertex(to);
+        if (s < 0 || t < 0) {
+            return null;
+        }
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(seen, 0);
+            Arrays.fill(seenBack, 0);
+            stamp = 1;
+        }
+        heap.clear();
+        heapBack.clear();
+        settled = 0;
+        dist[s] = 0;
+        parent[s] = -1;
+        seen[s] = stamp;
+        heap.add(s, 0);
+        distBack[t] = 0;
+        parentBack[t] = -1;
+        seenBack[t] = stamp;
+        heapBack.add(t, 0);
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+        while (true) {
+            double key = heap.isEmpty() ? Double.POSITIVE_INFINITY : heap.peekKey();
+            double keyBack = heapBack.isEmpty() ? Double.POSITIVE_INFINITY : heapBack.peekKey();
+            // Both searches only go up, so they must be continued until they cannot improve the best path
+            if (Math.min(key, keyBack) >= best) {
+                break;
+            }
+            if (key <= keyBack) {
+                int v = heap.poll();
+                if (key > dist[v]) {
+                    continue;
+                }
+                settled++;
+                if (seenBack[v] == stamp && key + distBack[v] < best) {
+                    best = key + distBack[v];
+                    meet = v;
+                }
+                if (stalled(v, key, downStart, downArc, arcFrom, dist, seen)) {
+                    continue;
+                }
+                for (int i = upStart[v]; i < upStart[v + 1]; i++) {
+                    int a = upArc[i];
+                    int w = arcTo[a];
+                    double d = key + arcWeight[a];
+                    if (seen[w] != stamp || d < dist[w]) {
+                        seen[w] = stamp;
+                        dist[w] = d;
+                        parent[w] = a;
+                        heap.add(w, d);
+                    }
+                }
+            } else {
+                int v = heapBack.poll();
+                if (keyBack > distBack[v]) {
+                    continue;
+                }
+                settled++;
+                if (seen[v] == stamp && keyBack + dist[v] < best) {
+                    best = keyBack + dist[v];
+                    meet = v;
+                }
+                if (stalled(v, keyBack, upStart, upArc, arcTo, distBack, seenBack)) {
+                    continue;
+                }
+                for (int i = downStart[v]; i < downStart[v + 1]; i++) {
+                    int a = downArc[i];
+                    int u = arcFrom[a];
+                    double d = keyBack + arcWeight[a];
+                    if (seenBack[u] != stamp || d < distBack[u]) {
+                        seenBack[u] = stamp;
+                        distBack[u] = d;
+                        parentBack[u] = a;
+                        heapBack.add(u, d);
+                    }
+                }
+            }
+        }
+        if (meet < 0) {
+            pathWeight = Double.POSITIVE_INFINITY;
+            return null;
+        }
+        pathWeight = best;
+        List<Integer> arcs = new ArrayList<>();
+        for (int v = meet; parent[v] != -1; v = arcFrom[parent[v]]) {
+            arcs.add(parent[v]);
+        }
+        Collections.reverse(arcs);
+        for (int v = meet; parentBack[v] != -1; v = arcTo[parentBack[v]]) {
+            arcs.add(parentBack[v]);
+        }
+        List<OsmEdge> path = new ArrayList<>();
+        for (int a : arcs) {
+            unpack(a, path);
+        }
+        return path;
+    }
+
+    /**
+     * Tells if a vertex is reached by a shorter path coming down from a higher vertex, in which case
+     * the search does not continue from it (stall on demand).
+     */
+    private boolean stalled(int v, double d, int[] start, int[] arcs, int[] other, double[] distance, int[] seenStamps) {
+        for (int i = start[v]; i < start[v + 1]; i++) {
+            int a = arcs[i];
+            int u = other[a];
+            if (seenStamps[u] == stamp && distance[u] + arcWeight[a] < d) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the edges replaced by an arc to a path.
+     */
+    private void unpack(int arc, List<OsmEdge> path) {
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = arc;
+        while (size > 0) {
+            int a = stack[--size];
+            if (arcChild1[a] < 0) {
+                path.add(graph.edges[a]);
+            } else {
+                if (size + 2 > stack.length) {
+                    stack = Arrays.copyOf(stack, 2 * stack.length);
+                }
+                stack[size++] = arcChild2[a];
+                stack[size++] = arcChild1[a];
+            }
+        }
+    }
+}
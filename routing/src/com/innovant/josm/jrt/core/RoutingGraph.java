@@ -5,8 +5,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.jgrapht.Graph;
 import org.jgrapht.alg.BellmanFordShortestPath;
@@ -14,7 +19,18 @@ import org.jgrapht.alg.DijkstraShortestPath;
 import org.jgrapht.graph.DirectedWeightedMultigraph;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager.FireMode;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
 import org.openstreetmap.josm.gui.MainApplication;
 
 import com.innovant.josm.jrt.osm.OsmEdge;
@@ -25,6 +41,9 @@ import org.openstreetmap.josm.tools.Logging;
 
 /**
  * Class utility to work with graph routers.
+ * <p>
+ * The graph follows the changes of the data set: only the edges of changed ways are updated.
+ * Changes are applied in the EDT, where the graph is also painted and routed.
  *
  * @author Juangui
  * @author Jose Vidal
@@ -41,7 +60,8 @@ public class RoutingGraph {
      * Diferent algorithms to apply to the graph.
      */
     public enum Algorithm {
-        ROUTING_ALG_DIJKSTRA, ROUTING_ALG_BELLMANFORD
+        ROUTING_ALG_DIJKSTRA, ROUTING_ALG_BELLMANFORD, ROUTING_ALG_ASTAR, ROUTING_ALG_BIDIRECTIONAL_DIJKSTRA,
+        ROUTING_ALG_CONTRACTION_HIERARCHY
     }
 
     /**
@@ -80,6 +100,16 @@ public class RoutingGraph {
     private Graph<Node, OsmEdge> graph;
     private RoutingGraphDelegator rgDelegator;
 
+    /**
+     * Array copy of the graph for the A* and bidirectional Dijkstra searches, dropped when the graph changes.
+     */
+    private ArrayGraphRouter router;
+
+    /**
+     * Contraction hierarchy of the graph, for repeated queries on the same graph, dropped when the graph changes.
+     */
+    private ContractionHierarchy hierarchy;
+
     /**
      * Graph getter
      */
@@ -87,19 +117,108 @@ public class RoutingGraph {
         return graph;
     }
 
+    /**
+     * Edges of each way of the graph, so that only the edges of changed ways are updated.
+     */
+    private final Map<Way, List<OsmEdge>> wayEdges = new HashMap<>();
+
+    /**
+     * Ways and nodes changed by the data set event being processed.
+     */
+    private final Set<Way> changedWays = new LinkedHashSet<>();
+    private final Set<Node> movedNodes = new LinkedHashSet<>();
+
+    private final DataSetListenerAdapter dataSetListener = new DataSetListenerAdapter(this::processDatasetEvent);
+
+    /**
+     * Incremented each time the graph changes, so that routes can be computed again.
+     */
+    private int version;
+
+    /**
+     * Statistics of graph updates.
+     */
+    private final UpdateStats stats = new UpdateStats();
+
+    /**
+     * Statistics of graph updates, for debugging.
+     */
+    public static class UpdateStats {
+        private int rebuilds;
+        private long lastRebuildNanos;
+        private int updates;
+        private int lastUpdateWays;
+        private int lastUpdateAddedEdges;
+        private int lastUpdateRemovedEdges;
+        private int lastUpdateReweightedEdges;
+        private long lastUpdateNanos;
+        private long lastRouteNanos;
+
+        /**
+         * @return the number of full graph constructions
+         */
+        public int getRebuilds() {
+            return rebuilds;
+        }
+
+        /**
+         * @return the number of incremental updates
+         */
+        public int getUpdates() {
+            return updates;
+        }
+
+        /**
+         * @return the number of ways updated by the last incremental update
+         */
+        public int getLastUpdateWays() {
+            return lastUpdateWays;
+        }
+
+        /**
+         * @return the number of edges touched (added, removed or reweighted) by the last incremental update
+         */
+        public int getLastUpdateTouchedEdges() {
+            return lastUpdateAddedEdges + lastUpdateRemovedEdges + lastUpdateReweightedEdges;
+        }
+
+        /**
+         * @return the duration of the last incremental update, in nanoseconds
+         */
+        public long getLastUpdateNanos() {
+            return lastUpdateNanos;
+        }
+
+        /**
+         * @return the duration of the last route computation, in nanoseconds
+         */
+        public long getLastRouteNanos() {
+            return lastRouteNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Full builds: %d (last: %.1f ms)<br/>"
+                    + "Updates: %d (last: %d ways, %d edges added, %d removed, %d reweighted in %.2f ms)<br/>"
+                    + "Last route: %.1f ms",
+                    rebuilds, lastRebuildNanos / 1e6, updates, lastUpdateWays, lastUpdateAddedEdges,
+                    lastUpdateRemovedEdges, lastUpdateReweightedEdges, lastUpdateNanos / 1e6, lastRouteNanos / 1e6);
+        }
+    }
+
     @SuppressWarnings("squid:S2234")
-    private void addEdgeBidirectional(Way way, Node from, Node to) {
-        addEdge(way, from, to);
-        addEdge(way, to, from);
+    private void addEdgeBidirectional(List<OsmEdge> edges, Way way, Node from, Node to) {
+        addEdge(edges, way, from, to);
+        addEdge(edges, way, to, from);
     }
 
     @SuppressWarnings("squid:S2234")
-    private void addEdgeReverseOneway(Way way, Node from, Node to) {
-        addEdge(way, to, from);
+    private void addEdgeReverseOneway(List<OsmEdge> edges, Way way, Node from, Node to) {
+        addEdge(edges, way, to, from);
     }
 
-    private void addEdgeNormalOneway(Way way, Node from, Node to) {
-        addEdge(way, from, to);
+    private void addEdgeNormalOneway(List<OsmEdge> edges, Way way, Node from, Node to) {
+        addEdge(edges, way, from, to);
     }
 
     /**
@@ -119,100 +238,265 @@ public class RoutingGraph {
         routingProfile = new RoutingProfile("default");
         routingProfile.setOnewayUse(true); // Don't ignore oneways by default
         this.setWaySpeeds(routingProfile.getWaySpeeds());
+        DatasetEventManager.getInstance().addDatasetListener(dataSetListener, FireMode.IN_EDT_CONSOLIDATED);
         Logging.trace("Created RoutingGraph");
     }
 
+    /**
+     * Stops following the changes of the data set.
+     */
+    public void destroy() {
+        DatasetEventManager.getInstance().removeDatasetListener(dataSetListener);
+        graph = null;
+        router = null;
+        hierarchy = null;
+        wayEdges.clear();
+    }
+
     /**
      * Create OSM graph for routing
      */
     public void createGraph() {
         Logging.trace("Creating Graph...");
+        long start = System.nanoTime();
         graph = new DirectedWeightedMultigraph<>(OsmEdge.class);
         rgDelegator = new RoutingGraphDelegator(graph);
         rgDelegator.setRouteType(this.routeType);
+        wayEdges.clear();
+        changedWays.clear();
+        movedNodes.clear();
         // iterate all ways and segments for all nodes:
         for (Way way : data.getWays()) {
+            addWay(way);
+        } // end of looping thru ways
+        graphChanged();
+        stats.rebuilds++;
+        stats.lastRebuildNanos = System.nanoTime() - start;
 
-            // skip way if not suitable for routing.
-            if (way == null || way.isDeleted() || !this.isvalidWay(way)
-                    || way.getNodesCount() == 0) continue;
-
-            // INIT
-            Node from = null;
-            Node to = null;
-            List<Node> nodes = way.getNodes();
-            int nodesCount = nodes.size();
-
-            /*
-             * Assume node is A B C D E. The procedure should be
-             *
-             *  case 1 - bidirectional ways:
-             *  1) Add vertex A B C D E
-             *  2) Link A<->B, B<->C, C<->D, D<->E as Edges
-             *
-             *  case 2 - oneway reverse:
-             *  1) Add vertex A B C D E
-             *  2) Link B->A,C->B,D->C,E->D as Edges. result: A<-B<-C<-D<-E
-             *
-             *  case 3 - oneway normal:
-             *  1) Add vertex A B C D E
-             *  2) Link A->B, B->C, C->D, D->E as Edges. result: A->B->C->D->E
-             *
-             *
-             */
-
-            String onewayVal = way.get("oneway");   /*   get (oneway=?) tag for this way.   */
-            String junctionVal = way.get("junction");   /*   get (junction=?) tag for this way.   */
-
-            from = nodes.get(0);                   /*   1st node A  */
-            graph.addVertex(from);                 /*   add vertex A */
-
-            for (int i = 1; i < nodesCount; i++) { /*   loop from B until E */
-
-                to = nodes.get(i);                   /*   2nd node B   */
-
-                if (to != null && !to.isDeleted()) {
-                    graph.addVertex(to);               /*   add vertex B */
-
-
-                    //this is where we link the vertices
-                    if (!routingProfile.isOnewayUsed()) {
-                        //"Ignore oneways" is selected
-                        addEdgeBidirectional(way, from, to);
-
-                    } else if (onewayVal == null && "roundabout".equals(junctionVal)) {
-                        //Case (roundabout): oneway=implicit yes
-                        addEdgeNormalOneway(way, from, to);
-
-                    } else if (onewayVal == null || Arrays.asList("false", "no", "0").contains(onewayVal)) {
-                        //Case (bi-way): oneway=false OR oneway=unset OR oneway=0 OR oneway=no
-                        addEdgeBidirectional(way, from, to);
-
-                    } else if ("-1".equals(onewayVal)) {
-                        //Case (oneway reverse): oneway=-1
-                        addEdgeReverseOneway(way, from, to);
-
-                    } else if (Arrays.asList("1", "yes", "true").contains(onewayVal)) {
-                        //Case (oneway normal): oneway=yes OR 1 OR true
-                        addEdgeNormalOneway(way, from, to);
+        Logging.trace("End Create Graph");
+        Logging.trace("Vertex: {0}", graph.vertexSet().size());
+        Logging.trace("Edges: {0}", graph.edgeSet().size());
+    }
 
-                    }
+    /**
+     * Add the edges of a way to the graph.
+     * @param way the way
+     * @return the number of added edges
+     */
+    private int addWay(Way way) {
+        // skip way if not suitable for routing.
+        if (way == null || way.isDeleted() || way.getDataSet() != data || !this.isvalidWay(way)
+                || way.getNodesCount() == 0) return 0;
+
+        List<OsmEdge> edges = new ArrayList<>();
+        // INIT
+        Node from = null;
+        Node to = null;
+        List<Node> nodes = way.getNodes();
+        int nodesCount = nodes.size();
+
+        /*
+         * Assume node is A B C D E. The procedure should be
+         *
+         *  case 1 - bidirectional ways:
+         *  1) Add vertex A B C D E
+         *  2) Link A<->B, B<->C, C<->D, D<->E as Edges
+         *
+         *  case 2 - oneway reverse:
+         *  1) Add vertex A B C D E
+         *  2) Link B->A,C->B,D->C,E->D as Edges. result: A<-B<-C<-D<-E
+         *
+         *  case 3 - oneway normal:
+         *  1) Add vertex A B C D E
+         *  2) Link A->B, B->C, C->D, D->E as Edges. result: A->B->C->D->E
+         *
+         *
+         */
+
+        String onewayVal = way.get("oneway");   /*   get (oneway=?) tag for this way.   */
+        String junctionVal = way.get("junction");   /*   get (junction=?) tag for this way.   */
+
+        from = nodes.get(0);                   /*   1st node A  */
+        graph.addVertex(from);                 /*   add vertex A */
+
+        for (int i = 1; i < nodesCount; i++) { /*   loop from B until E */
+
+            to = nodes.get(i);                   /*   2nd node B   */
+
+            if (to != null && !to.isDeleted()) {
+                graph.addVertex(to);               /*   add vertex B */
+
+
+                //this is where we link the vertices
+                if (!routingProfile.isOnewayUsed()) {
+                    //"Ignore oneways" is selected
+                    addEdgeBidirectional(edges, way, from, to);
+
+                } else if (onewayVal == null && "roundabout".equals(junctionVal)) {
+                    //Case (roundabout): oneway=implicit yes
+                    addEdgeNormalOneway(edges, way, from, to);
+
+                } else if (onewayVal == null || Arrays.asList("false", "no", "0").contains(onewayVal)) {
+                    //Case (bi-way): oneway=false OR oneway=unset OR oneway=0 OR oneway=no
+                    addEdgeBidirectional(edges, way, from, to);
+
+                } else if ("-1".equals(onewayVal)) {
+                    //Case (oneway reverse): oneway=-1
+                    addEdgeReverseOneway(edges, way, from, to);
+
+                } else if (Arrays.asList("1", "yes", "true").contains(onewayVal)) {
+                    //Case (oneway normal): oneway=yes OR 1 OR true
+                    addEdgeNormalOneway(edges, way, from, to);
 
-                    from = to;                         /*   we did A<->B, next loop we will do B<->C, so from=B,to=C for next loop. */
                 }
 
-            } // end of looping thru nodes
-        } // end of looping thru ways
+                from = to;                         /*   we did A<->B, next loop we will do B<->C, so from=B,to=C for next loop. */
+            }
 
-        Logging.trace("End Create Graph");
-        Logging.trace("Vertex: {0}", graph.vertexSet().size());
-        Logging.trace("Edges: {0}", graph.edgeSet().size());
+        } // end of looping thru nodes
+        if (!edges.isEmpty()) {
+            wayEdges.put(way, edges);
+        }
+        return edges.size();
+    }
+
+    /**
+     * Remove the edges of a way from the graph, and the vertices left without edges.
+     * @param way the way
+     * @return the number of removed edges
+     */
+    private int removeWay(Way way) {
+        List<OsmEdge> edges = wayEdges.remove(way);
+        if (edges == null) return 0;
+        graph.removeAllEdges(edges);
+        for (OsmEdge edge : edges) {
+            removeIfIsolated(edge.getFrom());
+            removeIfIsolated(edge.getTo());
+        }
+        return edges.size();
+    }
+
+    private void removeIfIsolated(Node node) {
+        if (graph.containsVertex(node) && graph.edgesOf(node).isEmpty()) {
+            graph.removeVertex(node);
+        }
+    }
+
+    /**
+     * Compute again the length and weight of the edges of a way that touch moved nodes.
+     * @param way the way
+     * @param nodes the moved nodes of the way
+     * @return the number of reweighted edges
+     */
+    private int reweightWay(Way way, Set<Node> nodes) {
+        int count = 0;
+        for (OsmEdge edge : wayEdges.get(way)) {
+            if (nodes.contains(edge.getFrom()) || nodes.contains(edge.getTo())) {
+                double length = edge.getFrom().greatCircleDistance(edge.getTo());
+                setWeight(edge, length);
+                ((DirectedWeightedMultigraph<Node, OsmEdge>) graph).setEdgeWeight(edge, getWeight(way, length));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Apply the changes collected from data set events to the graph.
+     * Only the edges of changed ways are added or removed, and only the edges touching moved nodes are reweighted.
+     */
+    private void applyChanges() {
+        if (graph == null) {
+            // The graph will be built from scratch when needed
+            changedWays.clear();
+            movedNodes.clear();
+            return;
+        }
+        if (changedWays.isEmpty() && movedNodes.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int removed = 0;
+        int added = 0;
+        int reweighted = 0;
+        for (Way way : changedWays) {
+            removed += removeWay(way);
+            added += addWay(way);
+        }
+        // Several nodes of a way are moved together when the way is moved or rotated
+        Map<Way, Set<Node>> movedWayNodes = new LinkedHashMap<>();
+        for (Node node : movedNodes) {
+            for (Way way : node.getParentWays()) {
+                if (!changedWays.contains(way)) {
+                    movedWayNodes.computeIfAbsent(way, w -> new HashSet<>()).add(node);
+                }
+            }
+        }
+        for (Map.Entry<Way, Set<Node>> entry : movedWayNodes.entrySet()) {
+            if (wayEdges.containsKey(entry.getKey())) {
+                reweighted += reweightWay(entry.getKey(), entry.getValue());
+            } else {
+                // Edges are not created for nodes with unknown coordinates
+                added += addWay(entry.getKey());
+            }
+        }
+        int ways = changedWays.size() + movedWayNodes.size();
+        changedWays.clear();
+        movedNodes.clear();
+        graphChanged();
+        stats.updates++;
+        stats.lastUpdateWays = ways;
+        stats.lastUpdateAddedEdges = added;
+        stats.lastUpdateRemovedEdges = removed;
+        stats.lastUpdateReweightedEdges = reweighted;
+        stats.lastUpdateNanos = System.nanoTime() - start;
+        Logging.debug("Routing graph update: {0} ways, {1} edges added, {2} removed, {3} reweighted in {4} ms",
+                ways, added, removed, reweighted, stats.lastUpdateNanos / 1e6);
+    }
+
+    /**
+     * Collects the changes of the data set, then applies them to the graph.
+     * Consolidated events are applied at once, an event without details about the changed primitives
+     * causes a rebuild of the graph when it is needed.
+     * @param event the data set event
+     */
+    void processDatasetEvent(AbstractDatasetChangedEvent event) {
+        if (event.getDataset() != data) {
+            return;
+        }
+        Collection<AbstractDatasetChangedEvent> events;
+        if (event instanceof DataChangedEvent) {
+            events = ((DataChangedEvent) event).getEvents();
+        } else {
+            events = Collections.singletonList(event);
+        }
+        if (events == null) {
+            // Too many changes to know them, or changes made while the data set was not the edit data set
+            resetGraph();
+            return;
+        }
+        for (AbstractDatasetChangedEvent e : events) {
+            if (e instanceof PrimitivesAddedEvent || e instanceof PrimitivesRemovedEvent) {
+                for (OsmPrimitive p : e.getPrimitives()) {
+                    if (p instanceof Way) {
+                        changedWays.add((Way) p);
+                    }
+                }
+            } else if (e instanceof TagsChangedEvent && ((TagsChangedEvent) e).getPrimitive() instanceof Way) {
+                changedWays.add((Way) ((TagsChangedEvent) e).getPrimitive());
+            } else if (e instanceof WayNodesChangedEvent) {
+                changedWays.add(((WayNodesChangedEvent) e).getChangedWay());
+            } else if (e instanceof NodeMovedEvent) {
+                movedNodes.add(((NodeMovedEvent) e).getNode());
+            }
+        }
+        applyChanges();
     }
 
     /**
      * Compute weight and add edge to the graph
      */
-    private void addEdge(Way way, Node from, Node to) {
+    private void addEdge(List<OsmEdge> edges, Way way, Node from, Node to) {
         if (!from.isLatLonKnown() || !to.isLatLonKnown()) {
             return;
         }
@@ -221,6 +505,7 @@ public class RoutingGraph {
         double length = edge.getLength();
         edge.setSpeed(12.1);
         graph.addEdge(from, to, edge);
+        edges.add(edge);
         // weight = getWeight(way);
         double weight = getWeight(way, length);
         setWeight(edge, length);
@@ -318,6 +603,7 @@ public class RoutingGraph {
 
         if (graph == null || routingModel.getOnewayChanged())
             this.createGraph();
+        long start = System.nanoTime();
         Logging.trace("apply algorithm between nodes ");
 
         for (Node node : nodes) {
@@ -354,11 +640,41 @@ public class RoutingGraph {
                 }
             }
             break;
+        case ROUTING_ALG_ASTAR:
+        case ROUTING_ALG_BIDIRECTIONAL_DIJKSTRA:
+            Logging.trace("Using {0} algorithm", algorithm == Algorithm.ROUTING_ALG_ASTAR ? "A*" : "bidirectional Dijkstra");
+            ArrayGraphRouter r = getRouter();
+            for (int index = 1; index < nodes.size(); ++index) {
+                List<OsmEdge> leg = algorithm == Algorithm.ROUTING_ALG_ASTAR
+                        ? r.aStar(nodes.get(index - 1), nodes.get(index))
+                        : r.bidirectionalDijkstra(nodes.get(index - 1), nodes.get(index));
+                if (leg == null) {
+                    Logging.trace("no path found!");
+                    break;
+                }
+                path.addAll(leg);
+                totalWeight += r.getPathWeight();
+            }
+            break;
+        case ROUTING_ALG_CONTRACTION_HIERARCHY:
+            Logging.trace("Using contraction hierarchy");
+            ContractionHierarchy ch = getContractionHierarchy();
+            for (int index = 1; index < nodes.size(); ++index) {
+                List<OsmEdge> leg = ch.route(nodes.get(index - 1), nodes.get(index));
+                if (leg == null) {
+                    Logging.trace("no path found!");
+                    break;
+                }
+                path.addAll(leg);
+                totalWeight += ch.getPathWeight();
+            }
+            break;
         default:
             Logging.trace("Wrong algorithm");
             break;
         }
 
+        stats.lastRouteNanos = System.nanoTime() - start;
         Logging.trace("shortest path found: {0}\nweight: {1}", path, totalWeight);
         return path;
     }
@@ -384,11 +700,22 @@ public class RoutingGraph {
     }
 
     /**
+     * Sets the route type. The edge weights are computed again, so that routes are computed again with the new type.
      * @param routeType the routeType to set
      */
     public void setTypeRoute(RouteType routeType) {
+        if (routeType == this.routeType) {
+            return;
+        }
         this.routeType = routeType;
-        this.rgDelegator.setRouteType(routeType);
+        if (graph != null) {
+            this.rgDelegator.setRouteType(routeType);
+            // Edge weights depend on the route type
+            for (OsmEdge edge : graph.edgeSet()) {
+                ((DirectedWeightedMultigraph<Node, OsmEdge>) graph).setEdgeWeight(edge, getWeight(edge.getWay(), edge.getLength()));
+            }
+            graphChanged();
+        }
     }
 
     /**
@@ -406,8 +733,62 @@ public class RoutingGraph {
         this.waySpeeds = waySpeeds;
     }
 
+    /**
+     * Returns the router of the array copy of the graph, copying the graph if it changed.
+     * @return the router of the current graph
+     */
+    private ArrayGraphRouter getRouter() {
+        if (router == null) {
+            router = new ArrayGraphRouter(new ArrayGraph(graph));
+        }
+        return router;
+    }
+
+    /**
+     * Returns the contraction hierarchy of the graph, building it if the graph changed.
+     * The graph is created if needed.
+     * @return the contraction hierarchy of the current graph
+     */
+    public ContractionHierarchy getContractionHierarchy() {
+        if (graph == null)
+            this.createGraph();
+        if (hierarchy == null) {
+            hierarchy = new ContractionHierarchy(getRouter().getGraph());
+            Logging.debug("Routing contraction hierarchy: {0} shortcuts, {1} kB, built in {2} ms",
+                    hierarchy.getShortcutCount(), hierarchy.getSizeInBytes() / 1024, hierarchy.getPreprocessingNanos() / 1e6);
+        }
+        return hierarchy;
+    }
+
     public void resetGraph() {
         graph = null;
+        wayEdges.clear();
+        graphChanged();
+    }
+
+    /**
+     * Increments the version of the graph and drops the copies made from the previous version.
+     */
+    private void graphChanged() {
+        version++;
+        router = null;
+        hierarchy = null;
+    }
+
+    /**
+     * Returns the version of the graph, incremented each time the graph changes.
+     * @return the version of the graph
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the statistics of graph updates.
+     * @return the statistics of graph updates
+     */
+    public UpdateStats getUpdateStats() {
+        return stats;
     }
 
     public RoutingProfile getRoutingProfile() {
@@ -0,0 +1,76 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of vertex ids, ordered by a {@code double} key.
+ * <p>
+ * There is no decrease key operation: searches add a vertex again when its distance decreases,
+ * and skip the outdated entries when they are removed.
+ */
+final class VertexHeap {
+
+    private double[] keys = new double[64];
+    private int[] vertices = new int[64];
+    private int size;
+
+    void clear() {
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    double peekKey() {
+        return keys[0];
+    }
+
+    int peekVertex() {
+        return vertices[0];
+    }
+
+    void add(int v, double key) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            vertices = Arrays.copyOf(vertices, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int p = (i - 1) >>> 1;
+            if (keys[p] <= key) {
+                break;
+            }
+            keys[i] = keys[p];
+            vertices[i] = vertices[p];
+            i = p;
+        }
+        keys[i] = key;
+        vertices[i] = v;
+    }
+
+    int poll() {
+        int result = vertices[0];
+        size--;
+        double key = keys[size];
+        int v = vertices[size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int c = 2 * i + 1;
+            if (c + 1 < size && keys[c + 1] < keys[c]) {
+                c++;
+            }
+            if (key <= keys[c]) {
+                break;
+            }
+            keys[i] = keys[c];
+            vertices[i] = vertices[c];
+            i = c;
+        }
+        keys[i] = key;
+        vertices[i] = v;
+        return result;
+    }
+}
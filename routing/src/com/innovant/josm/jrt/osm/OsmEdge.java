@@ -50,6 +50,20 @@ public class OsmEdge extends DefaultWeightedEdge {
         return this.way;
     }
 
+    /**
+     * @return the start node
+     */
+    public Node getFrom() {
+        return this.from;
+    }
+
+    /**
+     * @return the end node
+     */
+    public Node getTo() {
+        return this.to;
+    }
+
     public EastNorth fromEastNorth() {
         return this.from.getEastNorth();
     }
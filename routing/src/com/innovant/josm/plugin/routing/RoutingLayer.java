@@ -50,7 +50,9 @@ public class RoutingLayer extends Layer {
         KEY_ACTIVE_ROUTE_COLOR(marktr("routing active route")),
         KEY_INACTIVE_ROUTE_COLOR(marktr("routing inactive route")),
         KEY_ROUTE_WIDTH("routing.route.width"),
-        KEY_ROUTE_SELECT("routing.route.select");
+        KEY_ROUTE_SELECT("routing.route.select"),
+        KEY_CONTRACTION_HIERARCHY("routing.contraction-hierarchy"),
+        KEY_ASTAR("routing.astar");
 
         private final String key;
         PreferencesKeys(String key) {
@@ -155,6 +157,7 @@ public class RoutingLayer extends Layer {
                 + "<body>"
                 +"Graph Vertex: "+this.routingModel.routingGraph.getVertexCount()+"<br/>"
                 +"Graph Edges: "+this.routingModel.routingGraph.getEdgeCount()+"<br/>"
+                + this.routingModel.routingGraph.getUpdateStats()
                 + "</body>"
                 + "</html>";
     }
@@ -269,6 +272,7 @@ public class RoutingLayer extends Layer {
     @Override
     public void destroy() {
         routingModel.reset();
+        routingModel.routingGraph.destroy();
         //      layerAdded = false;
     }
 
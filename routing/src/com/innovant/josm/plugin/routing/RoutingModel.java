@@ -6,10 +6,12 @@ import java.util.List;
 
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.spi.preferences.Config;
 
 import com.innovant.josm.jrt.core.RoutingGraph;
 import com.innovant.josm.jrt.core.RoutingGraph.Algorithm;
 import com.innovant.josm.jrt.osm.OsmEdge;
+import com.innovant.josm.plugin.routing.RoutingLayer.PreferencesKeys;
 import org.openstreetmap.josm.tools.Logging;
 
 /**
@@ -31,6 +33,11 @@ public class RoutingModel {
 
     private List<OsmEdge> path;
 
+    /**
+     * Version of the graph the path was computed with.
+     */
+    private int pathGraphVersion;
+
     /**
      * Flag to advise about changes in the selected nodes.
      */
@@ -108,14 +115,30 @@ public class RoutingModel {
      * @return A list of edges forming the shortest path
      */
     public List<OsmEdge> getRouteEdges() {
-        if (this.changeNodes || path == null) {
-            path = this.routingGraph.applyAlgorithm(nodes, Algorithm.ROUTING_ALG_DIJKSTRA);
+        if (this.changeNodes || path == null || pathGraphVersion != routingGraph.getVersion()) {
+            path = this.routingGraph.applyAlgorithm(nodes, getAlgorithm());
+            pathGraphVersion = routingGraph.getVersion();
             this.changeNodes = false;
             this.changeOneway = false;
         }
         return path;
     }
 
+    /**
+     * Returns the routing algorithm chosen in preferences, Dijkstra by default.
+     * Both A* and contraction hierarchies work on an array copy of the graph, rebuilt after each change of the data.
+     * @return the routing algorithm
+     */
+    private static Algorithm getAlgorithm() {
+        if (Config.getPref().getBoolean(PreferencesKeys.KEY_CONTRACTION_HIERARCHY.getKey(), false)) {
+            // Contraction hierarchies pay off when many routes are computed on the same data
+            return Algorithm.ROUTING_ALG_CONTRACTION_HIERARCHY;
+        } else if (Config.getPref().getBoolean(PreferencesKeys.KEY_ASTAR.getKey(), false)) {
+            return Algorithm.ROUTING_ALG_ASTAR;
+        }
+        return Algorithm.ROUTING_ALG_DIJKSTRA;
+    }
+
     /**
      * Marks that some node or the node order has changed so the path should be computed again
      */
@@ -0,0 +1,176 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jgrapht.Graph;
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+
+import com.innovant.josm.jrt.osm.OsmEdge;
+
+/**
+ * Unit tests of {@link ArrayGraphRouter}.
+ */
+class ArrayGraphRouterTest {
+
+    /**
+     * Hand-built routing graph and its nodes, see {@link #createGraph}.
+     */
+    static final class TestGraph {
+        final DirectedWeightedMultigraph<Node, OsmEdge> graph = new DirectedWeightedMultigraph<>(OsmEdge.class);
+        final List<Node> nodes = new ArrayList<>();
+        private final Way way = new Way();
+
+        Node node(double x, double y) {
+            Node node = new Node(new LatLon(45 + y * 0.001, 5 + x * 0.001));
+            graph.addVertex(node);
+            nodes.add(node);
+            return node;
+        }
+
+        void edge(Node from, Node to, double speed) {
+            OsmEdge edge = new OsmEdge(way, from, to);
+            graph.addEdge(from, to, edge);
+            graph.setEdgeWeight(edge, edge.getLength() / speed);
+        }
+
+        void edges(Node a, Node b, double speed) {
+            edge(a, b, speed);
+            edge(b, a, speed);
+        }
+    }
+
+    /**
+     * Creates a small street network: a slow direct street and a fast detour,
+     * a oneway, a dead end, parallel edges, and a separate component.
+     * <pre>
+     *   G - H         (separate)
+     *
+     *   D ==> E ==> F
+     *   ||    ^     |
+     *   A --- B === C --> I
+     * </pre>
+     * @return the test graph
+     */
+    static TestGraph createGraph() {
+        TestGraph g = new TestGraph();
+        Node a = g.node(0, 0);
+        Node b = g.node(1, 0);
+        Node c = g.node(2, 0);
+        Node d = g.node(0, 1);
+        Node e = g.node(1, 1);
+        Node f = g.node(2, 1);
+        Node i = g.node(3, 0);
+        Node gg = g.node(0, 3);
+        Node h = g.node(1, 3);
+        g.edges(a, b, 10);
+        g.edges(b, c, 10);
+        // parallel edges: a faster one in one direction
+        g.edge(b, c, 25);
+        g.edges(a, d, 30);
+        g.edge(d, e, 30);
+        g.edge(e, f, 30);
+        g.edge(b, e, 20);
+        g.edges(f, c, 10);
+        // dead end
+        g.edge(c, i, 10);
+        g.edges(gg, h, 10);
+        return g;
+    }
+
+    /**
+     * Checks that a path goes from a node to another, and that its weight is the sum of its edge weights.
+     */
+    static void assertPath(Graph<Node, OsmEdge> graph, Node from, Node to, List<OsmEdge> path, double weight) {
+        assertNotNull(path);
+        Node current = from;
+        double sum = 0;
+        for (OsmEdge edge : path) {
+            assertSame(current, graph.getEdgeSource(edge));
+            current = graph.getEdgeTarget(edge);
+            sum += graph.getEdgeWeight(edge);
+        }
+        assertSame(to, current);
+        assertEquals(sum, weight, 1e-9);
+    }
+
+    /**
+     * A* and bidirectional Dijkstra find paths of the same weight as JGraphT Dijkstra, between all pairs of nodes.
+     */
+    @Test
+    void testSameWeightAsDijkstra() {
+        TestGraph g = createGraph();
+        ArrayGraphRouter router = new ArrayGraphRouter(new ArrayGraph(g.graph));
+        int paths = 0;
+        for (Node from : g.nodes) {
+            for (Node to : g.nodes) {
+                if (from == to) {
+                    continue;
+                }
+                DijkstraShortestPath<Node, OsmEdge> dijkstra = new DijkstraShortestPath<>(g.graph, from, to);
+                List<OsmEdge> aStar = router.aStar(from, to);
+                double aStarWeight = router.getPathWeight();
+                List<OsmEdge> bidirectional = router.bidirectionalDijkstra(from, to);
+                double bidirectionalWeight = router.getPathWeight();
+                if (dijkstra.getPathEdgeList() == null) {
+                    assertNull(aStar);
+                    assertNull(bidirectional);
+                } else {
+                    double expected = dijkstra.getPathLength();
+                    assertEquals(expected, aStarWeight, 1e-9);
+                    assertEquals(expected, bidirectionalWeight, 1e-9);
+                    assertPath(g.graph, from, to, aStar, aStarWeight);
+                    assertPath(g.graph, from, to, bidirectional, bidirectionalWeight);
+                    paths++;
+                }
+            }
+        }
+        // 6 strongly connected nodes reaching each other and the dead end, and the separate pair
+        assertEquals(6 * 6 + 2, paths);
+    }
+
+    /**
+     * The path from a node to itself is empty.
+     */
+    @Test
+    void testSameNode() {
+        TestGraph g = createGraph();
+        ArrayGraphRouter router = new ArrayGraphRouter(new ArrayGraph(g.graph));
+        Node a = g.nodes.get(0);
+        assertTrue(router.aStar(a, a).isEmpty());
+        assertEquals(0, router.getPathWeight(), 0);
+        assertTrue(router.bidirectionalDijkstra(a, a).isEmpty());
+        assertEquals(0, router.getPathWeight(), 0);
+    }
+
+    /**
+     * No path is found between separate components, against a oneway, or for a node outside of the graph.
+     */
+    @Test
+    void testNoPath() {
+        TestGraph g = createGraph();
+        ArrayGraphRouter router = new ArrayGraphRouter(new ArrayGraph(g.graph));
+        Node a = g.nodes.get(0);
+        Node i = g.nodes.get(6);
+        Node h = g.nodes.get(8);
+        Node outside = new Node(new LatLon(46, 6));
+        for (Node[] pair : new Node[][] {{a, h}, {h, a}, {i, a}, {a, outside}, {outside, a}}) {
+            assertNull(router.aStar(pair[0], pair[1]));
+            assertNull(router.bidirectionalDijkstra(pair[0], pair[1]));
+        }
+        // the router can still be used after a failed search
+        assertPath(g.graph, a, i, router.bidirectionalDijkstra(a, i), router.getPathWeight());
+    }
+}
@@ -0,0 +1,75 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+import com.innovant.josm.jrt.core.RoutingGraph.RouteType;
+
+/**
+ * Preprocessing time, memory and query latency of {@link ContractionHierarchy}, compared to {@link ArrayGraphRouter#aStar}.
+ * <p>
+ * Not run with unit tests. Use the {@code routing.benchmark.file} system property to benchmark an OSM file,
+ * a synthetic street grid is used otherwise.
+ */
+@BasicPreferences
+class ContractionHierarchyBenchmark {
+
+    private static final int RUNS = 5;
+    private static final int ROUTES = 1000;
+
+    @Test
+    void benchmarkContractionHierarchy() throws Exception {
+        DataSet ds = ShortestPathBenchmark.loadDataSet();
+        for (RouteType routeType : RouteType.values()) {
+            RoutingGraph graph = ShortestPathBenchmark.createGraph(ds, routeType);
+            System.out.printf("%s: %d vertices, %d edges%n", routeType, graph.getVertexCount(), graph.getEdgeCount());
+            List<Node> pairs = ShortestPathBenchmark.randomPairs(graph, ROUTES);
+            ArrayGraph arrayGraph = new ArrayGraph(graph.getGraph());
+            ArrayGraphRouter router = new ArrayGraphRouter(arrayGraph);
+
+            ContractionHierarchy ch = null;
+            for (int run = -RUNS; run < RUNS; run++) {
+                ch = new ContractionHierarchy(arrayGraph);
+                // Negative runs are warmup
+                if (run >= 0) {
+                    System.out.printf("preprocessing: %8.1f ms, %d shortcuts, %6.1f MB%n", ch.getPreprocessingNanos() / 1e6,
+                            ch.getShortcutCount(), ch.getSizeInBytes() / 1e6);
+                }
+            }
+
+            for (int run = -RUNS; run < RUNS; run++) {
+                long aStarNanos = 0;
+                long chNanos = 0;
+                long settledAStar = 0;
+                long settledCh = 0;
+                for (int i = 0; i < ROUTES; i++) {
+                    Node from = pairs.get(2 * i);
+                    Node to = pairs.get(2 * i + 1);
+                    long start = System.nanoTime();
+                    boolean found = router.aStar(from, to) != null;
+                    aStarNanos += System.nanoTime() - start;
+                    settledAStar += router.getSettledCount();
+                    start = System.nanoTime();
+                    boolean foundCh = ch.route(from, to) != null;
+                    chNanos += System.nanoTime() - start;
+                    settledCh += ch.getSettledCount();
+                    assertEquals(found, foundCh);
+                    if (found) {
+                        assertEquals(router.getPathWeight(), ch.getPathWeight(), 1e-6 * Math.max(1, router.getPathWeight()));
+                    }
+                }
+                if (run >= 0) {
+                    System.out.printf("A*: %8.1f us/route, %6d settled; contraction hierarchy: %8.1f us/route, %6d settled%n",
+                            aStarNanos / 1e3 / ROUTES, settledAStar / ROUTES, chNanos / 1e3 / ROUTES, settledCh / ROUTES);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+
+import com.innovant.josm.jrt.core.ArrayGraphRouterTest.TestGraph;
+import com.innovant.josm.jrt.osm.OsmEdge;
+
+/**
+ * Unit tests of {@link ContractionHierarchy}.
+ */
+class ContractionHierarchyTest {
+
+    /**
+     * Creates a street grid with random speeds, oneways and missing segments,
+     * so that contraction needs witness searches and shortcuts.
+     */
+    private static TestGraph createGrid(int size, long seed) {
+        Random random = new Random(seed);
+        TestGraph g = new TestGraph();
+        Node[][] nodes = new Node[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                nodes[i][j] = g.node(j + random.nextDouble() * 0.3, i + random.nextDouble() * 0.3);
+            }
+        }
+        double[] speeds = {30, 50, 70};
+        for (int i = 0; i < size; i++) {
+            for (int k = 0; k < 2; k++) {
+                double speed = speeds[random.nextInt(speeds.length)];
+                int oneway = random.nextInt(6);
+                for (int j = 1; j < size; j++) {
+                    if (random.nextInt(15) == 0) {
+                        continue;
+                    }
+                    Node a = k == 0 ? nodes[i][j - 1] : nodes[j - 1][i];
+                    Node b = k == 0 ? nodes[i][j] : nodes[j][i];
+                    if (oneway != 1) {
+                        g.edge(a, b, speed);
+                    }
+                    if (oneway != 2) {
+                        g.edge(b, a, speed);
+                    }
+                }
+            }
+        }
+        return g;
+    }
+
+    /**
+     * Checks that the hierarchy finds paths of the same weight as JGraphT Dijkstra, made of the original edges.
+     * @return the number of paths found
+     */
+    private static int assertSameAsDijkstra(TestGraph g, ContractionHierarchy ch, Node from, Node to) {
+        DijkstraShortestPath<Node, OsmEdge> dijkstra = new DijkstraShortestPath<>(g.graph, from, to);
+        List<OsmEdge> path = ch.route(from, to);
+        if (dijkstra.getPathEdgeList() == null) {
+            assertNull(path);
+            return 0;
+        }
+        assertEquals(dijkstra.getPathLength(), ch.getPathWeight(), 1e-9 * Math.max(1, dijkstra.getPathLength()));
+        ArrayGraphRouterTest.assertPath(g.graph, from, to, path, ch.getPathWeight());
+        return 1;
+    }
+
+    /**
+     * All pairs of the hand-built graph of {@link ArrayGraphRouterTest}.
+     */
+    @Test
+    void testSmallGraph() {
+        TestGraph g = ArrayGraphRouterTest.createGraph();
+        ContractionHierarchy ch = new ContractionHierarchy(new ArrayGraph(g.graph));
+        int paths = 0;
+        for (Node from : g.nodes) {
+            for (Node to : g.nodes) {
+                if (from != to) {
+                    paths += assertSameAsDijkstra(g, ch, from, to);
+                }
+            }
+        }
+        assertEquals(6 * 6 + 2, paths);
+    }
+
+    /**
+     * Random pairs of random street grids, whose shortest paths go through shortcuts.
+     */
+    @Test
+    void testRandomGrids() {
+        for (long seed = 0; seed < 5; seed++) {
+            TestGraph g = createGrid(20, seed);
+            ContractionHierarchy ch = new ContractionHierarchy(new ArrayGraph(g.graph));
+            assertTrue(ch.getShortcutCount() > 0);
+            Random random = new Random(seed);
+            int paths = 0;
+            for (int i = 0; i < 200; i++) {
+                Node from = g.nodes.get(random.nextInt(g.nodes.size()));
+                Node to = g.nodes.get(random.nextInt(g.nodes.size()));
+                if (from != to) {
+                    paths += assertSameAsDijkstra(g, ch, from, to);
+                }
+            }
+            assertTrue(paths > 100, "seed " + seed + ": " + paths + " paths");
+        }
+    }
+
+    /**
+     * The path from a node to itself is empty, no path is found for a node outside of the graph.
+     */
+    @Test
+    void testSameNodeAndNoPath() {
+        TestGraph g = ArrayGraphRouterTest.createGraph();
+        ContractionHierarchy ch = new ContractionHierarchy(new ArrayGraph(g.graph));
+        Node a = g.nodes.get(0);
+        assertTrue(ch.route(a, a).isEmpty());
+        assertEquals(0, ch.getPathWeight(), 0);
+        Node outside = new Node(new LatLon(46, 6));
+        assertNull(ch.route(a, outside));
+        assertNull(ch.route(outside, a));
+    }
+}
@@ -0,0 +1,198 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+import com.innovant.josm.jrt.core.RoutingGraph.RouteType;
+import com.innovant.josm.jrt.osm.OsmEdge;
+
+/**
+ * Unit tests of the incremental updates of {@link RoutingGraph}.
+ */
+@BasicPreferences
+class RoutingGraphTest {
+
+    private static Way addWay(DataSet ds, String highway, Node... nodes) {
+        Way way = new Way();
+        for (Node node : nodes) {
+            way.addNode(node);
+        }
+        way.put("highway", highway);
+        ds.addPrimitive(way);
+        return way;
+    }
+
+    /**
+     * Creates the graph of a data set, following its changes.
+     * Changes are given to the graph directly, as the data set is not the edit data set.
+     */
+    private static RoutingGraph createGraph(DataSet ds) {
+        RoutingGraph graph = new RoutingGraph(ds);
+        graph.createGraph();
+        ds.addDataSetListener(new DataSetListenerAdapter(graph::processDatasetEvent));
+        return graph;
+    }
+
+    private static Map<String, OsmEdge> edgesByNodes(RoutingGraph graph) {
+        Map<String, OsmEdge> edges = new HashMap<>();
+        for (OsmEdge edge : graph.getGraph().edgeSet()) {
+            edges.put(edge.getFrom().getUniqueId() + ">" + edge.getTo().getUniqueId(), edge);
+        }
+        return edges;
+    }
+
+    /**
+     * Checks that the edges of a graph are the ones of a graph built from scratch, with the same length and weight.
+     */
+    private static void assertSameAsRebuilt(DataSet ds, RoutingGraph graph) {
+        RoutingGraph rebuilt = new RoutingGraph(ds);
+        rebuilt.setWaySpeeds(graph.getWaySpeeds());
+        rebuilt.setTypeRoute(graph.getTypeRoute());
+        rebuilt.createGraph();
+        Map<String, OsmEdge> expected = edgesByNodes(rebuilt);
+        Map<String, OsmEdge> actual = edgesByNodes(graph);
+        assertEquals(expected.keySet(), actual.keySet());
+        assertEquals(rebuilt.getVertexCount(), graph.getVertexCount());
+        for (Map.Entry<String, OsmEdge> e : expected.entrySet()) {
+            OsmEdge edge = actual.get(e.getKey());
+            assertEquals(e.getValue().getLength(), edge.getLength(), 1e-9, e.getKey());
+            assertEquals(rebuilt.getGraph().getEdgeWeight(e.getValue()), graph.getGraph().getEdgeWeight(edge), 1e-9, e.getKey());
+        }
+        rebuilt.destroy();
+    }
+
+    /**
+     * Moving or rotating a whole way moves all its nodes in one update: all its edges must be reweighted.
+     */
+    @Test
+    void testMoveWholeWay() {
+        DataSet ds = new DataSet();
+        Node[] nodes = new Node[5];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new Node(new LatLon(45, 5 + i * 0.001));
+            ds.addPrimitive(nodes[i]);
+        }
+        addWay(ds, "residential", nodes);
+        Node other = new Node(new LatLon(45.001, 5));
+        ds.addPrimitive(other);
+        addWay(ds, "primary", nodes[0], other);
+        RoutingGraph graph = createGraph(ds);
+
+        // Rotate the way by 90 degrees around its first node, and stretch it
+        ds.beginUpdate();
+        try {
+            for (int i = 1; i < nodes.length; i++) {
+                nodes[i].setCoor(new LatLon(45 + i * 0.002, 5));
+            }
+        } finally {
+            ds.endUpdate();
+        }
+
+        assertEquals(1, graph.getUpdateStats().getRebuilds());
+        assertEquals(1, graph.getUpdateStats().getUpdates());
+        assertEquals(1, graph.getUpdateStats().getLastUpdateWays());
+        // 4 segments in both directions
+        assertEquals(8, graph.getUpdateStats().getLastUpdateTouchedEdges());
+        for (OsmEdge edge : graph.getGraph().edgeSet()) {
+            assertEquals(edge.getFrom().greatCircleDistance(edge.getTo()), edge.getLength(), 1e-9);
+        }
+        assertSameAsRebuilt(ds, graph);
+    }
+
+    /**
+     * Ways changed by several events of one update are updated once, the graph is not built again.
+     */
+    @Test
+    void testChangeWays() {
+        DataSet ds = new DataSet();
+        Node a = new Node(new LatLon(45, 5));
+        Node b = new Node(new LatLon(45, 5.001));
+        Node c = new Node(new LatLon(45.001, 5.001));
+        Node d = new Node(new LatLon(45.002, 5.001));
+        for (Node n : new Node[] {a, b, c, d}) {
+            ds.addPrimitive(n);
+        }
+        Way ab = addWay(ds, "residential", a, b);
+        Way bc = addWay(ds, "residential", b, c);
+        RoutingGraph graph = createGraph(ds);
+        int version = graph.getVersion();
+
+        ds.beginUpdate();
+        try {
+            ab.put("oneway", "yes");
+            bc.addNode(d);
+            c.setCoor(new LatLon(45.001, 5.002));
+        } finally {
+            ds.endUpdate();
+        }
+
+        assertEquals(1, graph.getUpdateStats().getRebuilds());
+        assertTrue(graph.getVersion() > version);
+        assertNotNull(graph.getGraph());
+        assertSameAsRebuilt(ds, graph);
+
+        ds.removePrimitive(bc);
+        assertEquals(1, graph.getUpdateStats().getRebuilds());
+        assertEquals(2, graph.getVertexCount());
+        assertSameAsRebuilt(ds, graph);
+    }
+
+    /**
+     * Changing the route type computes the edge weights again, as a new graph would.
+     */
+    @Test
+    void testSetTypeRoute() {
+        DataSet ds = new DataSet();
+        Node a = new Node(new LatLon(45, 5));
+        Node b = new Node(new LatLon(45, 5.001));
+        Node c = new Node(new LatLon(45.001, 5.001));
+        for (Node n : new Node[] {a, b, c}) {
+            ds.addPrimitive(n);
+        }
+        addWay(ds, "residential", a, b);
+        addWay(ds, "primary", b, c);
+        RoutingGraph graph = new RoutingGraph(ds);
+        Map<String, Double> speeds = new HashMap<>();
+        speeds.put("residential", 30.0);
+        speeds.put("primary", 90.0);
+        graph.setWaySpeeds(speeds);
+        graph.createGraph();
+        Map<String, Double> shortest = new HashMap<>();
+        for (Map.Entry<String, OsmEdge> e : edgesByNodes(graph).entrySet()) {
+            shortest.put(e.getKey(), graph.getGraph().getEdgeWeight(e.getValue()));
+        }
+        int version = graph.getVersion();
+
+        graph.setTypeRoute(RouteType.FASTEST);
+
+        assertTrue(graph.getVersion() > version);
+        assertEquals(1, graph.getUpdateStats().getRebuilds());
+        for (Map.Entry<String, OsmEdge> e : edgesByNodes(graph).entrySet()) {
+            double weight = graph.getGraph().getEdgeWeight(e.getValue());
+            if ("primary".equals(e.getValue().getWay().get("highway"))) {
+                assertNotEquals(shortest.get(e.getKey()), weight, 1e-9, e.getKey());
+            } else {
+                assertEquals(shortest.get(e.getKey()), weight, 1e-9, e.getKey());
+            }
+        }
+        assertSameAsRebuilt(ds, graph);
+
+        version = graph.getVersion();
+        graph.setTypeRoute(RouteType.FASTEST);
+        assertEquals(version, graph.getVersion());
+    }
+}
@@ -0,0 +1,93 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Edit-then-route latency of {@link RoutingGraph}: a way is moved, then a route is computed,
+ * with the incremental graph update and with a full graph rebuild.
+ * <p>
+ * Not run with unit tests. Use the {@code routing.benchmark.file} system property to benchmark an OSM file,
+ * a synthetic street grid is used otherwise.
+ */
+@BasicPreferences
+class RoutingGraphUpdateBenchmark {
+
+    private static final int EDITS = 50;
+
+    /**
+     * Moves all the nodes of a way slightly, in one data set update.
+     */
+    private static void moveWay(DataSet ds, Way way, double offset) {
+        ds.beginUpdate();
+        try {
+            for (Node node : way.getNodes()) {
+                if (node.isLatLonKnown()) {
+                    node.setCoor(new LatLon(node.lat() + offset, node.lon() + offset));
+                }
+            }
+        } finally {
+            ds.endUpdate();
+        }
+    }
+
+    private static double route(RoutingGraph graph, Node from, Node to) {
+        ArrayGraphRouter router = new ArrayGraphRouter(new ArrayGraph(graph.getGraph()));
+        return router.bidirectionalDijkstra(from, to) == null ? Double.POSITIVE_INFINITY : router.getPathWeight();
+    }
+
+    @Test
+    void benchmarkEditThenRoute() throws Exception {
+        DataSet ds = ShortestPathBenchmark.loadDataSet();
+        RoutingGraph graph = new RoutingGraph(ds);
+        graph.createGraph();
+        ds.addDataSetListener(new DataSetListenerAdapter(graph::processDatasetEvent));
+        System.out.printf("%d vertices, %d edges%n", graph.getVertexCount(), graph.getEdgeCount());
+
+        List<Way> ways = new ArrayList<>();
+        for (Way way : ds.getWays()) {
+            if (graph.isvalidWay(way)) {
+                ways.add(way);
+            }
+        }
+        List<Node> pairs = ShortestPathBenchmark.randomPairs(graph, EDITS);
+        Random random = new Random(7);
+
+        long updateNanos = 0;
+        long rebuildNanos = 0;
+        long routeNanos = 0;
+        for (int i = 0; i < EDITS; i++) {
+            long start = System.nanoTime();
+            moveWay(ds, ways.get(random.nextInt(ways.size())), (random.nextDouble() - 0.5) * 1e-4);
+            updateNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            double incremental = route(graph, pairs.get(2 * i), pairs.get(2 * i + 1));
+            routeNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            RoutingGraph rebuilt = new RoutingGraph(ds);
+            rebuilt.createGraph();
+            rebuildNanos += System.nanoTime() - start;
+            double expected = route(rebuilt, pairs.get(2 * i), pairs.get(2 * i + 1));
+            rebuilt.destroy();
+            assertEquals(expected, incremental, 1e-6 * Math.max(1, expected));
+        }
+        System.out.printf("%-24s: %8.3f ms/edit%n", "incremental update", updateNanos / 1e6 / EDITS);
+        System.out.printf("%-24s: %8.3f ms/edit%n", "full rebuild", rebuildNanos / 1e6 / EDITS);
+        System.out.printf("%-24s: %8.3f ms/route%n", "route after update", routeNanos / 1e6 / EDITS);
+        System.out.println(graph.getUpdateStats());
+    }
+}
@@ -0,0 +1,163 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.io.OsmReader;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+import com.innovant.josm.jrt.core.RoutingGraph.RouteType;
+import com.innovant.josm.jrt.osm.OsmEdge;
+
+/**
+ * Route latency of {@link ArrayGraphRouter} searches, compared to JGraphT {@link DijkstraShortestPath}.
+ * <p>
+ * Not run with unit tests. Use the {@code routing.benchmark.file} system property to benchmark an OSM file,
+ * a synthetic street grid is used otherwise.
+ */
+@BasicPreferences
+class ShortestPathBenchmark {
+
+    private static final int RUNS = 5;
+    private static final int ROUTES = 200;
+
+    private interface Search {
+        /** @return the weight of the path */
+        double route(Node from, Node to);
+    }
+
+    /**
+     * Returns the data set to benchmark.
+     * @return the file given by the {@code routing.benchmark.file} property, or a grid of 300x300 nodes
+     * @throws Exception if the file cannot be read
+     */
+    static DataSet loadDataSet() throws Exception {
+        String file = System.getProperty("routing.benchmark.file");
+        if (file != null) {
+            try (InputStream in = Files.newInputStream(Paths.get(file))) {
+                return OsmReader.parseDataSet(in, null);
+            }
+        }
+        int size = 300;
+        DataSet ds = new DataSet();
+        Node[][] nodes = new Node[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                nodes[i][j] = new Node(new LatLon(45 + i * 0.001, 5 + j * 0.0015));
+                ds.addPrimitive(nodes[i][j]);
+            }
+        }
+        Random random = new Random(42);
+        String[] highways = {"residential", "residential", "residential", "secondary", "primary"};
+        for (int i = 0; i < size; i++) {
+            for (int k = 0; k < 2; k++) {
+                Way way = new Way();
+                for (int j = 0; j < size; j++) {
+                    way.addNode(k == 0 ? nodes[i][j] : nodes[j][i]);
+                }
+                way.put("highway", highways[random.nextInt(highways.length)]);
+                if (random.nextInt(10) == 0) {
+                    way.put("oneway", "yes");
+                }
+                ds.addPrimitive(way);
+            }
+        }
+        return ds;
+    }
+
+    /**
+     * Creates the graph of a data set.
+     * @param ds the data set
+     * @param routeType the route type
+     * @return the routing graph
+     */
+    static RoutingGraph createGraph(DataSet ds, RouteType routeType) {
+        RoutingGraph graph = new RoutingGraph(ds);
+        Map<String, Double> speeds = new HashMap<>();
+        speeds.put("residential", 30.0);
+        speeds.put("secondary", 50.0);
+        speeds.put("primary", 70.0);
+        graph.setWaySpeeds(speeds);
+        graph.setTypeRoute(routeType);
+        graph.createGraph();
+        return graph;
+    }
+
+    /**
+     * Picks random pairs of nodes of the graph.
+     * @param graph the routing graph
+     * @param count the number of pairs
+     * @return the nodes of the pairs, one after the other
+     */
+    static List<Node> randomPairs(RoutingGraph graph, int count) {
+        List<Node> vertices = new ArrayList<>(graph.getGraph().vertexSet());
+        Random random = new Random(1);
+        List<Node> pairs = new ArrayList<>();
+        for (int i = 0; i < 2 * count; i++) {
+            pairs.add(vertices.get(random.nextInt(vertices.size())));
+        }
+        return pairs;
+    }
+
+    private static double[] run(String name, List<Node> pairs, Search search) {
+        double[] weights = new double[pairs.size() / 2];
+        for (int run = -RUNS; run < RUNS; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = search.route(pairs.get(2 * i), pairs.get(2 * i + 1));
+            }
+            long nanos = System.nanoTime() - start;
+            // Negative runs are warmup
+            if (run >= 0) {
+                System.out.printf("%-24s: %8.3f ms/route%n", name, nanos / 1e6 / weights.length);
+            }
+        }
+        return weights;
+    }
+
+    private static double weight(List<OsmEdge> path, ArrayGraphRouter router) {
+        return path == null ? Double.POSITIVE_INFINITY : router.getPathWeight();
+    }
+
+    @Test
+    void benchmarkShortestPath() throws Exception {
+        DataSet ds = loadDataSet();
+        for (RouteType routeType : RouteType.values()) {
+            RoutingGraph graph = createGraph(ds, routeType);
+            System.out.printf("%s: %d vertices, %d edges%n", routeType, graph.getVertexCount(), graph.getEdgeCount());
+            List<Node> pairs = randomPairs(graph, ROUTES);
+
+            double[] expected = run("JGraphT Dijkstra", pairs, (from, to) -> {
+                DijkstraShortestPath<Node, OsmEdge> dijkstra = new DijkstraShortestPath<>(graph.getGraph(), from, to);
+                return dijkstra.getPathEdgeList() == null ? Double.POSITIVE_INFINITY : dijkstra.getPathLength();
+            });
+
+            long start = System.nanoTime();
+            ArrayGraphRouter router = new ArrayGraphRouter(new ArrayGraph(graph.getGraph()));
+            System.out.printf("%-24s: %8.3f ms%n", "array graph copy", (System.nanoTime() - start) / 1e6);
+
+            double[] aStar = run("A*", pairs, (from, to) -> weight(router.aStar(from, to), router));
+            double[] bidirectional = run("bidirectional Dijkstra", pairs,
+                    (from, to) -> weight(router.bidirectionalDijkstra(from, to), router));
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], aStar[i], 1e-6 * Math.max(1, expected[i]));
+                assertEquals(expected[i], bidirectional[i], 1e-6 * Math.max(1, expected[i]));
+            }
+        }
+    }
+}